@@ -0,0 +1,117 @@
+package com.android.myexoplayer.origin;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Builds minimal H.264 Baseline profile sequence and picture parameter sets.
+ */
+/* package */ final class H264ParameterSets {
+
+    private static final int PROFILE_BASELINE = 66;
+    private static final int CONSTRAINT_FLAGS = 0xC0;
+    private static final int LEVEL_3_0 = 30;
+
+    private H264ParameterSets() {}
+
+    /**
+     * Builds a sequence parameter set NAL unit for the given dimensions, which must be multiples
+     * of 16.
+     */
+    public static byte[] buildSps(int width, int height) {
+        BitWriter bits = new BitWriter();
+        bits.writeBits(0x67, 8); // nal_unit_type = 7
+        bits.writeBits(PROFILE_BASELINE, 8);
+        bits.writeBits(CONSTRAINT_FLAGS, 8);
+        bits.writeBits(LEVEL_3_0, 8);
+        bits.writeUnsignedExpGolomb(0); // seq_parameter_set_id
+        bits.writeUnsignedExpGolomb(0); // log2_max_frame_num_minus4
+        bits.writeUnsignedExpGolomb(2); // pic_order_cnt_type
+        bits.writeUnsignedExpGolomb(1); // max_num_ref_frames
+        bits.writeBits(0, 1); // gaps_in_frame_num_value_allowed_flag
+        bits.writeUnsignedExpGolomb(width / 16 - 1);
+        bits.writeUnsignedExpGolomb(height / 16 - 1);
+        bits.writeBits(1, 1); // frame_mbs_only_flag
+        bits.writeBits(1, 1); // direct_8x8_inference_flag
+        bits.writeBits(0, 1); // frame_cropping_flag
+        bits.writeBits(0, 1); // vui_parameters_present_flag
+        bits.writeTrailingBits();
+        return bits.toNalUnit();
+    }
+
+    /**
+     * Builds a picture parameter set NAL unit matching {@link #buildSps(int, int)}.
+     */
+    public static byte[] buildPps() {
+        BitWriter bits = new BitWriter();
+        bits.writeBits(0x68, 8); // nal_unit_type = 8
+        bits.writeUnsignedExpGolomb(0); // pic_parameter_set_id
+        bits.writeUnsignedExpGolomb(0); // seq_parameter_set_id
+        bits.writeBits(0, 1); // entropy_coding_mode_flag
+        bits.writeBits(0, 1); // bottom_field_pic_order_in_frame_present_flag
+        bits.writeUnsignedExpGolomb(0); // num_slice_groups_minus1
+        bits.writeUnsignedExpGolomb(0); // num_ref_idx_l0_default_active_minus1
+        bits.writeUnsignedExpGolomb(0); // num_ref_idx_l1_default_active_minus1
+        bits.writeBits(0, 1); // weighted_pred_flag
+        bits.writeBits(0, 2); // weighted_bipred_idc
+        bits.writeUnsignedExpGolomb(0); // pic_init_qp_minus26 (se(0) == ue(0))
+        bits.writeUnsignedExpGolomb(0); // pic_init_qs_minus26
+        bits.writeUnsignedExpGolomb(0); // chroma_qp_index_offset
+        bits.writeBits(1, 1); // deblocking_filter_control_present_flag
+        bits.writeBits(0, 1); // constrained_intra_pred_flag
+        bits.writeBits(0, 1); // redundant_pic_cnt_present_flag
+        bits.writeTrailingBits();
+        return bits.toNalUnit();
+    }
+
+    private static final class BitWriter {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private int currentByte;
+        private int bitCount;
+
+        public void writeBits(int value, int count) {
+            for (int i = count - 1; i >= 0; i--) {
+                currentByte = (currentByte << 1) | ((value >> i) & 1);
+                if (++bitCount == 8) {
+                    bytes.write(currentByte);
+                    currentByte = 0;
+                    bitCount = 0;
+                }
+            }
+        }
+
+        public void writeUnsignedExpGolomb(int value) {
+            int codeNum = value + 1;
+            int length = 32 - Integer.numberOfLeadingZeros(codeNum);
+            writeBits(0, length - 1);
+            writeBits(codeNum, length);
+        }
+
+        public void writeTrailingBits() {
+            writeBits(1, 1);
+            while (bitCount != 0) {
+                writeBits(0, 1);
+            }
+        }
+
+        /**
+         * Returns the written bits with emulation prevention bytes inserted.
+         */
+        public byte[] toNalUnit() {
+            byte[] rbsp = bytes.toByteArray();
+            ByteArrayOutputStream nal = new ByteArrayOutputStream(rbsp.length + 4);
+            int zeroCount = 0;
+            for (byte b : rbsp) {
+                if (zeroCount == 2 && (b & 0xFF) <= 3) {
+                    nal.write(3);
+                    zeroCount = 0;
+                }
+                nal.write(b);
+                zeroCount = b == 0 ? zeroCount + 1 : 0;
+            }
+            return nal.toByteArray();
+        }
+
+    }
+
+}
@@ -0,0 +1,194 @@
+package com.android.myexoplayer.origin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A small embeddable HTTP server that serves synthetic DASH content on the loopback interface.
+ * <p>
+ * The origin serves a static MPD at {@code /static/manifest.mpd} and a dynamic (live) MPD at
+ * {@code /dynamic/manifest.mpd}, both referencing fragmented MP4 segments of every configured
+ * {@link SyntheticRepresentation}. It is suitable both as a fixture for reproducible benchmarks
+ * and as an offline sample.
+ */
+public final class LocalDashOrigin extends LocalHttpOrigin {
+
+    private static final String PATH_STATIC = "static";
+    private static final String PATH_DYNAMIC = "dynamic";
+    private static final String MANIFEST_NAME = "manifest.mpd";
+    private static final String INITIALIZATION_NAME = "init.mp4";
+    private static final String MEDIA_SUFFIX = ".m4s";
+
+    private List<SyntheticRepresentation> representations;
+    private List<String> mirrorUrls;
+    private int segmentDurationMs;
+    private long durationMs;
+
+    /**
+     * @param port The port to listen on, or 0 to pick a free port.
+     */
+    public LocalDashOrigin(int port) {
+        super(port);
+        representations = Arrays.asList(
+                SyntheticRepresentation.video("v240", 400000, 432, 240, 30),
+                SyntheticRepresentation.video("v480", 1200000, 848, 480, 30),
+                SyntheticRepresentation.video("v720", 3000000, 1280, 720, 30),
+                SyntheticRepresentation.video("v1080", 6000000, 1920, 1088, 30),
+                SyntheticRepresentation.audio("a128", 128000, 44100, 2));
+        segmentDurationMs = 2000;
+        durationMs = 600000;
+        mirrorUrls = new ArrayList<>();
+    }
+
+    public LocalDashOrigin setRepresentations(List<SyntheticRepresentation> representations) {
+        this.representations = new ArrayList<>(representations);
+        return this;
+    }
+
+    /**
+     * Sets the root URLs of origins that serve the same content, typically other
+     * {@link LocalDashOrigin}s with the same configuration. When set, the MPDs list this origin
+     * followed by each mirror as alternate {@code BaseURL}s.
+     *
+     * @param mirrorUrls The root URLs of the mirrors, e.g. {@code http://127.0.0.1:8090/}.
+     */
+    public LocalDashOrigin setMirrorUrls(List<String> mirrorUrls) {
+        this.mirrorUrls = new ArrayList<>(mirrorUrls);
+        return this;
+    }
+
+    public LocalDashOrigin setSegmentDurationMs(int segmentDurationMs) {
+        this.segmentDurationMs = segmentDurationMs;
+        return this;
+    }
+
+    public LocalDashOrigin setDurationMs(long durationMs) {
+        this.durationMs = durationMs;
+        return this;
+    }
+
+    @Override
+    public LocalDashOrigin setShaper(NetworkShaper shaper) {
+        super.setShaper(shaper);
+        return this;
+    }
+
+    /**
+     * Returns the URI of the static MPD.
+     */
+    public String getStaticManifestUri() {
+        return getManifestUri(getPort(), false);
+    }
+
+    /**
+     * Returns the URI of the dynamic MPD.
+     */
+    public String getDynamicManifestUri() {
+        return getManifestUri(getPort(), true);
+    }
+
+    /**
+     * Returns the URI of an MPD served by an origin on the given port.
+     */
+    public static String getManifestUri(int port, boolean dynamic) {
+        return "http://127.0.0.1:" + port + "/" + (dynamic ? PATH_DYNAMIC : PATH_STATIC) + "/"
+                + MANIFEST_NAME;
+    }
+
+    @Override
+    protected Response resolve(String path) {
+        String[] segments = path.split("/");
+        // ["", "static|dynamic", ...]
+        if (segments.length < 3) {
+            return null;
+        }
+        boolean dynamic;
+        if (PATH_STATIC.equals(segments[1])) {
+            dynamic = false;
+        } else if (PATH_DYNAMIC.equals(segments[1])) {
+            dynamic = true;
+        } else {
+            return null;
+        }
+        if (segments.length == 3 && MANIFEST_NAME.equals(segments[2])) {
+            List<String> baseUrls = getBaseUrls(segments[1]);
+            String mpd = dynamic
+                    ? MpdGenerator.generateDynamic(representations, segmentDurationMs,
+                    getStartTimeMs(), baseUrls)
+                    : MpdGenerator.generateStatic(representations, segmentDurationMs, durationMs,
+                    baseUrls);
+            return Response.text("application/dash+xml", mpd);
+        }
+        if (segments.length != 4) {
+            return null;
+        }
+        final SyntheticRepresentation representation = findRepresentation(segments[2]);
+        if (representation == null) {
+            return null;
+        }
+        String name = segments[3];
+        String contentType = representation.isVideo ? "video/mp4" : "audio/mp4";
+        if (INITIALIZATION_NAME.equals(name)) {
+            return new Response(contentType, getSegment(representation.id + "/init",
+                    new SegmentGenerator() {
+                        @Override
+                        public byte[] generate() {
+                            return SyntheticMediaGenerator.generateInitializationSegment(
+                                    representation);
+                        }
+                    }));
+        }
+        if (!name.endsWith(MEDIA_SUFFIX)) {
+            return null;
+        }
+        long segmentNumber;
+        try {
+            segmentNumber = Long.parseLong(name.substring(0, name.length() - MEDIA_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (segmentNumber < 1 || !isAvailable(segmentNumber, dynamic)) {
+            return null;
+        }
+        final long segmentIndex = segmentNumber - 1;
+        return new Response(contentType, getSegment(representation.id + "/" + segmentIndex,
+                new SegmentGenerator() {
+                    @Override
+                    public byte[] generate() {
+                        return SyntheticMediaGenerator.generateMediaSegment(representation,
+                                segmentIndex, segmentDurationMs);
+                    }
+                }));
+    }
+
+    private List<String> getBaseUrls(String mode) {
+        List<String> baseUrls = new ArrayList<>();
+        if (mirrorUrls.isEmpty()) {
+            return baseUrls;
+        }
+        baseUrls.add(getUrl("/" + mode + "/"));
+        for (String mirrorUrl : mirrorUrls) {
+            baseUrls.add(mirrorUrl + (mirrorUrl.endsWith("/") ? "" : "/") + mode + "/");
+        }
+        return baseUrls;
+    }
+
+    private boolean isAvailable(long segmentNumber, boolean dynamic) {
+        if (dynamic) {
+            long segmentEndMs = getStartTimeMs() + segmentNumber * segmentDurationMs;
+            return segmentEndMs <= System.currentTimeMillis();
+        }
+        return (segmentNumber - 1) * segmentDurationMs < durationMs;
+    }
+
+    private SyntheticRepresentation findRepresentation(String id) {
+        for (SyntheticRepresentation representation : representations) {
+            if (representation.id.equals(id)) {
+                return representation;
+            }
+        }
+        return null;
+    }
+
+}
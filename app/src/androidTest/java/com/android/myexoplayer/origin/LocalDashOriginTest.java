@@ -0,0 +1,90 @@
+package com.android.myexoplayer.origin;
+
+import android.test.AndroidTestCase;
+
+import com.android.myexoplayer.player.HeadlessSession;
+import com.android.myexoplayer.player.SessionQoe;
+import com.google.android.exoplayer.dash.mpd.MediaPresentationDescription;
+import com.google.android.exoplayer.dash.mpd.MediaPresentationDescriptionParser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Tests {@link LocalDashOrigin}, and uses it as a fixture for a headless DASH session.
+ */
+public class LocalDashOriginTest extends AndroidTestCase {
+
+    private LocalDashOrigin origin;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        origin = new LocalDashOrigin(0).setDurationMs(10000);
+        origin.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        origin.stop();
+        super.tearDown();
+    }
+
+    public void testStaticManifestParses() throws Exception {
+        String uri = origin.getStaticManifestUri();
+        HttpURLConnection connection = (HttpURLConnection) new URL(uri).openConnection();
+        MediaPresentationDescription mpd;
+        try {
+            mpd = new MediaPresentationDescriptionParser().parse(uri, connection.getInputStream());
+        } finally {
+            connection.disconnect();
+        }
+        assertFalse(mpd.dynamic);
+        assertEquals(10000, mpd.duration);
+        assertEquals(2, mpd.periods.get(0).adaptationSets.size());
+    }
+
+    public void testRangeRequest() throws Exception {
+        String uri = "http://127.0.0.1:" + origin.getPort() + "/static/v240/1.m4s";
+        HttpURLConnection connection = (HttpURLConnection) new URL(uri).openConnection();
+        connection.setRequestProperty("Range", "bytes=0-7");
+        try {
+            assertEquals(206, connection.getResponseCode());
+            byte[] body = readFully(connection.getInputStream());
+            assertEquals(8, body.length);
+            assertEquals("moof", new String(body, 4, 4, "US-ASCII"));
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    public void testSegmentPastEndNotFound() throws Exception {
+        String uri = "http://127.0.0.1:" + origin.getPort() + "/static/v240/6.m4s";
+        HttpURLConnection connection = (HttpURLConnection) new URL(uri).openConnection();
+        try {
+            assertEquals(404, connection.getResponseCode());
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    public void testHeadlessSessionCompletes() throws Exception {
+        SessionQoe qoe = new HeadlessSession(getContext(), "LocalDashOriginTest",
+                origin.getStaticManifestUri(), 4f, 10000).run();
+        assertFalse(qoe.failed);
+        assertTrue(qoe.chunkCount > 0);
+    }
+
+    private static byte[] readFully(InputStream input) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+    }
+
+}
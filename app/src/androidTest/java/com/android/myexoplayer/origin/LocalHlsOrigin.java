@@ -0,0 +1,165 @@
+package com.android.myexoplayer.origin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A small embeddable HTTP server that serves synthetic HLS content on the loopback interface.
+ * <p>
+ * The origin serves a VOD master playlist at {@code /vod/master.m3u8} and a live one at
+ * {@code /live/master.m3u8}, each referencing a media playlist of transport stream segments per
+ * video {@link SyntheticRepresentation}. The live media playlists slide over a window of
+ * segments that become available in real time.
+ */
+public final class LocalHlsOrigin extends LocalHttpOrigin {
+
+    private static final String PATH_VOD = "vod";
+    private static final String PATH_LIVE = "live";
+    private static final String MASTER_PLAYLIST_NAME = "master.m3u8";
+    private static final String PLAYLIST_CONTENT_TYPE = "application/vnd.apple.mpegurl";
+    private static final int LIVE_WINDOW_SEGMENT_COUNT = 6;
+
+    private List<SyntheticRepresentation> representations;
+    private int segmentDurationMs;
+    private long durationMs;
+
+    /**
+     * @param port The port to listen on, or 0 to pick a free port.
+     */
+    public LocalHlsOrigin(int port) {
+        super(port);
+        representations = Arrays.asList(
+                SyntheticRepresentation.video("v240", 400000, 432, 240, 30),
+                SyntheticRepresentation.video("v480", 1200000, 848, 480, 30),
+                SyntheticRepresentation.video("v720", 3000000, 1280, 720, 30));
+        segmentDurationMs = 4000;
+        durationMs = 600000;
+    }
+
+    /**
+     * Sets the representations. Audio representations are ignored.
+     */
+    public LocalHlsOrigin setRepresentations(List<SyntheticRepresentation> representations) {
+        this.representations = new ArrayList<>(representations);
+        return this;
+    }
+
+    public LocalHlsOrigin setSegmentDurationMs(int segmentDurationMs) {
+        this.segmentDurationMs = segmentDurationMs;
+        return this;
+    }
+
+    public LocalHlsOrigin setDurationMs(long durationMs) {
+        this.durationMs = durationMs;
+        return this;
+    }
+
+    @Override
+    public LocalHlsOrigin setShaper(NetworkShaper shaper) {
+        super.setShaper(shaper);
+        return this;
+    }
+
+    /**
+     * Returns the URI of the VOD master playlist.
+     */
+    public String getVodPlaylistUri() {
+        return getPlaylistUri(getPort(), false);
+    }
+
+    /**
+     * Returns the URI of the live master playlist.
+     */
+    public String getLivePlaylistUri() {
+        return getPlaylistUri(getPort(), true);
+    }
+
+    /**
+     * Returns the URI of a master playlist served by an origin on the given port.
+     */
+    public static String getPlaylistUri(int port, boolean live) {
+        return "http://127.0.0.1:" + port + "/" + (live ? PATH_LIVE : PATH_VOD) + "/"
+                + MASTER_PLAYLIST_NAME;
+    }
+
+    @Override
+    protected Response resolve(String path) {
+        String[] segments = path.split("/");
+        // ["", "vod|live", ...]
+        if (segments.length < 3) {
+            return null;
+        }
+        boolean live;
+        if (PATH_VOD.equals(segments[1])) {
+            live = false;
+        } else if (PATH_LIVE.equals(segments[1])) {
+            live = true;
+        } else {
+            return null;
+        }
+        if (segments.length == 3 && MASTER_PLAYLIST_NAME.equals(segments[2])) {
+            return Response.text(PLAYLIST_CONTENT_TYPE, M3u8Generator.generateMaster(representations));
+        }
+        if (segments.length != 4) {
+            return null;
+        }
+        final SyntheticRepresentation representation = findRepresentation(segments[2]);
+        if (representation == null) {
+            return null;
+        }
+        String name = segments[3];
+        if (M3u8Generator.MEDIA_PLAYLIST_NAME.equals(name)) {
+            return Response.text(PLAYLIST_CONTENT_TYPE, generateMediaPlaylist(live));
+        }
+        if (!name.endsWith(M3u8Generator.SEGMENT_SUFFIX)) {
+            return null;
+        }
+        final long segmentIndex;
+        try {
+            segmentIndex = Long.parseLong(
+                    name.substring(0, name.length() - M3u8Generator.SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (segmentIndex < 0 || segmentIndex >= getAvailableSegmentCount(live)) {
+            return null;
+        }
+        return new Response("video/mp2t", getSegment(representation.id + "/" + segmentIndex,
+                new SegmentGenerator() {
+                    @Override
+                    public byte[] generate() {
+                        return SyntheticTsGenerator.generateSegment(representation, segmentIndex,
+                                segmentDurationMs);
+                    }
+                }));
+    }
+
+    private String generateMediaPlaylist(boolean live) {
+        long availableSegmentCount = getAvailableSegmentCount(live);
+        if (!live) {
+            return M3u8Generator.generateMedia(0, (int) availableSegmentCount, segmentDurationMs,
+                    true);
+        }
+        long firstSegmentIndex = Math.max(0, availableSegmentCount - LIVE_WINDOW_SEGMENT_COUNT);
+        return M3u8Generator.generateMedia(firstSegmentIndex,
+                (int) (availableSegmentCount - firstSegmentIndex), segmentDurationMs, false);
+    }
+
+    private long getAvailableSegmentCount(boolean live) {
+        if (live) {
+            return (System.currentTimeMillis() - getStartTimeMs()) / segmentDurationMs;
+        }
+        return (durationMs + segmentDurationMs - 1) / segmentDurationMs;
+    }
+
+    private SyntheticRepresentation findRepresentation(String id) {
+        for (SyntheticRepresentation representation : representations) {
+            if (representation.isVideo && representation.id.equals(id)) {
+                return representation;
+            }
+        }
+        return null;
+    }
+
+}
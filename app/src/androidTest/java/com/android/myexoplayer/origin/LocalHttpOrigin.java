@@ -0,0 +1,382 @@
+package com.android.myexoplayer.origin;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Base class for the small embeddable HTTP servers that serve synthetic streams on the loopback
+ * interface.
+ * <p>
+ * Responses support HTTP/1.1 keep-alive and single byte ranges, and are shaped by a
+ * {@link NetworkShaper}. Subclasses map request paths to responses.
+ */
+public abstract class LocalHttpOrigin {
+
+    private static final String TAG = "LocalHttpOrigin";
+    private static final int SEGMENT_CACHE_SIZE = 64;
+
+    private final int requestedPort;
+    private final Map<String, byte[]> segmentCache;
+    private final AtomicInteger connectionCount;
+    private final AtomicInteger requestCount;
+    private final Set<Socket> openSockets;
+
+    private NetworkShaper shaper;
+    private ServerSocket serverSocket;
+    private ExecutorService executor;
+    private long startTimeMs;
+
+    /**
+     * @param port The port to listen on, or 0 to pick a free port.
+     */
+    protected LocalHttpOrigin(int port) {
+        requestedPort = port;
+        segmentCache = new LinkedHashMap<String, byte[]>(SEGMENT_CACHE_SIZE, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > SEGMENT_CACHE_SIZE;
+            }
+        };
+        connectionCount = new AtomicInteger();
+        requestCount = new AtomicInteger();
+        openSockets = Collections.synchronizedSet(new HashSet<Socket>());
+        shaper = NetworkShaper.UNSHAPED;
+    }
+
+    /**
+     * Sets the shaper applied to connections accepted from now on.
+     */
+    public LocalHttpOrigin setShaper(NetworkShaper shaper) {
+        this.shaper = shaper;
+        return this;
+    }
+
+    /**
+     * Starts listening. Live presentations start at this time.
+     *
+     * @throws IOException If the server socket could not be bound.
+     */
+    public synchronized void start() throws IOException {
+        if (serverSocket != null) {
+            return;
+        }
+        serverSocket = new ServerSocket(requestedPort, 50, InetAddress.getByName("127.0.0.1"));
+        startTimeMs = System.currentTimeMillis() / 1000 * 1000;
+        executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, TAG);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        final ServerSocket acceptSocket = serverSocket;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                acceptLoop(acceptSocket);
+            }
+        });
+    }
+
+    /**
+     * Stops listening and closes all connections.
+     */
+    public synchronized void stop() {
+        if (serverSocket == null) {
+            return;
+        }
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to close server socket", e);
+        }
+        executor.shutdownNow();
+        // Blocking socket reads are not interruptible, so close connections explicitly.
+        synchronized (openSockets) {
+            for (Socket socket : openSockets) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // Ignore.
+                }
+            }
+            openSockets.clear();
+        }
+        serverSocket = null;
+        executor = null;
+    }
+
+    /**
+     * Returns the port the origin listens on.
+     */
+    public synchronized int getPort() {
+        return serverSocket != null ? serverSocket.getLocalPort() : requestedPort;
+    }
+
+    /**
+     * Returns the URL of a path on this origin.
+     */
+    public String getUrl(String path) {
+        return "http://127.0.0.1:" + getPort() + path;
+    }
+
+    /**
+     * Returns the number of requests served.
+     */
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Returns the wall clock time, rounded down to the second, at which the origin was started.
+     */
+    protected long getStartTimeMs() {
+        return startTimeMs;
+    }
+
+    /**
+     * Maps a request path to a response.
+     *
+     * @param path The path of the request, without the query.
+     * @return The response, or null if there is nothing at the path.
+     */
+    protected abstract Response resolve(String path);
+
+    /**
+     * Returns a segment from the cache of recently served segments, generating and caching it if
+     * necessary.
+     */
+    protected byte[] getSegment(String key, SegmentGenerator generator) {
+        synchronized (segmentCache) {
+            byte[] segment = segmentCache.get(key);
+            if (segment != null) {
+                return segment;
+            }
+        }
+        byte[] segment = generator.generate();
+        synchronized (segmentCache) {
+            segmentCache.put(key, segment);
+        }
+        return segment;
+    }
+
+    /**
+     * Generates a segment for {@link #getSegment}.
+     */
+    protected interface SegmentGenerator {
+
+        byte[] generate();
+
+    }
+
+    /**
+     * The response to a request.
+     */
+    protected static final class Response {
+
+        public final String contentType;
+        public final byte[] body;
+
+        public Response(String contentType, byte[] body) {
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        /**
+         * Creates a response with a text body.
+         */
+        public static Response text(String contentType, String body) {
+            try {
+                return new Response(contentType, body.getBytes("UTF-8"));
+            } catch (IOException e) {
+                // UTF-8 is always supported.
+                throw new IllegalStateException(e);
+            }
+        }
+
+    }
+
+    private void acceptLoop(ServerSocket acceptSocket) {
+        while (!acceptSocket.isClosed()) {
+            try {
+                final Socket socket = acceptSocket.accept();
+                openSockets.add(socket);
+                final NetworkShaper.Connection connection =
+                        shaper.newConnection(connectionCount.getAndIncrement());
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        serveConnection(socket, connection);
+                    }
+                });
+            } catch (SocketException e) {
+                // The socket was closed by stop().
+                return;
+            } catch (IOException e) {
+                Log.w(TAG, "Accept failed", e);
+            }
+        }
+    }
+
+    private void serveConnection(Socket socket, NetworkShaper.Connection connection) {
+        try {
+            socket.setTcpNoDelay(true);
+            InputStream input = new BufferedInputStream(socket.getInputStream());
+            OutputStream output = new BufferedOutputStream(
+                    connection.throttle(socket.getOutputStream()), 16 * 1024);
+            boolean keepAlive = true;
+            while (keepAlive) {
+                String requestLine = readLine(input);
+                if (requestLine == null || requestLine.isEmpty()) {
+                    return;
+                }
+                String rangeHeader = null;
+                String line;
+                while ((line = readLine(input)) != null && !line.isEmpty()) {
+                    String lowerCaseLine = line.toLowerCase(Locale.US);
+                    if (lowerCaseLine.startsWith("range:")) {
+                        rangeHeader = line.substring(6).trim();
+                    } else if (lowerCaseLine.startsWith("connection:")
+                            && lowerCaseLine.contains("close")) {
+                        keepAlive = false;
+                    }
+                }
+                requestCount.incrementAndGet();
+                connection.awaitRoundTrip();
+                String[] parts = requestLine.split(" ");
+                if (parts.length < 2 || !"GET".equals(parts[0])) {
+                    writeStatus(output, 405, "Method Not Allowed");
+                    continue;
+                }
+                if (connection.shouldFail()) {
+                    writeStatus(output, 503, "Service Unavailable");
+                    continue;
+                }
+                String path = parts[1];
+                int queryIndex = path.indexOf('?');
+                if (queryIndex != -1) {
+                    path = path.substring(0, queryIndex);
+                }
+                Response response = resolve(path);
+                if (response == null) {
+                    writeStatus(output, 404, "Not Found");
+                    continue;
+                }
+                if (!writeResponse(output, response, rangeHeader, connection.shouldAbort())) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // The client went away.
+        } finally {
+            openSockets.remove(socket);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Ignore.
+            }
+        }
+    }
+
+    /**
+     * Writes a response, honoring a single byte range.
+     *
+     * @return Whether the connection can be reused.
+     */
+    private static boolean writeResponse(OutputStream output, Response response, String rangeHeader,
+                                         boolean abort) throws IOException {
+        byte[] body = response.body;
+        int start = 0;
+        int end = body.length - 1;
+        boolean partial = false;
+        if (rangeHeader != null && rangeHeader.startsWith("bytes=")) {
+            String[] range = rangeHeader.substring(6).split("-", -1);
+            try {
+                if (!range[0].isEmpty()) {
+                    start = Integer.parseInt(range[0]);
+                    if (range.length > 1 && !range[1].isEmpty()) {
+                        end = Math.min(end, Integer.parseInt(range[1]));
+                    }
+                } else if (range.length > 1 && !range[1].isEmpty()) {
+                    start = Math.max(0, body.length - Integer.parseInt(range[1]));
+                }
+            } catch (NumberFormatException e) {
+                writeStatus(output, 400, "Bad Request");
+                return true;
+            }
+            if (start > end) {
+                output.write(("HTTP/1.1 416 Range Not Satisfiable\r\nContent-Range: bytes */"
+                        + body.length + "\r\nContent-Length: 0\r\n\r\n").getBytes("US-ASCII"));
+                output.flush();
+                return true;
+            }
+            partial = true;
+        }
+        int length = end - start + 1;
+        StringBuilder headers = new StringBuilder()
+                .append(partial ? "HTTP/1.1 206 Partial Content\r\n" : "HTTP/1.1 200 OK\r\n")
+                .append("Content-Type: ").append(response.contentType).append("\r\n")
+                .append("Content-Length: ").append(length).append("\r\n")
+                .append("Accept-Ranges: bytes\r\n");
+        if (partial) {
+            headers.append("Content-Range: bytes ").append(start).append('-').append(end).append('/')
+                    .append(body.length).append("\r\n");
+        }
+        headers.append("\r\n");
+        output.write(headers.toString().getBytes("US-ASCII"));
+        if (abort) {
+            output.write(body, start, length / 2);
+            output.flush();
+            return false;
+        }
+        output.write(body, start, length);
+        output.flush();
+        return true;
+    }
+
+    private static void writeStatus(OutputStream output, int code, String reason)
+            throws IOException {
+        output.write(("HTTP/1.1 " + code + " " + reason + "\r\nContent-Length: 0\r\n\r\n")
+                .getBytes("US-ASCII"));
+        output.flush();
+    }
+
+    private static String readLine(InputStream input) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = input.read()) != -1) {
+            if (b == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') {
+                    line.setLength(length - 1);
+                }
+                return line.toString();
+            }
+            line.append((char) b);
+        }
+        return line.length() == 0 ? null : line.toString();
+    }
+
+}
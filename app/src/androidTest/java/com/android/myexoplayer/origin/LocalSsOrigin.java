@@ -0,0 +1,172 @@
+package com.android.myexoplayer.origin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A small embeddable HTTP server that serves synthetic, unprotected SmoothStreaming content on the
+ * loopback interface.
+ * <p>
+ * The origin serves an on demand presentation at {@code /vod.ism} and a live one at
+ * {@code /live.ism}, each with its manifest at {@code Manifest} and its fragments at
+ * {@code QualityLevels(<bitrate>)/Fragments(<stream>=<start time>)}. The live manifest lists a
+ * sliding DVR window of fragments that become available in real time.
+ */
+public final class LocalSsOrigin extends LocalHttpOrigin {
+
+    private static final String PATH_VOD = "vod.ism";
+    private static final String PATH_LIVE = "live.ism";
+    private static final String MANIFEST_NAME = "Manifest";
+    private static final int LIVE_WINDOW_FRAGMENT_COUNT = 15;
+    private static final Pattern FRAGMENT_PATTERN =
+            Pattern.compile("QualityLevels\\((\\d+)\\)/Fragments\\((\\w+)=(\\d+)\\)");
+
+    private List<SyntheticRepresentation> representations;
+    private int fragmentDurationMs;
+    private long durationMs;
+
+    /**
+     * @param port The port to listen on, or 0 to pick a free port.
+     */
+    public LocalSsOrigin(int port) {
+        super(port);
+        representations = Arrays.asList(
+                SyntheticRepresentation.video("v240", 400000, 432, 240, 30),
+                SyntheticRepresentation.video("v480", 1200000, 848, 480, 30),
+                SyntheticRepresentation.video("v720", 3000000, 1280, 720, 30),
+                SyntheticRepresentation.audio("a128", 128000, 44100, 2));
+        fragmentDurationMs = 2000;
+        durationMs = 600000;
+    }
+
+    /**
+     * Sets the representations. All video representations must have the same frame rate, and all
+     * audio representations the same sample rate.
+     */
+    public LocalSsOrigin setRepresentations(List<SyntheticRepresentation> representations) {
+        this.representations = new ArrayList<>(representations);
+        return this;
+    }
+
+    public LocalSsOrigin setFragmentDurationMs(int fragmentDurationMs) {
+        this.fragmentDurationMs = fragmentDurationMs;
+        return this;
+    }
+
+    public LocalSsOrigin setDurationMs(long durationMs) {
+        this.durationMs = durationMs;
+        return this;
+    }
+
+    @Override
+    public LocalSsOrigin setShaper(NetworkShaper shaper) {
+        super.setShaper(shaper);
+        return this;
+    }
+
+    /**
+     * Returns the URI of the on demand presentation.
+     */
+    public String getVodUri() {
+        return getPresentationUri(getPort(), false);
+    }
+
+    /**
+     * Returns the URI of the live presentation.
+     */
+    public String getLiveUri() {
+        return getPresentationUri(getPort(), true);
+    }
+
+    /**
+     * Returns the URI of a presentation served by an origin on the given port. As is conventional,
+     * the manifest is at the URI followed by {@code /Manifest}.
+     */
+    public static String getPresentationUri(int port, boolean live) {
+        return "http://127.0.0.1:" + port + "/" + (live ? PATH_LIVE : PATH_VOD);
+    }
+
+    @Override
+    protected Response resolve(String path) {
+        // "/vod.ism/Manifest" or "/vod.ism/QualityLevels(...)/Fragments(...)"
+        int separatorIndex = path.indexOf('/', 1);
+        if (separatorIndex == -1) {
+            return null;
+        }
+        String presentation = path.substring(1, separatorIndex);
+        boolean live;
+        if (PATH_VOD.equals(presentation)) {
+            live = false;
+        } else if (PATH_LIVE.equals(presentation)) {
+            live = true;
+        } else {
+            return null;
+        }
+        String name = path.substring(separatorIndex + 1);
+        long availableFragmentCount = getAvailableFragmentCount(live);
+        if (MANIFEST_NAME.equals(name)) {
+            long firstFragmentIndex = live
+                    ? Math.max(0, availableFragmentCount - LIVE_WINDOW_FRAGMENT_COUNT) : 0;
+            return Response.text("application/vnd.ms-sstr+xml",
+                    SsManifestGenerator.generate(representations, fragmentDurationMs,
+                            firstFragmentIndex, (int) (availableFragmentCount - firstFragmentIndex),
+                            live));
+        }
+        Matcher matcher = FRAGMENT_PATTERN.matcher(name);
+        if (!matcher.matches()) {
+            return null;
+        }
+        final SyntheticRepresentation representation;
+        final long fragmentIndex;
+        try {
+            representation = findRepresentation(Integer.parseInt(matcher.group(1)),
+                    SsManifestGenerator.VIDEO_STREAM_NAME.equals(matcher.group(2)));
+            if (representation == null) {
+                return null;
+            }
+            long startTime = Long.parseLong(matcher.group(3));
+            long fragmentDuration = SyntheticMediaGenerator.getSegmentDuration(representation,
+                    fragmentDurationMs);
+            if (startTime % fragmentDuration != 0) {
+                return null;
+            }
+            fragmentIndex = startTime / fragmentDuration;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (fragmentIndex >= availableFragmentCount) {
+            return null;
+        }
+        return new Response(representation.isVideo ? "video/mp4" : "audio/mp4",
+                getSegment(representation.id + "/" + fragmentIndex, new SegmentGenerator() {
+                    @Override
+                    public byte[] generate() {
+                        return SyntheticMediaGenerator.generateFragment(representation,
+                                fragmentIndex, fragmentDurationMs);
+                    }
+                }));
+    }
+
+    private long getAvailableFragmentCount(boolean live) {
+        if (live) {
+            // The presentation starts a full window before the origin, so that playback can join
+            // immediately.
+            return (System.currentTimeMillis() - getStartTimeMs()) / fragmentDurationMs
+                    + LIVE_WINDOW_FRAGMENT_COUNT;
+        }
+        return (durationMs + fragmentDurationMs - 1) / fragmentDurationMs;
+    }
+
+    private SyntheticRepresentation findRepresentation(int bitrate, boolean video) {
+        for (SyntheticRepresentation representation : representations) {
+            if (representation.isVideo == video && representation.bitrate == bitrate) {
+                return representation;
+            }
+        }
+        return null;
+    }
+
+}
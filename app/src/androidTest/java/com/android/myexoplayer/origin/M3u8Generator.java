@@ -0,0 +1,63 @@
+package com.android.myexoplayer.origin;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Generates HLS master and media playlists, with URLs relative to the playlist.
+ */
+/* package */ final class M3u8Generator {
+
+    /* package */ static final String MEDIA_PLAYLIST_NAME = "index.m3u8";
+    /* package */ static final String SEGMENT_SUFFIX = ".ts";
+
+    private M3u8Generator() {}
+
+    /**
+     * Generates a master playlist listing a media playlist per video representation.
+     */
+    public static String generateMaster(List<SyntheticRepresentation> representations) {
+        StringBuilder playlist = new StringBuilder("#EXTM3U\n");
+        for (SyntheticRepresentation representation : representations) {
+            if (!representation.isVideo) {
+                continue;
+            }
+            playlist.append("#EXT-X-STREAM-INF:BANDWIDTH=").append(representation.bitrate)
+                    .append(",RESOLUTION=").append(representation.width).append('x')
+                    .append(representation.height)
+                    .append(",CODECS=\"").append(representation.getCodecs()).append("\"\n")
+                    .append(representation.id).append('/').append(MEDIA_PLAYLIST_NAME).append('\n');
+        }
+        return playlist.toString();
+    }
+
+    /**
+     * Generates a media playlist.
+     *
+     * @param firstSegmentIndex The index of the first listed segment, which is also the media
+     *     sequence number.
+     * @param segmentCount The number of listed segments.
+     * @param segmentDurationMs The duration of every segment.
+     * @param ended Whether the playlist is complete, as opposed to live.
+     */
+    public static String generateMedia(long firstSegmentIndex, int segmentCount,
+                                       int segmentDurationMs, boolean ended) {
+        StringBuilder playlist = new StringBuilder(64 + segmentCount * 24)
+                .append("#EXTM3U\n")
+                .append("#EXT-X-VERSION:3\n")
+                .append("#EXT-X-TARGETDURATION:").append((segmentDurationMs + 999) / 1000).append('\n')
+                .append("#EXT-X-MEDIA-SEQUENCE:").append(firstSegmentIndex).append('\n');
+        if (ended) {
+            playlist.append("#EXT-X-PLAYLIST-TYPE:VOD\n");
+        }
+        String extinf = String.format(Locale.US, "#EXTINF:%.3f,\n", segmentDurationMs / 1000f);
+        for (long i = firstSegmentIndex; i < firstSegmentIndex + segmentCount; i++) {
+            playlist.append(extinf).append(i).append(SEGMENT_SUFFIX).append('\n');
+        }
+        if (ended) {
+            playlist.append("#EXT-X-ENDLIST\n");
+        }
+        return playlist.toString();
+    }
+
+}
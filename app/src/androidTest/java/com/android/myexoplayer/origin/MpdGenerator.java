@@ -0,0 +1,127 @@
+package com.android.myexoplayer.origin;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Generates static and dynamic MPDs whose representations use a {@code SegmentTemplate}, with URLs
+ * relative to the manifest or to alternate {@code BaseURL}s.
+ */
+/* package */ final class MpdGenerator {
+
+    /* package */ static final String INITIALIZATION_TEMPLATE = "$RepresentationID$/init.mp4";
+    /* package */ static final String MEDIA_TEMPLATE = "$RepresentationID$/$Number$.m4s";
+
+    private static final int TIME_SHIFT_BUFFER_DEPTH_S = 60;
+    private static final int MINIMUM_UPDATE_PERIOD_S = 10;
+
+    private MpdGenerator() {}
+
+    /**
+     * Generates a static MPD.
+     *
+     * @param representations The representations.
+     * @param segmentDurationMs The duration of each segment.
+     * @param durationMs The duration of the presentation.
+     * @param baseUrls The MPD level {@code BaseURL}s, or an empty list for URLs relative to the
+     *     manifest.
+     */
+    public static String generateStatic(List<SyntheticRepresentation> representations,
+                                        int segmentDurationMs, long durationMs, List<String> baseUrls) {
+        StringBuilder mpd = new StringBuilder();
+        mpd.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<MPD xmlns=\"urn:mpeg:dash:schema:mpd:2011\" type=\"static\"")
+                .append(" profiles=\"urn:mpeg:dash:profile:isoff-live:2011\"")
+                .append(" minBufferTime=\"PT2S\"")
+                .append(" mediaPresentationDuration=\"").append(formatDuration(durationMs)).append("\">\n");
+        appendBody(mpd, representations, segmentDurationMs, baseUrls);
+        return mpd.append("</MPD>\n").toString();
+    }
+
+    /**
+     * Generates a dynamic MPD whose segments become available in real time.
+     *
+     * @param representations The representations.
+     * @param segmentDurationMs The duration of each segment.
+     * @param availabilityStartTimeMs The wall clock time at which the first segment started.
+     * @param baseUrls The MPD level {@code BaseURL}s, or an empty list for URLs relative to the
+     *     manifest.
+     */
+    public static String generateDynamic(List<SyntheticRepresentation> representations,
+                                         int segmentDurationMs, long availabilityStartTimeMs, List<String> baseUrls) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        StringBuilder mpd = new StringBuilder();
+        mpd.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<MPD xmlns=\"urn:mpeg:dash:schema:mpd:2011\" type=\"dynamic\"")
+                .append(" profiles=\"urn:mpeg:dash:profile:isoff-live:2011\"")
+                .append(" minBufferTime=\"PT2S\"")
+                .append(" availabilityStartTime=\"")
+                .append(dateFormat.format(new Date(availabilityStartTimeMs))).append('"')
+                .append(" timeShiftBufferDepth=\"PT").append(TIME_SHIFT_BUFFER_DEPTH_S).append("S\"")
+                .append(" minimumUpdatePeriod=\"PT").append(MINIMUM_UPDATE_PERIOD_S).append("S\">\n");
+        appendBody(mpd, representations, segmentDurationMs, baseUrls);
+        return mpd.append("</MPD>\n").toString();
+    }
+
+    private static void appendBody(StringBuilder mpd, List<SyntheticRepresentation> representations,
+                                   int segmentDurationMs, List<String> baseUrls) {
+        for (String baseUrl : baseUrls) {
+            mpd.append("  <BaseURL>").append(baseUrl).append("</BaseURL>\n");
+        }
+        mpd.append("  <Period id=\"0\" start=\"PT0S\">\n");
+        appendAdaptationSet(mpd, representations, true, segmentDurationMs);
+        appendAdaptationSet(mpd, representations, false, segmentDurationMs);
+        mpd.append("  </Period>\n");
+    }
+
+    private static void appendAdaptationSet(StringBuilder mpd,
+                                            List<SyntheticRepresentation> representations, boolean video, int segmentDurationMs) {
+        boolean hasRepresentations = false;
+        for (SyntheticRepresentation representation : representations) {
+            hasRepresentations |= representation.isVideo == video;
+        }
+        if (!hasRepresentations) {
+            return;
+        }
+        mpd.append("    <AdaptationSet id=\"").append(video ? 0 : 1).append('"')
+                .append(" contentType=\"").append(video ? "video" : "audio").append('"')
+                .append(" mimeType=\"").append(video ? "video/mp4" : "audio/mp4").append('"')
+                .append(" segmentAlignment=\"true\"");
+        if (!video) {
+            mpd.append(" lang=\"en\"");
+        }
+        mpd.append(">\n");
+        mpd.append("      <SegmentTemplate timescale=\"1000\" duration=\"").append(segmentDurationMs)
+                .append("\" startNumber=\"1\" initialization=\"").append(INITIALIZATION_TEMPLATE)
+                .append("\" media=\"").append(MEDIA_TEMPLATE).append("\"/>\n");
+        for (SyntheticRepresentation representation : representations) {
+            if (representation.isVideo != video) {
+                continue;
+            }
+            mpd.append("      <Representation id=\"").append(representation.id).append('"')
+                    .append(" codecs=\"").append(representation.getCodecs()).append('"')
+                    .append(" bandwidth=\"").append(representation.bitrate).append('"');
+            if (video) {
+                mpd.append(" width=\"").append(representation.width).append('"')
+                        .append(" height=\"").append(representation.height).append('"')
+                        .append(" frameRate=\"").append(representation.frameRate).append("\"/>\n");
+            } else {
+                mpd.append(" audioSamplingRate=\"").append(representation.sampleRate).append("\">\n")
+                        .append("        <AudioChannelConfiguration")
+                        .append(" schemeIdUri=\"urn:mpeg:dash:23003:3:audio_channel_configuration:2011\"")
+                        .append(" value=\"").append(representation.channelCount).append("\"/>\n")
+                        .append("      </Representation>\n");
+            }
+        }
+        mpd.append("    </AdaptationSet>\n");
+    }
+
+    private static String formatDuration(long durationMs) {
+        return "PT" + (durationMs / 1000) + "." + String.format(Locale.US, "%03d", durationMs % 1000) + "S";
+    }
+
+}
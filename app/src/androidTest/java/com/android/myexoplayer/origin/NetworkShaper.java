@@ -0,0 +1,231 @@
+package com.android.myexoplayer.origin;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shapes the responses of a {@link LocalDashOrigin} to emulate network conditions.
+ * <p>
+ * Every connection is shaped independently: it follows the throughput trace from the time the
+ * shaper was created, waits one round trip (plus jitter) before each response, and may have
+ * responses failed or aborted part way through. Responses can also be made slow on a fixed
+ * schedule that is shared by all connections, for a tail of response times that does not depend
+ * on chance.
+ */
+public final class NetworkShaper {
+
+    /**
+     * A shaper that does not alter responses.
+     */
+    public static final NetworkShaper UNSHAPED = new NetworkShaper();
+
+    private static final int CHUNK_SIZE = 1024;
+
+    private final long creationTimeMs;
+    private final AtomicInteger responseCount;
+
+    private int[] throughputTraceKbps;
+    private int traceStepMs;
+    private int rttMs;
+    private int jitterMs;
+    private float errorRate;
+    private float abortRate;
+    private long seed;
+    private int slowResponseInterval;
+    private int slowResponseDelayMs;
+
+    public NetworkShaper() {
+        creationTimeMs = System.currentTimeMillis();
+        responseCount = new AtomicInteger();
+        throughputTraceKbps = new int[0];
+        traceStepMs = 1000;
+    }
+
+    /**
+     * Sets the throughput trace. The trace loops, and a value of 0 means unlimited.
+     *
+     * @param traceKbps The throughput of each step in kilobits per second.
+     * @param stepMs The duration of each step.
+     */
+    public NetworkShaper setThroughputTrace(int[] traceKbps, int stepMs) {
+        throughputTraceKbps = traceKbps;
+        traceStepMs = stepMs;
+        return this;
+    }
+
+    /**
+     * Sets a constant throughput.
+     *
+     * @param kbps The throughput in kilobits per second, or 0 for unlimited.
+     */
+    public NetworkShaper setThroughputKbps(int kbps) {
+        return setThroughputTrace(new int[] {kbps}, 1000);
+    }
+
+    /**
+     * Sets the round trip time added before each response.
+     */
+    public NetworkShaper setRttMs(int rttMs) {
+        this.rttMs = rttMs;
+        return this;
+    }
+
+    /**
+     * Sets the maximum random delay added to each round trip.
+     */
+    public NetworkShaper setJitterMs(int jitterMs) {
+        this.jitterMs = jitterMs;
+        return this;
+    }
+
+    /**
+     * Delays every {@code interval}th response of the origin, counting the responses of all
+     * connections in the order their requests arrive, by a further {@code delayMs}.
+     *
+     * @param interval The interval between slow responses, or 0 for none.
+     * @param delayMs The delay added to the round trip of a slow response.
+     */
+    public NetworkShaper setSlowResponses(int interval, int delayMs) {
+        slowResponseInterval = interval;
+        slowResponseDelayMs = delayMs;
+        return this;
+    }
+
+    /**
+     * Sets the probability that a request is answered with an HTTP 503.
+     */
+    public NetworkShaper setErrorRate(float errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * Sets the probability that a response body is cut off half way by closing the connection.
+     */
+    public NetworkShaper setAbortRate(float abortRate) {
+        this.abortRate = abortRate;
+        return this;
+    }
+
+    /**
+     * Sets the seed of the random source, so that jitter and error injection are reproducible.
+     */
+    public NetworkShaper setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Creates the shaping state of a new connection.
+     *
+     * @param connectionIndex The index of the connection, used to derive its random seed.
+     */
+    /* package */ Connection newConnection(int connectionIndex) {
+        return new Connection(new Random(seed * 31 + connectionIndex));
+    }
+
+    /**
+     * Returns the throughput at a time, in bits per second, or 0 for unlimited.
+     */
+    /* package */ long getThroughputBps(long nowMs) {
+        if (throughputTraceKbps.length == 0) {
+            return 0;
+        }
+        int step = (int) (((nowMs - creationTimeMs) / traceStepMs) % throughputTraceKbps.length);
+        return throughputTraceKbps[step] * 1000L;
+    }
+
+    /**
+     * The shaping state of a single connection.
+     */
+    /* package */ final class Connection {
+
+        private final Random random;
+
+        private Connection(Random random) {
+            this.random = random;
+        }
+
+        /**
+         * Blocks for one round trip, plus jitter and the delay of a slow response. Must be called
+         * once for every request.
+         */
+        public void awaitRoundTrip() throws InterruptedException {
+            int delayMs = rttMs + (jitterMs > 0 ? random.nextInt(jitterMs + 1) : 0);
+            int responseIndex = responseCount.incrementAndGet();
+            if (slowResponseInterval > 0 && responseIndex % slowResponseInterval == 0) {
+                delayMs += slowResponseDelayMs;
+            }
+            if (delayMs > 0) {
+                Thread.sleep(delayMs);
+            }
+        }
+
+        /**
+         * Returns whether the next request should fail with an HTTP error.
+         */
+        public boolean shouldFail() {
+            return errorRate > 0 && random.nextFloat() < errorRate;
+        }
+
+        /**
+         * Returns whether the next response should be aborted part way through its body.
+         */
+        public boolean shouldAbort() {
+            return abortRate > 0 && random.nextFloat() < abortRate;
+        }
+
+        /**
+         * Wraps a response stream so that writes follow the throughput trace.
+         */
+        public OutputStream throttle(OutputStream output) {
+            return throughputTraceKbps.length == 0 ? output : new ThrottledOutputStream(output);
+        }
+
+    }
+
+    private final class ThrottledOutputStream extends FilterOutputStream {
+
+        private long nextWriteTimeNs;
+
+        public ThrottledOutputStream(OutputStream output) {
+            super(output);
+            nextWriteTimeNs = System.nanoTime();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            while (length > 0) {
+                int chunkLength = Math.min(length, CHUNK_SIZE);
+                long throughputBps = getThroughputBps(System.currentTimeMillis());
+                if (throughputBps > 0) {
+                    long nowNs = System.nanoTime();
+                    nextWriteTimeNs = Math.max(nextWriteTimeNs, nowNs)
+                            + chunkLength * 8L * 1000000000L / throughputBps;
+                    long sleepNs = nextWriteTimeNs - nowNs;
+                    if (sleepNs > 0) {
+                        try {
+                            Thread.sleep(sleepNs / 1000000, (int) (sleepNs % 1000000));
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new IOException(e);
+                        }
+                    }
+                }
+                out.write(buffer, offset, chunkLength);
+                offset += chunkLength;
+                length -= chunkLength;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.android.myexoplayer.origin;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Generates SmoothStreaming client manifests with one video and one audio stream, whose fragment
+ * URLs are relative to the manifest.
+ */
+/* package */ final class SsManifestGenerator {
+
+    /* package */ static final String VIDEO_STREAM_NAME = "video";
+    /* package */ static final String AUDIO_STREAM_NAME = "audio";
+
+    private static final long TIMESCALE = 10000000;
+
+    private SsManifestGenerator() {}
+
+    /**
+     * Generates a manifest.
+     *
+     * @param representations The representations.
+     * @param fragmentDurationMs The duration of each fragment.
+     * @param firstFragmentIndex The index of the first fragment listed.
+     * @param fragmentCount The number of fragments listed.
+     * @param live Whether the presentation is live, in which case the listed fragments form its DVR
+     *     window.
+     */
+    public static String generate(List<SyntheticRepresentation> representations,
+                                  int fragmentDurationMs, long firstFragmentIndex, int fragmentCount, boolean live) {
+        long windowDuration = (long) fragmentCount * fragmentDurationMs * (TIMESCALE / 1000);
+        StringBuilder manifest = new StringBuilder();
+        manifest.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<SmoothStreamingMedia MajorVersion=\"2\" MinorVersion=\"0\"")
+                .append(" TimeScale=\"").append(TIMESCALE).append('"');
+        if (live) {
+            manifest.append(" Duration=\"0\" IsLive=\"TRUE\" LookaheadCount=\"0\"")
+                    .append(" DVRWindowLength=\"").append(windowDuration).append('"');
+        } else {
+            manifest.append(" Duration=\"").append(windowDuration).append('"');
+        }
+        manifest.append(">\n");
+        appendStreamIndex(manifest, representations, true, fragmentDurationMs, firstFragmentIndex,
+                fragmentCount);
+        appendStreamIndex(manifest, representations, false, fragmentDurationMs, firstFragmentIndex,
+                fragmentCount);
+        return manifest.append("</SmoothStreamingMedia>\n").toString();
+    }
+
+    private static void appendStreamIndex(StringBuilder manifest,
+                                          List<SyntheticRepresentation> representations, boolean video, int fragmentDurationMs,
+                                          long firstFragmentIndex, int fragmentCount) {
+        SyntheticRepresentation first = null;
+        int qualityLevelCount = 0;
+        for (SyntheticRepresentation representation : representations) {
+            if (representation.isVideo == video) {
+                first = first == null ? representation : first;
+                qualityLevelCount++;
+            }
+        }
+        if (first == null) {
+            return;
+        }
+        String name = video ? VIDEO_STREAM_NAME : AUDIO_STREAM_NAME;
+        manifest.append("  <StreamIndex Type=\"").append(name).append("\" Name=\"").append(name)
+                .append("\" Chunks=\"").append(fragmentCount)
+                .append("\" QualityLevels=\"").append(qualityLevelCount)
+                .append("\" TimeScale=\"").append(SyntheticMediaGenerator.getTimescale(first))
+                .append("\" Url=\"QualityLevels({bitrate})/Fragments(").append(name)
+                .append("={start time})\">\n");
+        int index = 0;
+        for (SyntheticRepresentation representation : representations) {
+            if (representation.isVideo != video) {
+                continue;
+            }
+            manifest.append("    <QualityLevel Index=\"").append(index++)
+                    .append("\" Bitrate=\"").append(representation.bitrate).append('"');
+            if (video) {
+                manifest.append(" FourCC=\"H264\" MaxWidth=\"").append(representation.width)
+                        .append("\" MaxHeight=\"").append(representation.height)
+                        .append("\" CodecPrivateData=\"00000001")
+                        .append(toHex(H264ParameterSets.buildSps(representation.width,
+                                representation.height)))
+                        .append("00000001").append(toHex(H264ParameterSets.buildPps()))
+                        .append("\"/>\n");
+            } else {
+                manifest.append(" FourCC=\"AACL\" SamplingRate=\"").append(representation.sampleRate)
+                        .append("\" Channels=\"").append(representation.channelCount)
+                        .append("\" BitsPerSample=\"16\" PacketSize=\"4\" AudioTag=\"255\"")
+                        .append(" CodecPrivateData=\"")
+                        .append(toHex(SyntheticMediaGenerator.buildAudioSpecificConfig(
+                                representation)))
+                        .append("\"/>\n");
+            }
+        }
+        long fragmentDuration = SyntheticMediaGenerator.getSegmentDuration(first,
+                fragmentDurationMs);
+        for (long i = firstFragmentIndex; i < firstFragmentIndex + fragmentCount; i++) {
+            manifest.append("    <c t=\"").append(i * fragmentDuration).append("\" d=\"")
+                    .append(fragmentDuration).append("\"/>\n");
+        }
+        manifest.append("  </StreamIndex>\n");
+    }
+
+    private static String toHex(byte[] data) {
+        StringBuilder hex = new StringBuilder(data.length * 2);
+        for (byte b : data) {
+            hex.append(Character.forDigit((b >> 4) & 0x0F, 16)).append(Character.forDigit(b & 0x0F, 16));
+        }
+        return hex.toString().toUpperCase(Locale.US);
+    }
+
+}
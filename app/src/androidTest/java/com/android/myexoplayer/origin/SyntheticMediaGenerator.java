@@ -0,0 +1,427 @@
+package com.android.myexoplayer.origin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Generates fragmented MP4 initialization and media segments for a {@link SyntheticRepresentation}.
+ * <p>
+ * The container structure (including a valid H.264 SPS/PPS or AAC AudioSpecificConfig) is real, so
+ * segments can be extracted by the player, but sample payloads are deterministic filler. Segment
+ * sizes match the representation's bitrate, which is what matters for network and ABR benchmarks.
+ */
+/* package */ final class SyntheticMediaGenerator {
+
+    private static final int VIDEO_TIMESCALE = 90000;
+    private static final int AAC_FRAME_SAMPLES = 1024;
+    private static final int TRACK_ID = 1;
+
+    private static final int SAMPLE_FLAGS_SYNC = 0x02000000;
+    private static final int SAMPLE_FLAGS_NON_SYNC = 0x01010000;
+
+    private SyntheticMediaGenerator() {}
+
+    /**
+     * Generates the initialization segment of a representation.
+     */
+    public static byte[] generateInitializationSegment(SyntheticRepresentation representation) {
+        try {
+            BoxWriter ftyp = new BoxWriter("ftyp");
+            ftyp.writeFourCc("iso6");
+            ftyp.out.writeInt(0);
+            ftyp.writeFourCc("iso6");
+            ftyp.writeFourCc("dash");
+
+            int timescale = getTimescale(representation);
+            BoxWriter moov = new BoxWriter("moov");
+            moov.writeBox(mvhd(timescale));
+            BoxWriter trak = new BoxWriter("trak");
+            trak.writeBox(tkhd(representation));
+            BoxWriter mdia = new BoxWriter("mdia");
+            mdia.writeBox(mdhd(timescale));
+            mdia.writeBox(hdlr(representation.isVideo));
+            BoxWriter minf = new BoxWriter("minf");
+            if (representation.isVideo) {
+                BoxWriter vmhd = new BoxWriter("vmhd", 0, 1);
+                vmhd.out.write(new byte[8]);
+                minf.writeBox(vmhd);
+            } else {
+                BoxWriter smhd = new BoxWriter("smhd", 0, 0);
+                smhd.out.writeInt(0);
+                minf.writeBox(smhd);
+            }
+            minf.writeBox(dinf());
+            minf.writeBox(stbl(representation));
+            mdia.writeBox(minf);
+            trak.writeBox(mdia);
+            moov.writeBox(trak);
+            BoxWriter mvex = new BoxWriter("mvex");
+            BoxWriter trex = new BoxWriter("trex", 0, 0);
+            trex.out.writeInt(TRACK_ID);
+            trex.out.writeInt(1);
+            trex.out.writeInt(0);
+            trex.out.writeInt(0);
+            trex.out.writeInt(0);
+            mvex.writeBox(trex);
+            moov.writeBox(mvex);
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            output.write(ftyp.toByteArray());
+            output.write(moov.toByteArray());
+            return output.toByteArray();
+        } catch (IOException e) {
+            // ByteArrayOutputStream does not throw.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Generates a media segment of a representation.
+     *
+     * @param representation The representation.
+     * @param segmentIndex The zero based index of the segment.
+     * @param segmentDurationMs The duration of every segment.
+     */
+    public static byte[] generateMediaSegment(SyntheticRepresentation representation,
+                                              long segmentIndex, int segmentDurationMs) {
+        return generateMediaSegment(representation, segmentIndex, segmentDurationMs, true);
+    }
+
+    /**
+     * Generates a SmoothStreaming fragment of a representation. Fragments are media segments whose
+     * sample times are relative to the start of the fragment, since the manifest carries the start
+     * time of every fragment.
+     *
+     * @param representation The representation.
+     * @param fragmentIndex The zero based index of the fragment.
+     * @param fragmentDurationMs The duration of every fragment.
+     */
+    public static byte[] generateFragment(SyntheticRepresentation representation,
+                                          long fragmentIndex, int fragmentDurationMs) {
+        return generateMediaSegment(representation, fragmentIndex, fragmentDurationMs, false);
+    }
+
+    /**
+     * Returns the duration of a segment of a representation, in the units of its timescale. This is
+     * slightly shorter than the nominal duration for audio, whose segments hold whole AAC frames.
+     */
+    /* package */ static long getSegmentDuration(SyntheticRepresentation representation,
+                                                 int segmentDurationMs) {
+        if (representation.isVideo) {
+            return (long) Math.max(1, representation.frameRate * segmentDurationMs / 1000)
+                    * (VIDEO_TIMESCALE / representation.frameRate);
+        }
+        return (long) Math.max(1, (int) ((long) representation.sampleRate * segmentDurationMs
+                / 1000 / AAC_FRAME_SAMPLES)) * AAC_FRAME_SAMPLES;
+    }
+
+    private static byte[] generateMediaSegment(SyntheticRepresentation representation,
+                                               long segmentIndex, int segmentDurationMs, boolean absoluteTimestamps) {
+        try {
+            int timescale = getTimescale(representation);
+            int sampleCount;
+            int sampleDuration;
+            if (representation.isVideo) {
+                sampleCount = Math.max(1, representation.frameRate * segmentDurationMs / 1000);
+                sampleDuration = VIDEO_TIMESCALE / representation.frameRate;
+            } else {
+                sampleCount = Math.max(1, (int) ((long) representation.sampleRate * segmentDurationMs
+                        / 1000 / AAC_FRAME_SAMPLES));
+                sampleDuration = AAC_FRAME_SAMPLES;
+            }
+            long baseMediaDecodeTime = absoluteTimestamps
+                    ? segmentIndex * sampleCount * sampleDuration : 0;
+            int payloadSize = Math.max(sampleCount * 64,
+                    (int) ((long) representation.bitrate * segmentDurationMs / 8000));
+            int[] sampleSizes = new int[sampleCount];
+            int regularSize = payloadSize / (sampleCount + (representation.isVideo ? 4 : 0));
+            for (int i = 0; i < sampleCount; i++) {
+                sampleSizes[i] = regularSize;
+            }
+            // The key frame of a video segment takes the remainder, i.e. about five regular frames.
+            int assigned = regularSize * sampleCount;
+            sampleSizes[0] += payloadSize - assigned;
+
+            BoxWriter moof = buildMoof(representation, segmentIndex, baseMediaDecodeTime,
+                    sampleDuration, sampleSizes, 0);
+            // The trun data offset points past the moof and the mdat header.
+            int moofSize = moof.size();
+            moof = buildMoof(representation, segmentIndex, baseMediaDecodeTime, sampleDuration,
+                    sampleSizes, moofSize + 8);
+
+            BoxWriter mdat = new BoxWriter("mdat");
+            for (int i = 0; i < sampleCount; i++) {
+                writeSamplePayload(mdat.out, representation.isVideo, i == 0, sampleSizes[i],
+                        segmentIndex, timescale);
+            }
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream(moofSize + payloadSize + 8);
+            output.write(moof.toByteArray());
+            output.write(mdat.toByteArray());
+            return output.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static BoxWriter buildMoof(SyntheticRepresentation representation, long sequenceNumber,
+                                       long baseMediaDecodeTime, int sampleDuration, int[] sampleSizes, int dataOffset)
+            throws IOException {
+        BoxWriter moof = new BoxWriter("moof");
+        BoxWriter mfhd = new BoxWriter("mfhd", 0, 0);
+        mfhd.out.writeInt((int) sequenceNumber + 1);
+        moof.writeBox(mfhd);
+        BoxWriter traf = new BoxWriter("traf");
+        // default-sample-flags-present | default-base-is-moof
+        BoxWriter tfhd = new BoxWriter("tfhd", 0, 0x020020);
+        tfhd.out.writeInt(TRACK_ID);
+        tfhd.out.writeInt(representation.isVideo ? SAMPLE_FLAGS_NON_SYNC : SAMPLE_FLAGS_SYNC);
+        traf.writeBox(tfhd);
+        BoxWriter tfdt = new BoxWriter("tfdt", 1, 0);
+        tfdt.out.writeLong(baseMediaDecodeTime);
+        traf.writeBox(tfdt);
+        // data-offset | first-sample-flags | sample-duration | sample-size
+        BoxWriter trun = new BoxWriter("trun", 0, 0x000305);
+        trun.out.writeInt(sampleSizes.length);
+        trun.out.writeInt(dataOffset);
+        trun.out.writeInt(SAMPLE_FLAGS_SYNC);
+        for (int sampleSize : sampleSizes) {
+            trun.out.writeInt(sampleDuration);
+            trun.out.writeInt(sampleSize);
+        }
+        traf.writeBox(trun);
+        moof.writeBox(traf);
+        return moof;
+    }
+
+    private static void writeSamplePayload(DataOutputStream out, boolean isVideo, boolean keyFrame,
+                                           int size, long segmentIndex, int timescale) throws IOException {
+        int remaining = size;
+        if (isVideo) {
+            // A single length-prefixed NAL unit: IDR slice for key frames, non-IDR otherwise.
+            out.writeInt(size - 4);
+            out.writeByte(keyFrame ? 0x65 : 0x41);
+            remaining -= 5;
+        }
+        int seed = (int) (segmentIndex * 31 + timescale);
+        for (int i = 0; i < remaining; i++) {
+            out.writeByte((seed + i) & 0x7F);
+        }
+    }
+
+    /* package */ static int getTimescale(SyntheticRepresentation representation) {
+        return representation.isVideo ? VIDEO_TIMESCALE : representation.sampleRate;
+    }
+
+    private static BoxWriter mvhd(int timescale) throws IOException {
+        BoxWriter mvhd = new BoxWriter("mvhd", 0, 0);
+        mvhd.out.writeInt(0); // creation_time
+        mvhd.out.writeInt(0); // modification_time
+        mvhd.out.writeInt(timescale);
+        mvhd.out.writeInt(0); // duration (fragmented)
+        mvhd.out.writeInt(0x00010000); // rate
+        mvhd.out.writeShort(0x0100); // volume
+        mvhd.out.write(new byte[10]);
+        writeUnityMatrix(mvhd.out);
+        mvhd.out.write(new byte[24]);
+        mvhd.out.writeInt(TRACK_ID + 1); // next_track_ID
+        return mvhd;
+    }
+
+    private static BoxWriter tkhd(SyntheticRepresentation representation) throws IOException {
+        BoxWriter tkhd = new BoxWriter("tkhd", 0, 0x7);
+        tkhd.out.writeInt(0);
+        tkhd.out.writeInt(0);
+        tkhd.out.writeInt(TRACK_ID);
+        tkhd.out.writeInt(0);
+        tkhd.out.writeInt(0); // duration
+        tkhd.out.write(new byte[8]);
+        tkhd.out.writeShort(0); // layer
+        tkhd.out.writeShort(0); // alternate_group
+        tkhd.out.writeShort(representation.isVideo ? 0 : 0x0100);
+        tkhd.out.writeShort(0);
+        writeUnityMatrix(tkhd.out);
+        tkhd.out.writeInt(representation.width << 16);
+        tkhd.out.writeInt(representation.height << 16);
+        return tkhd;
+    }
+
+    private static BoxWriter mdhd(int timescale) throws IOException {
+        BoxWriter mdhd = new BoxWriter("mdhd", 0, 0);
+        mdhd.out.writeInt(0);
+        mdhd.out.writeInt(0);
+        mdhd.out.writeInt(timescale);
+        mdhd.out.writeInt(0);
+        mdhd.out.writeShort(0x55C4); // language: und
+        mdhd.out.writeShort(0);
+        return mdhd;
+    }
+
+    private static BoxWriter hdlr(boolean isVideo) throws IOException {
+        BoxWriter hdlr = new BoxWriter("hdlr", 0, 0);
+        hdlr.out.writeInt(0);
+        hdlr.writeFourCc(isVideo ? "vide" : "soun");
+        hdlr.out.write(new byte[12]);
+        hdlr.out.write(isVideo ? "VideoHandler".getBytes("US-ASCII") : "SoundHandler".getBytes("US-ASCII"));
+        hdlr.out.writeByte(0);
+        return hdlr;
+    }
+
+    private static BoxWriter dinf() throws IOException {
+        BoxWriter dinf = new BoxWriter("dinf");
+        BoxWriter dref = new BoxWriter("dref", 0, 0);
+        dref.out.writeInt(1);
+        dref.writeBox(new BoxWriter("url ", 0, 1));
+        dinf.writeBox(dref);
+        return dinf;
+    }
+
+    private static BoxWriter stbl(SyntheticRepresentation representation) throws IOException {
+        BoxWriter stbl = new BoxWriter("stbl");
+        BoxWriter stsd = new BoxWriter("stsd", 0, 0);
+        stsd.out.writeInt(1);
+        stsd.writeBox(representation.isVideo ? avc1(representation) : mp4a(representation));
+        stbl.writeBox(stsd);
+        for (String type : new String[] {"stts", "stsc", "stco"}) {
+            BoxWriter empty = new BoxWriter(type, 0, 0);
+            empty.out.writeInt(0);
+            stbl.writeBox(empty);
+        }
+        BoxWriter stsz = new BoxWriter("stsz", 0, 0);
+        stsz.out.writeInt(0);
+        stsz.out.writeInt(0);
+        stbl.writeBox(stsz);
+        return stbl;
+    }
+
+    private static BoxWriter avc1(SyntheticRepresentation representation) throws IOException {
+        BoxWriter avc1 = new BoxWriter("avc1");
+        avc1.out.write(new byte[6]);
+        avc1.out.writeShort(1); // data_reference_index
+        avc1.out.write(new byte[16]);
+        avc1.out.writeShort(representation.width);
+        avc1.out.writeShort(representation.height);
+        avc1.out.writeInt(0x00480000);
+        avc1.out.writeInt(0x00480000);
+        avc1.out.writeInt(0);
+        avc1.out.writeShort(1); // frame_count
+        avc1.out.write(new byte[32]);
+        avc1.out.writeShort(0x0018);
+        avc1.out.writeShort(-1);
+        byte[] sps = H264ParameterSets.buildSps(representation.width, representation.height);
+        byte[] pps = H264ParameterSets.buildPps();
+        BoxWriter avcC = new BoxWriter("avcC");
+        avcC.out.writeByte(1);
+        avcC.out.writeByte(sps[1]);
+        avcC.out.writeByte(sps[2]);
+        avcC.out.writeByte(sps[3]);
+        avcC.out.writeByte(0xFF);
+        avcC.out.writeByte(0xE1);
+        avcC.out.writeShort(sps.length);
+        avcC.out.write(sps);
+        avcC.out.writeByte(1);
+        avcC.out.writeShort(pps.length);
+        avcC.out.write(pps);
+        avc1.writeBox(avcC);
+        return avc1;
+    }
+
+    private static BoxWriter mp4a(SyntheticRepresentation representation) throws IOException {
+        BoxWriter mp4a = new BoxWriter("mp4a");
+        mp4a.out.write(new byte[6]);
+        mp4a.out.writeShort(1);
+        mp4a.out.write(new byte[8]);
+        mp4a.out.writeShort(representation.channelCount);
+        mp4a.out.writeShort(16);
+        mp4a.out.writeInt(0);
+        mp4a.out.writeInt(representation.sampleRate << 16);
+        byte[] audioSpecificConfig = buildAudioSpecificConfig(representation);
+        BoxWriter esds = new BoxWriter("esds", 0, 0);
+        esds.out.writeByte(0x03); // ES_Descriptor
+        esds.out.writeByte(23 + audioSpecificConfig.length);
+        esds.out.writeShort(TRACK_ID);
+        esds.out.writeByte(0);
+        esds.out.writeByte(0x04); // DecoderConfigDescriptor
+        esds.out.writeByte(15 + audioSpecificConfig.length);
+        esds.out.writeByte(0x40); // Audio ISO/IEC 14496-3
+        esds.out.writeByte(0x15); // AudioStream
+        esds.out.write(new byte[3]); // bufferSizeDB
+        esds.out.writeInt(representation.bitrate);
+        esds.out.writeInt(representation.bitrate);
+        esds.out.writeByte(0x05); // DecoderSpecificInfo
+        esds.out.writeByte(audioSpecificConfig.length);
+        esds.out.write(audioSpecificConfig);
+        esds.out.writeByte(0x06); // SLConfigDescriptor
+        esds.out.writeByte(1);
+        esds.out.writeByte(0x02);
+        mp4a.writeBox(esds);
+        return mp4a;
+    }
+
+    /* package */ static byte[] buildAudioSpecificConfig(SyntheticRepresentation representation) {
+        int[] sampleRates = new int[] {96000, 88200, 64000, 48000, 44100, 32000, 24000, 22050, 16000,
+                12000, 11025, 8000, 7350};
+        int sampleRateIndex = 4;
+        for (int i = 0; i < sampleRates.length; i++) {
+            if (sampleRates[i] == representation.sampleRate) {
+                sampleRateIndex = i;
+                break;
+            }
+        }
+        int objectType = 2; // AAC LC
+        int config = (objectType << 11) | (sampleRateIndex << 7) | (representation.channelCount << 3);
+        return new byte[] {(byte) (config >> 8), (byte) config};
+    }
+
+    private static void writeUnityMatrix(DataOutputStream out) throws IOException {
+        int[] matrix = new int[] {0x00010000, 0, 0, 0, 0x00010000, 0, 0, 0, 0x40000000};
+        for (int value : matrix) {
+            out.writeInt(value);
+        }
+    }
+
+    /**
+     * Accumulates the payload of a single ISO BMFF box.
+     */
+    private static final class BoxWriter {
+
+        private final String type;
+        private final ByteArrayOutputStream buffer;
+        public final DataOutputStream out;
+
+        public BoxWriter(String type) {
+            this.type = type;
+            buffer = new ByteArrayOutputStream();
+            out = new DataOutputStream(buffer);
+        }
+
+        public BoxWriter(String type, int version, int flags) throws IOException {
+            this(type);
+            out.writeInt((version << 24) | flags);
+        }
+
+        public void writeFourCc(String fourCc) throws IOException {
+            out.write(fourCc.getBytes("US-ASCII"));
+        }
+
+        public void writeBox(BoxWriter child) throws IOException {
+            out.write(child.toByteArray());
+        }
+
+        public int size() {
+            return 8 + buffer.size();
+        }
+
+        public byte[] toByteArray() throws IOException {
+            ByteArrayOutputStream box = new ByteArrayOutputStream(size());
+            DataOutputStream boxOut = new DataOutputStream(box);
+            boxOut.writeInt(size());
+            boxOut.write(type.getBytes("US-ASCII"));
+            buffer.writeTo(box);
+            return box.toByteArray();
+        }
+
+    }
+
+}
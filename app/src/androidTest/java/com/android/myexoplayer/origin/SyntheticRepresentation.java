@@ -0,0 +1,54 @@
+package com.android.myexoplayer.origin;
+
+/**
+ * Describes a representation served by a {@link LocalDashOrigin}.
+ */
+public final class SyntheticRepresentation {
+
+    public final String id;
+    public final boolean isVideo;
+    public final int bitrate;
+    public final int width;
+    public final int height;
+    public final int frameRate;
+    public final int sampleRate;
+    public final int channelCount;
+
+    private SyntheticRepresentation(String id, boolean isVideo, int bitrate, int width, int height,
+                                    int frameRate, int sampleRate, int channelCount) {
+        this.id = id;
+        this.isVideo = isVideo;
+        this.bitrate = bitrate;
+        this.width = width;
+        this.height = height;
+        this.frameRate = frameRate;
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+    }
+
+    /**
+     * Creates an H.264 video representation. Width and height must be multiples of 16.
+     */
+    public static SyntheticRepresentation video(String id, int bitrate, int width, int height,
+                                                int frameRate) {
+        return new SyntheticRepresentation(id, true, bitrate, width, height, frameRate, 0, 0);
+    }
+
+    /**
+     * Creates an AAC-LC audio representation.
+     */
+    public static SyntheticRepresentation audio(String id, int bitrate, int sampleRate,
+                                                int channelCount) {
+        return new SyntheticRepresentation(id, false, bitrate, 0, 0, 0, sampleRate, channelCount);
+    }
+
+    /**
+     * Returns the RFC 6381 codecs string of the representation.
+     *
+     * @return codecs
+     */
+    public String getCodecs() {
+        return isVideo ? "avc1.42c01e" : "mp4a.40.2";
+    }
+
+}
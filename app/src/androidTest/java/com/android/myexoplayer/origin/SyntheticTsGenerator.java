@@ -0,0 +1,199 @@
+package com.android.myexoplayer.origin;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Generates MPEG-2 transport stream segments carrying the H.264 video of a
+ * {@link SyntheticRepresentation}, for HLS.
+ * <p>
+ * Every access unit starts with an access unit delimiter, and the first of each segment is an IDR
+ * picture preceded by the parameter sets, so that each segment can be decoded on its own. As with
+ * {@link SyntheticMediaGenerator}, slice payloads are filler sized to match the bitrate.
+ */
+/* package */ final class SyntheticTsGenerator {
+
+    private static final int TS_PACKET_SIZE = 188;
+    private static final int TS_SYNC_BYTE = 0x47;
+    private static final int PID_PAT = 0;
+    private static final int PID_PMT = 0x1000;
+    private static final int PID_VIDEO = 0x100;
+    private static final int STREAM_TYPE_H264 = 0x1B;
+    private static final int STREAM_ID_VIDEO = 0xE0;
+    /**
+     * Offset of the first presentation timestamp, as commonly used by segmenters.
+     */
+    private static final long PTS_OFFSET = 126000;
+    private static final byte FILLER = (byte) 0xAA;
+
+    private SyntheticTsGenerator() {}
+
+    /**
+     * Generates a segment.
+     *
+     * @param representation A video representation.
+     * @param segmentIndex The zero based index of the segment.
+     * @param segmentDurationMs The duration of every segment.
+     */
+    public static byte[] generateSegment(SyntheticRepresentation representation, long segmentIndex,
+                                         int segmentDurationMs) {
+        int frameCount = Math.max(1, representation.frameRate * segmentDurationMs / 1000);
+        long frameDurationPts = 90000 / representation.frameRate;
+        long firstPts = PTS_OFFSET + segmentIndex * frameCount * frameDurationPts;
+        int payloadSize = Math.max(frameCount * 64,
+                (int) ((long) representation.bitrate * segmentDurationMs / 8000));
+        // The key frame takes about five times the size of the others.
+        int regularSize = payloadSize / (frameCount + 4);
+        int keyFrameSize = payloadSize - regularSize * (frameCount - 1);
+
+        byte[] sps = H264ParameterSets.buildSps(representation.width, representation.height);
+        byte[] pps = H264ParameterSets.buildPps();
+        ByteArrayOutputStream output = new ByteArrayOutputStream(payloadSize + payloadSize / 8);
+        int[] continuityCounters = new int[0x2000];
+        writeSection(output, PID_PAT, buildPat(), continuityCounters);
+        writeSection(output, PID_PMT, buildPmt(), continuityCounters);
+        for (int i = 0; i < frameCount; i++) {
+            boolean keyFrame = i == 0;
+            ByteArrayOutputStream accessUnit = new ByteArrayOutputStream();
+            writeNalUnit(accessUnit, new byte[] {0x09, (byte) 0xF0});
+            if (keyFrame) {
+                writeNalUnit(accessUnit, sps);
+                writeNalUnit(accessUnit, pps);
+            }
+            byte[] slice = new byte[Math.max(2, (keyFrame ? keyFrameSize : regularSize) - 16)];
+            slice[0] = (byte) (keyFrame ? 0x65 : 0x41);
+            for (int j = 1; j < slice.length; j++) {
+                slice[j] = FILLER;
+            }
+            writeNalUnit(accessUnit, slice);
+            writePes(output, buildPes(accessUnit.toByteArray(), firstPts + i * frameDurationPts),
+                    continuityCounters);
+        }
+        return output.toByteArray();
+    }
+
+    private static void writeNalUnit(ByteArrayOutputStream output, byte[] nalUnit) {
+        output.write(0);
+        output.write(0);
+        output.write(0);
+        output.write(1);
+        output.write(nalUnit, 0, nalUnit.length);
+    }
+
+    private static byte[] buildPat() {
+        byte[] section = new byte[] {
+                0x00, // table_id
+                (byte) 0xB0, 0x0D, // section_syntax_indicator, section_length = 13
+                0x00, 0x01, // transport_stream_id
+                (byte) 0xC1, // version 0, current_next_indicator
+                0x00, 0x00, // section_number, last_section_number
+                0x00, 0x01, // program_number
+                (byte) (0xE0 | (PID_PMT >> 8)), (byte) PID_PMT,
+                0, 0, 0, 0 // CRC
+        };
+        writeCrc(section);
+        return section;
+    }
+
+    private static byte[] buildPmt() {
+        byte[] section = new byte[] {
+                0x02, // table_id
+                (byte) 0xB0, 0x12, // section_syntax_indicator, section_length = 18
+                0x00, 0x01, // program_number
+                (byte) 0xC1, // version 0, current_next_indicator
+                0x00, 0x00, // section_number, last_section_number
+                (byte) (0xE0 | (PID_VIDEO >> 8)), (byte) PID_VIDEO, // PCR_PID
+                (byte) 0xF0, 0x00, // program_info_length
+                STREAM_TYPE_H264,
+                (byte) (0xE0 | (PID_VIDEO >> 8)), (byte) PID_VIDEO,
+                (byte) 0xF0, 0x00, // ES_info_length
+                0, 0, 0, 0 // CRC
+        };
+        writeCrc(section);
+        return section;
+    }
+
+    private static byte[] buildPes(byte[] payload, long pts) {
+        byte[] pes = new byte[14 + payload.length];
+        pes[2] = 1; // packet_start_code_prefix
+        pes[3] = (byte) STREAM_ID_VIDEO;
+        // PES_packet_length 0 is allowed for video.
+        pes[6] = (byte) 0x80;
+        pes[7] = (byte) 0x80; // PTS only
+        pes[8] = 5; // PES_header_data_length
+        pes[9] = (byte) (0x21 | ((pts >> 29) & 0x0E));
+        pes[10] = (byte) (pts >> 22);
+        pes[11] = (byte) (0x01 | ((pts >> 14) & 0xFE));
+        pes[12] = (byte) (pts >> 7);
+        pes[13] = (byte) (0x01 | ((pts << 1) & 0xFE));
+        System.arraycopy(payload, 0, pes, 14, payload.length);
+        return pes;
+    }
+
+    private static void writeSection(ByteArrayOutputStream output, int pid, byte[] section,
+                                     int[] continuityCounters) {
+        byte[] packet = new byte[TS_PACKET_SIZE];
+        writeHeader(packet, pid, true, false, continuityCounters);
+        packet[4] = 0; // pointer_field
+        System.arraycopy(section, 0, packet, 5, section.length);
+        for (int i = 5 + section.length; i < TS_PACKET_SIZE; i++) {
+            packet[i] = (byte) 0xFF;
+        }
+        output.write(packet, 0, TS_PACKET_SIZE);
+    }
+
+    private static void writePes(ByteArrayOutputStream output, byte[] pes,
+                                 int[] continuityCounters) {
+        byte[] packet = new byte[TS_PACKET_SIZE];
+        int offset = 0;
+        while (offset < pes.length) {
+            int remaining = pes.length - offset;
+            boolean stuffed = remaining < TS_PACKET_SIZE - 4;
+            writeHeader(packet, PID_VIDEO, offset == 0, stuffed, continuityCounters);
+            int headerSize = 4;
+            if (stuffed) {
+                // Pad the last packet with an adaptation field.
+                int adaptationFieldLength = TS_PACKET_SIZE - 4 - remaining - 1;
+                packet[4] = (byte) adaptationFieldLength;
+                if (adaptationFieldLength > 0) {
+                    packet[5] = 0; // No flags.
+                    for (int i = 6; i < 5 + adaptationFieldLength; i++) {
+                        packet[i] = (byte) 0xFF;
+                    }
+                }
+                headerSize = 5 + adaptationFieldLength;
+            }
+            int length = TS_PACKET_SIZE - headerSize;
+            System.arraycopy(pes, offset, packet, headerSize, length);
+            output.write(packet, 0, TS_PACKET_SIZE);
+            offset += length;
+        }
+    }
+
+    private static void writeHeader(byte[] packet, int pid, boolean payloadUnitStart,
+                                    boolean adaptationField, int[] continuityCounters) {
+        packet[0] = TS_SYNC_BYTE;
+        packet[1] = (byte) ((payloadUnitStart ? 0x40 : 0) | (pid >> 8));
+        packet[2] = (byte) pid;
+        packet[3] = (byte) ((adaptationField ? 0x30 : 0x10) | continuityCounters[pid]);
+        continuityCounters[pid] = (continuityCounters[pid] + 1) & 0x0F;
+    }
+
+    /**
+     * Writes the MPEG-2 CRC32 of all but the last four bytes of a section into those bytes.
+     */
+    private static void writeCrc(byte[] section) {
+        int crc = 0xFFFFFFFF;
+        for (int i = 0; i < section.length - 4; i++) {
+            crc ^= (section[i] & 0xFF) << 24;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x80000000) != 0 ? (crc << 1) ^ 0x04C11DB7 : crc << 1;
+            }
+        }
+        int length = section.length;
+        section[length - 4] = (byte) (crc >> 24);
+        section[length - 3] = (byte) (crc >> 16);
+        section[length - 2] = (byte) (crc >> 8);
+        section[length - 1] = (byte) crc;
+    }
+
+}
@@ -0,0 +1,210 @@
+package com.android.myexoplayer.player;
+
+import com.android.myexoplayer.replay.ReplayResult;
+import com.android.myexoplayer.replay.SessionRecorder;
+import com.android.myexoplayer.replay.SessionRecording;
+import com.android.myexoplayer.replay.SessionReplayer;
+import com.google.android.exoplayer.chunk.Chunk;
+import com.google.android.exoplayer.chunk.Format;
+import com.google.android.exoplayer.chunk.FormatEvaluator;
+import com.google.android.exoplayer.chunk.MediaChunk;
+import com.google.android.exoplayer.upstream.BandwidthMeter;
+import com.google.android.exoplayer.util.Clock;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests {@link BufferThresholdController}, directly and by replaying sessions against the fixed
+ * thresholds of {@link DemoPlayer}.
+ */
+public class BufferThresholdControllerTest extends TestCase {
+
+    private static final Format[] FORMATS = new Format[] {
+            new Format("v240", "video/mp4", 426, 240, 30, -1, -1, 400000),
+            new Format("v480", "video/mp4", 854, 480, 30, -1, -1, 1200000),
+    };
+    private static final int CHUNK_DURATION_MS = 2000;
+    private static final int CHUNK_COUNT = 90;
+
+    private BufferThresholdController controller;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        controller = new BufferThresholdController(DemoPlayer.MIN_BUFFERS_COUNT,
+                DemoPlayer.MIN_REBUFFERS_COUNT);
+    }
+
+    public void testFallsBackUntilMeasured() {
+        controller.onChunkLoaded(DemoPlayer.TYPE_VIDEO, 1200000, CHUNK_DURATION_MS);
+        addSamples(3000000, 3000000);
+        assertEquals(DemoPlayer.MIN_BUFFERS_COUNT, controller.getStartThresholdMs());
+        assertEquals(DemoPlayer.MIN_REBUFFERS_COUNT, controller.getResumeThresholdMs());
+    }
+
+    public void testSteadyNetworkLowersThresholds() {
+        controller.onChunkLoaded(DemoPlayer.TYPE_VIDEO, 1200000, CHUNK_DURATION_MS);
+        addSamples(3000000, 3000000, 3000000, 3000000, 3000000);
+        // Each 2s chunk loads in 800ms, which is then all that needs to be buffered.
+        assertEquals(800, controller.getStartThresholdMs());
+        assertEquals(800, controller.getResumeThresholdMs());
+    }
+
+    public void testVariableNetworkRaisesThresholdsUpToFallbacks() {
+        controller.onChunkLoaded(DemoPlayer.TYPE_VIDEO, 1200000, CHUNK_DURATION_MS);
+        addSamples(3000000, 3000000, 2000000, 3000000, 2500000);
+        int resumeThresholdMs = controller.getResumeThresholdMs();
+        assertTrue(resumeThresholdMs > 800);
+        assertTrue(resumeThresholdMs < DemoPlayer.MIN_REBUFFERS_COUNT);
+        controller.reset();
+        controller.onChunkLoaded(DemoPlayer.TYPE_VIDEO, 1200000, CHUNK_DURATION_MS);
+        addSamples(4000000, 800000, 4000000, 1000000, 4000000, 900000);
+        assertEquals(DemoPlayer.MIN_BUFFERS_COUNT, controller.getStartThresholdMs());
+        assertEquals(DemoPlayer.MIN_REBUFFERS_COUNT, controller.getResumeThresholdMs());
+    }
+
+    public void testParallelSourcesAddUp() {
+        controller.onChunkLoaded(DemoPlayer.TYPE_VIDEO, 1200000, CHUNK_DURATION_MS);
+        addSamples(4000000, 3000000, 4000000, 3000000);
+        int videoThresholdMs = controller.getStartThresholdMs();
+        controller.onChunkLoaded(DemoPlayer.TYPE_AUDIO, 128000, CHUNK_DURATION_MS);
+        assertTrue(controller.getStartThresholdMs() > videoThresholdMs);
+    }
+
+    public void testDrainingNetworkFallsBack() {
+        controller.onChunkLoaded(DemoPlayer.TYPE_VIDEO, 1200000, CHUNK_DURATION_MS);
+        addSamples(1000000, 1000000, 1000000);
+        assertEquals(DemoPlayer.MIN_BUFFERS_COUNT, controller.getStartThresholdMs());
+        assertEquals(DemoPlayer.MIN_REBUFFERS_COUNT, controller.getResumeThresholdMs());
+    }
+
+    public void testStandardNormalQuantile() {
+        assertEquals(1.645, BufferThresholdController.getStandardNormalQuantile(0.95), 1e-3);
+        assertEquals(1.960, BufferThresholdController.getStandardNormalQuantile(0.975), 1e-3);
+        assertEquals(2.326, BufferThresholdController.getStandardNormalQuantile(0.99), 1e-3);
+    }
+
+    public void testReplayOnSteadyNetworkMatchesFixedThresholds() throws IOException {
+        long[] throughputsBps = new long[CHUNK_COUNT];
+        Arrays.fill(throughputsBps, 3000000);
+        SessionRecording recording = record(throughputsBps);
+        ReplayResult fixed = newReplayer().replay(recording);
+        ReplayResult adaptive = newReplayer()
+                .setThresholdControllerFactory(new DefaultThresholdControllerFactory())
+                .replay(recording);
+        assertEquals(fixed.qoe.startupMs, adaptive.qoe.startupMs);
+        assertEquals(0, fixed.qoe.rebufferCount);
+        assertEquals(0, adaptive.qoe.rebufferCount);
+    }
+
+    public void testReplayOnVariableNetworkStartsAndStallsNoLonger() throws IOException {
+        // A cellular-like network, whose throughput is log-normal around 1.6 Mbps.
+        Random random = new Random(1);
+        long[] throughputsBps = new long[CHUNK_COUNT];
+        for (int i = 0; i < CHUNK_COUNT; i++) {
+            throughputsBps[i] = (long) (1600000 * Math.exp(random.nextGaussian() * 0.8));
+        }
+        SessionRecording recording = record(throughputsBps);
+        ReplayResult fixed = newReplayer().replay(recording);
+        ReplayResult adaptive = newReplayer()
+                .setThresholdControllerFactory(new DefaultThresholdControllerFactory())
+                .replay(recording);
+        assertTrue(fixed.qoe.rebufferCount > 0);
+        assertTrue(adaptive.qoe.startupMs <= fixed.qoe.startupMs);
+        assertTrue(adaptive.qoe.rebufferMs <= fixed.qoe.rebufferMs);
+        assertTrue(adaptive.qoe.rebufferCount <= fixed.qoe.rebufferCount);
+    }
+
+    private void addSamples(long... throughputsBps) {
+        for (long throughputBps : throughputsBps) {
+            controller.onBandwidthSample(1000, throughputBps / 8);
+        }
+    }
+
+    /**
+     * Returns a replayer that always loads 480p, so that only the thresholds differ.
+     */
+    private static SessionReplayer newReplayer() {
+        return new SessionReplayer().setEvaluatorFactory(new SessionReplayer.EvaluatorFactory() {
+            @Override
+            public FormatEvaluator createFormatEvaluator(BandwidthMeter bandwidthMeter) {
+                return new FixedEvaluator();
+            }
+        });
+    }
+
+    /**
+     * Records a session in which each 480p chunk loads at the given throughput.
+     */
+    private static SessionRecording record(long[] throughputsBps) throws IOException {
+        FakeClock clock = new FakeClock();
+        SessionRecorder recorder = new SessionRecorder("http://127.0.0.1/manifest.mpd", clock);
+        recorder.recordVideoFormats(FORMATS);
+        recorder.recordStateChanged(true, DemoPlayer.STATE_BUFFERING);
+        long bytes = FORMATS[1].bitrate / 8 * CHUNK_DURATION_MS / 1000;
+        for (int i = 0; i < throughputsBps.length; i++) {
+            long loadDurationMs = bytes * 8000 / throughputsBps[i];
+            recorder.recordLoadStarted(DemoPlayer.TYPE_VIDEO, Chunk.TYPE_MEDIA,
+                    Chunk.TRIGGER_ADAPTIVE, FORMATS[1], i * CHUNK_DURATION_MS,
+                    (i + 1) * CHUNK_DURATION_MS);
+            clock.timeMs += loadDurationMs;
+            recorder.recordLoadCompleted(DemoPlayer.TYPE_VIDEO, bytes, clock.timeMs,
+                    loadDurationMs);
+        }
+        // Leave time for the replay to play to the end, however long it stalls.
+        clock.timeMs += CHUNK_COUNT * CHUNK_DURATION_MS;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        recorder.writeTo(output);
+        return SessionRecording.read(new ByteArrayInputStream(output.toByteArray()));
+    }
+
+    private static final class DefaultThresholdControllerFactory
+            implements SessionReplayer.ThresholdControllerFactory {
+
+        @Override
+        public BufferThresholdController createThresholdController() {
+            return new BufferThresholdController(DemoPlayer.MIN_BUFFERS_COUNT,
+                    DemoPlayer.MIN_REBUFFERS_COUNT);
+        }
+
+    }
+
+    private static final class FixedEvaluator implements FormatEvaluator {
+
+        @Override
+        public void enable() {
+            // Do nothing.
+        }
+
+        @Override
+        public void disable() {
+            // Do nothing.
+        }
+
+        @Override
+        public void evaluate(List<? extends MediaChunk> queue, long playbackPositionUs,
+                             Format[] formats, Evaluation evaluation) {
+            evaluation.format = FORMATS[1];
+        }
+
+    }
+
+    private static final class FakeClock implements Clock {
+
+        public long timeMs;
+
+        @Override
+        public long elapsedRealtime() {
+            return timeMs;
+        }
+
+    }
+
+}
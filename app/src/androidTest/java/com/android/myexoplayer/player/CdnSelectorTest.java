@@ -0,0 +1,96 @@
+package com.android.myexoplayer.player;
+
+import android.net.Uri;
+import android.test.AndroidTestCase;
+
+import com.android.myexoplayer.origin.LocalDashOrigin;
+import com.android.myexoplayer.origin.NetworkShaper;
+import com.google.android.exoplayer.dash.mpd.MediaPresentationDescriptionParser;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the selection of alternate {@code BaseURL}s by DASH sessions, against three mirrored
+ * {@link LocalDashOrigin}s: a slow one that serves the manifest, a fast one and a failing one.
+ */
+public class CdnSelectorTest extends AndroidTestCase {
+
+    private LocalDashOrigin slowOrigin;
+    private LocalDashOrigin fastOrigin;
+    private LocalDashOrigin failingOrigin;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        fastOrigin = new LocalDashOrigin(0).setDurationMs(60000)
+                .setShaper(new NetworkShaper().setRttMs(5));
+        fastOrigin.start();
+        failingOrigin = new LocalDashOrigin(0).setDurationMs(60000)
+                .setShaper(new NetworkShaper().setErrorRate(1));
+        failingOrigin.start();
+        slowOrigin = new LocalDashOrigin(0).setDurationMs(60000)
+                .setShaper(new NetworkShaper().setRttMs(300).setThroughputKbps(4000))
+                .setMirrorUrls(Arrays.asList(fastOrigin.getUrl("/"), failingOrigin.getUrl("/")));
+        slowOrigin.start();
+        HostScoreboard.getInstance(getContext()).clear();
+        ManifestCache.getInstance().clear();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        slowOrigin.stop();
+        fastOrigin.stop();
+        failingOrigin.stop();
+        super.tearDown();
+    }
+
+    public void testFastestHealthyHostServesMostChunks() throws Exception {
+        SessionQoe qoe = new HeadlessSession(getContext(), "CdnSelectorTest",
+                slowOrigin.getStaticManifestUri(), 4, 20000).run();
+        assertFalse(qoe.failed);
+        assertTrue(fastOrigin.getRequestCount() > slowOrigin.getRequestCount());
+        assertTrue(fastOrigin.getRequestCount() > failingOrigin.getRequestCount());
+    }
+
+    public void testHedgeFromMirrorGoesToAnotherHost() throws Exception {
+        String manifest = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<MPD xmlns=\"urn:mpeg:dash:schema:mpd:2011\" type=\"static\"\n"
+                + "    mediaPresentationDuration=\"PT60S\" minBufferTime=\"PT2S\">\n"
+                + "  <BaseURL>" + slowOrigin.getUrl("/") + "</BaseURL>\n"
+                + "  <BaseURL>" + fastOrigin.getUrl("/") + "</BaseURL>\n"
+                + "  <Period/>\n"
+                + "</MPD>\n";
+        CdnSelector cdnSelector = new CdnSelector(getContext(), "CdnSelectorTest");
+        cdnSelector.wrapParser(new MediaPresentationDescriptionParser()).parse(
+                slowOrigin.getStaticManifestUri(), new ByteArrayInputStream(manifest.getBytes()));
+        Uri mirrorUri = Uri.parse(fastOrigin.getUrl("/static/v1080/1.m4s"));
+        assertEquals(2, cdnSelector.getCandidateUris(mirrorUri).size());
+        assertEquals(Uri.parse(slowOrigin.getUrl("/static/v1080/1.m4s")),
+                cdnSelector.getHedgeUri(mirrorUri));
+    }
+
+    public void testSessionFailsOverWhenHostStops() throws Exception {
+        final AtomicInteger slowRequestCountAtStop = new AtomicInteger();
+        Timer timer = new Timer();
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                fastOrigin.stop();
+                slowRequestCountAtStop.set(slowOrigin.getRequestCount());
+            }
+        }, 5000);
+        try {
+            SessionQoe qoe = new HeadlessSession(getContext(), "CdnSelectorTest",
+                    slowOrigin.getStaticManifestUri(), 4, 40000).run();
+            assertFalse(qoe.failed);
+            assertTrue(slowOrigin.getRequestCount() > slowRequestCountAtStop.get());
+        } finally {
+            timer.cancel();
+        }
+    }
+
+}
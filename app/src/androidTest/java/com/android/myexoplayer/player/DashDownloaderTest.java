@@ -0,0 +1,98 @@
+package com.android.myexoplayer.player;
+
+import android.test.AndroidTestCase;
+
+import com.android.myexoplayer.origin.LocalDashOrigin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests {@link DashDownloader} and offline playback against a {@link LocalDashOrigin}.
+ */
+public class DashDownloaderTest extends AndroidTestCase {
+
+    private LocalDashOrigin origin;
+    private File storeDirectory;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        origin = new LocalDashOrigin(0).setDurationMs(20000);
+        origin.start();
+        storeDirectory = new File(getContext().getCacheDir(), "DashDownloaderTest");
+        new OfflineStore(storeDirectory).delete();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        origin.stop();
+        new OfflineStore(storeDirectory).delete();
+        super.tearDown();
+    }
+
+    public void testDownloadPlaysWithoutNetwork() throws Exception {
+        OfflineStore store = new OfflineStore(storeDirectory);
+        newDownloader(store).download();
+        assertTrue(store.isComplete());
+
+        origin.stop();
+        SessionQoe qoe = new HeadlessSession(new DashRendererBuilder(getContext(),
+                "DashDownloaderTest", store, new StubTrackRendererFactory(4f)), 10000).run();
+        assertFalse(qoe.failed);
+        assertTrue(qoe.chunkCount > 0);
+    }
+
+    public void testCanceledDownloadResumes() throws Exception {
+        final OfflineStore store = new OfflineStore(storeDirectory);
+        final AtomicInteger progressCount = new AtomicInteger();
+        DashDownloader downloader = newDownloader(store).setListener(new DashDownloader.Listener() {
+            @Override
+            public void onProgress(DashDownloader downloader, int downloadedCount, int totalCount,
+                                   long bytesDownloaded, long throughputBps) {
+                if (progressCount.incrementAndGet() == 3) {
+                    downloader.cancel();
+                }
+            }
+        });
+        try {
+            downloader.download();
+            fail();
+        } catch (IOException e) {
+            // Expected.
+        }
+        assertFalse(store.isComplete());
+
+        // A new process would reopen the store from disk.
+        OfflineStore reopenedStore = new OfflineStore(storeDirectory);
+        int resourceCount = reopenedStore.getResourceCount();
+        assertTrue(resourceCount > 1);
+        int requestCount = origin.getRequestCount();
+        newDownloader(reopenedStore).download();
+        assertTrue(reopenedStore.isComplete());
+        // Committed resources are not requested again.
+        assertTrue(origin.getRequestCount() - requestCount
+                <= reopenedStore.getResourceCount() - resourceCount + DashDownloader.DEFAULT_WORKER_COUNT);
+    }
+
+    public void testDeletedDownloadIsGone() throws Exception {
+        OfflineStore store = new OfflineStore(storeDirectory);
+        newDownloader(store).download();
+        assertTrue(store.isComplete());
+
+        store.delete();
+        assertFalse(store.isComplete());
+        assertFalse(storeDirectory.exists());
+        OfflineStore reopenedStore = new OfflineStore(storeDirectory);
+        assertEquals(0, reopenedStore.getResourceCount());
+        assertNull(reopenedStore.getManifestUri());
+    }
+
+    private DashDownloader newDownloader(OfflineStore store) {
+        return new DashDownloader(getContext(), "DashDownloaderTest",
+                origin.getStaticManifestUri(), store, new StubTrackRendererFactory(4f))
+                .setMaxVideoBitrate(1500000);
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.android.myexoplayer.player;
+
+import android.test.AndroidTestCase;
+
+import com.google.android.exoplayer.chunk.Format;
+
+/**
+ * Tests {@link DefaultBandwidthSplitPolicy}.
+ */
+public class DefaultBandwidthSplitPolicyTest extends AndroidTestCase {
+
+    private static final Format AUDIO_SURROUND = newAudioFormat("surround", 6, 384000);
+    private static final Format AUDIO_STEREO = newAudioFormat("stereo", 2, 128000);
+    private static final Format AUDIO_LOW = newAudioFormat("low", 2, 48000);
+    private static final Format[] AUDIO_FORMATS =
+            new Format[] {AUDIO_SURROUND, AUDIO_STEREO, AUDIO_LOW};
+    private static final Format[] VIDEO_FORMATS = new Format[] {
+            newVideoFormat("1080p", 1920, 1080, 4000000),
+            newVideoFormat("720p", 1280, 720, 2000000),
+            newVideoFormat("480p", 854, 480, 1000000),
+            newVideoFormat("240p", 426, 240, 300000)};
+
+    private final DefaultBandwidthSplitPolicy policy = new DefaultBandwidthSplitPolicy();
+
+    public void testFastLinkKeepsSurroundAudio() {
+        assertSame(AUDIO_SURROUND,
+                policy.selectAudioFormat(10000000, AUDIO_FORMATS, VIDEO_FORMATS, null));
+    }
+
+    public void testAudioStepsDownWhenVideoNearsFloor() {
+        // Of 1.6Mbps, 75% of what surround leaves is 912kbps, below the 1Mbps floor, and 75% of what
+        // stereo leaves is 1104kbps.
+        assertSame(AUDIO_STEREO,
+                policy.selectAudioFormat(1600000, AUDIO_FORMATS, VIDEO_FORMATS, AUDIO_SURROUND));
+        assertSame(AUDIO_LOW,
+                policy.selectAudioFormat(600000, AUDIO_FORMATS, VIDEO_FORMATS, AUDIO_STEREO));
+    }
+
+    public void testAudioStepsUpOnlyWithMargin() {
+        // Enough for surround without the margin, but not with it.
+        assertSame(AUDIO_STEREO,
+                policy.selectAudioFormat(1800000, AUDIO_FORMATS, VIDEO_FORMATS, AUDIO_STEREO));
+        assertSame(AUDIO_SURROUND,
+                policy.selectAudioFormat(2100000, AUDIO_FORMATS, VIDEO_FORMATS, AUDIO_STEREO));
+    }
+
+    public void testAudioOnlyFitsEstimate() {
+        assertSame(AUDIO_SURROUND,
+                policy.selectAudioFormat(1000000, AUDIO_FORMATS, new Format[0], null));
+        assertSame(AUDIO_LOW,
+                policy.selectAudioFormat(100000, AUDIO_FORMATS, new Format[0], null));
+    }
+
+    private static Format newAudioFormat(String id, int numChannels, int bitrate) {
+        return new Format(id, "audio/mp4", -1, -1, -1, numChannels, 48000, bitrate);
+    }
+
+    private static Format newVideoFormat(String id, int width, int height, int bitrate) {
+        return new Format(id, "video/mp4", width, height, -1, -1, -1, bitrate);
+    }
+
+}
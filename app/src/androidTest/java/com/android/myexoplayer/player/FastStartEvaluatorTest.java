@@ -0,0 +1,161 @@
+package com.android.myexoplayer.player;
+
+import com.android.myexoplayer.replay.ReplayResult;
+import com.android.myexoplayer.replay.SessionRecorder;
+import com.android.myexoplayer.replay.SessionRecording;
+import com.android.myexoplayer.replay.SessionReplayer;
+import com.google.android.exoplayer.chunk.Chunk;
+import com.google.android.exoplayer.chunk.Format;
+import com.google.android.exoplayer.chunk.FormatEvaluator;
+import com.google.android.exoplayer.chunk.FormatEvaluator.AdaptiveEvaluator;
+import com.google.android.exoplayer.chunk.MediaChunk;
+import com.google.android.exoplayer.upstream.BandwidthMeter;
+import com.google.android.exoplayer.util.Clock;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+
+/**
+ * Tests {@link FastStartEvaluator}, directly and by replaying sessions against the
+ * {@link AdaptiveEvaluator} alone.
+ */
+public class FastStartEvaluatorTest extends TestCase {
+
+    private static final Format[] FORMATS = new Format[] {
+            new Format("v1080", "video/mp4", 1920, 1080, 30, -1, -1, 3000000),
+            new Format("v720", "video/mp4", 1280, 720, 30, -1, -1, 1500000),
+            new Format("v480", "video/mp4", 854, 480, 30, -1, -1, 700000),
+            new Format("v240", "video/mp4", 426, 240, 30, -1, -1, 200000),
+    };
+    private static final int CHUNK_DURATION_MS = 2000;
+    private static final int CHUNK_COUNT = 30;
+
+    public void testStartsInLowestFormatWithoutHistory() {
+        assertEquals(FORMATS[3], evaluateFirstChunk(null));
+        assertEquals(FORMATS[3], evaluateFirstChunk(new FakeLoadTimeEstimator(-1)));
+    }
+
+    public void testStartsInFormatThatHistoryExpectsToLoadQuickly() {
+        // At 4 Mbps, a 2s chunk of 720p takes 750ms to load, and one of 1080p 1500ms.
+        assertEquals(FORMATS[1], evaluateFirstChunk(new FakeLoadTimeEstimator(4000000)));
+        assertEquals(FORMATS[3], evaluateFirstChunk(new FakeLoadTimeEstimator(100000)));
+    }
+
+    public void testReplayOnFastNetworkRampsUpSooner() throws IOException {
+        SessionRecording recording = record(6000000);
+        ReplayResult adaptive = newReplayer(false).replay(recording);
+        ReplayResult fastStart = newReplayer(true).replay(recording);
+        assertTrue(fastStart.qoe.startupMs <= adaptive.qoe.startupMs);
+        assertTrue(fastStart.qoe.earlyVideoBitrate > adaptive.qoe.earlyVideoBitrate);
+        assertEquals(0, fastStart.qoe.rebufferCount);
+    }
+
+    public void testReplayOnSlowNetworkStartsSooner() throws IOException {
+        SessionRecording recording = record(1000000);
+        ReplayResult adaptive = newReplayer(false).replay(recording);
+        ReplayResult fastStart = newReplayer(true).replay(recording);
+        assertTrue(fastStart.qoe.startupMs < adaptive.qoe.startupMs);
+        assertEquals(0, fastStart.qoe.rebufferCount);
+    }
+
+    private static Format evaluateFirstChunk(FastStartEvaluator.LoadTimeEstimator estimator) {
+        FastStartEvaluator evaluator = new FastStartEvaluator(new FormatEvaluator.FixedEvaluator(),
+                new FakeBandwidthMeter(), estimator);
+        FormatEvaluator.Evaluation evaluation = new FormatEvaluator.Evaluation();
+        evaluator.enable();
+        evaluator.evaluate(Collections.<MediaChunk>emptyList(), 0, FORMATS, evaluation);
+        return evaluation.format;
+    }
+
+    private static SessionReplayer newReplayer(final boolean fastStart) {
+        return new SessionReplayer().setEvaluatorFactory(new SessionReplayer.EvaluatorFactory() {
+            @Override
+            public FormatEvaluator createFormatEvaluator(BandwidthMeter bandwidthMeter) {
+                AdaptiveEvaluator adaptiveEvaluator = new AdaptiveEvaluator(bandwidthMeter);
+                return fastStart
+                        ? new FastStartEvaluator(adaptiveEvaluator, bandwidthMeter, null)
+                        : adaptiveEvaluator;
+            }
+        });
+    }
+
+    /**
+     * Records a session in which each 480p chunk loads at the given throughput.
+     */
+    private static SessionRecording record(long throughputBps) throws IOException {
+        FakeClock clock = new FakeClock();
+        SessionRecorder recorder = new SessionRecorder("http://127.0.0.1/manifest.mpd", clock);
+        recorder.recordVideoFormats(FORMATS);
+        recorder.recordStateChanged(true, DemoPlayer.STATE_BUFFERING);
+        long bytes = FORMATS[2].bitrate / 8 * CHUNK_DURATION_MS / 1000;
+        long loadDurationMs = bytes * 8000 / throughputBps;
+        for (int i = 0; i < CHUNK_COUNT; i++) {
+            recorder.recordLoadStarted(DemoPlayer.TYPE_VIDEO, Chunk.TYPE_MEDIA,
+                    Chunk.TRIGGER_ADAPTIVE, FORMATS[2], i * CHUNK_DURATION_MS,
+                    (i + 1) * CHUNK_DURATION_MS);
+            clock.timeMs += loadDurationMs;
+            recorder.recordLoadCompleted(DemoPlayer.TYPE_VIDEO, bytes, clock.timeMs,
+                    loadDurationMs);
+        }
+        clock.timeMs += CHUNK_COUNT * CHUNK_DURATION_MS;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        recorder.writeTo(output);
+        return SessionRecording.read(new ByteArrayInputStream(output.toByteArray()));
+    }
+
+    private static final class FakeLoadTimeEstimator
+            implements FastStartEvaluator.LoadTimeEstimator {
+
+        private final long throughputBps;
+
+        public FakeLoadTimeEstimator(long throughputBps) {
+            this.throughputBps = throughputBps;
+        }
+
+        @Override
+        public long getExpectedLoadTimeMs(long bytes) {
+            return throughputBps == -1 ? -1 : bytes * 8000 / throughputBps;
+        }
+
+    }
+
+    private static final class FakeBandwidthMeter implements BandwidthMeter {
+
+        @Override
+        public long getBitrateEstimate() {
+            return NO_ESTIMATE;
+        }
+
+        @Override
+        public void onTransferStart() {
+            // Do nothing.
+        }
+
+        @Override
+        public void onBytesTransferred(int bytes) {
+            // Do nothing.
+        }
+
+        @Override
+        public void onTransferEnd() {
+            // Do nothing.
+        }
+
+    }
+
+    private static final class FakeClock implements Clock {
+
+        public long timeMs;
+
+        @Override
+        public long elapsedRealtime() {
+            return timeMs;
+        }
+
+    }
+
+}
@@ -0,0 +1,145 @@
+package com.android.myexoplayer.player;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.android.myexoplayer.origin.LocalDashOrigin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs many {@link HeadlessSession}s in parallel against a {@link LocalDashOrigin}, load testing
+ * the chunk loading and ABR logic without decoders.
+ */
+public class HeadlessLoadTest extends AndroidTestCase {
+
+    private static final String TAG = "HeadlessLoadTest";
+
+    private static final int SESSION_COUNT = 8;
+    private static final long SESSION_DURATION_MS = 10000;
+    private static final float SPEED = 4f;
+
+    private LocalDashOrigin origin;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        // Long enough that no session plays to the end.
+        origin = new LocalDashOrigin(0).setDurationMs(120000);
+        origin.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        origin.stop();
+        super.tearDown();
+    }
+
+    public void testParallelSessionsStart() throws Exception {
+        assertAllStarted(runSessions(true));
+    }
+
+    public void testParallelSessionsStartWithoutFastStart() throws Exception {
+        assertAllStarted(runSessions(false));
+    }
+
+    private static void assertAllStarted(List<SessionQoe> results) {
+        assertEquals(SESSION_COUNT, results.size());
+        for (SessionQoe qoe : results) {
+            assertFalse(qoe.failed);
+            assertTrue(qoe.startupMs != -1);
+            assertTrue(qoe.chunkCount > 0);
+        }
+    }
+
+    /**
+     * Runs {@link #SESSION_COUNT} sessions in parallel, blocking until all of them have ended.
+     *
+     * @param fastStartEnabled Whether the sessions start with fast start.
+     * @return The summaries of the sessions.
+     */
+    private List<SessionQoe> runSessions(final boolean fastStartEnabled) throws Exception {
+        final String url = origin.getStaticManifestUri();
+        ExecutorService executor = Executors.newFixedThreadPool(SESSION_COUNT);
+        List<Future<SessionQoe>> futures = new ArrayList<>();
+        for (int i = 0; i < SESSION_COUNT; i++) {
+            futures.add(executor.submit(new Callable<SessionQoe>() {
+                @Override
+                public SessionQoe call() throws InterruptedException {
+                    HeadlessRendererBuilder rendererBuilder = new HeadlessRendererBuilder(
+                            getContext(), TAG, url, SPEED).setFastStartEnabled(fastStartEnabled);
+                    return new HeadlessSession(rendererBuilder, SESSION_DURATION_MS).run();
+                }
+            }));
+        }
+        List<SessionQoe> results = new ArrayList<>();
+        try {
+            for (Future<SessionQoe> future : futures) {
+                results.add(future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Log.i(TAG, summarize(results));
+        Log.i(TAG, HedgingDataSource.getStats().toString());
+        return results;
+    }
+
+    /**
+     * Summarizes the results of {@link #runSessions}.
+     *
+     * @param results The session summaries.
+     * @return A human readable summary.
+     */
+    private static String summarize(List<SessionQoe> results) {
+        int count = results.size();
+        if (count == 0) {
+            return "loadTest [sessions=0]";
+        }
+        long[] startupsMs = new long[count];
+        int startedCount = 0;
+        int failedCount = 0;
+        long rebufferMs = 0;
+        long playingMs = 0;
+        long bitrateSum = 0;
+        long earlyBitrateSum = 0;
+        int earlyBitrateCount = 0;
+        long bytesLoaded = 0;
+        long loadDurationMs = 0;
+        for (SessionQoe qoe : results) {
+            if (qoe.failed) {
+                failedCount++;
+            }
+            if (qoe.startupMs != -1) {
+                startupsMs[startedCount++] = qoe.startupMs;
+            }
+            rebufferMs += qoe.rebufferMs;
+            playingMs += qoe.playingMs;
+            bitrateSum += qoe.meanVideoBitrate;
+            if (qoe.earlyVideoBitrate != -1) {
+                earlyBitrateSum += qoe.earlyVideoBitrate;
+                earlyBitrateCount++;
+            }
+            bytesLoaded += qoe.bytesLoaded;
+            loadDurationMs += qoe.loadDurationMs;
+        }
+        Arrays.sort(startupsMs, 0, startedCount);
+        long startupP50 = startedCount == 0 ? -1 : startupsMs[(startedCount - 1) / 2];
+        long startupP90 = startedCount == 0 ? -1 : startupsMs[(int) Math.ceil(startedCount * 0.9) - 1];
+        float rebufferRatio = playingMs + rebufferMs == 0 ? 0 : (float) rebufferMs / (playingMs + rebufferMs);
+        return "loadTest [sessions=" + count + ", failed=" + failedCount + ", startupP50=" + startupP50
+                + ", startupP90=" + startupP90 + ", rebufferRatio=" + rebufferRatio
+                + ", meanBitrate=" + bitrateSum / count + ", meanEarlyBitrate="
+                + (earlyBitrateCount == 0 ? -1 : earlyBitrateSum / earlyBitrateCount)
+                + ", bytes=" + bytesLoaded
+                + ", perSessionThroughput=" + (loadDurationMs == 0 ? 0 : bytesLoaded * 8000 / loadDurationMs)
+                + "]";
+    }
+
+}
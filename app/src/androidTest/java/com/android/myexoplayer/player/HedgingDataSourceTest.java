@@ -0,0 +1,67 @@
+package com.android.myexoplayer.player;
+
+import android.net.Uri;
+import android.test.AndroidTestCase;
+
+import com.google.android.exoplayer.upstream.DataSpec;
+
+import com.android.myexoplayer.origin.LocalDashOrigin;
+import com.android.myexoplayer.origin.NetworkShaper;
+
+/**
+ * Tests {@link HedgingDataSource} against a {@link LocalDashOrigin} with a heavy tail of response
+ * times.
+ */
+public class HedgingDataSourceTest extends AndroidTestCase {
+
+    private static final int REQUEST_COUNT = 100;
+    /**
+     * Every slow response is hedged, since the budget earns more than one hedge in an interval
+     * whatever its state when the test starts. The hedge is itself a response of the origin, so
+     * the slow responses fall on requests 25, 49, 73 and 97.
+     */
+    private static final int SLOW_RESPONSE_INTERVAL = 25;
+    private static final int SLOW_RESPONSE_COUNT = 4;
+    private static final int SLOW_RESPONSE_DELAY_MS = 500;
+
+    private LocalDashOrigin origin;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        // The round trip stays well below the minimum hedge delay, so that only the slow responses
+        // are hedged.
+        origin = new LocalDashOrigin(0).setShaper(new NetworkShaper().setRttMs(5)
+                .setSlowResponses(SLOW_RESPONSE_INTERVAL, SLOW_RESPONSE_DELAY_MS));
+        origin.start();
+        HedgingDataSource.getStats().reset();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        origin.stop();
+        super.tearDown();
+    }
+
+    public void testHedgesSlowResponsesWithinBudget() throws Exception {
+        HedgingDataSource dataSource = new HedgingDataSource(getContext(), "HedgingDataSourceTest",
+                null);
+        byte[] buffer = new byte[16 * 1024];
+        for (int i = 1; i <= REQUEST_COUNT; i++) {
+            dataSource.open(new DataSpec(Uri.parse(origin.getUrl("/static/a128/" + i + ".m4s"))));
+            while (dataSource.read(buffer, 0, buffer.length) != -1) {
+                // Read to the end.
+            }
+            dataSource.close();
+        }
+        HedgingDataSource.HedgeStats stats = HedgingDataSource.getStats();
+        assertEquals(REQUEST_COUNT, stats.getRequestCount());
+        assertEquals(SLOW_RESPONSE_COUNT, stats.getHedgeCount());
+        assertEquals(SLOW_RESPONSE_COUNT, stats.getHedgeWinCount());
+        assertTrue(stats.getHedgeCount() <= 1 + REQUEST_COUNT * HedgingDataSource.HEDGE_BUDGET);
+        // Without hedging the slow responses make up the tail, with it they cost one hedge delay.
+        assertTrue(stats.getUnhedgedLatencyPercentileMs(99) >= SLOW_RESPONSE_DELAY_MS);
+        assertTrue(stats.getLatencyPercentileMs(99) < SLOW_RESPONSE_DELAY_MS / 5);
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.android.myexoplayer.player;
+
+import android.test.AndroidTestCase;
+
+import com.android.myexoplayer.origin.LocalHlsOrigin;
+
+/**
+ * Tests {@link HlsRendererBuilder} against a {@link LocalHlsOrigin}.
+ */
+public class HlsRendererBuilderTest extends AndroidTestCase {
+
+    private LocalHlsOrigin origin;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        origin = new LocalHlsOrigin(0).setDurationMs(40000);
+        origin.start();
+        ManifestCache.getInstance().clear();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        origin.stop();
+        super.tearDown();
+    }
+
+    public void testVodSessionPrefetchesSegments() throws Exception {
+        HlsRendererBuilder rendererBuilder = newRendererBuilder(origin.getVodPlaylistUri());
+        SessionQoe qoe = new HeadlessSession(rendererBuilder, 10000).run();
+        assertFalse(qoe.failed);
+        assertTrue(qoe.chunkCount > 0);
+        assertTrue(rendererBuilder.getDataSource().getPrefetchHitCount() > 0);
+    }
+
+    public void testPlaylistsCachedAcrossPrepares() throws Exception {
+        String uri = origin.getVodPlaylistUri();
+        new HeadlessSession(newRendererBuilder(uri), 2000).run();
+
+        HlsRendererBuilder rendererBuilder = newRendererBuilder(uri);
+        SessionQoe qoe = new HeadlessSession(rendererBuilder, 2000).run();
+        assertFalse(qoe.failed);
+        // The master playlist and at least one media playlist.
+        assertTrue(rendererBuilder.getDataSource().getPlaylistCacheHitCount() >= 2);
+    }
+
+    private HlsRendererBuilder newRendererBuilder(String uri) {
+        return new HlsRendererBuilder(getContext(), "HlsRendererBuilderTest", uri, null,
+                new StubTrackRendererFactory(4f));
+    }
+
+}
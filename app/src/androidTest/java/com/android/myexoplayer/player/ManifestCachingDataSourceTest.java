@@ -0,0 +1,106 @@
+package com.android.myexoplayer.player;
+
+import android.net.Uri;
+
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.UriDataSource;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+
+/**
+ * Tests that {@link ManifestCachingDataSource} keeps live manifests out of the cache and serves
+ * cached manifests with the URI they were redirected to.
+ */
+public class ManifestCachingDataSourceTest extends TestCase {
+
+    private static final String MANIFEST_URI = "http://127.0.0.1/manifest.mpd";
+    private static final String REDIRECTED_URI = "http://127.0.0.2/content/manifest.mpd";
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        ManifestCache.getInstance().clear();
+    }
+
+    public void testCachedManifestKeepsRedirectedUri() throws IOException {
+        FakeDataSource upstream = new FakeDataSource(
+                "<MPD xmlns=\"urn:mpeg:dash:schema:mpd:2011\" type=\"static\"/>");
+        ManifestCachingDataSource dataSource = new ManifestCachingDataSource(upstream, 60000,
+                ManifestCachingDataSource.DASH_LIVE_DETECTOR);
+        load(dataSource);
+        assertEquals(REDIRECTED_URI, dataSource.getUri());
+        load(dataSource);
+        assertEquals(1, upstream.openCount);
+        assertEquals(REDIRECTED_URI, dataSource.getUri());
+    }
+
+    public void testLiveManifestIsNotCached() throws IOException {
+        FakeDataSource upstream = new FakeDataSource(
+                "<?xml version=\"1.0\"?>\n<MPD type='dynamic' minimumUpdatePeriod=\"PT2S\"/>");
+        ManifestCachingDataSource dataSource = new ManifestCachingDataSource(upstream, 60000,
+                ManifestCachingDataSource.DASH_LIVE_DETECTOR);
+        load(dataSource);
+        load(dataSource);
+        assertEquals(2, upstream.openCount);
+    }
+
+    public void testLiveSmoothStreamingManifestIsDetected() {
+        assertTrue(ManifestCachingDataSource.SMOOTH_STREAMING_LIVE_DETECTOR.isLive(
+                "<SmoothStreamingMedia MajorVersion=\"2\" IsLive=\"TRUE\">".getBytes()));
+        assertFalse(ManifestCachingDataSource.SMOOTH_STREAMING_LIVE_DETECTOR.isLive(
+                "<SmoothStreamingMedia MajorVersion=\"2\" Duration=\"0\">".getBytes()));
+    }
+
+    private static void load(UriDataSource dataSource) throws IOException {
+        dataSource.open(new DataSpec(Uri.parse(MANIFEST_URI)));
+        byte[] buffer = new byte[1024];
+        while (dataSource.read(buffer, 0, buffer.length) != -1) {}
+    }
+
+    private static final class FakeDataSource implements UriDataSource {
+
+        private final byte[] data;
+
+        public int openCount;
+        private int bytesRead;
+        private boolean opened;
+
+        public FakeDataSource(String manifest) {
+            data = manifest.getBytes();
+        }
+
+        @Override
+        public long open(DataSpec dataSpec) {
+            openCount++;
+            bytesRead = 0;
+            opened = true;
+            return data.length;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int readLength) {
+            if (bytesRead == data.length) {
+                return -1;
+            }
+            int length = Math.min(readLength, data.length - bytesRead);
+            System.arraycopy(data, bytesRead, buffer, offset, length);
+            bytesRead += length;
+            return length;
+        }
+
+        @Override
+        public void close() {
+            opened = false;
+        }
+
+        @Override
+        public String getUri() {
+            // The manifest is always served after a redirect.
+            return opened ? REDIRECTED_URI : null;
+        }
+
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.android.myexoplayer.player;
+
+import android.net.Uri;
+import android.test.AndroidTestCase;
+
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.DefaultUriDataSource;
+import com.google.android.exoplayer.upstream.UriDataSource;
+
+import com.android.myexoplayer.origin.LocalDashOrigin;
+import com.android.myexoplayer.origin.NetworkShaper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Tests {@link ParallelRangeDataSource} against a {@link LocalDashOrigin} whose connections are
+ * each limited to the same throughput, as on a link with a high bandwidth-delay product.
+ */
+public class ParallelRangeDataSourceTest extends AndroidTestCase {
+
+    private LocalDashOrigin origin;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        origin = new LocalDashOrigin(0)
+                .setShaper(new NetworkShaper().setThroughputKbps(8000).setRttMs(20));
+        origin.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        origin.stop();
+        super.tearDown();
+    }
+
+    public void testSplitResourceIsReassembledInOrder() throws Exception {
+        Uri uri = Uri.parse(origin.getUrl("/static/v1080/1.m4s"));
+        byte[] expected = load(new DefaultUriDataSource(getContext(), "ParallelRangeDataSourceTest"),
+                new DataSpec(uri));
+        // Only resources of known length are split.
+        DataSpec dataSpec = new DataSpec(uri, 0, expected.length, null);
+        ParallelRangeDataSource dataSource = newDataSource();
+        assertTrue(Arrays.equals(expected, load(dataSource, dataSpec)));
+        // The single connection load is measured, after which a second connection is probed.
+        assertEquals(2, dataSource.getConnectionCount());
+        assertTrue(Arrays.equals(expected, load(dataSource, dataSpec)));
+    }
+
+    public void testConnectionCountGrowsWhileThroughputScales() {
+        ParallelRangeDataSource.ConnectionCountAdapter adapter =
+                new ParallelRangeDataSource.ConnectionCountAdapter(4);
+        for (int i = 0; i < 10; i++) {
+            int count = adapter.getConnectionCount();
+            // Each connection adds 2 Mbps.
+            adapter.onLoadCompleted(count, 1000000, 4000 / count);
+        }
+        assertEquals(4, adapter.getConnectionCount());
+    }
+
+    public void testConnectionCountStopsGrowingWhenThroughputDoesNot() {
+        ParallelRangeDataSource.ConnectionCountAdapter adapter =
+                new ParallelRangeDataSource.ConnectionCountAdapter(4);
+        int maxCount = 0;
+        for (int i = 0; i < 10; i++) {
+            int count = adapter.getConnectionCount();
+            maxCount = Math.max(maxCount, count);
+            // The link saturates at two connections.
+            adapter.onLoadCompleted(count, 1000000, 4000 / Math.min(count, 2));
+        }
+        assertEquals(3, maxCount);
+        assertEquals(2, adapter.getConnectionCount());
+    }
+
+    public void testConnectionCountIsProbedAgainFromOneConnection() {
+        ParallelRangeDataSource.ConnectionCountAdapter adapter =
+                new ParallelRangeDataSource.ConnectionCountAdapter(4);
+        int probeCount = 0;
+        for (int i = 0; i < 40; i++) {
+            int count = adapter.getConnectionCount();
+            if (count > 1) {
+                probeCount++;
+            }
+            // Additional connections bring nothing.
+            adapter.onLoadCompleted(count, 1000000, 4000);
+        }
+        assertEquals(1, adapter.getConnectionCount());
+        assertTrue(probeCount > 1);
+    }
+
+    private ParallelRangeDataSource newDataSource() {
+        return new ParallelRangeDataSource(getContext(), "ParallelRangeDataSourceTest", null, 4,
+                256 * 1024, 128 * 1024);
+    }
+
+    private static byte[] load(UriDataSource dataSource, DataSpec dataSpec) throws IOException {
+        try {
+            dataSource.open(dataSpec);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[16 * 1024];
+            int bytesRead;
+            while ((bytesRead = dataSource.read(buffer, 0, buffer.length)) != -1) {
+                output.write(buffer, 0, bytesRead);
+            }
+            return output.toByteArray();
+        } finally {
+            dataSource.close();
+        }
+    }
+
+}
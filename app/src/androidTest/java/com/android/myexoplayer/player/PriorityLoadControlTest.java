@@ -0,0 +1,232 @@
+package com.android.myexoplayer.player;
+
+import android.test.AndroidTestCase;
+
+import com.google.android.exoplayer.LoadControl;
+import com.google.android.exoplayer.upstream.Allocator;
+import com.google.android.exoplayer.upstream.DefaultAllocator;
+
+/**
+ * Tests {@link PriorityLoadControl}, directly and by simulating the loads of a session over a
+ * constrained link.
+ * <p>
+ * In the simulation, the link's bandwidth is shared between the loads in flight in proportion to
+ * their connection counts, and video loads over four connections as with a
+ * {@link ParallelRangeDataSource}. The link carries both streams with room to spare, but audio's
+ * share while video loads is below the audio bitrate.
+ */
+public class PriorityLoadControlTest extends AndroidTestCase {
+
+    private static final int VIDEO_CRITICAL_BUFFER_MS = 2000;
+    private static final int AUDIO_CRITICAL_BUFFER_MS = 8000;
+
+    private static final long LINK_BITRATE = 1800000;
+    private static final long VIDEO_BITRATE = 1000000;
+    private static final long AUDIO_BITRATE = 384000;
+    private static final int VIDEO_CONNECTION_COUNT = 4;
+    private static final long CHUNK_DURATION_US = 4000000;
+    private static final long STEP_US = 50000;
+    private static final long SESSION_DURATION_US = 180000000;
+    private static final long REBUFFER_DURATION_US = 2500000;
+
+    private final Object videoLoader = new Object();
+    private final Object audioLoader = new Object();
+
+    private PriorityLoadControl loadControl;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        loadControl = new PriorityLoadControl(new DefaultAllocator(64 * 1024));
+        loadControl.setBufferTarget(videoLoader, VIDEO_CRITICAL_BUFFER_MS,
+                PriorityLoadControl.DEFAULT_LOW_WATERMARK_MS,
+                PriorityLoadControl.DEFAULT_HIGH_WATERMARK_MS);
+        loadControl.setBufferTarget(audioLoader, AUDIO_CRITICAL_BUFFER_MS,
+                PriorityLoadControl.DEFAULT_LOW_WATERMARK_MS,
+                PriorityLoadControl.DEFAULT_HIGH_WATERMARK_MS);
+        loadControl.register(videoLoader, 200 * 64 * 1024);
+        loadControl.register(audioLoader, 60 * 64 * 1024);
+    }
+
+    public void testCriticalAudioDefersVideo() {
+        assertTrue(loadControl.update(audioLoader, 0, 6000000, false, false));
+        assertFalse(loadControl.update(videoLoader, 0, 20000000, false, false));
+        assertTrue(loadControl.update(audioLoader, 0, 6000000, true, false));
+        assertFalse(loadControl.update(videoLoader, 0, 20000000, false, false));
+    }
+
+    public void testVideoWithEarlierDeadlineDoesNotDefer() {
+        assertTrue(loadControl.update(audioLoader, 0, 6000000, true, false));
+        assertTrue(loadControl.update(videoLoader, 0, 3000000, false, false));
+    }
+
+    public void testFailedLoaderDoesNotDeferOthers() {
+        assertTrue(loadControl.update(audioLoader, 0, 6000000, false, true));
+        assertTrue(loadControl.update(videoLoader, 0, 20000000, false, false));
+    }
+
+    public void testLoaderStopsAtHighWatermarkUntilLowWatermark() {
+        assertFalse(loadControl.update(audioLoader, 0, 30000000, false, false));
+        assertFalse(loadControl.update(audioLoader, 10000000, 30000000, false, false));
+        assertTrue(loadControl.update(audioLoader, 15000000, 30000000, false, false));
+    }
+
+    public void testFullAllocatorDefersLoadsThatAreNotCritical() {
+        DefaultAllocator allocator = new DefaultAllocator(64 * 1024);
+        PriorityLoadControl control = new PriorityLoadControl(allocator);
+        control.register(videoLoader, 2 * 64 * 1024);
+        control.register(audioLoader, 64 * 1024);
+        assertTrue(control.update(videoLoader, 0, 10000000, false, false));
+        for (int i = 0; i < 3; i++) {
+            allocator.allocate();
+        }
+        assertEquals(3 * 64 * 1024, allocator.getTotalBytesAllocated());
+        // Neither loader may grow the buffer beyond the target, however large its deficit.
+        assertFalse(control.update(videoLoader, 0, 10000000, false, false));
+        assertFalse(control.update(audioLoader, 0, 6000000, false, false));
+        // A loader that is about to stall still loads.
+        assertTrue(control.update(audioLoader, 0, 2000000, false, false));
+    }
+
+    public void testUnprioritizedLoadsStarveAudio() {
+        Session session = new Session(new UnprioritizedLoadControl());
+        session.run();
+        assertTrue(session.audioUnderrunCount > 0);
+    }
+
+    public void testPriorityLoadsPreventAudioStarvation() {
+        Session session = new Session(loadControl);
+        session.run();
+        assertEquals(0, session.audioUnderrunCount);
+        assertEquals(0, session.videoUnderrunCount);
+    }
+
+    /**
+     * Plays a video and an audio stream over the simulated link.
+     */
+    private final class Session {
+
+        private final LoadControl loadControl;
+        private final SimulatedLoader video;
+        private final SimulatedLoader audio;
+
+        public int videoUnderrunCount;
+        public int audioUnderrunCount;
+
+        private long playbackPositionUs;
+        private boolean playing;
+
+        public Session(LoadControl loadControl) {
+            this.loadControl = loadControl;
+            video = new SimulatedLoader(videoLoader, VIDEO_BITRATE, VIDEO_CONNECTION_COUNT);
+            audio = new SimulatedLoader(audioLoader, AUDIO_BITRATE, 1);
+        }
+
+        public void run() {
+            for (long timeUs = 0; timeUs < SESSION_DURATION_US; timeUs += STEP_US) {
+                video.maybeStartLoad();
+                audio.maybeStartLoad();
+                int connectionCount = (video.loading ? video.connectionCount : 0)
+                        + (audio.loading ? audio.connectionCount : 0);
+                video.transfer(connectionCount);
+                audio.transfer(connectionCount);
+                if (playing) {
+                    playbackPositionUs += STEP_US;
+                    if (video.nextLoadPositionUs <= playbackPositionUs) {
+                        videoUnderrunCount++;
+                        playing = false;
+                    }
+                    if (audio.nextLoadPositionUs <= playbackPositionUs) {
+                        audioUnderrunCount++;
+                        playing = false;
+                    }
+                    if (!playing) {
+                        playbackPositionUs = Math.min(video.nextLoadPositionUs,
+                                audio.nextLoadPositionUs);
+                    }
+                } else {
+                    playing = video.nextLoadPositionUs - playbackPositionUs >= REBUFFER_DURATION_US
+                            && audio.nextLoadPositionUs - playbackPositionUs >= REBUFFER_DURATION_US;
+                }
+            }
+        }
+
+        private final class SimulatedLoader {
+
+            private final Object loader;
+            private final long bitrate;
+            public final int connectionCount;
+
+            public long nextLoadPositionUs;
+            public boolean loading;
+            private double remainingBits;
+
+            public SimulatedLoader(Object loader, long bitrate, int connectionCount) {
+                this.loader = loader;
+                this.bitrate = bitrate;
+                this.connectionCount = connectionCount;
+            }
+
+            public void maybeStartLoad() {
+                boolean mayLoad = loadControl.update(loader, playbackPositionUs, nextLoadPositionUs,
+                        loading, false);
+                if (!loading && mayLoad) {
+                    loading = true;
+                    remainingBits = (double) bitrate * CHUNK_DURATION_US / 1000000;
+                }
+            }
+
+            public void transfer(int totalConnectionCount) {
+                if (!loading) {
+                    return;
+                }
+                remainingBits -= (double) LINK_BITRATE * connectionCount / totalConnectionCount
+                        * STEP_US / 1000000;
+                if (remainingBits <= 0) {
+                    loading = false;
+                    nextLoadPositionUs += CHUNK_DURATION_US;
+                }
+            }
+
+        }
+
+    }
+
+    /**
+     * Lets every loader load until it has buffered the default high watermark, without regard to
+     * the others.
+     */
+    private static final class UnprioritizedLoadControl implements LoadControl {
+
+        private final Allocator allocator = new DefaultAllocator(64 * 1024);
+
+        @Override
+        public void register(Object loader, int bufferSizeContribution) {
+            // Do nothing.
+        }
+
+        @Override
+        public void unregister(Object loader) {
+            // Do nothing.
+        }
+
+        @Override
+        public Allocator getAllocator() {
+            return allocator;
+        }
+
+        @Override
+        public void trimAllocator() {
+            // Do nothing.
+        }
+
+        @Override
+        public boolean update(Object loader, long playbackPositionUs, long nextLoadPositionUs,
+                              boolean loading, boolean failed) {
+            return nextLoadPositionUs - playbackPositionUs
+                    < PriorityLoadControl.DEFAULT_HIGH_WATERMARK_MS * 1000L;
+        }
+
+    }
+
+}
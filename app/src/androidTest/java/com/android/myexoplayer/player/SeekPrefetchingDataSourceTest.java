@@ -0,0 +1,127 @@
+package com.android.myexoplayer.player;
+
+import com.google.android.exoplayer.dash.DashSegmentIndex;
+import com.google.android.exoplayer.dash.mpd.MediaPresentationDescription;
+import com.google.android.exoplayer.dash.mpd.MediaPresentationDescriptionParser;
+import com.google.android.exoplayer.dash.mpd.RangedUri;
+import com.google.android.exoplayer.dash.mpd.Representation;
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.UriDataSource;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Tests the segment boundaries and prefetches of {@link SeekPrefetchingDataSource}.
+ */
+public class SeekPrefetchingDataSourceTest extends TestCase {
+
+    private static final String MANIFEST =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<MPD xmlns=\"urn:mpeg:dash:schema:mpd:2011\" type=\"static\"\n"
+            + "    mediaPresentationDuration=\"PT60S\" minBufferTime=\"PT2S\">\n"
+            + "  <Period>\n"
+            + "    <AdaptationSet mimeType=\"video/mp4\">\n"
+            + "      <SegmentTemplate timescale=\"1000\" duration=\"4000\" startNumber=\"1\"\n"
+            + "          initialization=\"$RepresentationID$/init.mp4\"\n"
+            + "          media=\"$RepresentationID$/$Number$.m4s\"/>\n"
+            + "      <Representation id=\"v480\" codecs=\"avc1.4d401f\" width=\"854\"\n"
+            + "          height=\"480\" bandwidth=\"700000\"/>\n"
+            + "    </AdaptationSet>\n"
+            + "  </Period>\n"
+            + "</MPD>\n";
+
+    private List<Representation> representations;
+    private FakeDataSource upstream;
+    private FakeDataSource prefetchUpstream;
+    private SeekPrefetchingDataSource dataSource;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        MediaPresentationDescription mpd = new MediaPresentationDescriptionParser().parse(
+                "http://127.0.0.1/manifest.mpd", new ByteArrayInputStream(MANIFEST.getBytes()));
+        representations = mpd.periods.get(0).adaptationSets.get(0).representations;
+        upstream = new FakeDataSource();
+        prefetchUpstream = new FakeDataSource();
+        dataSource = new SeekPrefetchingDataSource(upstream, prefetchUpstream, representations);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        dataSource.release();
+        super.tearDown();
+    }
+
+    public void testSegmentBoundaries() {
+        assertEquals(8000, dataSource.getSegmentStartMs("v480", 9500));
+        assertEquals(12000, dataSource.getSegmentEndMs("v480", 9500));
+        assertEquals(56000, dataSource.getSegmentStartMs("v480", 90000));
+        assertEquals(-1, dataSource.getSegmentStartMs("unknown", 9500));
+    }
+
+    public void testPrefetchedSegmentIsServedFromMemory() throws IOException {
+        dataSource.prefetch("v480", new long[] {21000});
+        DataSpec segment = getSegmentDataSpec(20000);
+        assertEquals(FakeDataSource.LENGTH, dataSource.open(segment));
+        dataSource.close();
+        assertEquals(0, upstream.openCount);
+        assertEquals(1, prefetchUpstream.openCount);
+        assertEquals(1, dataSource.getPrefetchHitCount());
+
+        // The prefetch is served once, after which the segment is loaded from upstream.
+        dataSource.open(segment);
+        dataSource.close();
+        assertEquals(1, upstream.openCount);
+    }
+
+    private DataSpec getSegmentDataSpec(long positionMs) {
+        Representation representation = representations.get(0);
+        DashSegmentIndex index = representation.getIndex();
+        RangedUri segmentUri = index.getSegmentUrl(index.getSegmentNum(positionMs * 1000));
+        return new DataSpec(segmentUri.getUri(), segmentUri.start, segmentUri.length,
+                representation.getCacheKey());
+    }
+
+    private static final class FakeDataSource implements UriDataSource {
+
+        public static final int LENGTH = 1024;
+
+        public volatile int openCount;
+        private DataSpec dataSpec;
+        private int bytesRead;
+
+        @Override
+        public long open(DataSpec dataSpec) {
+            this.dataSpec = dataSpec;
+            bytesRead = 0;
+            openCount++;
+            return LENGTH;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int readLength) {
+            if (bytesRead == LENGTH) {
+                return -1;
+            }
+            int length = Math.min(readLength, LENGTH - bytesRead);
+            bytesRead += length;
+            return length;
+        }
+
+        @Override
+        public void close() {
+            dataSpec = null;
+        }
+
+        @Override
+        public String getUri() {
+            return dataSpec == null ? null : dataSpec.uri.toString();
+        }
+
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.android.myexoplayer.player;
+
+import android.test.AndroidTestCase;
+
+import com.android.myexoplayer.origin.LocalDashOrigin;
+
+/**
+ * Tests that sessions of the same content share initialization data through the
+ * {@link SegmentIndexCache}.
+ */
+public class SegmentIndexCacheTest extends AndroidTestCase {
+
+    private LocalDashOrigin origin;
+    private SegmentIndexCache cache;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        origin = new LocalDashOrigin(0).setDurationMs(60000);
+        origin.start();
+        cache = SegmentIndexCache.getInstance(getContext());
+        cache.clear();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        origin.stop();
+        super.tearDown();
+    }
+
+    public void testRepeatSessionLoadsNoInitializationData() throws Exception {
+        SessionQoe firstQoe = new HeadlessSession(getContext(), "SegmentIndexCacheTest",
+                origin.getStaticManifestUri(), 4, 10000).run();
+        assertFalse(firstQoe.failed);
+        int missCount = cache.getMissCount();
+        assertTrue(missCount > 0);
+
+        SessionQoe secondQoe = new HeadlessSession(getContext(), "SegmentIndexCacheTest",
+                origin.getStaticManifestUri(), 4, 10000).run();
+        assertFalse(secondQoe.failed);
+        // The second session starts on representations whose initialization data is cached.
+        assertTrue(cache.getMemoryHitCount() > 0);
+        assertTrue(cache.getMissCount() - missCount < missCount);
+    }
+
+}
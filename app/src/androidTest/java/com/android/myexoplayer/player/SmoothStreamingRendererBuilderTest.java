@@ -0,0 +1,54 @@
+package com.android.myexoplayer.player;
+
+import android.test.AndroidTestCase;
+
+import com.android.myexoplayer.origin.LocalSsOrigin;
+
+/**
+ * Tests {@link SmoothStreamingRendererBuilder} against a {@link LocalSsOrigin}, without DRM.
+ */
+public class SmoothStreamingRendererBuilderTest extends AndroidTestCase {
+
+    private LocalSsOrigin origin;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        origin = new LocalSsOrigin(0).setDurationMs(20000);
+        origin.start();
+        ManifestCache.getInstance().clear();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        origin.stop();
+        super.tearDown();
+    }
+
+    public void testVodSessionCompletes() throws Exception {
+        SessionQoe qoe = new HeadlessSession(newRendererBuilder(origin.getVodUri()), 10000).run();
+        assertFalse(qoe.failed);
+        assertTrue(qoe.chunkCount > 0);
+    }
+
+    public void testLiveSessionPlays() throws Exception {
+        SessionQoe qoe = new HeadlessSession(newRendererBuilder(origin.getLiveUri()), 5000).run();
+        assertFalse(qoe.failed);
+        assertTrue(qoe.chunkCount > 0);
+    }
+
+    public void testManifestCachedAcrossPrepares() throws Exception {
+        String uri = origin.getVodUri();
+        new HeadlessSession(newRendererBuilder(uri), 2000).run();
+        int hitCount = ManifestCache.getInstance().getHitCount();
+        SessionQoe qoe = new HeadlessSession(newRendererBuilder(uri), 2000).run();
+        assertFalse(qoe.failed);
+        assertEquals(hitCount + 1, ManifestCache.getInstance().getHitCount());
+    }
+
+    private SmoothStreamingRendererBuilder newRendererBuilder(String uri) {
+        return new SmoothStreamingRendererBuilder(getContext(), "SmoothStreamingRendererBuilderTest",
+                uri, null, new StubTrackRendererFactory(4f));
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.android.myexoplayer.player;
+
+import com.google.android.exoplayer.dash.mpd.MediaPresentationDescription;
+import com.google.android.exoplayer.dash.mpd.MediaPresentationDescriptionParser;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Tests {@link ThumbnailIndex} against manifests with and without a thumbnail adaptation set.
+ */
+public class ThumbnailIndexTest extends TestCase {
+
+    private static final String MANIFEST_START =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<MPD xmlns=\"urn:mpeg:dash:schema:mpd:2011\" type=\"static\"\n"
+            + "    mediaPresentationDuration=\"PT60S\" minBufferTime=\"PT2S\">\n"
+            + "  <Period>\n"
+            + "    <AdaptationSet mimeType=\"video/mp4\">\n"
+            + "      <SegmentTemplate timescale=\"1000\" duration=\"2000\" startNumber=\"1\"\n"
+            + "          initialization=\"$RepresentationID$/init.mp4\"\n"
+            + "          media=\"$RepresentationID$/$Number$.m4s\"/>\n"
+            + "      <Representation id=\"v720\" codecs=\"avc1.4d401f\" width=\"1280\"\n"
+            + "          height=\"720\" bandwidth=\"1500000\"/>\n"
+            + "      <Representation id=\"v240\" codecs=\"avc1.4d401e\" width=\"426\"\n"
+            + "          height=\"240\" bandwidth=\"200000\"/>\n"
+            + "    </AdaptationSet>\n";
+    private static final String THUMBNAIL_ADAPTATION_SET =
+            "    <AdaptationSet mimeType=\"image/jpeg\" contentType=\"image\">\n"
+            + "      <SegmentTemplate timescale=\"1\" duration=\"10\" startNumber=\"1\"\n"
+            + "          media=\"$RepresentationID$/$Number$.jpg\"/>\n"
+            + "      <Representation id=\"thumbnails\" width=\"1600\" height=\"360\"\n"
+            + "          bandwidth=\"10000\">\n"
+            + "        <EssentialProperty schemeIdUri=\"http://dashif.org/thumbnail_tile\"\n"
+            + "            value=\"5x2\"/>\n"
+            + "      </Representation>\n"
+            + "    </AdaptationSet>\n";
+    private static final String MANIFEST_END =
+            "  </Period>\n"
+            + "</MPD>\n";
+
+    public void testImageAdaptationSetMapsPositionsToTiles() throws IOException {
+        ThumbnailIndex index = parse(MANIFEST_START + THUMBNAIL_ADAPTATION_SET + MANIFEST_END);
+        assertNotNull(index);
+        assertTrue(index.isImage());
+        assertEquals("thumbnails", index.getRepresentation().format.id);
+        assertEquals(5, index.getColumns());
+        assertEquals(2, index.getRows());
+        assertEquals(6, index.getSegmentCount());
+        assertEquals(60, index.getThumbnailCount());
+        // 23s is 3s into the third 10s segment, so in its fourth 1s tile.
+        assertEquals(23, index.getThumbnailIndex(23500));
+        assertEquals(3, index.getSegmentNum(23));
+        assertEquals(20, index.getFirstThumbnailIndex(3));
+        assertEquals(0, index.getThumbnailIndex(0));
+        assertEquals(59, index.getThumbnailIndex(120000));
+    }
+
+    public void testFallsBackToLowestBitrateVideoRepresentation() throws IOException {
+        ThumbnailIndex index = parse(MANIFEST_START + MANIFEST_END);
+        assertNotNull(index);
+        assertFalse(index.isImage());
+        assertEquals("v240", index.getRepresentation().format.id);
+        assertEquals(30, index.getThumbnailCount());
+        assertEquals(2, index.getThumbnailIndex(5000));
+    }
+
+    private static ThumbnailIndex parse(String manifest) throws IOException {
+        ThumbnailIndex.ManifestProperties properties = new ThumbnailIndex.ManifestProperties();
+        MediaPresentationDescription mpd = properties
+                .wrapParser(new MediaPresentationDescriptionParser())
+                .parse("http://127.0.0.1/manifest.mpd", new ByteArrayInputStream(manifest.getBytes()));
+        return ThumbnailIndex.create(mpd.periods.get(0), properties, 0);
+    }
+
+}
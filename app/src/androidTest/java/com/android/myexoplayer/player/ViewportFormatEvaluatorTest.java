@@ -0,0 +1,104 @@
+package com.android.myexoplayer.player;
+
+import android.test.AndroidTestCase;
+
+import com.google.android.exoplayer.chunk.Format;
+import com.google.android.exoplayer.chunk.FormatEvaluator;
+import com.google.android.exoplayer.chunk.MediaChunk;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests {@link ViewportFormatEvaluator}.
+ */
+public class ViewportFormatEvaluatorTest extends AndroidTestCase {
+
+    private static final Format FORMAT_1080P = newFormat("1080p", 1920, 1080, 4000000);
+    private static final Format FORMAT_720P = newFormat("720p", 1280, 720, 2000000);
+    private static final Format FORMAT_360P_HIGH = newFormat("360p-high", 640, 360, 1000000);
+    private static final Format FORMAT_360P_LOW = newFormat("360p-low", 640, 360, 600000);
+    private static final Format FORMAT_180P = newFormat("180p", 320, 180, 300000);
+    private static final Format[] FORMATS = new Format[] {FORMAT_1080P, FORMAT_720P,
+            FORMAT_360P_HIGH, FORMAT_360P_LOW, FORMAT_180P};
+
+    private RecordingEvaluator delegate;
+    private ViewportFormatEvaluator evaluator;
+    private FormatEvaluator.Evaluation evaluation;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        delegate = new RecordingEvaluator();
+        evaluator = new ViewportFormatEvaluator(delegate);
+        evaluation = new FormatEvaluator.Evaluation();
+    }
+
+    public void testUnknownViewportPassesAllFormats() {
+        evaluate();
+        assertSame(FORMATS, delegate.formats);
+    }
+
+    public void testSmallViewportKeepsSmallestExceedingSize() {
+        evaluator.setViewportSize(480, 270);
+        evaluate();
+        assertEquals(3, delegate.formats.length);
+        assertSame(FORMAT_360P_HIGH, delegate.formats[0]);
+        assertSame(FORMAT_360P_LOW, delegate.formats[1]);
+        assertSame(FORMAT_180P, delegate.formats[2]);
+    }
+
+    public void testViewportExpandsWithoutRebuild() {
+        evaluator.setViewportSize(320, 180);
+        evaluate();
+        assertEquals(3, delegate.formats.length);
+        evaluator.setViewportSize(1920, 1080);
+        evaluate();
+        assertEquals(FORMATS.length, delegate.formats.length);
+    }
+
+    public void testExcludedCurrentFormatIsReplaced() {
+        evaluation.format = FORMAT_1080P;
+        evaluator.setViewportSize(640, 360);
+        evaluate();
+        assertNull(delegate.currentFormat);
+        evaluation.format = FORMAT_360P_HIGH;
+        evaluate();
+        assertSame(FORMAT_360P_HIGH, delegate.currentFormat);
+    }
+
+    private void evaluate() {
+        List<MediaChunk> queue = Collections.emptyList();
+        evaluator.evaluate(queue, 0, FORMATS, evaluation);
+    }
+
+    private static Format newFormat(String id, int width, int height, int bitrate) {
+        return new Format(id, "video/mp4", width, height, -1, -1, -1, bitrate);
+    }
+
+    private static final class RecordingEvaluator implements FormatEvaluator {
+
+        public Format[] formats;
+        public Format currentFormat;
+
+        @Override
+        public void enable() {
+            // Do nothing.
+        }
+
+        @Override
+        public void disable() {
+            // Do nothing.
+        }
+
+        @Override
+        public void evaluate(List<? extends MediaChunk> queue, long playbackPositionUs,
+                             Format[] formats, Evaluation evaluation) {
+            this.formats = formats;
+            currentFormat = evaluation.format;
+            evaluation.format = formats[0];
+        }
+
+    }
+
+}
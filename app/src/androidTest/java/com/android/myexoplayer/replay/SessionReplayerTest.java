@@ -0,0 +1,98 @@
+package com.android.myexoplayer.replay;
+
+import com.android.myexoplayer.player.DemoPlayer;
+import com.google.android.exoplayer.chunk.Chunk;
+import com.google.android.exoplayer.chunk.Format;
+import com.google.android.exoplayer.util.Clock;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Tests {@link SessionRecorder}, {@link SessionRecording} and {@link SessionReplayer}.
+ */
+public class SessionReplayerTest extends TestCase {
+
+    private static final Format[] FORMATS = new Format[] {
+            new Format("v240", "video/mp4", 426, 240, 30, -1, -1, 400000),
+            new Format("v480", "video/mp4", 854, 480, 30, -1, -1, 1200000),
+            new Format("v720", "video/mp4", 1280, 720, 30, -1, -1, 3000000),
+    };
+    private static final int CHUNK_DURATION_MS = 2000;
+    private static final int CHUNK_COUNT = 30;
+
+    private SessionRecording recording;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        // A session on a 2 Mbps network that plays 30 chunks of 480p.
+        FakeClock clock = new FakeClock();
+        SessionRecorder recorder = new SessionRecorder("http://127.0.0.1/manifest.mpd", clock);
+        recorder.recordVideoFormats(FORMATS);
+        recorder.recordStateChanged(true, DemoPlayer.STATE_BUFFERING);
+        for (int i = 0; i < CHUNK_COUNT; i++) {
+            long bytes = FORMATS[1].bitrate / 8 * CHUNK_DURATION_MS / 1000;
+            long loadDurationMs = bytes * 8 * 1000 / 2000000;
+            recorder.recordLoadStarted(DemoPlayer.TYPE_VIDEO, Chunk.TYPE_MEDIA,
+                    Chunk.TRIGGER_ADAPTIVE, FORMATS[1], i * CHUNK_DURATION_MS,
+                    (i + 1) * CHUNK_DURATION_MS);
+            clock.timeMs += loadDurationMs;
+            recorder.recordLoadCompleted(DemoPlayer.TYPE_VIDEO, bytes, clock.timeMs,
+                    loadDurationMs);
+            if (i == 0) {
+                recorder.recordStateChanged(true, DemoPlayer.STATE_READY);
+            }
+        }
+        clock.timeMs = CHUNK_COUNT * CHUNK_DURATION_MS;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        recorder.writeTo(output);
+        recording = SessionRecording.read(new ByteArrayInputStream(output.toByteArray()));
+    }
+
+    public void testRoundTrip() {
+        assertEquals("http://127.0.0.1/manifest.mpd", recording.contentUri);
+        assertEquals(CHUNK_COUNT * CHUNK_DURATION_MS, recording.durationMs);
+        assertEquals(FORMATS.length, recording.videoFormats.size());
+        assertEquals(FORMATS[2].bitrate, recording.videoFormats.get(2).bitrate);
+        assertEquals(CHUNK_COUNT, recording.loads.size());
+        assertEquals(CHUNK_DURATION_MS, recording.getVideoChunkDurationMs(0));
+        assertEquals(CHUNK_COUNT * CHUNK_DURATION_MS, recording.getVideoMediaEndTimeMs());
+        assertEquals(0, recording.getRecordedQoe().rebufferCount);
+    }
+
+    public void testReplayIsDeterministic() {
+        SessionReplayer replayer = new SessionReplayer();
+        ReplayResult first = replayer.replay(recording);
+        ReplayResult second = replayer.replay(recording);
+        assertTrue(first.isIdenticalTo(second));
+        assertFalse(first.videoFormatIds.isEmpty());
+    }
+
+    public void testReplayNeverSelectsUnaffordableFormat() {
+        ReplayResult result = new SessionReplayer().replay(recording);
+        // 720p needs 3 Mbps, more than the recorded network offers.
+        assertFalse(result.videoFormatIds.contains("v720"));
+        assertTrue(result.qoe.startupMs >= 0);
+    }
+
+    public void testReplayAll() {
+        assertEquals(2, new SessionReplayer()
+                .replayAll(Arrays.asList(recording, recording)).size());
+    }
+
+    private static final class FakeClock implements Clock {
+
+        public long timeMs;
+
+        @Override
+        public long elapsedRealtime() {
+            return timeMs;
+        }
+
+    }
+
+}
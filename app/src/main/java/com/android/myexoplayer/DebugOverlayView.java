@@ -0,0 +1,397 @@
+package com.android.myexoplayer;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.View;
+
+import com.android.myexoplayer.player.DemoPlayer;
+import com.android.myexoplayer.player.FrameTimingStats;
+import com.android.myexoplayer.player.Histogram;
+import com.google.android.exoplayer.CodecCounters;
+import com.google.android.exoplayer.ExoPlayer;
+import com.google.android.exoplayer.chunk.Format;
+import com.google.android.exoplayer.upstream.BandwidthMeter;
+
+/**
+ * A debug overlay that draws live metrics of a {@link DemoPlayer}.
+ * <p>
+ * Unlike {@link com.google.android.exoplayer.util.DebugTextViewHelper}, which builds a new string
+ * on every update, each line of the overlay is formatted into a reusable {@code char[]} and only
+ * reformatted when one of its values changes. The overlay also draws a sparkline of the bandwidth
+ * estimate and the buffered duration from fixed size ring buffers, so that no allocation happens
+ * while the overlay is running.
+ */
+public class DebugOverlayView extends View implements Runnable {
+
+    /**
+     * The default interval between refreshes, in milliseconds.
+     */
+    public static final int DEFAULT_REFRESH_INTERVAL_MS = 500;
+
+    private static final int LINE_COUNT = 4;
+    private static final int LINE_CAPACITY = 96;
+    private static final int VALUES_PER_LINE = 6;
+    private static final int SPARKLINE_SAMPLES = 60;
+    private static final float TEXT_SIZE_SP = 10;
+    private static final float SPARKLINE_WIDTH_DP = 120;
+
+    private static final int LINE_POSITION = 0;
+    private static final int LINE_FORMAT = 1;
+    private static final int LINE_CODEC = 2;
+    private static final int LINE_FRAMES = 3;
+
+    private static final char[] LABEL_POSITION = "pos:".toCharArray();
+    private static final char[] LABEL_BUFFER = " buf:".toCharArray();
+    private static final char[] LABEL_BANDWIDTH = " bw:".toCharArray();
+    private static final char[] LABEL_FORMAT = "fmt:".toCharArray();
+    private static final char[] LABEL_BITRATE = " br:".toCharArray();
+    private static final char[] LABEL_RESOLUTION = " res:".toCharArray();
+    private static final char[] LABEL_DECODERS = "dec:".toCharArray();
+    private static final char[] LABEL_RENDERED = " rb:".toCharArray();
+    private static final char[] LABEL_SKIPPED = " sb:".toCharArray();
+    private static final char[] LABEL_DROPPED = " db:".toCharArray();
+    private static final char[] LABEL_MAX_DROPPED = " mcdb:".toCharArray();
+    private static final char[] LABEL_FRAMES = "frames:".toCharArray();
+    private static final char[] LABEL_LATE = " late:".toCharArray();
+    private static final char[] LABEL_JITTER_P50 = " jit50:".toCharArray();
+    private static final char[] LABEL_JITTER_P99 = " jit99:".toCharArray();
+    private static final char[] LABEL_EARLY_P1 = " early1:".toCharArray();
+    private static final char[] UNIT_MS = "ms".toCharArray();
+    private static final char[] UNIT_KBPS = "k".toCharArray();
+    private static final char[] NONE = "-".toCharArray();
+
+    private final Paint textPaint;
+    private final Paint bitratePaint;
+    private final Paint bufferPaint;
+    private final char[][] lines;
+    private final int[] lineLengths;
+    private final long[][] lineValues;
+    private final long[] scratchValues;
+    private final int[] bitrateSamplesKbps;
+    private final int[] bufferSamplesMs;
+    private final float[] sparklinePoints;
+    private final float sparklineWidth;
+
+    private DemoPlayer player;
+    private Format lastFormat;
+    private int refreshIntervalMs;
+    private int sampleCount;
+    private boolean running;
+
+    public DebugOverlayView(Context context) {
+        this(context, null);
+    }
+
+    public DebugOverlayView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        float scaledDensity = context.getResources().getDisplayMetrics().scaledDensity;
+        float density = context.getResources().getDisplayMetrics().density;
+        textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        textPaint.setColor(Color.WHITE);
+        textPaint.setTextSize(TEXT_SIZE_SP * scaledDensity);
+        bitratePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        bitratePaint.setColor(Color.GREEN);
+        bitratePaint.setStrokeWidth(density);
+        bufferPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        bufferPaint.setColor(Color.YELLOW);
+        bufferPaint.setStrokeWidth(density);
+        sparklineWidth = SPARKLINE_WIDTH_DP * density;
+        lines = new char[LINE_COUNT][LINE_CAPACITY];
+        lineLengths = new int[LINE_COUNT];
+        lineValues = new long[LINE_COUNT][VALUES_PER_LINE];
+        scratchValues = new long[VALUES_PER_LINE];
+        bitrateSamplesKbps = new int[SPARKLINE_SAMPLES];
+        bufferSamplesMs = new int[SPARKLINE_SAMPLES];
+        sparklinePoints = new float[(SPARKLINE_SAMPLES - 1) * 4];
+        refreshIntervalMs = DEFAULT_REFRESH_INTERVAL_MS;
+        for (int i = 0; i < LINE_COUNT; i++) {
+            // Force the first refresh to format every line.
+            lineValues[i][0] = Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Sets the interval between refreshes.
+     *
+     * @param refreshIntervalMs The interval in milliseconds.
+     */
+    public void setRefreshIntervalMs(int refreshIntervalMs) {
+        this.refreshIntervalMs = refreshIntervalMs;
+    }
+
+    /**
+     * Starts periodically refreshing the overlay from a player.
+     *
+     * @param player The player to read metrics from.
+     */
+    public void start(DemoPlayer player) {
+        stop();
+        this.player = player;
+        running = true;
+        run();
+    }
+
+    /**
+     * Stops refreshing the overlay.
+     */
+    public void stop() {
+        running = false;
+        removeCallbacks(this);
+        player = null;
+    }
+
+    @Override
+    public void run() {
+        if (!running) {
+            return;
+        }
+        refresh();
+        postDelayed(this, refreshIntervalMs);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        Paint.FontMetrics metrics = textPaint.getFontMetrics();
+        int height = (int) Math.ceil((metrics.descent - metrics.ascent) * LINE_COUNT)
+                + getPaddingTop() + getPaddingBottom();
+        setMeasuredDimension(getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec),
+                resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        float lineHeight = textPaint.descent() - textPaint.ascent();
+        float x = getPaddingLeft();
+        float y = getPaddingTop() - textPaint.ascent();
+        for (int i = 0; i < LINE_COUNT; i++) {
+            canvas.drawText(lines[i], 0, lineLengths[i], x, y, textPaint);
+            y += lineHeight;
+        }
+        drawSparklines(canvas);
+    }
+
+    private void refresh() {
+        DemoPlayer player = this.player;
+        if (player == null) {
+            return;
+        }
+        boolean changed = false;
+        long positionMs = player.getCurrentPosition();
+        long bufferedPositionMs = player.getBufferedPosition();
+        long bufferMs = bufferedPositionMs == ExoPlayer.UNKNOWN_TIME
+                ? 0 : Math.max(0, bufferedPositionMs - positionMs);
+        BandwidthMeter bandwidthMeter = player.getBandwidthMeter();
+        long bitrateEstimate = bandwidthMeter == null ? BandwidthMeter.NO_ESTIMATE
+                : bandwidthMeter.getBitrateEstimate();
+        long bitrateEstimateKbps = bitrateEstimate == BandwidthMeter.NO_ESTIMATE
+                ? -1 : bitrateEstimate / 1000;
+
+        // Position line. The position is rounded to seconds so that the line changes at most once
+        // per second during playback.
+        scratchValues[0] = positionMs / 1000;
+        scratchValues[1] = bufferMs / 100;
+        scratchValues[2] = bitrateEstimateKbps;
+        if (valuesChanged(LINE_POSITION, 3)) {
+            char[] line = lines[LINE_POSITION];
+            int length = append(line, 0, LABEL_POSITION);
+            length = appendLong(line, length, positionMs / 1000);
+            length = append(line, length, LABEL_BUFFER);
+            length = appendLong(line, length, scratchValues[1] * 100);
+            length = append(line, length, UNIT_MS);
+            length = append(line, length, LABEL_BANDWIDTH);
+            length = appendOptionalLong(line, length, bitrateEstimateKbps);
+            length = append(line, length, UNIT_KBPS);
+            lineLengths[LINE_POSITION] = length;
+            changed = true;
+        }
+
+        // Format line. The format id is only copied when the format instance changes.
+        Format format = player.getFormat();
+        if (format != lastFormat || lineValues[LINE_FORMAT][0] == Long.MIN_VALUE) {
+            lastFormat = format;
+            lineValues[LINE_FORMAT][0] = 0;
+            char[] line = lines[LINE_FORMAT];
+            int length = append(line, 0, LABEL_FORMAT);
+            if (format == null) {
+                length = append(line, length, NONE);
+            } else {
+                int idLength = Math.min(format.id.length(), LINE_CAPACITY / 4);
+                format.id.getChars(0, idLength, line, length);
+                length += idLength;
+                length = append(line, length, LABEL_BITRATE);
+                length = appendLong(line, length, format.bitrate / 1000);
+                length = append(line, length, UNIT_KBPS);
+                length = append(line, length, LABEL_RESOLUTION);
+                length = appendLong(line, length, format.width);
+                line[length++] = 'x';
+                length = appendLong(line, length, format.height);
+            }
+            lineLengths[LINE_FORMAT] = length;
+            changed = true;
+        }
+
+        // Codec line.
+        CodecCounters counters = player.getCodecCounters();
+        if (counters != null) {
+            counters.ensureUpdated();
+            scratchValues[0] = counters.codecInitCount;
+            scratchValues[1] = counters.renderedOutputBufferCount;
+            scratchValues[2] = counters.skippedOutputBufferCount;
+            scratchValues[3] = counters.droppedOutputBufferCount;
+            scratchValues[4] = counters.maxConsecutiveDroppedOutputBufferCount;
+            if (valuesChanged(LINE_CODEC, 5)) {
+                char[] line = lines[LINE_CODEC];
+                int length = append(line, 0, LABEL_DECODERS);
+                length = appendLong(line, length, scratchValues[0]);
+                length = append(line, length, LABEL_RENDERED);
+                length = appendLong(line, length, scratchValues[1]);
+                length = append(line, length, LABEL_SKIPPED);
+                length = appendLong(line, length, scratchValues[2]);
+                length = append(line, length, LABEL_DROPPED);
+                length = appendLong(line, length, scratchValues[3]);
+                length = append(line, length, LABEL_MAX_DROPPED);
+                length = appendLong(line, length, scratchValues[4]);
+                lineLengths[LINE_CODEC] = length;
+                changed = true;
+            }
+        }
+
+        // Frame timing line.
+        FrameTimingStats frameTimingStats = player.getFrameTimingStats();
+        Histogram jitter = frameTimingStats.getIntervalJitterHistogram();
+        Histogram deviation = frameTimingStats.getReleaseDeviationHistogram();
+        scratchValues[0] = frameTimingStats.getFrameCount();
+        scratchValues[1] = frameTimingStats.getLateFrameCount();
+        scratchValues[2] = jitter.getPercentile(50) / 1000;
+        scratchValues[3] = jitter.getPercentile(99) / 1000;
+        scratchValues[4] = deviation.getPercentile(1) / 1000;
+        if (valuesChanged(LINE_FRAMES, 5)) {
+            char[] line = lines[LINE_FRAMES];
+            int length = append(line, 0, LABEL_FRAMES);
+            length = appendLong(line, length, scratchValues[0]);
+            length = append(line, length, LABEL_LATE);
+            length = appendLong(line, length, scratchValues[1]);
+            length = append(line, length, LABEL_JITTER_P50);
+            length = appendLong(line, length, scratchValues[2]);
+            length = append(line, length, UNIT_MS);
+            length = append(line, length, LABEL_JITTER_P99);
+            length = appendLong(line, length, scratchValues[3]);
+            length = append(line, length, UNIT_MS);
+            length = append(line, length, LABEL_EARLY_P1);
+            length = appendLong(line, length, scratchValues[4]);
+            length = append(line, length, UNIT_MS);
+            lineLengths[LINE_FRAMES] = length;
+            changed = true;
+        }
+
+        // Sparkline samples.
+        int sampleIndex = sampleCount % SPARKLINE_SAMPLES;
+        int bitrateSampleKbps = (int) Math.max(0, bitrateEstimateKbps);
+        int bufferSampleMs = (int) bufferMs;
+        changed |= bitrateSamplesKbps[previousIndex(sampleIndex)] != bitrateSampleKbps
+                || bufferSamplesMs[previousIndex(sampleIndex)] != bufferSampleMs;
+        bitrateSamplesKbps[sampleIndex] = bitrateSampleKbps;
+        bufferSamplesMs[sampleIndex] = bufferSampleMs;
+        sampleCount++;
+
+        if (changed) {
+            invalidate();
+        }
+    }
+
+    private boolean valuesChanged(int line, int valueCount) {
+        long[] values = lineValues[line];
+        boolean changed = false;
+        for (int i = 0; i < valueCount; i++) {
+            if (values[i] != scratchValues[i]) {
+                values[i] = scratchValues[i];
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private void drawSparklines(Canvas canvas) {
+        int samples = Math.min(sampleCount, SPARKLINE_SAMPLES);
+        if (samples < 2) {
+            return;
+        }
+        float right = getWidth() - getPaddingRight();
+        float top = getPaddingTop();
+        float bottom = getHeight() - getPaddingBottom();
+        drawSparkline(canvas, bitrateSamplesKbps, samples, right - sparklineWidth, top, right, bottom,
+                bitratePaint);
+        drawSparkline(canvas, bufferSamplesMs, samples, right - sparklineWidth, top, right, bottom,
+                bufferPaint);
+    }
+
+    private void drawSparkline(Canvas canvas, int[] ringBuffer, int samples, float left, float top,
+                               float right, float bottom, Paint paint) {
+        int oldest = sampleCount - samples;
+        int max = 1;
+        for (int i = 0; i < samples; i++) {
+            max = Math.max(max, ringBuffer[(oldest + i) % SPARKLINE_SAMPLES]);
+        }
+        float step = (right - left) / (SPARKLINE_SAMPLES - 1);
+        float height = bottom - top;
+        int pointCount = 0;
+        float previousX = left;
+        float previousY = bottom - height * ringBuffer[oldest % SPARKLINE_SAMPLES] / max;
+        for (int i = 1; i < samples; i++) {
+            float x = left + i * step;
+            float y = bottom - height * ringBuffer[(oldest + i) % SPARKLINE_SAMPLES] / max;
+            sparklinePoints[pointCount++] = previousX;
+            sparklinePoints[pointCount++] = previousY;
+            sparklinePoints[pointCount++] = x;
+            sparklinePoints[pointCount++] = y;
+            previousX = x;
+            previousY = y;
+        }
+        canvas.drawLines(sparklinePoints, 0, pointCount, paint);
+    }
+
+    private static int previousIndex(int index) {
+        return (index + SPARKLINE_SAMPLES - 1) % SPARKLINE_SAMPLES;
+    }
+
+    private static int append(char[] line, int offset, char[] chars) {
+        int length = Math.min(chars.length, line.length - offset);
+        System.arraycopy(chars, 0, line, offset, length);
+        return offset + length;
+    }
+
+    private static int appendOptionalLong(char[] line, int offset, long value) {
+        return value < 0 ? append(line, offset, NONE) : appendLong(line, offset, value);
+    }
+
+    /**
+     * Formats a decimal value into a line without allocating.
+     */
+    private static int appendLong(char[] line, int offset, long value) {
+        if (value == Long.MIN_VALUE) {
+            return append(line, offset, NONE);
+        }
+        if (value < 0) {
+            if (offset < line.length) {
+                line[offset++] = '-';
+            }
+            value = -value;
+        }
+        int digits = 1;
+        for (long remaining = value / 10; remaining > 0; remaining /= 10) {
+            digits++;
+        }
+        if (offset + digits > line.length) {
+            return offset;
+        }
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            line[i] = (char) ('0' + (value % 10));
+            value /= 10;
+        }
+        return offset + digits;
+    }
+
+}
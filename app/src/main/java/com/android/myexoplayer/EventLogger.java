@@ -177,6 +177,14 @@ public class EventLogger implements DemoPlayer.Listener, DemoPlayer.InfoListener
                 + seekRangeValuesUs[1] + "]");
     }
 
+    @Override
+    public void onVideoCodecSelected(String mimeType, boolean hardwareAccelerated,
+                                     float expectedBandwidthSavings) {
+        Log.d(TAG, "videoCodecSelected [" + getSessionTimeString() + ", " + mimeType + ", "
+                + (hardwareAccelerated ? "hardware" : "software") + ", "
+                + Math.round(expectedBandwidthSavings * 100) + "% saved]");
+    }
+
     private void printInternalError(String type, Exception e) {
         Log.e(TAG, "internalError [" + getSessionTimeString() + ", " + type + "]", e);
     }
@@ -17,6 +17,9 @@ import android.widget.ArrayAdapter;
 import android.widget.ListView;
 import android.widget.TextView;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.google.android.exoplayer.MediaCodecUtil;
 import com.google.android.exoplayer.MediaCodecUtil.DecoderQueryException;
 import com.android.myexoplayer.Samples.Sample;
@@ -61,7 +64,7 @@ public class MainActivity extends AppCompatActivity {
             public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
                 Object item = sampleAdapter.getItem(position);
                 if (item instanceof Sample) {
-                    onSampleSelected((Sample) item);
+                    onSampleSelected((Sample) item, getFollowingSamples(sampleAdapter, position));
                 }
             }
         });
@@ -89,14 +92,39 @@ public class MainActivity extends AppCompatActivity {
         return super.onOptionsItemSelected(item);
     }
 
-    private void onSampleSelected(Sample sample) {
+    private void onSampleSelected(Sample sample, List<Sample> playlist) {
+        String[] playlistUris = new String[playlist.size()];
+        int[] playlistContentTypes = new int[playlist.size()];
+        String[] playlistContentIds = new String[playlist.size()];
+        for (int i = 0; i < playlist.size(); i++) {
+            playlistUris[i] = playlist.get(i).uri;
+            playlistContentTypes[i] = playlist.get(i).type;
+            playlistContentIds[i] = playlist.get(i).contentId;
+        }
         Intent mpdIntent = new Intent(this, PlayerActivity.class)
                 .setData(Uri.parse(sample.uri))
                 .putExtra(PlayerActivity.CONTENT_ID_EXTRA, sample.contentId)
-                .putExtra(PlayerActivity.CONTENT_TYPE_EXTRA, sample.type);
+                .putExtra(PlayerActivity.CONTENT_TYPE_EXTRA, sample.type)
+                .putExtra(PlayerActivity.PLAYLIST_URIS_EXTRA, playlistUris)
+                .putExtra(PlayerActivity.PLAYLIST_CONTENT_TYPES_EXTRA, playlistContentTypes)
+                .putExtra(PlayerActivity.PLAYLIST_CONTENT_IDS_EXTRA, playlistContentIds);
         startActivity(mpdIntent);
     }
 
+    /**
+     * Returns the samples that follow a sample under its header, which play as a playlist after it.
+     */
+    private static List<Sample> getFollowingSamples(SampleAdapter sampleAdapter, int position) {
+        List<Sample> samples = new ArrayList<>();
+        for (int i = position + 1; i < sampleAdapter.getCount(); i++) {
+            Object item = sampleAdapter.getItem(i);
+            if (!(item instanceof Sample)) {
+                break;
+            }
+            samples.add((Sample) item);
+        }
+        return samples;
+    }
 
     private static class SampleAdapter extends ArrayAdapter<Object> {
 
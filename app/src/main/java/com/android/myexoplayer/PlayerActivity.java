@@ -4,9 +4,13 @@ import android.support.v7.app.AppCompatActivity;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.Intent;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.text.TextUtils;
+import android.text.format.DateUtils;
 import android.util.Log;
 import android.view.KeyEvent;
 import android.view.Menu;
@@ -20,15 +24,27 @@ import android.view.View.OnKeyListener;
 import android.view.View.OnTouchListener;
 import android.view.accessibility.CaptioningManager;
 import android.widget.Button;
+import android.widget.ImageView;
 import android.widget.MediaController;
 import android.widget.PopupMenu;
 import android.widget.PopupMenu.OnMenuItemClickListener;
+import android.widget.SeekBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import com.android.myexoplayer.player.DashRendererBuilder;
+import com.android.myexoplayer.player.DashDownloader;
 import com.android.myexoplayer.player.DemoPlayer;
 import com.android.myexoplayer.player.DemoPlayer.RendererBuilder;
+import com.android.myexoplayer.player.ExtractorRendererBuilder;
+import com.android.myexoplayer.player.HlsRendererBuilder;
+import com.android.myexoplayer.player.OfflineDashRendererBuilder;
+import com.android.myexoplayer.player.OfflineStore;
+import com.android.myexoplayer.player.PlayerHolder;
+import com.android.myexoplayer.player.SmoothStreamingRendererBuilder;
+import com.android.myexoplayer.player.StartupStats;
+import com.android.myexoplayer.player.StartupTimeline;
+import com.android.myexoplayer.replay.SessionRecorder;
+import com.android.myexoplayer.replay.SessionRecording;
 import com.google.android.exoplayer.AspectRatioFrameLayout;
 import com.google.android.exoplayer.ExoPlayer;
 import com.google.android.exoplayer.audio.AudioCapabilities;
@@ -40,19 +56,27 @@ import com.google.android.exoplayer.metadata.TxxxMetadata;
 import com.google.android.exoplayer.text.CaptionStyleCompat;
 import com.google.android.exoplayer.text.Cue;
 import com.google.android.exoplayer.text.SubtitleLayout;
-import com.google.android.exoplayer.util.DebugTextViewHelper;
 import com.google.android.exoplayer.util.Util;
 import com.google.android.exoplayer.util.VerboseLogUtil;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.CookieHandler;
 import java.net.CookieManager;
 import java.net.CookiePolicy;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 public class PlayerActivity extends AppCompatActivity implements SurfaceHolder.Callback, View.OnClickListener,
         DemoPlayer.Listener, DemoPlayer.CaptionListener, DemoPlayer.Id3MetadataListener,
-        AudioCapabilitiesReceiver.Listener {
+        DemoPlayer.StartupListener, AudioCapabilitiesReceiver.Listener {
 
     private static final String TAG = "PlayerActivity";
 
@@ -63,6 +87,12 @@ public class PlayerActivity extends AppCompatActivity implements SurfaceHolder.C
 
     public static final String CONTENT_TYPE_EXTRA = "content_type";
     public static final String CONTENT_ID_EXTRA = "content_id";
+    /** The uris of the items that follow the content in a playlist, as a string array. */
+    public static final String PLAYLIST_URIS_EXTRA = "playlist_uris";
+    /** The content types of the items that follow the content in a playlist, as an int array. */
+    public static final String PLAYLIST_CONTENT_TYPES_EXTRA = "playlist_content_types";
+    /** The content ids of the items that follow the content in a playlist, as a string array. */
+    public static final String PLAYLIST_CONTENT_IDS_EXTRA = "playlist_content_ids";
 
     private static final int MENU_GROUP_TRACKS = 1;
     private static final int ID_OFFSET = 2;
@@ -73,30 +103,65 @@ public class PlayerActivity extends AppCompatActivity implements SurfaceHolder.C
         defaultCookieManager.setCookiePolicy(CookiePolicy.ACCEPT_ORIGINAL_SERVER);
     }
 
+    private static final StartupStats startupStats = new StartupStats();
+    private static final int MAX_SESSION_RECORDINGS = 50;
+
+    /**
+     * Runs downloads and their deletion one at a time, off the main thread.
+     */
+    private static final ExecutorService OFFLINE_EXECUTOR =
+            Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    return new Thread(runnable, "DashDownloader");
+                }
+            });
+    /**
+     * Writes session recordings and prunes old ones, off the main thread.
+     */
+    private static final ExecutorService SESSION_RECORDING_EXECUTOR =
+            Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    return new Thread(runnable, "SessionRecordingWriter");
+                }
+            });
+    /**
+     * The running download of each content identifier, so that deleting it can cancel it.
+     */
+    private static final Map<String, DashDownloader> ACTIVE_DOWNLOADS = new HashMap<>();
+
     private EventLogger eventLogger;
+    private SessionRecorder sessionRecorder;
     private MediaController mediaController;
     private View debugRootView;
     private View shutterView;
     private AspectRatioFrameLayout videoFrame;
     private SurfaceView surfaceView;
-    private TextView debugTextView;
+    private DebugOverlayView debugOverlayView;
     private TextView playerStateTextView;
     private SubtitleLayout subtitleLayout;
     private Button videoButton;
     private Button audioButton;
     private Button textButton;
     private Button retryButton;
+    private View scrubPreviewView;
+    private ImageView scrubThumbnailView;
+    private TextView scrubPositionView;
 
     private DemoPlayer player;
-    private DebugTextViewHelper debugViewHelper;
     private boolean playerNeedsPrepare;
 
     private long playerPosition;
     private boolean enableBackgroundAudio;
+    private float videoAspectRatio;
 
     private Uri contentUri;
     private int contentType;
     private String contentId;
+    private String[] playlistUris;
+    private int[] playlistContentTypes;
+    private String[] playlistContentIds;
 
     private AudioCapabilitiesReceiver audioCapabilitiesReceiver;
     private AudioCapabilities audioCapabilities;
@@ -112,6 +177,9 @@ public class PlayerActivity extends AppCompatActivity implements SurfaceHolder.C
             contentUri = intent.getData();
             contentType = intent.getIntExtra(CONTENT_TYPE_EXTRA, -1);
             contentId = intent.getStringExtra(CONTENT_ID_EXTRA);
+            playlistUris = intent.getStringArrayExtra(PLAYLIST_URIS_EXTRA);
+            playlistContentTypes = intent.getIntArrayExtra(PLAYLIST_CONTENT_TYPES_EXTRA);
+            playlistContentIds = intent.getStringArrayExtra(PLAYLIST_CONTENT_IDS_EXTRA);
         }
 
         setContentView(R.layout.activity_player);
@@ -138,6 +206,7 @@ public class PlayerActivity extends AppCompatActivity implements SurfaceHolder.C
         });
 
         audioCapabilitiesReceiver = new AudioCapabilitiesReceiver(getApplicationContext(), this);
+        videoAspectRatio = -1;
 
         shutterView = findViewById(R.id.shutter);
         debugRootView = findViewById(R.id.controls_root);
@@ -145,13 +214,17 @@ public class PlayerActivity extends AppCompatActivity implements SurfaceHolder.C
         videoFrame = (AspectRatioFrameLayout) findViewById(R.id.video_frame);
         surfaceView = (SurfaceView) findViewById(R.id.surface_view);
         surfaceView.getHolder().addCallback(this);
-        debugTextView = (TextView) findViewById(R.id.debug_text_view);
+        debugOverlayView = (DebugOverlayView) findViewById(R.id.debug_overlay_view);
 
         playerStateTextView = (TextView) findViewById(R.id.player_state_view);
         subtitleLayout = (SubtitleLayout) findViewById(R.id.subtitles);
 
         mediaController = new MediaController(this);
         mediaController.setAnchorView(root);
+        scrubPreviewView = findViewById(R.id.scrub_preview);
+        scrubThumbnailView = (ImageView) findViewById(R.id.scrub_thumbnail);
+        scrubPositionView = (TextView) findViewById(R.id.scrub_position);
+        configureScrubbing();
         retryButton = (Button) findViewById(R.id.retry_button);
         retryButton.setOnClickListener(this);
         videoButton = (Button) findViewById(R.id.video_controls);
@@ -180,7 +253,7 @@ public class PlayerActivity extends AppCompatActivity implements SurfaceHolder.C
     public void onPause() {
         super.onPause();
         if (!enableBackgroundAudio) {
-            releasePlayer();
+            holdPlayer();
         } else {
             player.setBackgrounded(true);
         }
@@ -192,6 +265,12 @@ public class PlayerActivity extends AppCompatActivity implements SurfaceHolder.C
     public void onDestroy() {
         super.onDestroy();
         releasePlayer();
+        if (isFinishing()) {
+            PlayerHolder.HeldPlayer heldPlayer = PlayerHolder.getInstance().take(getPlayerKey());
+            if (heldPlayer != null) {
+                heldPlayer.release();
+            }
+        }
     }
 
     // OnClickListener methods
@@ -221,6 +300,14 @@ public class PlayerActivity extends AppCompatActivity implements SurfaceHolder.C
         if (id == R.id.action_settings) {
             return true;
         }
+        if (id == R.id.action_download) {
+            startDownload();
+            return true;
+        }
+        if (id == R.id.action_delete_download) {
+            deleteDownload();
+            return true;
+        }
 
         return super.onOptionsItemSelected(item);
     }
@@ -241,44 +328,161 @@ public class PlayerActivity extends AppCompatActivity implements SurfaceHolder.C
 
     // Internal methods
 
-    private RendererBuilder getRendererBuilder() {
+    private RendererBuilder getRendererBuilder(Uri contentUri, int contentType, String contentId) {
         String userAgent = Util.getUserAgent(this, "ExoPlayerDemo");
         switch (contentType) {
-            /*case TYPE_SS:
+            case TYPE_SS:
                 return new SmoothStreamingRendererBuilder(this, userAgent, contentUri.toString(),
-                        new SmoothStreamingTestMediaDrmCallback());*/
+                        new SmoothStreamingTestMediaDrmCallback());
             case TYPE_DASH:
                 Log.d(TAG, "DASH Renderer builder type");
-                return new DashRendererBuilder(this, userAgent, contentUri.toString(),
-                        new WidevineTestMediaDrmCallback(contentId), audioCapabilities);
-           /* case TYPE_HLS:
-                return new HlsRendererBuilder(this, userAgent, contentUri.toString(), audioCapabilities);
+                return new OfflineDashRendererBuilder(this, userAgent, contentId,
+                        contentUri.toString(), new WidevineTestMediaDrmCallback(contentId),
+                        audioCapabilities);
+            case TYPE_HLS:
+                return new HlsRendererBuilder(this, userAgent, contentUri.toString(),
+                        audioCapabilities);
             case TYPE_OTHER:
-                return new ExtractorRendererBuilder(this, userAgent, contentUri);*/
+                return new ExtractorRendererBuilder(this, userAgent, contentUri);
             default:
                 throw new IllegalStateException("Unsupported type: " + contentType);
         }
     }
 
+    /**
+     * Downloads the content in the background, so that it plays from local storage the next time
+     * it is opened. Downloads of other types of content are not supported.
+     */
+    private void startDownload() {
+        if (contentType != TYPE_DASH || contentId == null) {
+            Toast.makeText(getApplicationContext(), R.string.download_failed, Toast.LENGTH_LONG).show();
+            return;
+        }
+        final Context applicationContext = getApplicationContext();
+        final String userAgent = Util.getUserAgent(this, "ExoPlayerDemo");
+        final String manifestUrl = contentUri.toString();
+        final String downloadContentId = contentId;
+        Toast.makeText(applicationContext, R.string.download_started, Toast.LENGTH_SHORT).show();
+        OFFLINE_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                int resultStringId;
+                try {
+                    OfflineStore offlineStore = OfflineStore.forContent(applicationContext,
+                            downloadContentId);
+                    DashDownloader downloader = new DashDownloader(applicationContext, userAgent,
+                            manifestUrl, offlineStore)
+                            .setListener(new DashDownloader.Listener() {
+                                @Override
+                                public void onProgress(DashDownloader downloader,
+                                                       int downloadedCount, int totalCount,
+                                                       long bytesDownloaded, long throughputBps) {
+                                    Log.d(TAG, "Downloaded " + downloadedCount + "/" + totalCount
+                                            + " (" + bytesDownloaded + " bytes at "
+                                            + throughputBps + " bps)");
+                                }
+                            });
+                    setActiveDownload(downloadContentId, downloader);
+                    try {
+                        downloader.download();
+                    } finally {
+                        setActiveDownload(downloadContentId, null);
+                    }
+                    resultStringId = R.string.download_completed;
+                } catch (Exception e) {
+                    Log.e(TAG, "Download failed", e);
+                    resultStringId = R.string.download_failed;
+                }
+                showToast(applicationContext, resultStringId);
+            }
+        });
+    }
+
+    /**
+     * Deletes the download of the content in the background, canceling it first if it is still
+     * running. The player is prepared again, so that it plays from the network if it was playing
+     * the download.
+     */
+    private void deleteDownload() {
+        if (contentId == null) {
+            return;
+        }
+        final Context applicationContext = getApplicationContext();
+        final String downloadContentId = contentId;
+        synchronized (ACTIVE_DOWNLOADS) {
+            DashDownloader activeDownloader = ACTIVE_DOWNLOADS.get(downloadContentId);
+            if (activeDownloader != null) {
+                activeDownloader.cancel();
+            }
+        }
+        // The executor runs the deletion after the canceled download has stopped writing.
+        OFFLINE_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                int resultStringId;
+                try {
+                    OfflineStore.forContent(applicationContext, downloadContentId).delete();
+                    resultStringId = R.string.download_deleted;
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to delete download", e);
+                    resultStringId = R.string.download_delete_failed;
+                }
+                showToast(applicationContext, resultStringId);
+                videoFrame.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (player != null && downloadContentId.equals(contentId)) {
+                            releasePlayer();
+                            preparePlayer();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private static void setActiveDownload(String contentId, DashDownloader downloader) {
+        synchronized (ACTIVE_DOWNLOADS) {
+            if (downloader == null) {
+                ACTIVE_DOWNLOADS.remove(contentId);
+            } else {
+                ACTIVE_DOWNLOADS.put(contentId, downloader);
+            }
+        }
+    }
+
+    private void showToast(final Context applicationContext, final int stringId) {
+        videoFrame.post(new Runnable() {
+            @Override
+            public void run() {
+                Toast.makeText(applicationContext, stringId, Toast.LENGTH_LONG).show();
+            }
+        });
+    }
+
+    /**
+     * Returns the startup timings aggregated over every session played in this process.
+     */
+    public static StartupStats getStartupStats() {
+        return startupStats;
+    }
+
     private void preparePlayer() {
+        long startupOriginMs = SystemClock.elapsedRealtime();
+        if (player == null) {
+            takeHeldPlayer();
+        }
         if (player == null) {
-            player = new DemoPlayer(getRendererBuilder());
-            player.addListener(this);
-            player.setCaptionListener(this);
-            player.setMetadataListener(this);
-            player.seekTo(playerPosition);
+            DemoPlayer newPlayer = new DemoPlayer(getRendererBuilder(contentUri, contentType,
+                    contentId));
+            newPlayer.seekTo(playerPosition);
+            setUpPlayer(newPlayer);
             playerNeedsPrepare = true;
-            mediaController.setMediaPlayer(player.getPlayerControl());
-            mediaController.setEnabled(true);
-            eventLogger = new EventLogger();
-            eventLogger.startSession();
-            player.addListener(eventLogger);
-            player.setInfoListener(eventLogger);
-            player.setInternalErrorListener(eventLogger);
-            debugViewHelper = new DebugTextViewHelper(player, debugTextView);
-            debugViewHelper.start();
         }
+        // The view may already be laid out, in which case surfaceChanged will not be called again.
+        player.setViewportSize(surfaceView.getWidth(), surfaceView.getHeight());
         if (playerNeedsPrepare) {
+            player.setStartupOrigin(startupOriginMs);
             player.prepare();
             playerNeedsPrepare = false;
             updateButtonVisibilities();
@@ -287,24 +491,232 @@ public class PlayerActivity extends AppCompatActivity implements SurfaceHolder.C
         player.setPlayWhenReady(true);
     }
 
+    private void setUpPlayer(DemoPlayer newPlayer) {
+        player = newPlayer;
+        player.addListener(this);
+        player.setCaptionListener(this);
+        player.setMetadataListener(this);
+        player.setStartupListener(this);
+        // Seeks from the media controller need not be precise.
+        player.setSeekMode(DemoPlayer.SEEK_MODE_FAST);
+        mediaController.setMediaPlayer(player.getPlayerControl());
+        mediaController.setEnabled(true);
+        eventLogger = new EventLogger();
+        eventLogger.startSession();
+        player.addListener(eventLogger);
+        player.setInfoListener(eventLogger);
+        player.setInternalErrorListener(eventLogger);
+        sessionRecorder = new SessionRecorder(contentUri.toString());
+        player.setSessionRecorder(sessionRecorder);
+        debugOverlayView.start(player);
+        player.setNextPlayerFactory(newNextPlayerFactory());
+    }
+
+    /**
+     * Returns a factory of the player of the next item of the playlist, which the current player
+     * creates and prepares once playback nears its end.
+     *
+     * @return The factory, or null if the content is the last item.
+     */
+    private DemoPlayer.NextPlayerFactory newNextPlayerFactory() {
+        if (playlistUris == null || playlistUris.length == 0) {
+            return null;
+        }
+        final Uri nextUri = Uri.parse(playlistUris[0]);
+        final int nextContentType = playlistContentTypes[0];
+        final String nextContentId = playlistContentIds[0];
+        return new DemoPlayer.NextPlayerFactory() {
+            @Override
+            public DemoPlayer createNextPlayer() {
+                return new DemoPlayer(getRendererBuilder(nextUri, nextContentType, nextContentId));
+            }
+        };
+    }
+
+    /**
+     * Moves on to the next item of the playlist once the content has ended, playing it from the
+     * player that was preloading it.
+     */
+    private void playNextItem() {
+        if (player == null || playlistUris == null || playlistUris.length == 0) {
+            return;
+        }
+        DemoPlayer nextPlayer = player.takeNextPlayer();
+        releasePlayer();
+        contentUri = Uri.parse(playlistUris[0]);
+        contentType = playlistContentTypes[0];
+        contentId = playlistContentIds[0];
+        playlistUris = Arrays.copyOfRange(playlistUris, 1, playlistUris.length);
+        playlistContentTypes = Arrays.copyOfRange(playlistContentTypes, 1,
+                playlistContentTypes.length);
+        playlistContentIds = Arrays.copyOfRange(playlistContentIds, 1, playlistContentIds.length);
+        // A new instance of the activity, e.g. after a configuration change, resumes this item.
+        setIntent(new Intent(getIntent())
+                .setData(contentUri)
+                .putExtra(CONTENT_TYPE_EXTRA, contentType)
+                .putExtra(CONTENT_ID_EXTRA, contentId)
+                .putExtra(PLAYLIST_URIS_EXTRA, playlistUris)
+                .putExtra(PLAYLIST_CONTENT_TYPES_EXTRA, playlistContentTypes)
+                .putExtra(PLAYLIST_CONTENT_IDS_EXTRA, playlistContentIds));
+        playerPosition = 0;
+        videoAspectRatio = -1;
+        shutterView.setVisibility(View.VISIBLE);
+        if (nextPlayer != null) {
+            setUpPlayer(nextPlayer);
+            playerNeedsPrepare = nextPlayer.getPlaybackState() == ExoPlayer.STATE_IDLE;
+            if (!playerNeedsPrepare) {
+                // Its startup was measured from the preload, which would skew the startup stats.
+                nextPlayer.setStartupListener(null);
+            }
+        }
+        preparePlayer();
+    }
+
     private void releasePlayer() {
         if (player != null) {
-            debugViewHelper.stop();
-            debugViewHelper = null;
+            debugOverlayView.stop();
+            scrubPreviewView.setVisibility(View.GONE);
             playerPosition = player.getCurrentPosition();
-            player.release();
+            new PlayerSession(this).release();
             player = null;
-            eventLogger.endSession();
             eventLogger = null;
+            sessionRecorder = null;
         }
     }
 
+    /**
+     * Detaches the player from the activity and hands it to the {@link PlayerHolder}, which keeps
+     * its renderers and buffers until the activity or a new instance of it, e.g. after a
+     * configuration change, shows the same content again. The player is released instead if the
+     * activity is finishing or the player has failed.
+     */
+    private void holdPlayer() {
+        if (player == null) {
+            return;
+        }
+        if (isFinishing() || playerNeedsPrepare) {
+            releasePlayer();
+            return;
+        }
+        debugOverlayView.stop();
+        scrubPreviewView.setVisibility(View.GONE);
+        playerPosition = player.getCurrentPosition();
+        player.removeListener(this);
+        player.setCaptionListener(null);
+        player.setMetadataListener(null);
+        player.setStartupListener(null);
+        player.setPlayWhenReady(false);
+        player.blockingClearSurface();
+        PlayerHolder.getInstance().hold(getPlayerKey(), new PlayerSession(this),
+                PlayerHolder.DEFAULT_IDLE_TIMEOUT_MS);
+        player = null;
+        eventLogger = null;
+        sessionRecorder = null;
+    }
+
+    /**
+     * Attaches the player held by the {@link PlayerHolder}, if it plays the content of the activity
+     * with the current audio capabilities.
+     */
+    private void takeHeldPlayer() {
+        PlayerSession session = (PlayerSession) PlayerHolder.getInstance().take(getPlayerKey());
+        if (session == null) {
+            return;
+        }
+        if (!session.audioCapabilities.equals(audioCapabilities)) {
+            session.release();
+            return;
+        }
+        player = session.player;
+        eventLogger = session.eventLogger;
+        sessionRecorder = session.sessionRecorder;
+        player.addListener(this);
+        player.setCaptionListener(this);
+        player.setMetadataListener(this);
+        player.setStartupListener(this);
+        playerNeedsPrepare = false;
+        mediaController.setMediaPlayer(player.getPlayerControl());
+        mediaController.setEnabled(true);
+        debugOverlayView.start(player);
+        if (session.videoAspectRatio != -1) {
+            // The renderer only reports the video size again if it changes.
+            videoAspectRatio = session.videoAspectRatio;
+            videoFrame.setAspectRatio(videoAspectRatio);
+            shutterView.setVisibility(View.GONE);
+        }
+        updateButtonVisibilities();
+    }
+
+    private String getPlayerKey() {
+        return contentType + " " + contentUri + " " + contentId;
+    }
+
+    /**
+     * Writes a snapshot of a session recording to {@link #getSessionRecordingDir} on
+     * {@link #SESSION_RECORDING_EXECUTOR}, deleting the oldest recordings beyond
+     * {@link #MAX_SESSION_RECORDINGS}.
+     */
+    private static void saveSessionRecording(final Context context, SessionRecorder recorder) {
+        final byte[] recording = recorder.toByteArray();
+        SESSION_RECORDING_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                writeSessionRecording(context, recording);
+            }
+        });
+    }
+
+    private static void writeSessionRecording(Context context, byte[] recording) {
+        File directory = getSessionRecordingDir(context);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(TAG, "Failed to create " + directory);
+            return;
+        }
+        File file = new File(directory, System.currentTimeMillis() + SessionRecording.FILE_EXTENSION);
+        try {
+            OutputStream output = new FileOutputStream(file);
+            try {
+                output.write(recording);
+            } finally {
+                output.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to save session recording", e);
+            return;
+        }
+        File[] recordings = directory.listFiles();
+        if (recordings != null && recordings.length > MAX_SESSION_RECORDINGS) {
+            Arrays.sort(recordings);
+            for (int i = 0; i < recordings.length - MAX_SESSION_RECORDINGS; i++) {
+                recordings[i].delete();
+            }
+        }
+    }
+
+    /**
+     * Returns the directory to which a recording of every session is saved, for replay with a
+     * {@link com.android.myexoplayer.replay.SessionReplayer}.
+     */
+    public static File getSessionRecordingDir(Context context) {
+        return new File(context.getFilesDir(), "sessions");
+    }
+
     // DemoPlayer.Listener implementation
 
     @Override
     public void onStateChanged(boolean playWhenReady, int playbackState) {
         if (playbackState == ExoPlayer.STATE_ENDED) {
-            showControls();
+            if (playlistUris != null && playlistUris.length > 0) {
+                // Not from within the listener callback of the player that is released.
+                videoFrame.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        playNextItem();
+                    }
+                });
+            } else {
+                showControls();
+            }
         }
         String text = "playWhenReady=" + playWhenReady + ", playbackState=";
         switch(playbackState) {
@@ -349,8 +761,8 @@ public class PlayerActivity extends AppCompatActivity implements SurfaceHolder.C
     @Override
     public void onVideoSizeChanged(int width, int height, float pixelWidthAspectRatio) {
         shutterView.setVisibility(View.GONE);
-        videoFrame.setAspectRatio(
-                height == 0 ? 1 : (width * pixelWidthAspectRatio) / height);
+        videoAspectRatio = height == 0 ? 1 : (width * pixelWidthAspectRatio) / height;
+        videoFrame.setAspectRatio(videoAspectRatio);
     }
 
     // User controls
@@ -460,6 +872,63 @@ public class PlayerActivity extends AppCompatActivity implements SurfaceHolder.C
         return true;
     }
 
+    /**
+     * Replaces the listener of the {@link MediaController}'s seek bar, which seeks on every change
+     * while dragging, with one that previews thumbnails while dragging and only seeks on release.
+     * The default behavior is kept if the platform's controller has no seek bar with the expected
+     * identifier.
+     */
+    private void configureScrubbing() {
+        int progressId = Resources.getSystem().getIdentifier("mediacontroller_progress", "id",
+                "android");
+        View progressView = progressId == 0 ? null : mediaController.findViewById(progressId);
+        if (!(progressView instanceof SeekBar)) {
+            return;
+        }
+        final SeekBar seekBar = (SeekBar) progressView;
+        seekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onStartTrackingTouch(SeekBar bar) {
+                if (player == null) {
+                    return;
+                }
+                player.startScrubbing();
+                // Keep the controller showing while dragging.
+                mediaController.show(3600000);
+            }
+
+            @Override
+            public void onProgressChanged(SeekBar bar, int progress, boolean fromUser) {
+                if (!fromUser || player == null || player.getDuration() <= 0) {
+                    return;
+                }
+                long positionMs = player.getDuration() * progress / bar.getMax();
+                player.scrubTo(positionMs);
+                if (player.isScrubbing()) {
+                    showScrubPreview(positionMs);
+                }
+            }
+
+            @Override
+            public void onStopTrackingTouch(SeekBar bar) {
+                scrubPreviewView.setVisibility(View.GONE);
+                if (player == null) {
+                    return;
+                }
+                player.stopScrubbing();
+                mediaController.show(0);
+            }
+        });
+    }
+
+    private void showScrubPreview(long positionMs) {
+        Bitmap thumbnail = player.getThumbnail(positionMs);
+        scrubThumbnailView.setImageBitmap(thumbnail);
+        scrubThumbnailView.setVisibility(thumbnail != null ? View.VISIBLE : View.GONE);
+        scrubPositionView.setText(DateUtils.formatElapsedTime(positionMs / 1000));
+        scrubPreviewView.setVisibility(View.VISIBLE);
+    }
+
     private void toggleControlsVisibility()  {
         if (mediaController.isShowing()) {
             mediaController.hide();
@@ -474,6 +943,15 @@ public class PlayerActivity extends AppCompatActivity implements SurfaceHolder.C
         debugRootView.setVisibility(View.VISIBLE);
     }
 
+    // DemoPlayer.StartupListener implementation
+
+    @Override
+    public void onStartupCompleted(StartupTimeline timeline) {
+        startupStats.add(timeline);
+        Log.i(TAG, timeline.toString());
+        Log.i(TAG, startupStats.toString());
+    }
+
     // DemoPlayer.CaptionListener implementation
 
     @Override
@@ -516,7 +994,9 @@ public class PlayerActivity extends AppCompatActivity implements SurfaceHolder.C
 
     @Override
     public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
-        // Do nothing.
+        if (player != null) {
+            player.setViewportSize(width, height);
+        }
     }
 
     @Override
@@ -553,4 +1033,38 @@ public class PlayerActivity extends AppCompatActivity implements SurfaceHolder.C
                 (CaptioningManager) getSystemService(Context.CAPTIONING_SERVICE);
         return CaptionStyleCompat.createFromCaptionStyle(captioningManager.getUserStyle());
     }
+
+    /**
+     * A player and the state of its session that outlive the activity while the player is held by
+     * the {@link PlayerHolder}.
+     */
+    private static final class PlayerSession implements PlayerHolder.HeldPlayer {
+
+        public final Context context;
+        public final DemoPlayer player;
+        public final EventLogger eventLogger;
+        public final SessionRecorder sessionRecorder;
+        public final AudioCapabilities audioCapabilities;
+        public final float videoAspectRatio;
+
+        public PlayerSession(PlayerActivity activity) {
+            context = activity.getApplicationContext();
+            player = activity.player;
+            eventLogger = activity.eventLogger;
+            sessionRecorder = activity.sessionRecorder;
+            audioCapabilities = activity.audioCapabilities;
+            videoAspectRatio = activity.videoAspectRatio;
+        }
+
+        @Override
+        public void release() {
+            Log.i(TAG, player.getFrameTimingStats().toString());
+            Log.i(TAG, player.getSeekStats().toString());
+            player.release();
+            eventLogger.endSession();
+            saveSessionRecording(context, sessionRecorder);
+        }
+
+    }
+
 }
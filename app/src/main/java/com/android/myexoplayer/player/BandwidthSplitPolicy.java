@@ -0,0 +1,24 @@
+package com.android.myexoplayer.player;
+
+import com.google.android.exoplayer.chunk.Format;
+
+/**
+ * Splits the bandwidth of a session between its audio and video, by choosing the audio format to
+ * load. Video adapts within whatever bandwidth the chosen audio leaves.
+ */
+public interface BandwidthSplitPolicy {
+
+    /**
+     * Chooses the audio format to load next.
+     *
+     * @param bitrateEstimate The estimated bandwidth of the session in bits per second.
+     * @param audioFormats The audio formats to choose from, in order of decreasing bitrate.
+     * @param videoFormats The video formats that video adapts between, in order of decreasing
+     *     bitrate. Empty if the session has no video.
+     * @param currentAudioFormat The audio format being loaded, or null if none is yet.
+     * @return The chosen audio format, which must be one of {@code audioFormats}.
+     */
+    Format selectAudioFormat(long bitrateEstimate, Format[] audioFormats, Format[] videoFormats,
+                             Format currentAudioFormat);
+
+}
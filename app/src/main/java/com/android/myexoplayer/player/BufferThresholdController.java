@@ -0,0 +1,206 @@
+package com.android.myexoplayer.player;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Chooses how much media must be buffered before playback starts, or resumes after a rebuffer,
+ * from the variance of the measured bandwidth and the duration of the chunks being loaded.
+ * <p>
+ * Once playback starts, each chunk of duration D at bitrate R takes D * R / X to load at
+ * throughput X, and playback stalls if the buffer runs out before a load completes. With B
+ * buffered, the k-th load after starting completes in time if B + (k - 1) * D exceeds the total
+ * time of the first k loads. The load times are estimated from the recent bandwidth samples,
+ * weighted towards the most recent, and their sum is taken to be normally distributed, so the
+ * threshold is the smallest B that meets this for every k at the target rebuffer probability. On a
+ * steady network this is little more than the first load time, and on a variable one it grows
+ * with the spread of the samples.
+ * <p>
+ * The thresholds are capped at the fallback thresholds, which also apply until enough samples are
+ * measured. Loads continue while playback is stalled, so waiting for more than the fallback buffer
+ * to avoid a later rebuffer does not shorten the total stall. In replays of variable and draining
+ * networks it lengthened it, as the larger buffer reached the load control's high watermark and
+ * held off loads while throughput was good. The thresholds are therefore only lowered, where the
+ * network is steady enough, and a network on which loads take longer than the media they carry
+ * gets the fallback thresholds.
+ * <p>
+ * {@link DemoPlayer} keeps its fixed thresholds, since no replay has yet shown the lowered ones to
+ * start sooner at the granularity of a chunk. The controller is evaluated offline through
+ * {@link com.android.myexoplayer.replay.SessionReplayer#setThresholdControllerFactory}.
+ */
+public final class BufferThresholdController {
+
+    public static final float DEFAULT_START_REBUFFER_PROBABILITY = 0.05f;
+    /**
+     * The target after a rebuffer is lower, since a second stall is more disruptive than a
+     * slightly longer wait.
+     */
+    public static final float DEFAULT_RESUME_REBUFFER_PROBABILITY = 0.02f;
+    public static final int DEFAULT_MIN_THRESHOLD_MS = 500;
+
+    private static final int MAX_SAMPLE_COUNT = 20;
+    private static final int MIN_SAMPLE_COUNT = 3;
+    /**
+     * The factor by which the weight of a sample decreases with each newer sample.
+     */
+    private static final double SAMPLE_WEIGHT_DECAY = 0.8;
+    /**
+     * The number of loads after starting over which the buffer is checked.
+     */
+    private static final int HORIZON_CHUNK_COUNT = 10;
+
+    private final float startRebufferProbability;
+    private final float resumeRebufferProbability;
+    private final int minThresholdMs;
+    private final int fallbackStartThresholdMs;
+    private final int fallbackResumeThresholdMs;
+    private final long[] throughputSamplesBps;
+    private final Map<Integer, Integer> sourceBitrates;
+
+    private int sampleCount;
+    private int nextSampleIndex;
+    private int chunkDurationMs;
+
+    /**
+     * @param fallbackStartThresholdMs The threshold to start playback until enough samples are
+     *     measured, and the highest start threshold.
+     * @param fallbackResumeThresholdMs The threshold to resume playback until enough samples are
+     *     measured, and the highest resume threshold.
+     */
+    public BufferThresholdController(int fallbackStartThresholdMs, int fallbackResumeThresholdMs) {
+        this(fallbackStartThresholdMs, fallbackResumeThresholdMs,
+                DEFAULT_START_REBUFFER_PROBABILITY, DEFAULT_RESUME_REBUFFER_PROBABILITY,
+                DEFAULT_MIN_THRESHOLD_MS);
+    }
+
+    /**
+     * @param fallbackStartThresholdMs The threshold to start playback until enough samples are
+     *     measured, and the highest start threshold.
+     * @param fallbackResumeThresholdMs The threshold to resume playback until enough samples are
+     *     measured, and the highest resume threshold.
+     * @param startRebufferProbability The target probability of a rebuffer soon after starting.
+     * @param resumeRebufferProbability The target probability of a rebuffer soon after resuming.
+     * @param minThresholdMs The lowest threshold to return.
+     */
+    public BufferThresholdController(int fallbackStartThresholdMs, int fallbackResumeThresholdMs,
+                                     float startRebufferProbability,
+                                     float resumeRebufferProbability, int minThresholdMs) {
+        this.fallbackStartThresholdMs = fallbackStartThresholdMs;
+        this.fallbackResumeThresholdMs = fallbackResumeThresholdMs;
+        this.startRebufferProbability = startRebufferProbability;
+        this.resumeRebufferProbability = resumeRebufferProbability;
+        this.minThresholdMs = minThresholdMs;
+        throughputSamplesBps = new long[MAX_SAMPLE_COUNT];
+        sourceBitrates = new HashMap<>();
+    }
+
+    /**
+     * Invoked with each sample of a {@link com.google.android.exoplayer.upstream.BandwidthMeter}.
+     *
+     * @param elapsedMs The duration of the sample.
+     * @param bytes The number of bytes transferred during the sample.
+     */
+    public synchronized void onBandwidthSample(int elapsedMs, long bytes) {
+        if (elapsedMs <= 0) {
+            return;
+        }
+        throughputSamplesBps[nextSampleIndex] = bytes * 8000 / elapsedMs;
+        nextSampleIndex = (nextSampleIndex + 1) % MAX_SAMPLE_COUNT;
+        sampleCount = Math.min(sampleCount + 1, MAX_SAMPLE_COUNT);
+    }
+
+    /**
+     * Invoked when a media chunk has been loaded.
+     *
+     * @param sourceId The id of the source that loaded the chunk, so that the bitrates of sources
+     *     loading in parallel are added up.
+     * @param bitrate The bitrate of the chunk's format.
+     * @param durationMs The duration of the media in the chunk.
+     */
+    public synchronized void onChunkLoaded(int sourceId, int bitrate, int durationMs) {
+        sourceBitrates.put(sourceId, bitrate);
+        chunkDurationMs = Math.max(chunkDurationMs, durationMs);
+    }
+
+    /**
+     * Clears the measurements, for example when the content changes.
+     */
+    public synchronized void reset() {
+        sampleCount = 0;
+        nextSampleIndex = 0;
+        chunkDurationMs = 0;
+        sourceBitrates.clear();
+    }
+
+    /**
+     * Returns the buffered duration required to start playback, including after a seek.
+     */
+    public synchronized int getStartThresholdMs() {
+        return getThresholdMs(startRebufferProbability, fallbackStartThresholdMs);
+    }
+
+    /**
+     * Returns the buffered duration required to resume playback after a rebuffer.
+     */
+    public synchronized int getResumeThresholdMs() {
+        return getThresholdMs(resumeRebufferProbability, fallbackResumeThresholdMs);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "start=" + getStartThresholdMs() + "ms, resume=" + getResumeThresholdMs()
+                + "ms, samples=" + sampleCount;
+    }
+
+    private int getThresholdMs(float rebufferProbability, int fallbackThresholdMs) {
+        long bitrate = 0;
+        for (int sourceBitrate : sourceBitrates.values()) {
+            bitrate += sourceBitrate;
+        }
+        if (sampleCount < MIN_SAMPLE_COUNT || bitrate == 0 || chunkDurationMs == 0) {
+            return fallbackThresholdMs;
+        }
+        // Weighted mean and variance of the time to load a chunk, over the measured throughputs.
+        double weightSum = 0;
+        double loadTimeSum = 0;
+        double loadTimeSquareSum = 0;
+        double weight = 1;
+        for (int age = 0; age < sampleCount; age++) {
+            int index = (nextSampleIndex - 1 - age + MAX_SAMPLE_COUNT) % MAX_SAMPLE_COUNT;
+            double loadTimeMs = (double) chunkDurationMs * bitrate
+                    / Math.max(1, throughputSamplesBps[index]);
+            weightSum += weight;
+            loadTimeSum += weight * loadTimeMs;
+            loadTimeSquareSum += weight * loadTimeMs * loadTimeMs;
+            weight *= SAMPLE_WEIGHT_DECAY;
+        }
+        double meanLoadTimeMs = loadTimeSum / weightSum;
+        if (meanLoadTimeMs >= chunkDurationMs) {
+            return fallbackThresholdMs;
+        }
+        double variance = Math.max(0,
+                loadTimeSquareSum / weightSum - meanLoadTimeMs * meanLoadTimeMs);
+        double deviationMs = Math.sqrt(variance);
+        double z = getStandardNormalQuantile(1 - rebufferProbability);
+        double thresholdMs = 0;
+        for (int k = 1; k <= HORIZON_CHUNK_COUNT; k++) {
+            double requiredMs = k * meanLoadTimeMs + z * deviationMs * Math.sqrt(k)
+                    - (k - 1) * chunkDurationMs;
+            thresholdMs = Math.max(thresholdMs, requiredMs);
+        }
+        return (int) Math.max(minThresholdMs, Math.min(fallbackThresholdMs, thresholdMs));
+    }
+
+    /**
+     * Returns the quantile of the standard normal distribution at {@code p}, to within 5e-4.
+     *
+     * @param p The probability, in (0.5, 1).
+     */
+    /* package */ static double getStandardNormalQuantile(double p) {
+        // Abramowitz and Stegun 26.2.23.
+        double t = Math.sqrt(-2 * Math.log(1 - p));
+        return t - (2.515517 + 0.802853 * t + 0.010328 * t * t)
+                / (1 + 1.432788 * t + 0.189269 * t * t + 0.001308 * t * t * t);
+    }
+
+}
@@ -0,0 +1,330 @@
+package com.android.myexoplayer.player;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import com.google.android.exoplayer.ParserException;
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.DefaultUriDataSource;
+import com.google.android.exoplayer.upstream.HttpDataSource.InvalidResponseCodeException;
+import com.google.android.exoplayer.upstream.UriDataSource;
+import com.google.android.exoplayer.upstream.UriLoadable;
+import com.google.android.exoplayer.util.UriUtil;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Chooses between the alternate {@code BaseURL}s of a DASH manifest for every chunk request.
+ * <p>
+ * ExoPlayer resolves segment URLs against the first {@code BaseURL} of the MPD only. A parser
+ * wrapped by {@link #wrapParser(UriLoadable.Parser)} additionally records all MPD level
+ * {@code BaseURL}s, and {@link #getCandidateUris(Uri)} rewrites a segment URL onto each of them,
+ * ranked by the {@link HostScoreboard}: hosts that are not backing off come first, fastest first,
+ * followed by hosts that have not been measured yet in manifest order. Hosts whose scores are
+ * missing or stale are probed in the background with a one byte request, so that a faster host is
+ * found without sending it real traffic first.
+ */
+public final class CdnSelector implements HedgingDataSource.HedgeUriProvider {
+
+    private static final String TAG = "CdnSelector";
+
+    /**
+     * The chunk size for which the expected load times of hosts are compared.
+     */
+    private static final long TYPICAL_CHUNK_BYTES = 512 * 1024;
+    private static final long STALE_SCORE_MS = 60 * 1000;
+    private static final long PROBE_INTERVAL_MS = 30 * 1000;
+
+    private static final ExecutorService PROBE_EXECUTOR =
+            Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "CdnSelector");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final Context context;
+    private final String userAgent;
+    private final HostScoreboard scoreboard;
+    private final Map<String, Long> lastProbeTimesMs;
+
+    private volatile String manifestUrl;
+    private volatile List<String> baseUrls;
+
+    /**
+     * @param context A context.
+     * @param userAgent The user agent of probes.
+     */
+    public CdnSelector(Context context, String userAgent) {
+        this.context = context;
+        this.userAgent = userAgent;
+        scoreboard = HostScoreboard.getInstance(context);
+        lastProbeTimesMs = new HashMap<>();
+        baseUrls = Collections.emptyList();
+    }
+
+    /**
+     * Returns the scheme and authority of a URL, by which hosts are scored.
+     */
+    public static String getHost(String url) {
+        Uri uri = Uri.parse(url);
+        return uri.getScheme() + "://" + uri.getAuthority();
+    }
+
+    /**
+     * Wraps a manifest parser so that the {@code BaseURL}s of each manifest it parses are recorded.
+     *
+     * @param parser The parser of the manifest.
+     * @return The wrapping parser.
+     */
+    public <T> UriLoadable.Parser<T> wrapParser(final UriLoadable.Parser<T> parser) {
+        return new UriLoadable.Parser<T>() {
+            @Override
+            public T parse(String connectionUrl, InputStream inputStream)
+                    throws ParserException, IOException {
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int bytesRead;
+                while ((bytesRead = inputStream.read(buffer)) != -1) {
+                    output.write(buffer, 0, bytesRead);
+                }
+                byte[] data = output.toByteArray();
+                manifestUrl = connectionUrl;
+                baseUrls = parseBaseUrls(connectionUrl, data);
+                return parser.parse(connectionUrl, new ByteArrayInputStream(data));
+            }
+        };
+    }
+
+    /**
+     * Returns the {@code BaseURL}s of the last parsed manifest.
+     */
+    public List<String> getBaseUrls() {
+        return baseUrls;
+    }
+
+    /**
+     * Returns the URIs from which a chunk may be loaded, best first.
+     *
+     * @param uri The URI of the chunk, as resolved by ExoPlayer or rewritten onto another base URL.
+     * @return The URIs, which contain just {@code uri} if it is not under any base URL.
+     */
+    public List<Uri> getCandidateUris(Uri uri) {
+        List<String> baseUrls = this.baseUrls;
+        String uriString = uri.toString();
+        String matchedBaseUrl = null;
+        for (String baseUrl : baseUrls) {
+            // The longest match wins where one base URL is a prefix of another.
+            if (uriString.startsWith(baseUrl)
+                    && (matchedBaseUrl == null || baseUrl.length() > matchedBaseUrl.length())) {
+                matchedBaseUrl = baseUrl;
+            }
+        }
+        if (baseUrls.size() < 2 || matchedBaseUrl == null) {
+            return Collections.singletonList(uri);
+        }
+        String relativePath = uriString.substring(matchedBaseUrl.length());
+        List<Candidate> candidates = new ArrayList<>();
+        for (int i = 0; i < baseUrls.size(); i++) {
+            String baseUrl = baseUrls.get(i);
+            String host = getHost(baseUrl);
+            Candidate candidate = new Candidate(Uri.parse(baseUrl + relativePath), i,
+                    scoreboard.isHealthy(host), scoreboard.getExpectedLoadTimeMs(host,
+                    TYPICAL_CHUNK_BYTES));
+            candidates.add(candidate);
+            if (candidate.healthy && System.currentTimeMillis()
+                    - scoreboard.getLastUpdateTimeMs(host) > STALE_SCORE_MS) {
+                maybeProbe(host, candidate.uri);
+            }
+        }
+        Collections.sort(candidates);
+        List<Uri> uris = new ArrayList<>(candidates.size());
+        for (Candidate candidate : candidates) {
+            uris.add(candidate.uri);
+        }
+        return uris;
+    }
+
+    /**
+     * Returns the expected time to load a chunk from the fastest healthy host of the last parsed
+     * manifest, or from the manifest's own host if it has no {@code BaseURL}s, as measured by
+     * earlier transfers. Hosts that have only been probed are not counted, since their throughput
+     * is unknown.
+     */
+    @Override
+    public long getExpectedLoadTimeMs(long bytes) {
+        List<String> urls = baseUrls;
+        if (urls.isEmpty()) {
+            String manifestUrl = this.manifestUrl;
+            if (manifestUrl == null) {
+                return -1;
+            }
+            urls = Collections.singletonList(manifestUrl);
+        }
+        long bestLoadTimeMs = -1;
+        for (String url : urls) {
+            String host = getHost(url);
+            if (!scoreboard.isHealthy(host) || scoreboard.getThroughputBps(host) == -1) {
+                continue;
+            }
+            long loadTimeMs = scoreboard.getExpectedLoadTimeMs(host, bytes);
+            if (loadTimeMs != -1 && (bestLoadTimeMs == -1 || loadTimeMs < bestLoadTimeMs)) {
+                bestLoadTimeMs = loadTimeMs;
+            }
+        }
+        return bestLoadTimeMs;
+    }
+
+    @Override
+    public Uri getHedgeUri(Uri uri) {
+        // Hedge onto the best host other than the one the late request went to.
+        String host = getHost(uri.toString());
+        for (Uri candidate : getCandidateUris(uri)) {
+            if (!getHost(candidate.toString()).equals(host)) {
+                return candidate;
+            }
+        }
+        return uri;
+    }
+
+    /**
+     * Records the time to first byte of a chunk request.
+     */
+    public void onFirstByte(Uri uri, long ttfbMs) {
+        scoreboard.onFirstByte(getHost(uri.toString()), ttfbMs);
+    }
+
+    /**
+     * Records the transfer of a chunk.
+     */
+    public void onTransfer(Uri uri, long bytes, long transferMs) {
+        scoreboard.onTransfer(getHost(uri.toString()), bytes, transferMs);
+    }
+
+    /**
+     * Records a failed chunk request.
+     *
+     * @return Whether the request should be retried on another host. Client errors would fail on
+     *     every host, and are not counted against it.
+     */
+    public boolean onError(Uri uri, IOException e) {
+        if (isClientError(e)) {
+            return false;
+        }
+        scoreboard.onError(getHost(uri.toString()));
+        return true;
+    }
+
+    private static boolean isClientError(IOException e) {
+        return e instanceof InvalidResponseCodeException
+                && ((InvalidResponseCodeException) e).responseCode / 100 == 4;
+    }
+
+    private void maybeProbe(final String host, final Uri uri) {
+        long nowMs = System.currentTimeMillis();
+        synchronized (lastProbeTimesMs) {
+            Long lastProbeTimeMs = lastProbeTimesMs.get(host);
+            if (lastProbeTimeMs != null && nowMs - lastProbeTimeMs < PROBE_INTERVAL_MS) {
+                return;
+            }
+            lastProbeTimesMs.put(host, nowMs);
+        }
+        PROBE_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                UriDataSource dataSource = new DefaultUriDataSource(context, userAgent);
+                long startTimeMs = System.currentTimeMillis();
+                try {
+                    dataSource.open(new DataSpec(uri, 0, 1, null));
+                    scoreboard.onFirstByte(host, System.currentTimeMillis() - startTimeMs);
+                } catch (IOException e) {
+                    Log.w(TAG, "Probe failed: " + uri, e);
+                    onError(uri, e);
+                } finally {
+                    try {
+                        dataSource.close();
+                    } catch (IOException e) {
+                        // Ignore.
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the MPD level {@code BaseURL}s of a manifest, resolved against its URL.
+     */
+    private static List<String> parseBaseUrls(String manifestUrl, byte[] data) throws ParserException {
+        List<String> baseUrls = new ArrayList<>();
+        try {
+            XmlPullParser xpp = XmlPullParserFactory.newInstance().newPullParser();
+            xpp.setInput(new ByteArrayInputStream(data), null);
+            int eventType;
+            while ((eventType = xpp.next()) != XmlPullParser.END_DOCUMENT) {
+                if (eventType == XmlPullParser.START_TAG && xpp.getDepth() == 2
+                        && "BaseURL".equals(xpp.getName())) {
+                    baseUrls.add(UriUtil.resolve(manifestUrl, xpp.nextText().trim()));
+                } else if (eventType == XmlPullParser.START_TAG && "Period".equals(xpp.getName())) {
+                    // MPD level BaseURLs precede the periods.
+                    break;
+                }
+            }
+        } catch (XmlPullParserException e) {
+            throw new ParserException(e);
+        } catch (IOException e) {
+            throw new ParserException(e);
+        }
+        return baseUrls;
+    }
+
+    private static final class Candidate implements Comparable<Candidate> {
+
+        public final Uri uri;
+        public final int manifestIndex;
+        public final boolean healthy;
+        public final long expectedLoadTimeMs;
+
+        public Candidate(Uri uri, int manifestIndex, boolean healthy, long expectedLoadTimeMs) {
+            this.uri = uri;
+            this.manifestIndex = manifestIndex;
+            this.healthy = healthy;
+            this.expectedLoadTimeMs = expectedLoadTimeMs;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            if (healthy != other.healthy) {
+                return healthy ? -1 : 1;
+            }
+            boolean measured = expectedLoadTimeMs != -1;
+            boolean otherMeasured = other.expectedLoadTimeMs != -1;
+            if (measured != otherMeasured) {
+                return measured ? -1 : 1;
+            }
+            if (measured && expectedLoadTimeMs != other.expectedLoadTimeMs) {
+                return expectedLoadTimeMs < other.expectedLoadTimeMs ? -1 : 1;
+            }
+            return manifestIndex - other.manifestIndex;
+        }
+
+    }
+
+}
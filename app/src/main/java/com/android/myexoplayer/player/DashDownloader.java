@@ -0,0 +1,314 @@
+package com.android.myexoplayer.player;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.SystemClock;
+
+import com.google.android.exoplayer.C;
+import com.google.android.exoplayer.MediaCodecUtil.DecoderQueryException;
+import com.google.android.exoplayer.dash.DashSegmentIndex;
+import com.google.android.exoplayer.dash.mpd.AdaptationSet;
+import com.google.android.exoplayer.dash.mpd.MediaPresentationDescription;
+import com.google.android.exoplayer.dash.mpd.MediaPresentationDescriptionParser;
+import com.google.android.exoplayer.dash.mpd.Period;
+import com.google.android.exoplayer.dash.mpd.RangedUri;
+import com.google.android.exoplayer.dash.mpd.Representation;
+import com.google.android.exoplayer.dash.mpd.Representation.SingleSegmentRepresentation;
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.DefaultUriDataSource;
+import com.google.android.exoplayer.upstream.HttpDataSource.InvalidResponseCodeException;
+import com.google.android.exoplayer.upstream.UriDataSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Downloads an on demand DASH presentation into an {@link OfflineStore}, for playback by
+ * {@link DashRendererBuilder#DashRendererBuilder(Context, String, OfflineStore)}.
+ * <p>
+ * The representations are chosen by
+ * {@link DashRendererBuilder#selectDownloadRepresentations(Context, TrackRendererFactory, Period,
+ * int)}, and their initialization data and segments are fetched by a bounded pool of workers. A
+ * download that is interrupted, including by process death, is resumed by calling
+ * {@link #download()} again on the same store: committed resources are skipped, and partially
+ * downloaded ones continue from the bytes already on disk.
+ */
+public final class DashDownloader {
+
+    /**
+     * Receives the progress of a download. Called on the worker threads.
+     */
+    public interface Listener {
+
+        /**
+         * Called when a resource has been downloaded.
+         *
+         * @param downloader The downloader.
+         * @param downloadedCount The number of resources downloaded, including earlier attempts.
+         * @param totalCount The number of resources in the download.
+         * @param bytesDownloaded The number of bytes downloaded by this attempt.
+         * @param throughputBps The mean throughput of this attempt in bits per second.
+         */
+        void onProgress(DashDownloader downloader, int downloadedCount, int totalCount,
+                        long bytesDownloaded, long throughputBps);
+
+    }
+
+    public static final int DEFAULT_WORKER_COUNT = 4;
+
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+    private static final int BUFFER_SIZE = 32 * 1024;
+
+    private final Context context;
+    private final String userAgent;
+    private final String manifestUrl;
+    private final OfflineStore store;
+    private final TrackRendererFactory rendererFactory;
+
+    private int workerCount;
+    private int maxVideoBitrate;
+    private Listener listener;
+
+    private volatile boolean canceled;
+    private long startTimeMs;
+    private long bytesDownloaded;
+    private int totalCount;
+
+    /**
+     * @param context A context.
+     * @param userAgent The user agent of requests.
+     * @param manifestUrl The URL of the MPD.
+     * @param store The store to download into.
+     */
+    public DashDownloader(Context context, String userAgent, String manifestUrl,
+                          OfflineStore store) {
+        this(context, userAgent, manifestUrl, store, new MediaCodecTrackRendererFactory());
+    }
+
+    /**
+     * @param rendererFactory The factory of the renderers that will play the download, which selects
+     *     the video representations they support.
+     */
+    public DashDownloader(Context context, String userAgent, String manifestUrl,
+                          OfflineStore store, TrackRendererFactory rendererFactory) {
+        this.context = context;
+        this.userAgent = userAgent;
+        this.manifestUrl = manifestUrl;
+        this.store = store;
+        this.rendererFactory = rendererFactory;
+        workerCount = DEFAULT_WORKER_COUNT;
+        maxVideoBitrate = Integer.MAX_VALUE;
+    }
+
+    public DashDownloader setWorkerCount(int workerCount) {
+        this.workerCount = workerCount;
+        return this;
+    }
+
+    public DashDownloader setMaxVideoBitrate(int maxVideoBitrate) {
+        this.maxVideoBitrate = maxVideoBitrate;
+        return this;
+    }
+
+    public DashDownloader setListener(Listener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Stops a download in progress. The store keeps what was downloaded, and the download may be
+     * resumed by a new call to {@link #download()}.
+     */
+    public void cancel() {
+        canceled = true;
+    }
+
+    /**
+     * Downloads the presentation, blocking until it is complete.
+     *
+     * @throws IOException If a resource failed to download, or the download was canceled.
+     * @throws DecoderQueryException If the device's decoders could not be queried.
+     * @throws InterruptedException If the calling thread is interrupted.
+     */
+    public void download() throws IOException, DecoderQueryException, InterruptedException {
+        canceled = false;
+        synchronized (this) {
+            startTimeMs = SystemClock.elapsedRealtime();
+            bytesDownloaded = 0;
+        }
+
+        // The manifest is stored under its own URL, so that playback loads it from the store too.
+        downloadResource(manifestUrl);
+        MediaPresentationDescription manifest = new MediaPresentationDescriptionParser().parse(
+                manifestUrl, new ByteArrayInputStream(readFile(store.getFile(manifestUrl))));
+        if (manifest.dynamic) {
+            throw new IllegalStateException("Live presentations cannot be downloaded");
+        }
+        Period period = manifest.periods.get(0);
+        for (AdaptationSet adaptationSet : period.adaptationSets) {
+            if (adaptationSet.hasContentProtection()) {
+                throw new IllegalStateException("Protected presentations cannot be downloaded");
+            }
+        }
+
+        List<Representation> representations = DashRendererBuilder.selectDownloadRepresentations(
+                context, rendererFactory, period, maxVideoBitrate);
+        Set<String> representationIds = new HashSet<>();
+        Set<String> uris = new LinkedHashSet<>();
+        for (Representation representation : representations) {
+            representationIds.add(representation.format.id);
+            addResourceUris(representation, uris);
+        }
+        synchronized (this) {
+            totalCount = uris.size() + 1;
+        }
+        store.setMetadata(manifestUrl, representationIds, totalCount);
+
+        ExecutorService executor = Executors.newFixedThreadPool(workerCount);
+        List<Future<Void>> futures = new ArrayList<>();
+        try {
+            for (final String uri : uris) {
+                if (store.contains(uri)) {
+                    continue;
+                }
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        downloadResource(uri);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            canceled = true;
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Adds the URIs of the resources of a representation. Representations that index byte ranges of
+     * a single file are downloaded as the whole file, from which playback then reads the ranges.
+     */
+    private static void addResourceUris(Representation representation, Set<String> uris) {
+        RangedUri initializationUri = representation.getInitializationUri();
+        if (initializationUri != null) {
+            uris.add(initializationUri.getUri().toString());
+        }
+        RangedUri indexUri = representation.getIndexUri();
+        if (indexUri != null) {
+            uris.add(indexUri.getUri().toString());
+        }
+        DashSegmentIndex index = representation.getIndex();
+        if (index == null) {
+            uris.add(((SingleSegmentRepresentation) representation).uri.toString());
+            return;
+        }
+        int firstSegmentNum = index.getFirstSegmentNum();
+        int lastSegmentNum = index.getLastSegmentNum();
+        if (lastSegmentNum < firstSegmentNum) {
+            throw new IllegalStateException("Unbounded segment index: " + representation.format.id);
+        }
+        for (int i = firstSegmentNum; i <= lastSegmentNum; i++) {
+            uris.add(index.getSegmentUrl(i).getUri().toString());
+        }
+    }
+
+    private void downloadResource(String uri) throws IOException {
+        if (store.contains(uri)) {
+            return;
+        }
+        File partialFile = store.getPartialFile(uri);
+        long position = partialFile.length();
+        UriDataSource dataSource = new DefaultUriDataSource(context, userAgent);
+        try {
+            dataSource.open(new DataSpec(Uri.parse(uri), position, C.LENGTH_UNBOUNDED, null));
+            FileOutputStream output = new FileOutputStream(partialFile, true);
+            try {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int bytesRead;
+                while ((bytesRead = dataSource.read(buffer, 0, buffer.length)) != -1) {
+                    if (canceled || Thread.interrupted()) {
+                        throw new InterruptedIOException("Download canceled");
+                    }
+                    output.write(buffer, 0, bytesRead);
+                    onBytesDownloaded(bytesRead);
+                }
+                output.getFD().sync();
+            } finally {
+                output.close();
+            }
+        } catch (InvalidResponseCodeException e) {
+            // The partial file is complete if the process died before committing it.
+            if (position == 0 || e.responseCode != HTTP_RANGE_NOT_SATISFIABLE) {
+                throw e;
+            }
+        } finally {
+            dataSource.close();
+        }
+        store.commit(uri, partialFile);
+        onResourceDownloaded();
+    }
+
+    private synchronized void onBytesDownloaded(int bytes) {
+        bytesDownloaded += bytes;
+    }
+
+    private void onResourceDownloaded() {
+        int downloadedCount;
+        long bytes;
+        long throughputBps;
+        int totalCount;
+        synchronized (this) {
+            downloadedCount = store.getResourceCount();
+            bytes = bytesDownloaded;
+            long elapsedMs = Math.max(1, SystemClock.elapsedRealtime() - startTimeMs);
+            throughputBps = bytes * 8000 / elapsedMs;
+            totalCount = this.totalCount;
+        }
+        if (listener != null && totalCount > 0) {
+            listener.onProgress(this, downloadedCount, totalCount, bytes, throughputBps);
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        FileInputStream input = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < data.length) {
+                int bytesRead = input.read(data, offset, data.length - offset);
+                if (bytesRead == -1) {
+                    throw new IOException("Unexpected end of " + file);
+                }
+                offset += bytesRead;
+            }
+        } finally {
+            input.close();
+        }
+        return data;
+    }
+
+}
@@ -1,16 +1,11 @@
 package com.android.myexoplayer.player;
 
 import android.content.Context;
-import android.media.MediaCodec;
 import android.os.Handler;
 import android.util.Log;
 
 import com.google.android.exoplayer.C;
-import com.google.android.exoplayer.DefaultLoadControl;
-import com.google.android.exoplayer.LoadControl;
-import com.google.android.exoplayer.MediaCodecAudioTrackRenderer;
 import com.google.android.exoplayer.MediaCodecUtil;
-import com.google.android.exoplayer.MediaCodecVideoTrackRenderer;
 import com.google.android.exoplayer.SampleSource;
 import com.google.android.exoplayer.TrackRenderer;
 import com.google.android.exoplayer.audio.AudioCapabilities;
@@ -18,9 +13,7 @@ import com.google.android.exoplayer.chunk.ChunkSampleSource;
 import com.google.android.exoplayer.chunk.ChunkSource;
 import com.google.android.exoplayer.chunk.Format;
 import com.google.android.exoplayer.chunk.FormatEvaluator;
-import com.google.android.exoplayer.chunk.FormatEvaluator.AdaptiveEvaluator;
 import com.google.android.exoplayer.chunk.MultiTrackChunkSource;
-import com.google.android.exoplayer.chunk.VideoFormatSelectorUtil;
 import com.google.android.exoplayer.dash.DashChunkSource;
 import com.google.android.exoplayer.dash.mpd.AdaptationSet;
 import com.google.android.exoplayer.dash.mpd.MediaPresentationDescription;
@@ -36,11 +29,11 @@ import com.google.android.exoplayer.drm.UnsupportedDrmException;
 import com.google.android.exoplayer.text.TextTrackRenderer;
 import com.google.android.exoplayer.text.ttml.TtmlParser;
 import com.google.android.exoplayer.text.webvtt.WebvttParser;
+import com.google.android.exoplayer.upstream.BandwidthMeter;
 import com.google.android.exoplayer.upstream.DataSource;
 import com.google.android.exoplayer.upstream.DefaultAllocator;
 import com.google.android.exoplayer.upstream.DefaultBandwidthMeter;
-import com.google.android.exoplayer.upstream.DefaultUriDataSource;
-import com.google.android.exoplayer.upstream.UriDataSource;
+import com.google.android.exoplayer.upstream.UriLoadable;
 import com.google.android.exoplayer.util.ManifestFetcher;
 import com.google.android.exoplayer.util.Util;
 
@@ -48,6 +41,7 @@ import com.android.myexoplayer.player.DemoPlayer.RendererBuilder;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 
@@ -66,6 +60,15 @@ public class DashRendererBuilder implements RendererBuilder {
     private static final int TEXT_BUFFER_SEGMENTS = 2;
     private static final int LIVE_EDGE_LATENCY_MS = 30000;
 
+    /**
+     * Buffered durations below which the loads of a renderer take priority over the others. Audio
+     * and text chunks are small and an audio underrun stalls playback, so they are given a larger
+     * margin than video, whose loads are long.
+     */
+    private static final int VIDEO_CRITICAL_BUFFER_MS = 2000;
+    private static final int AUDIO_CRITICAL_BUFFER_MS = 8000;
+    private static final int TEXT_CRITICAL_BUFFER_MS = 5000;
+
     private static final int SECURITY_LEVEL_UNKNOWN = -1;
     private static final int SECURITY_LEVEL_1 = 1;
     private static final int SECURITY_LEVEL_3 = 3;
@@ -88,27 +91,182 @@ public class DashRendererBuilder implements RendererBuilder {
     private final String url;
     private final MediaDrmCallback drmCallback;
     private final AudioCapabilities audioCapabilities;
+    private final TrackRendererFactory rendererFactory;
+    private final OfflineStore offlineStore;
 
+    private BandwidthSplitPolicy bandwidthSplitPolicy;
+    private boolean fastStartEnabled;
     private AsyncRendererBuilder currentAsyncBuilder;
 
     public DashRendererBuilder(Context context, String userAgent, String url,
                                MediaDrmCallback drmCallback, AudioCapabilities audioCapabilities) {
+        this(context, userAgent, url, drmCallback, audioCapabilities,
+                new MediaCodecTrackRendererFactory());
+    }
+
+    /**
+     * @param rendererFactory Creates the video and audio renderers.
+     */
+    public DashRendererBuilder(Context context, String userAgent, String url,
+                               MediaDrmCallback drmCallback, AudioCapabilities audioCapabilities,
+                               TrackRendererFactory rendererFactory) {
+        this(context, userAgent, url, drmCallback, audioCapabilities, rendererFactory, null);
+    }
+
+    /**
+     * Creates a builder that plays a download entirely from local storage.
+     *
+     * @param offlineStore The store of a complete download, made by a {@link DashDownloader}.
+     */
+    public DashRendererBuilder(Context context, String userAgent, OfflineStore offlineStore) {
+        this(context, userAgent, offlineStore, new MediaCodecTrackRendererFactory());
+    }
+
+    /**
+     * Creates a builder that plays a download entirely from local storage.
+     *
+     * @param offlineStore The store of a complete download, made by a {@link DashDownloader}.
+     * @param rendererFactory Creates the video and audio renderers.
+     */
+    public DashRendererBuilder(Context context, String userAgent, OfflineStore offlineStore,
+                               TrackRendererFactory rendererFactory) {
+        // Downloads are unprotected and hold a single audio representation, so neither DRM nor
+        // the audio capabilities apply.
+        this(context, userAgent, offlineStore.getManifestUri(), null, null, rendererFactory,
+                offlineStore);
+    }
+
+    private DashRendererBuilder(Context context, String userAgent, String url,
+                                MediaDrmCallback drmCallback, AudioCapabilities audioCapabilities,
+                                TrackRendererFactory rendererFactory, OfflineStore offlineStore) {
         this.context = context;
         this.userAgent = userAgent;
         this.url = url;
         this.drmCallback = drmCallback;
         this.audioCapabilities = audioCapabilities;
+        this.rendererFactory = rendererFactory;
+        this.offlineStore = offlineStore;
+        bandwidthSplitPolicy = new DefaultBandwidthSplitPolicy();
+        fastStartEnabled = true;
+    }
+
+    /**
+     * Sets the policy that splits bandwidth between audio and video. When set, the representations
+     * of the audio adaptation set are also offered as a single track that adapts between them.
+     *
+     * @param bandwidthSplitPolicy The policy, or null to select audio and video independently, with
+     *     audio fixed to the chosen track.
+     * @return This builder.
+     */
+    public DashRendererBuilder setBandwidthSplitPolicy(BandwidthSplitPolicy bandwidthSplitPolicy) {
+        this.bandwidthSplitPolicy = bandwidthSplitPolicy;
+        return this;
+    }
+
+    /**
+     * Sets whether video starts with a {@link FastStartEvaluator}: the first chunk is loaded in a
+     * format that the persisted history of the content's hosts expects to load quickly, or the
+     * lowest, and the format then follows the bandwidth estimate without hysteresis until the buffer
+     * has grown. Enabled by default. Downloads always start with the adaptive evaluator alone.
+     *
+     * @param fastStartEnabled Whether fast start is enabled.
+     * @return This builder.
+     */
+    public DashRendererBuilder setFastStartEnabled(boolean fastStartEnabled) {
+        this.fastStartEnabled = fastStartEnabled;
+        return this;
+    }
+
+    /**
+     * Selects the representations of a period to download for offline playback: of the video
+     * representations that playback would adapt between, in the codec that playback would choose
+     * with {@link VideoCodecSelector}, the one with the highest bitrate not
+     * exceeding {@code maxVideoBitrate}, together with the first audio representation, which
+     * playback enables by default, and every text representation.
+     *
+     * @param context A context.
+     * @param rendererFactory The factory of the renderers that will play the download.
+     * @param period The period.
+     * @param maxVideoBitrate The maximum bitrate of the video representation.
+     * @return The selected representations.
+     * @throws MediaCodecUtil.DecoderQueryException If the device's decoders could not be queried.
+     */
+    public static List<Representation> selectDownloadRepresentations(Context context,
+                                                                     TrackRendererFactory rendererFactory, Period period, int maxVideoBitrate)
+            throws MediaCodecUtil.DecoderQueryException {
+        List<Representation> selected = new ArrayList<>();
+        VideoCodecSelector.Selection codecSelection =
+                VideoCodecSelector.select(context, rendererFactory, period, null);
+        int videoAdaptationSetIndex = codecSelection != null
+                ? codecSelection.adaptationSetIndex : -1;
+        int audioAdaptationSetIndex = period.getAdaptationSetIndex(AdaptationSet.TYPE_AUDIO);
+        for (int i = 0; i < period.adaptationSets.size(); i++) {
+            AdaptationSet adaptationSet = period.adaptationSets.get(i);
+            List<Representation> representations = adaptationSet.representations;
+            if (i == videoAdaptationSetIndex) {
+                int[] indices = rendererFactory.selectVideoFormats(context, representations, false);
+                Representation video = null;
+                for (int index : indices) {
+                    Representation candidate = representations.get(index);
+                    if (video == null || isBetterDownload(candidate.format.bitrate,
+                            video.format.bitrate, maxVideoBitrate)) {
+                        video = candidate;
+                    }
+                }
+                if (video != null) {
+                    selected.add(video);
+                }
+            } else if (i == audioAdaptationSetIndex && !representations.isEmpty()) {
+                selected.add(representations.get(0));
+            } else if (adaptationSet.type == AdaptationSet.TYPE_TEXT) {
+                selected.addAll(representations);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Returns the formats of the selected representations of an adaptation set, in order of
+     * decreasing bitrate.
+     */
+    private static Format[] getFormats(AdaptationSet adaptationSet, int[] representationIndices) {
+        if (adaptationSet == null || representationIndices == null) {
+            return new Format[0];
+        }
+        Format[] formats = new Format[representationIndices.length];
+        for (int i = 0; i < formats.length; i++) {
+            formats[i] = adaptationSet.representations.get(representationIndices[i]).format;
+        }
+        Arrays.sort(formats, new Format.DecreasingBandwidthComparator());
+        return formats;
+    }
+
+    /**
+     * Returns whether a video bitrate is a better download than another: the highest bitrate within
+     * the limit, or failing that the lowest above it.
+     */
+    private static boolean isBetterDownload(int bitrate, int otherBitrate, int maxBitrate) {
+        if ((bitrate <= maxBitrate) != (otherBitrate <= maxBitrate)) {
+            return bitrate <= maxBitrate;
+        }
+        return bitrate <= maxBitrate ? bitrate > otherBitrate : bitrate < otherBitrate;
     }
 
 
     @Override
     public void buildRenderers(DemoPlayer player) {
-
+        currentAsyncBuilder = new AsyncRendererBuilder(context, userAgent, url, drmCallback,
+                audioCapabilities, rendererFactory, offlineStore, bandwidthSplitPolicy,
+                fastStartEnabled, player);
+        currentAsyncBuilder.init();
     }
 
     @Override
     public void cancel() {
-
+        if (currentAsyncBuilder != null) {
+            currentAsyncBuilder.cancel();
+            currentAsyncBuilder = null;
+        }
     }
 
     private static final class AsyncRendererBuilder
@@ -118,23 +276,46 @@ public class DashRendererBuilder implements RendererBuilder {
         private final String userAgent;
         private final MediaDrmCallback drmCallback;
         private final AudioCapabilities audioCapabilities;
+        private final TrackRendererFactory rendererFactory;
+        private final OfflineStore offlineStore;
+        private final BandwidthSplitPolicy bandwidthSplitPolicy;
+        private final boolean fastStartEnabled;
         private final DemoPlayer player;
         private final ManifestFetcher<MediaPresentationDescription> manifestFetcher;
-        private final UriDataSource manifestDataSource;
+        private final ManifestCachingDataSource manifestDataSource;
+        private final CdnSelector cdnSelector;
+        private final ThumbnailIndex.ManifestProperties manifestProperties;
 
         private boolean canceled;
         private MediaPresentationDescription manifest;
         private long elapsedRealtimeOffset;
 
         public AsyncRendererBuilder(Context context, String userAgent, String url,
-                                    MediaDrmCallback drmCallback, AudioCapabilities audioCapabilities, DemoPlayer player) {
+                                    MediaDrmCallback drmCallback, AudioCapabilities audioCapabilities,
+                                    TrackRendererFactory rendererFactory, OfflineStore offlineStore,
+                                    BandwidthSplitPolicy bandwidthSplitPolicy,
+                                    boolean fastStartEnabled, DemoPlayer player) {
             this.context = context;
             this.userAgent = userAgent;
             this.drmCallback = drmCallback;
             this.audioCapabilities = audioCapabilities;
+            this.rendererFactory = rendererFactory;
+            this.offlineStore = offlineStore;
+            this.bandwidthSplitPolicy = bandwidthSplitPolicy;
+            this.fastStartEnabled = fastStartEnabled;
             this.player = player;
-            MediaPresentationDescriptionParser parser = new MediaPresentationDescriptionParser();
-            manifestDataSource = new DefaultUriDataSource(context, userAgent);
+            cdnSelector = new CdnSelector(context, userAgent);
+            manifestProperties = new ThumbnailIndex.ManifestProperties();
+            UriLoadable.Parser<MediaPresentationDescription> parser = manifestProperties.wrapParser(
+                    cdnSelector.wrapParser(new MediaPresentationDescriptionParser()));
+            if (offlineStore == null) {
+                manifestDataSource = RendererBuilderSupport.newManifestDataSource(context, userAgent,
+                        ManifestCachingDataSource.DASH_LIVE_DETECTOR);
+            } else {
+                manifestDataSource = new ManifestCachingDataSource(offlineStore.newDataSource(null), 0,
+                        null);
+                manifestDataSource.disableCaching();
+            }
             manifestFetcher = new ManifestFetcher<>(url, manifestDataSource, parser);
         }
 
@@ -153,6 +334,10 @@ public class DashRendererBuilder implements RendererBuilder {
             }
 
             this.manifest = manifest;
+            player.onManifestLoaded();
+            if (manifest.dynamic) {
+                manifestDataSource.disableCaching();
+            }
             if (manifest.dynamic && manifest.utcTiming != null) {
                 UtcTimingElementResolver.resolveTimingElement(manifestDataSource, manifest.utcTiming,
                         manifestFetcher.getManifestLoadCompleteTimestamp(), this);
@@ -194,11 +379,28 @@ public class DashRendererBuilder implements RendererBuilder {
         private void buildRenderers() {
             Period period = manifest.periods.get(0);
             Handler mainHandler = player.getMainHandler();
-            LoadControl loadControl = new DefaultLoadControl(new DefaultAllocator(BUFFER_SEGMENT_SIZE));
+            PriorityLoadControl loadControl =
+                    new PriorityLoadControl(new DefaultAllocator(BUFFER_SEGMENT_SIZE));
+            player.onLoadControlCreated(loadControl);
             DefaultBandwidthMeter bandwidthMeter = new DefaultBandwidthMeter(mainHandler, player);
 
+            // Choose between the codecs that the manifest offers the video in.
+            VideoCodecSelector.Selection codecSelection;
+            try {
+                codecSelection = VideoCodecSelector.select(context, rendererFactory, period,
+                        offlineStore != null ? offlineStore.getRepresentationIds() : null);
+            } catch (MediaCodecUtil.DecoderQueryException e) {
+                player.onRenderersError(e);
+                return;
+            }
+            if (codecSelection != null) {
+                player.onVideoCodecSelected(codecSelection.mimeType,
+                        codecSelection.hardwareAccelerated, codecSelection.expectedBandwidthSavings);
+            }
+
             boolean hasContentProtection = false;
-            int videoAdaptationSetIndex = period.getAdaptationSetIndex(AdaptationSet.TYPE_VIDEO);
+            int videoAdaptationSetIndex = codecSelection != null
+                    ? codecSelection.adaptationSetIndex : -1;
             int audioAdaptationSetIndex = period.getAdaptationSetIndex(AdaptationSet.TYPE_AUDIO);
             AdaptationSet videoAdaptationSet = null;
             AdaptationSet audioAdaptationSet = null;
@@ -237,51 +439,121 @@ public class DashRendererBuilder implements RendererBuilder {
                 }
             }
 
+            // Preview positions while scrubbing, from the thumbnails that the manifest offers.
+            if (offlineStore == null) {
+                ThumbnailIndex thumbnailIndex = ThumbnailIndex.create(period, manifestProperties,
+                        videoAdaptationSetIndex);
+                if (thumbnailIndex != null) {
+                    player.onThumbnailsAvailable(new ThumbnailCache(context, userAgent,
+                            thumbnailIndex, ThumbnailCache.DEFAULT_MAX_BYTES,
+                            ThumbnailCache.DEFAULT_THUMBNAIL_WIDTH));
+                }
+            }
+
             // Determine which video representations we should use for playback.
             int[] videoRepresentationIndices = null;
             if (videoAdaptationSet != null) {
                 try {
-                    videoRepresentationIndices = VideoFormatSelectorUtil.selectVideoFormatsForDefaultDisplay(
-                            context, videoAdaptationSet.representations, null, filterHdContent);
+                    videoRepresentationIndices = RendererBuilderSupport.selectVideoFormats(context,
+                            rendererFactory, player, videoAdaptationSet.representations,
+                            filterHdContent, offlineStore != null
+                            ? offlineStore.getRepresentationIds() : null);
                 } catch (MediaCodecUtil.DecoderQueryException e) {
                     player.onRenderersError(e);
                     return;
                 }
             }
 
+            // Split the bandwidth between audio and video, if a policy is set.
+            JointBitrateSelector jointBitrateSelector = null;
+            if (bandwidthSplitPolicy != null) {
+                jointBitrateSelector = new JointBitrateSelector(bandwidthMeter, bandwidthSplitPolicy,
+                        getFormats(videoAdaptationSet, videoRepresentationIndices));
+            }
+            BandwidthMeter videoBandwidthMeter = jointBitrateSelector != null
+                    ? jointBitrateSelector.getVideoBandwidthMeter() : bandwidthMeter;
+
             // Build the video renderer.
-            final MediaCodecVideoTrackRenderer videoRenderer;
+            final TrackRenderer videoRenderer;
             if (videoRepresentationIndices == null || videoRepresentationIndices.length == 0) {
                 videoRenderer = null;
             } else {
-                DataSource videoDataSource = new DefaultUriDataSource(context, bandwidthMeter, userAgent);
+                // The segments of the top representations are large enough to be worth splitting
+                // across connections.
+                DataSource videoDataSource;
+                if (offlineStore != null) {
+                    videoDataSource = offlineStore.newDataSource(bandwidthMeter);
+                } else {
+                    ParallelRangeDataSource parallelDataSource = new ParallelRangeDataSource(context,
+                            userAgent, bandwidthMeter);
+                    parallelDataSource.setHedgeUriProvider(cdnSelector);
+                    // Segments around likely seek targets are prefetched through their own
+                    // connection. Prefetches run alongside chunk loads, so they are measured
+                    // apart from the session's bandwidth and do not score hosts.
+                    SeekPrefetchingDataSource seekPrefetcher = new SeekPrefetchingDataSource(
+                            new SegmentIndexCachingDataSource(
+                                    new MultiCdnDataSource(parallelDataSource, cdnSelector),
+                                    SegmentIndexCache.getInstance(context),
+                                    videoAdaptationSet.representations),
+                            new MultiCdnDataSource(RendererBuilderSupport.newChunkDataSource(
+                                    context, new DefaultBandwidthMeter(), userAgent), cdnSelector,
+                                    false),
+                            videoAdaptationSet.representations);
+                    player.onSeekPrefetcherCreated(seekPrefetcher);
+                    videoDataSource = seekPrefetcher;
+                }
+                FormatEvaluator videoEvaluator = fastStartEnabled && offlineStore == null
+                        ? RendererBuilderSupport.newFastStartVideoFormatEvaluator(player,
+                        videoBandwidthMeter, cdnSelector)
+                        : RendererBuilderSupport.newVideoFormatEvaluator(player, videoBandwidthMeter);
                 ChunkSource videoChunkSource = new DashChunkSource(manifestFetcher,
                         videoAdaptationSetIndex, videoRepresentationIndices, videoDataSource,
-                        new AdaptiveEvaluator(bandwidthMeter), LIVE_EDGE_LATENCY_MS, elapsedRealtimeOffset,
+                        videoEvaluator,
+                        LIVE_EDGE_LATENCY_MS, elapsedRealtimeOffset,
                         mainHandler, player);
                 ChunkSampleSource videoSampleSource = new ChunkSampleSource(videoChunkSource, loadControl,
                         VIDEO_BUFFER_SEGMENTS * BUFFER_SEGMENT_SIZE, mainHandler, player,
                         DemoPlayer.TYPE_VIDEO);
-                videoRenderer = new MediaCodecVideoTrackRenderer(videoSampleSource, drmSessionManager, true,
-                        MediaCodec.VIDEO_SCALING_MODE_SCALE_TO_FIT, 5000, null, mainHandler, player, 50);
+                loadControl.setBufferTarget(videoSampleSource, VIDEO_CRITICAL_BUFFER_MS,
+                        PriorityLoadControl.DEFAULT_LOW_WATERMARK_MS,
+                        PriorityLoadControl.DEFAULT_HIGH_WATERMARK_MS);
+                videoRenderer = rendererFactory.createVideoRenderer(videoSampleSource, drmSessionManager,
+                        mainHandler, player);
             }
 
             // Build the audio chunk sources.
             List<ChunkSource> audioChunkSourceList = new ArrayList<>();
             List<String> audioTrackNameList = new ArrayList<>();
             if (audioAdaptationSet != null) {
-                DataSource audioDataSource = new DefaultUriDataSource(context, bandwidthMeter, userAgent);
+                DataSource audioDataSource;
+                if (offlineStore != null) {
+                    audioDataSource = offlineStore.newDataSource(bandwidthMeter);
+                } else {
+                    HedgingDataSource hedgingDataSource = new HedgingDataSource(context, userAgent,
+                            bandwidthMeter);
+                    hedgingDataSource.setHedgeUriProvider(cdnSelector);
+                    audioDataSource = new SegmentIndexCachingDataSource(
+                            new MultiCdnDataSource(hedgingDataSource, cdnSelector),
+                            SegmentIndexCache.getInstance(context),
+                            audioAdaptationSet.representations);
+                }
                 FormatEvaluator audioEvaluator = new FormatEvaluator.FixedEvaluator();
                 List<Representation> audioRepresentations = audioAdaptationSet.representations;
                 List<String> codecs = new ArrayList<>();
+                List<Integer> audioRepresentationIndexList = new ArrayList<>();
                 for (int i = 0; i < audioRepresentations.size(); i++) {
+                    if (!isAvailable(audioRepresentations.get(i))) {
+                        continue;
+                    }
                     Format format = audioRepresentations.get(i).format;
                     audioTrackNameList.add(format.id + " (" + format.numChannels + "ch, " +
                             format.audioSamplingRate + "Hz)");
                     audioChunkSourceList.add(new DashChunkSource(manifestFetcher, audioAdaptationSetIndex,
-                            new int[] {i}, audioDataSource, audioEvaluator, LIVE_EDGE_LATENCY_MS,
-                            elapsedRealtimeOffset, mainHandler, player));
+                            new int[] {i}, audioDataSource, jointBitrateSelector != null
+                            ? jointBitrateSelector.newFixedAudioEvaluator() : audioEvaluator,
+                            LIVE_EDGE_LATENCY_MS, elapsedRealtimeOffset, mainHandler, player));
                     codecs.add(format.codecs);
+                    audioRepresentationIndexList.add(i);
                 }
 
                 if (audioCapabilities != null) {
@@ -294,15 +566,45 @@ public class DashRendererBuilder implements RendererBuilder {
                             continue;
                         }
 
-                        for (int j = audioRepresentations.size() - 1; j >= 0; j--) {
-                            if (!audioRepresentations.get(j).format.codecs.equals(codec)) {
+                        // The lists hold only the available representations, so index them by
+                        // position in the lists rather than in the adaptation set.
+                        for (int j = audioRepresentationIndexList.size() - 1; j >= 0; j--) {
+                            Representation representation =
+                                    audioRepresentations.get(audioRepresentationIndexList.get(j));
+                            if (!codec.equals(representation.format.codecs)) {
                                 audioTrackNameList.remove(j);
                                 audioChunkSourceList.remove(j);
+                                audioRepresentationIndexList.remove(j);
                             }
                         }
                         break;
                     }
                 }
+
+                // Offer the remaining representations of the first track's codec as a default
+                // track that steps audio down when video is short of bandwidth.
+                if (jointBitrateSelector != null && audioRepresentationIndexList.size() > 1) {
+                    String codec = audioRepresentations.get(audioRepresentationIndexList.get(0))
+                            .format.codecs;
+                    List<Integer> adaptiveIndexList = new ArrayList<>();
+                    for (int index : audioRepresentationIndexList) {
+                        String otherCodec = audioRepresentations.get(index).format.codecs;
+                        if (codec == null ? otherCodec == null : codec.equals(otherCodec)) {
+                            adaptiveIndexList.add(index);
+                        }
+                    }
+                    if (adaptiveIndexList.size() > 1) {
+                        int[] adaptiveIndices = new int[adaptiveIndexList.size()];
+                        for (int i = 0; i < adaptiveIndices.length; i++) {
+                            adaptiveIndices[i] = adaptiveIndexList.get(i);
+                        }
+                        audioTrackNameList.add(0, "auto (" + adaptiveIndices.length + " bitrates)");
+                        audioChunkSourceList.add(0, new DashChunkSource(manifestFetcher,
+                                audioAdaptationSetIndex, adaptiveIndices, audioDataSource,
+                                jointBitrateSelector.newAdaptiveAudioEvaluator(), LIVE_EDGE_LATENCY_MS,
+                                elapsedRealtimeOffset, mainHandler, player));
+                    }
+                }
             }
 
             // Build the audio renderer.
@@ -320,12 +622,19 @@ public class DashRendererBuilder implements RendererBuilder {
                 SampleSource audioSampleSource = new ChunkSampleSource(audioChunkSource, loadControl,
                         AUDIO_BUFFER_SEGMENTS * BUFFER_SEGMENT_SIZE, mainHandler, player,
                         DemoPlayer.TYPE_AUDIO);
-                audioRenderer = new MediaCodecAudioTrackRenderer(audioSampleSource, drmSessionManager, true,
+                loadControl.setBufferTarget(audioSampleSource, AUDIO_CRITICAL_BUFFER_MS,
+                        PriorityLoadControl.DEFAULT_LOW_WATERMARK_MS,
+                        PriorityLoadControl.DEFAULT_HIGH_WATERMARK_MS);
+                audioRenderer = rendererFactory.createAudioRenderer(audioSampleSource, drmSessionManager,
                         mainHandler, player);
             }
 
             // Build the text chunk sources.
-            DataSource textDataSource = new DefaultUriDataSource(context, bandwidthMeter, userAgent);
+            DataSource textDataSource = offlineStore != null
+                    ? offlineStore.newDataSource(bandwidthMeter)
+                    : new MultiCdnDataSource(
+                    RendererBuilderSupport.newChunkDataSource(context, bandwidthMeter, userAgent),
+                    cdnSelector);
             FormatEvaluator textEvaluator = new FormatEvaluator.FixedEvaluator();
             List<ChunkSource> textChunkSourceList = new ArrayList<>();
             List<String> textTrackNameList = new ArrayList<>();
@@ -335,6 +644,9 @@ public class DashRendererBuilder implements RendererBuilder {
                     List<Representation> representations = adaptationSet.representations;
                     for (int j = 0; j < representations.size(); j++) {
                         Representation representation = representations.get(j);
+                        if (!isAvailable(representation)) {
+                            continue;
+                        }
                         textTrackNameList.add(representation.format.id);
                         textChunkSourceList.add(new DashChunkSource(manifestFetcher, i, new int[] {j},
                                 textDataSource, textEvaluator, LIVE_EDGE_LATENCY_MS, elapsedRealtimeOffset,
@@ -358,6 +670,9 @@ public class DashRendererBuilder implements RendererBuilder {
                 SampleSource textSampleSource = new ChunkSampleSource(textChunkSource, loadControl,
                         TEXT_BUFFER_SEGMENTS * BUFFER_SEGMENT_SIZE, mainHandler, player,
                         DemoPlayer.TYPE_TEXT);
+                loadControl.setBufferTarget(textSampleSource, TEXT_CRITICAL_BUFFER_MS,
+                        PriorityLoadControl.DEFAULT_LOW_WATERMARK_MS,
+                        PriorityLoadControl.DEFAULT_HIGH_WATERMARK_MS);
                 textRenderer = new TextTrackRenderer(textSampleSource, player, mainHandler.getLooper(),
                         new TtmlParser(), new WebvttParser());
             }
@@ -379,6 +694,14 @@ public class DashRendererBuilder implements RendererBuilder {
             player.onRenderers(trackNames, multiTrackChunkSources, renderers, bandwidthMeter);
         }
 
+        /**
+         * Returns whether a representation can be played, i.e. it was downloaded if playing offline.
+         */
+        private boolean isAvailable(Representation representation) {
+            return offlineStore == null
+                    || offlineStore.getRepresentationIds().contains(representation.format.id);
+        }
+
         private static int getWidevineSecurityLevel(StreamingDrmSessionManager sessionManager) {
             String securityLevelProperty = sessionManager.getPropertyString("securityLevel");
             return securityLevelProperty.equals("L1") ? SECURITY_LEVEL_1 : securityLevelProperty
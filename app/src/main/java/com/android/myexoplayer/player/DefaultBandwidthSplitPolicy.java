@@ -0,0 +1,71 @@
+package com.android.myexoplayer.player;
+
+import com.google.android.exoplayer.chunk.Format;
+
+/**
+ * A {@link BandwidthSplitPolicy} that gives audio the highest bitrate that still leaves video
+ * above its floor.
+ * <p>
+ * The floor is the video format a number of steps above the lowest. When the bandwidth left after
+ * audio could not sustain it, audio steps down, to its lowest format if necessary, before video is
+ * pushed to its lowest format. Audio only steps up once the bandwidth left exceeds the floor by a
+ * margin, so that it does not oscillate around the threshold.
+ */
+public final class DefaultBandwidthSplitPolicy implements BandwidthSplitPolicy {
+
+    /**
+     * The fraction of the bandwidth estimate that is considered available, matching the
+     * {@link com.google.android.exoplayer.chunk.FormatEvaluator.AdaptiveEvaluator}.
+     */
+    public static final float DEFAULT_BANDWIDTH_FRACTION = 0.75f;
+    public static final int DEFAULT_VIDEO_FLOOR_STEPS = 1;
+    public static final float DEFAULT_UP_SWITCH_MARGIN = 1.25f;
+
+    private final float bandwidthFraction;
+    private final int videoFloorSteps;
+    private final float upSwitchMargin;
+
+    public DefaultBandwidthSplitPolicy() {
+        this(DEFAULT_BANDWIDTH_FRACTION, DEFAULT_VIDEO_FLOOR_STEPS, DEFAULT_UP_SWITCH_MARGIN);
+    }
+
+    /**
+     * @param bandwidthFraction The fraction of the bandwidth estimate that is considered available.
+     * @param videoFloorSteps The number of steps above the lowest video format that audio should
+     *     leave bandwidth for.
+     * @param upSwitchMargin The factor by which the bandwidth left for video must exceed the floor
+     *     for audio to step up.
+     */
+    public DefaultBandwidthSplitPolicy(float bandwidthFraction, int videoFloorSteps,
+                                       float upSwitchMargin) {
+        this.bandwidthFraction = bandwidthFraction;
+        this.videoFloorSteps = videoFloorSteps;
+        this.upSwitchMargin = upSwitchMargin;
+    }
+
+    @Override
+    public Format selectAudioFormat(long bitrateEstimate, Format[] audioFormats,
+                                    Format[] videoFormats, Format currentAudioFormat) {
+        long videoFloorBitrate = getVideoFloorBitrate(videoFormats);
+        for (Format audioFormat : audioFormats) {
+            long videoBitrate = (long) ((bitrateEstimate - audioFormat.bitrate) * bandwidthFraction);
+            boolean isUpSwitch = currentAudioFormat != null
+                    && audioFormat.bitrate > currentAudioFormat.bitrate;
+            long requiredVideoBitrate = isUpSwitch
+                    ? (long) (videoFloorBitrate * upSwitchMargin) : videoFloorBitrate;
+            if (videoBitrate >= requiredVideoBitrate) {
+                return audioFormat;
+            }
+        }
+        return audioFormats[audioFormats.length - 1];
+    }
+
+    private long getVideoFloorBitrate(Format[] videoFormats) {
+        if (videoFormats.length == 0) {
+            return 0;
+        }
+        int floorIndex = Math.max(0, videoFormats.length - 1 - videoFloorSteps);
+        return videoFormats[floorIndex].bitrate;
+    }
+
+}
@@ -4,11 +4,14 @@ package com.android.myexoplayer.player;
  * Created by Nirajan on 9/11/2015.
  */
 
+import android.graphics.Bitmap;
 import android.media.MediaCodec.CryptoException;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.view.Surface;
 
+import com.android.myexoplayer.replay.SessionRecorder;
 import com.google.android.exoplayer.CodecCounters;
 import com.google.android.exoplayer.DummyTrackRenderer;
 import com.google.android.exoplayer.ExoPlaybackException;
@@ -20,6 +23,7 @@ import com.google.android.exoplayer.MediaCodecVideoTrackRenderer;
 import com.google.android.exoplayer.TimeRange;
 import com.google.android.exoplayer.TrackRenderer;
 import com.google.android.exoplayer.audio.AudioTrack;
+import com.google.android.exoplayer.chunk.Chunk;
 import com.google.android.exoplayer.chunk.ChunkSampleSource;
 import com.google.android.exoplayer.chunk.Format;
 import com.google.android.exoplayer.chunk.MultiTrackChunkSource;
@@ -35,6 +39,7 @@ import com.google.android.exoplayer.util.DebugTextViewHelper;
 import com.google.android.exoplayer.util.PlayerControl;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -84,6 +89,18 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
         void cancel();
     }
 
+    /**
+     * Interface to create the player of the next item of a playlist
+     */
+    public interface NextPlayerFactory{
+        /**
+         * Creates the player of the next item, which the current player then prepares
+         *
+         * @return A player that has not been prepared, or null if there is no next item.
+         */
+        DemoPlayer createNextPlayer();
+    }
+
     /**
      * Interface for listener to core events.
      */
@@ -127,6 +144,8 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
         void onDecoderInitialized(String decoderName, long elapsedRealtimeMs,
                                   long initializationDurationMs);
         void onSeekRangeChanged(TimeRange seekRange);
+        void onVideoCodecSelected(String mimeType, boolean hardwareAccelerated,
+                                  float expectedBandwidthSavings);
     }
 
     /**
@@ -143,6 +162,13 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
         void onId3Metadata(Map<String, Object> metadata);
     }
 
+    /**
+     * Interface for listener to startup timing of a playback session
+     */
+    public interface StartupListener{
+        void onStartupCompleted(StartupTimeline timeline);
+    }
+
 
     // Constants representing different states of the Player
 
@@ -189,6 +215,35 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
      * and not due to a user action such as starting playback or seeking).
      */
     public static final int MIN_REBUFFERS_COUNT = 5000;
+    /**
+     * Offsets from the playback position of the positions that are prefetched as likely seek
+     * targets, e.g. of skip forward and back controls
+     */
+    private static final long[] SEEK_TARGET_OFFSETS_MS = new long[] {10000, -10000};
+    /**
+     * Remaining duration of the media at which the next item of a playlist starts preloading
+     */
+    private static final int PRELOAD_LOOKAHEAD_MS = 30000;
+    /**
+     * Interval at which the remaining duration is checked while the next item waits to preload
+     */
+    private static final int PRELOAD_CHECK_INTERVAL_MS = 1000;
+    /**
+     * Duration that a preloading item buffers beyond the {@link #MIN_BUFFERS_COUNT} it needs to
+     * start
+     */
+    private static final int PRELOAD_BUFFER_MARGIN_MS = 2000;
+
+    // Seek modes
+    /**
+     * Seeks to the exact position requested
+     */
+    public static final int SEEK_MODE_EXACT = 0;
+    /**
+     * Seeks to the segment boundary nearest the position requested, preferring one inside the
+     * buffer, where precision is not needed
+     */
+    public static final int SEEK_MODE_FAST = 1;
 
     // Index of Media Tracks associated with the player
     public static final int TYPE_VIDEO = 0;
@@ -256,6 +311,10 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
      * Codec event counts, for debugging purposes only
      */
     private CodecCounters codecCounters;
+    /**
+     * Per-frame render timing of the video renderer
+     */
+    private final FrameTimingStats frameTimingStats;
 
 
     /**
@@ -284,6 +343,94 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
      * Represents the video that is in background state, and is to be restored
      */
     private int videoTrackToRestore;
+    /**
+     * Time at which playback was requested, or {@link StartupTimeline#UNSET} to use the time of
+     * {@link #prepare()}
+     */
+    private long startupOriginMs;
+    /**
+     * Startup timing of the current session
+     */
+    private StartupTimeline startupTimeline;
+    /**
+     * Records the network-observable inputs of the session, if set
+     */
+    private SessionRecorder sessionRecorder;
+    /**
+     * Restricts the video formats to those that the viewport can show, if the renderer builder
+     * adapts between video formats
+     */
+    private ViewportFormatEvaluator viewportFormatEvaluator;
+    /**
+     * Size of the view that shows the video, or 0 if unknown
+     */
+    private int viewportWidth;
+    private int viewportHeight;
+    /**
+     * Serves previews while scrubbing, if the renderer builder found thumbnails in the manifest
+     */
+    private ThumbnailCache thumbnailCache;
+    /**
+     * Whether the user is scrubbing, and the position scrubbed to, which is only sought to once
+     * scrubbing stops
+     */
+    private boolean scrubbing;
+    private long scrubPositionMs;
+    /**
+     * How seeks are made, one of the {@code SEEK_MODE} constants
+     */
+    private int seekMode;
+    /**
+     * Prefetches the segments around likely seek targets and knows the segment boundaries, if the
+     * renderer builder supports it
+     */
+    private SeekPrefetchingDataSource seekPrefetcher;
+    /**
+     * Positions of the chapters of the media, which are likely seek targets
+     */
+    private long[] chapterPositionsMs;
+    /**
+     * Whether the seek targets around the playback position are to be prefetched with the next
+     * video chunk, which is the case once after each prepare and seek, and the index of the next
+     * chapter when they last were, so that they are prefetched again when it changes
+     */
+    private boolean seekTargetsPending;
+    private int prefetchedChapterIndex;
+    /**
+     * The position that playback has continued from since the last seek. Positions between it and
+     * the playback position were played recently and are not prefetched again
+     */
+    private long playedFromMs;
+    /**
+     * Seek-to-play latency, and the pending seek being measured, if any
+     */
+    private final SeekStats seekStats;
+    private long seekStartTimeMs;
+    private boolean seekInBuffer;
+    private boolean seekSnapped;
+    /**
+     * Whether a seek has been made that the {@link ExoPlayer} has not yet become ready after, so
+     * that buffering meanwhile is not taken for a rebuffer
+     */
+    private boolean seekProcessing;
+    /**
+     * Creates the player of the next item of a playlist once it is to be prepared, or null if it
+     * has been created or there is no next item
+     */
+    private NextPlayerFactory nextPlayerFactory;
+    /**
+     * The player of the next item of a playlist, which is created and prepared near the end of
+     * this one
+     */
+    private DemoPlayer nextPlayer;
+    private final Runnable preloadCheckRunnable;
+    /**
+     * Whether this player is itself the next item of a playlist and not yet taken, in which case
+     * its buffer is capped at what it needs to start, through the load control of its renderers
+     * if the renderer builder supports it
+     */
+    private boolean preloading;
+    private PriorityLoadControl loadControl;
 
 
     // Interface implementations
@@ -291,17 +438,31 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
     private Id3MetadataListener id3MetadataListener;
     private InternalErrorListener internalErrorListener;
     private InfoListener infoListener;
+    private StartupListener startupListener;
 
     /**
      * Constructor for DemoPlayer class
      * @param rendererBuilder RendererBuilder for the player
      */
     public DemoPlayer(RendererBuilder rendererBuilder) {
+        this(rendererBuilder,
+                ExoPlayer.Factory.newInstance(RENDERER_COUNT, MIN_BUFFERS_COUNT, MIN_REBUFFERS_COUNT),
+                new Handler());
+    }
+
+    /**
+     * Constructor for DemoPlayer class, with the {@link ExoPlayer} and main {@link Handler}
+     * supplied by the caller so that the event paths can be exercised off the main looper
+     * @param rendererBuilder RendererBuilder for the player
+     * @param player The player to wrap
+     * @param mainHandler Handler on which renderer and source events are delivered
+     */
+    /* package */ DemoPlayer(RendererBuilder rendererBuilder, ExoPlayer player, Handler mainHandler) {
         this.rendererBuilder = rendererBuilder;
-        player = ExoPlayer.Factory.newInstance(RENDERER_COUNT, MIN_BUFFERS_COUNT, MIN_REBUFFERS_COUNT);
+        this.player = player;
         player.addListener(this);
-        playerControl = new PlayerControl(player);
-        mainHandler = new Handler();
+        playerControl = new ScrubbingPlayerControl(player);
+        this.mainHandler = mainHandler;
         listeners = new CopyOnWriteArrayList<>();
         lastReportedPlaybackState = STATE_IDLE;
         rendererBuildingState = RENDERER_BUILDING_STATE_IDLE;
@@ -309,6 +470,18 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
         selectedTracks = new int[RENDERER_COUNT];
         // Disable text initially
         selectedTracks[TYPE_TEXT] = DISABLED_TRACK;
+        startupOriginMs = StartupTimeline.UNSET;
+        frameTimingStats = new FrameTimingStats();
+        seekMode = SEEK_MODE_EXACT;
+        chapterPositionsMs = new long[0];
+        seekStats = new SeekStats();
+        seekStartTimeMs = -1;
+        preloadCheckRunnable = new Runnable() {
+            @Override
+            public void run() {
+                maybePreloadNextPlayer();
+            }
+        };
     }
 
     /**
@@ -374,6 +547,127 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
         id3MetadataListener = listener;
     }
 
+    /**
+     * Sets the {@link SessionRecorder} to which chunk loads, bandwidth samples, seeks and state
+     * changes are reported
+     *
+     * @param sessionRecorder The recorder, or null to stop recording
+     */
+    public void setSessionRecorder(SessionRecorder sessionRecorder) {
+        this.sessionRecorder = sessionRecorder;
+    }
+
+    /**
+     * Sets the {@link com.android.myexoplayer.player.DemoPlayer.StartupListener} interface
+     *
+     * @param listener
+     */
+    public void setStartupListener(StartupListener listener) {
+        startupListener = listener;
+    }
+
+    /**
+     * Returns the per-frame render timing of the video renderer. {@link RendererBuilder}s should
+     * pass this to their {@link MediaCodecVideoTrackRenderer} as its frame release time helper.
+     *
+     * @return frameTimingStats
+     */
+    public FrameTimingStats getFrameTimingStats() {
+        return frameTimingStats;
+    }
+
+    /**
+     * Returns the seek-to-play latency of the player.
+     *
+     * @return seekStats
+     */
+    public SeekStats getSeekStats() {
+        return seekStats;
+    }
+
+    /**
+     * Sets how seeks are made. {@link #SEEK_MODE_FAST} is only effective if the
+     * {@link RendererBuilder} knows the segment boundaries of the video.
+     *
+     * @param seekMode One of the {@code SEEK_MODE} constants.
+     */
+    public void setSeekMode(int seekMode) {
+        this.seekMode = seekMode;
+    }
+
+    /**
+     * Sets the positions of the chapters of the media, whose segments are prefetched as likely
+     * seek targets.
+     *
+     * @param chapterPositionsMs The positions, in ascending order.
+     */
+    public void setChapterPositions(long[] chapterPositionsMs) {
+        this.chapterPositionsMs = chapterPositionsMs;
+    }
+
+    /**
+     * Sets the factory of the player of the next item of a playlist. The next player is created
+     * and prepared in the background only once this player nears the end of its media, or is
+     * buffered to the end, so that the next item can start without delay. Until it is taken, the
+     * next player buffers only what it needs to start and does not load thumbnails. A previously
+     * created next player is released.
+     *
+     * @param nextPlayerFactory The factory of the next player, or null if there is no next item.
+     */
+    public void setNextPlayerFactory(NextPlayerFactory nextPlayerFactory) {
+        if (nextPlayer != null) {
+            nextPlayer.release();
+            nextPlayer = null;
+        }
+        this.nextPlayerFactory = nextPlayerFactory;
+        mainHandler.removeCallbacks(preloadCheckRunnable);
+        if (nextPlayerFactory != null) {
+            mainHandler.post(preloadCheckRunnable);
+        }
+    }
+
+    /**
+     * Takes the player of the next item of the playlist, e.g. once this player has ended, lifting
+     * its preload limits.
+     *
+     * @return The next player, or null if it has not been created yet or there is no next item.
+     */
+    public DemoPlayer takeNextPlayer() {
+        mainHandler.removeCallbacks(preloadCheckRunnable);
+        nextPlayerFactory = null;
+        DemoPlayer next = nextPlayer;
+        nextPlayer = null;
+        if (next != null) {
+            next.preloading = false;
+            if (next.loadControl != null) {
+                next.loadControl.setMaxBufferedDurationMs(0);
+            }
+            if (next.thumbnailCache != null) {
+                next.thumbnailCache.start();
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Sets the time at which playback was requested, from which the next {@link #prepare()} call
+     * measures its {@link StartupTimeline}. If not set, the time of {@link #prepare()} is used.
+     *
+     * @param elapsedRealtimeMs The {@link android.os.SystemClock#elapsedRealtime()} of the request.
+     */
+    public void setStartupOrigin(long elapsedRealtimeMs) {
+        startupOriginMs = elapsedRealtimeMs;
+    }
+
+    /**
+     * Returns the startup timing of the current session
+     *
+     * @return The timeline, or null if the player has not been prepared.
+     */
+    public StartupTimeline getStartupTimeline() {
+        return startupTimeline;
+    }
+
     /**
      * Sets the {@link Surface} associated with the player
      *
@@ -393,6 +687,22 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
         return surface;
     }
 
+    /**
+     * Sets the size of the view that shows the video, so that the video formats adapted between
+     * are restricted to those it can show. May be called whenever the view is resized, including
+     * before the renderers are built.
+     *
+     * @param width The width of the view in pixels, or 0 if it is unknown.
+     * @param height The height of the view in pixels, or 0 if it is unknown.
+     */
+    public void setViewportSize(int width, int height) {
+        viewportWidth = width;
+        viewportHeight = height;
+        if (viewportFormatEvaluator != null) {
+            viewportFormatEvaluator.setViewportSize(width, height);
+        }
+    }
+
     /**
      * Clears the {@link Surface} associated with the player
      */
@@ -478,6 +788,20 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
         videoFormat = null;
         videoRenderer = null;
         multiTrackSources = null;
+        startupTimeline = new StartupTimeline(startupOriginMs != StartupTimeline.UNSET
+                ? startupOriginMs : SystemClock.elapsedRealtime());
+        startupOriginMs = StartupTimeline.UNSET;
+        startupTimeline.mark(StartupTimeline.PHASE_PREPARE);
+        frameTimingStats.reset();
+        if (seekPrefetcher != null) {
+            seekPrefetcher.release();
+            seekPrefetcher = null;
+        }
+        seekStartTimeMs = -1;
+        seekProcessing = false;
+        seekTargetsPending = true;
+        prefetchedChapterIndex = -1;
+        loadControl = null;
         rendererBuildingState = RENDERER_BUILDING_STATE_BUILDING;
         maybeReportPlayerState();
         rendererBuilder.buildRenderers(this);
@@ -530,6 +854,84 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
         pushTrackSelection(TYPE_TEXT, true);
         player.prepare(renderers);
         rendererBuildingState = RENDERER_BUILDING_STATE_BUILT;
+        markStartupPhase(StartupTimeline.PHASE_RENDERERS_BUILT);
+    }
+
+    /**
+     * Invoked by a {@link RendererBuilder} once its manifest has been loaded.
+     */
+    /* package */ void onManifestLoaded() {
+        markStartupPhase(StartupTimeline.PHASE_MANIFEST_LOADED);
+    }
+
+    /**
+     * Invoked by a {@link RendererBuilder} with the video formats between which the video
+     * renderer can adapt.
+     */
+    /* package */ void onVideoFormatsSelected(Format[] formats) {
+        if (sessionRecorder != null) {
+            sessionRecorder.recordVideoFormats(formats);
+        }
+    }
+
+    /**
+     * Invoked by a {@link RendererBuilder} once it has chosen the codec of the video, where the
+     * manifest offers several.
+     *
+     * @param mimeType The MIME type of the codec.
+     * @param hardwareAccelerated Whether the codec is decoded in hardware.
+     * @param expectedBandwidthSavings The expected fraction of bandwidth saved relative to the
+     *     default choice.
+     */
+    /* package */ void onVideoCodecSelected(String mimeType, boolean hardwareAccelerated,
+                                            float expectedBandwidthSavings) {
+        if (infoListener != null) {
+            infoListener.onVideoCodecSelected(mimeType, hardwareAccelerated,
+                    expectedBandwidthSavings);
+        }
+    }
+
+    /**
+     * Invoked by a {@link RendererBuilder} with the evaluator that adapts between its video formats,
+     * which follows the viewport size from then on.
+     */
+    /* package */ void onVideoFormatEvaluatorCreated(ViewportFormatEvaluator evaluator) {
+        viewportFormatEvaluator = evaluator;
+        evaluator.setViewportSize(viewportWidth, viewportHeight);
+    }
+
+    /**
+     * Invoked by a {@link RendererBuilder} that found thumbnails in the manifest, which are loaded
+     * from then on to preview positions while scrubbing.
+     */
+    /* package */ void onThumbnailsAvailable(ThumbnailCache cache) {
+        if (thumbnailCache != null) {
+            thumbnailCache.release();
+        }
+        thumbnailCache = cache;
+        if (!preloading) {
+            cache.start();
+        }
+    }
+
+    /**
+     * Invoked by a {@link RendererBuilder} with the load control of its renderers, through which
+     * the buffer of a preloading player is capped.
+     */
+    /* package */ void onLoadControlCreated(PriorityLoadControl loadControl) {
+        this.loadControl = loadControl;
+        updatePreloadBufferLimit();
+    }
+
+    /**
+     * Invoked by a {@link RendererBuilder} with the data source of its video chunks, if it can
+     * prefetch segments around likely seek targets, which it does from then on.
+     */
+    /* package */ void onSeekPrefetcherCreated(SeekPrefetchingDataSource prefetcher) {
+        if (seekPrefetcher != null) {
+            seekPrefetcher.release();
+        }
+        seekPrefetcher = prefetcher;
     }
 
     /**
@@ -565,7 +967,212 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
      * @param positionMs
      */
     public void seekTo(long positionMs) {
-        player.seekTo(positionMs);
+        long currentPositionMs = player.getCurrentPosition();
+        long bufferedPositionMs = player.getBufferedPosition();
+        long targetMs = seekMode == SEEK_MODE_FAST
+                ? getFastSeekPositionMs(positionMs, currentPositionMs, bufferedPositionMs)
+                : positionMs;
+        boolean inBuffer = isInBuffer(targetMs, currentPositionMs, bufferedPositionMs);
+        if (sessionRecorder != null) {
+            sessionRecorder.recordSeek(targetMs);
+        }
+        if (rendererBuildingState == RENDERER_BUILDING_STATE_BUILT) {
+            seekStartTimeMs = SystemClock.elapsedRealtime();
+            seekInBuffer = inBuffer;
+            seekSnapped = targetMs != positionMs;
+        }
+        player.seekTo(targetMs);
+        seekProcessing = true;
+        seekTargetsPending = true;
+        playedFromMs = targetMs;
+    }
+
+    /**
+     * Returns the segment boundary of the current video format nearest a position, preferring
+     * those inside the buffer, or the position itself if the boundaries are unknown.
+     */
+    private long getFastSeekPositionMs(long positionMs, long currentPositionMs,
+                                       long bufferedPositionMs) {
+        String formatId = videoFormat != null ? videoFormat.id : null;
+        long startMs = seekPrefetcher != null
+                ? seekPrefetcher.getSegmentStartMs(formatId, positionMs) : -1;
+        if (startMs == -1) {
+            return positionMs;
+        }
+        long endMs = seekPrefetcher.getSegmentEndMs(formatId, positionMs);
+        long durationMs = player.getDuration();
+        if (durationMs != ExoPlayer.UNKNOWN_TIME && endMs >= durationMs) {
+            // Snapping to the end would end playback.
+            return startMs;
+        }
+        boolean startInBuffer = isInBuffer(startMs, currentPositionMs, bufferedPositionMs);
+        boolean endInBuffer = isInBuffer(endMs, currentPositionMs, bufferedPositionMs);
+        if (startInBuffer != endInBuffer) {
+            return startInBuffer ? startMs : endMs;
+        }
+        return positionMs - startMs <= endMs - positionMs ? startMs : endMs;
+    }
+
+    /**
+     * Returns whether a position lies in the buffer ahead of the playback position, from which the
+     * sample sources can seek without loading.
+     */
+    private static boolean isInBuffer(long positionMs, long currentPositionMs,
+                                      long bufferedPositionMs) {
+        return bufferedPositionMs != ExoPlayer.UNKNOWN_TIME && positionMs >= currentPositionMs
+                && positionMs < bufferedPositionMs;
+    }
+
+    private boolean isBufferedToEnd(long bufferedPositionMs) {
+        long durationMs = player.getDuration();
+        return durationMs != ExoPlayer.UNKNOWN_TIME && bufferedPositionMs >= durationMs;
+    }
+
+    /**
+     * Prefetches the segments of the current video format around the positions that are likely to
+     * be sought to next, in the fast seek mode: a fixed distance either side of the playback
+     * position and the chapters that enclose and follow it. The targets are prefetched once after
+     * each prepare and seek, and again when playback enters another chapter, skipping those that
+     * are buffered or were played since the last seek.
+     */
+    private void prefetchSeekTargets() {
+        if (seekMode != SEEK_MODE_FAST || seekPrefetcher == null || videoFormat == null) {
+            return;
+        }
+        long currentPositionMs = player.getCurrentPosition();
+        int chapterIndex = 0;
+        while (chapterIndex < chapterPositionsMs.length
+                && chapterPositionsMs[chapterIndex] <= currentPositionMs) {
+            chapterIndex++;
+        }
+        if (!seekTargetsPending && chapterIndex == prefetchedChapterIndex) {
+            return;
+        }
+        seekTargetsPending = false;
+        prefetchedChapterIndex = chapterIndex;
+        long bufferedPositionMs = player.getBufferedPosition();
+        long durationMs = player.getDuration();
+        long[] targetsMs = new long[SEEK_TARGET_OFFSETS_MS.length + 2];
+        int targetCount = 0;
+        for (long offsetMs : SEEK_TARGET_OFFSETS_MS) {
+            targetsMs[targetCount++] = currentPositionMs + offsetMs;
+        }
+        if (chapterIndex < chapterPositionsMs.length) {
+            targetsMs[targetCount++] = chapterPositionsMs[chapterIndex];
+        }
+        if (chapterIndex > 0) {
+            targetsMs[targetCount++] = chapterPositionsMs[chapterIndex - 1];
+        }
+        int prefetchCount = 0;
+        for (int i = 0; i < targetCount; i++) {
+            long targetMs = targetsMs[i];
+            boolean played = targetMs >= playedFromMs && targetMs < currentPositionMs;
+            if (targetMs >= 0 && (durationMs == ExoPlayer.UNKNOWN_TIME || targetMs < durationMs)
+                    && !played && !isInBuffer(targetMs, currentPositionMs, bufferedPositionMs)) {
+                targetsMs[prefetchCount++] = targetMs;
+            }
+        }
+        if (prefetchCount > 0) {
+            seekPrefetcher.prefetch(videoFormat.id, Arrays.copyOf(targetsMs, prefetchCount));
+        }
+    }
+
+    /**
+     * Creates and prepares the next player once this one nears the end of its media or is buffered
+     * to the end, or checks again after an interval.
+     */
+    private void maybePreloadNextPlayer() {
+        if (nextPlayerFactory == null) {
+            return;
+        }
+        long durationMs = player.getDuration();
+        if (rendererBuildingState == RENDERER_BUILDING_STATE_BUILT
+                && durationMs != ExoPlayer.UNKNOWN_TIME
+                && (durationMs - player.getCurrentPosition() <= PRELOAD_LOOKAHEAD_MS
+                || isBufferedToEnd(player.getBufferedPosition()))) {
+            nextPlayer = nextPlayerFactory.createNextPlayer();
+            nextPlayerFactory = null;
+            if (nextPlayer != null) {
+                nextPlayer.preloading = true;
+                nextPlayer.setViewportSize(viewportWidth, viewportHeight);
+                nextPlayer.prepare();
+            }
+        } else {
+            mainHandler.postDelayed(preloadCheckRunnable, PRELOAD_CHECK_INTERVAL_MS);
+        }
+    }
+
+    /**
+     * Caps the buffer of a preloading player at what it needs to start, plus a margin.
+     */
+    private void updatePreloadBufferLimit() {
+        if (preloading && loadControl != null) {
+            loadControl.setMaxBufferedDurationMs(MIN_BUFFERS_COUNT + PRELOAD_BUFFER_MARGIN_MS);
+        }
+    }
+
+    /**
+     * Records the latency of the pending seek once playback resumes, or once the player is ready if
+     * it is paused.
+     */
+    private void maybeCompleteSeek(int state) {
+        if (seekStartTimeMs == -1 || state != STATE_READY) {
+            return;
+        }
+        seekStats.add(SystemClock.elapsedRealtime() - seekStartTimeMs, seekInBuffer, seekSnapped);
+        seekStartTimeMs = -1;
+    }
+
+    /**
+     * Starts scrubbing, during which positions are previewed by {@link #getThumbnail(long)} rather
+     * than sought to. Playback is not interrupted until scrubbing stops.
+     */
+    public void startScrubbing() {
+        if (!scrubbing) {
+            scrubbing = true;
+            scrubPositionMs = player.getCurrentPosition();
+        }
+    }
+
+    /**
+     * Moves the position being scrubbed to, or seeks to it if not scrubbing.
+     *
+     * @param positionMs The position.
+     */
+    public void scrubTo(long positionMs) {
+        if (scrubbing) {
+            scrubPositionMs = positionMs;
+        } else {
+            seekTo(positionMs);
+        }
+    }
+
+    /**
+     * Stops scrubbing, seeking to the last position scrubbed to.
+     */
+    public void stopScrubbing() {
+        if (scrubbing) {
+            scrubbing = false;
+            seekTo(scrubPositionMs);
+        }
+    }
+
+    /**
+     * Returns whether the user is scrubbing.
+     */
+    public boolean isScrubbing() {
+        return scrubbing;
+    }
+
+    /**
+     * Returns a preview of a position, from thumbnails in the manifest.
+     *
+     * @param positionMs The position.
+     * @return The thumbnail of the position or one near it, or null if the manifest has no
+     *     thumbnails or none near the position has loaded yet.
+     */
+    public Bitmap getThumbnail(long positionMs) {
+        return thumbnailCache == null ? null : thumbnailCache.getThumbnail(positionMs);
     }
 
     /**
@@ -575,6 +1182,21 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
     public void release() {
         rendererBuilder.cancel();
         rendererBuildingState = RENDERER_BUILDING_STATE_IDLE;
+        if (thumbnailCache != null) {
+            thumbnailCache.release();
+            thumbnailCache = null;
+        }
+        if (seekPrefetcher != null) {
+            seekPrefetcher.release();
+            seekPrefetcher = null;
+        }
+        mainHandler.removeCallbacks(preloadCheckRunnable);
+        nextPlayerFactory = null;
+        if (nextPlayer != null) {
+            nextPlayer.release();
+            nextPlayer = null;
+        }
+        scrubbing = false;
         surface = null;
         player.release();
     }
@@ -605,6 +1227,10 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
      */
     @Override
     public void onPlayerStateChanged(boolean playWhenReady, int state) {
+        if (state == STATE_READY) {
+            seekProcessing = false;
+        }
+        maybeCompleteSeek(state);
         maybeReportPlayerState();
     }
 
@@ -628,6 +1254,10 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
     @Override
     public void onLoadStarted(int sourceId, long length, int type, int trigger, Format format,
                               int mediaStartTimeMs, int mediaEndTimeMs) {
+        if (sessionRecorder != null) {
+            sessionRecorder.recordLoadStarted(sourceId, type, trigger, format, mediaStartTimeMs,
+                    mediaEndTimeMs);
+        }
         if (infoListener != null) {
             infoListener.onLoadStarted(sourceId, length, type, trigger, format, mediaStartTimeMs,
                     mediaEndTimeMs);
@@ -637,6 +1267,16 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
     @Override
     public void onLoadCompleted(int sourceId, long bytesLoaded, int type, int trigger, Format format,
                                 int mediaStartTimeMs, int mediaEndTimeMs, long elapsedRealtimeMs, long loadDurationMs) {
+        if (type == Chunk.TYPE_MEDIA) {
+            markStartupPhase(StartupTimeline.PHASE_FIRST_CHUNK_LOADED);
+            if (sourceId == TYPE_VIDEO) {
+                prefetchSeekTargets();
+            }
+        }
+        if (sessionRecorder != null) {
+            sessionRecorder.recordLoadCompleted(sourceId, bytesLoaded, elapsedRealtimeMs,
+                    loadDurationMs);
+        }
         if (infoListener != null) {
             infoListener.onLoadCompleted(sourceId, bytesLoaded, type, trigger, format, mediaStartTimeMs,
                     mediaEndTimeMs, elapsedRealtimeMs, loadDurationMs);
@@ -662,11 +1302,14 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
 
     @Override
     public void onDownstreamFormatChanged(int sourceId, Format format, int trigger, int mediaTimeMs) {
+        if (sourceId == TYPE_VIDEO) {
+            // Fast seeks snap to the segments of the format, with or without a listener.
+            videoFormat = format;
+        }
         if (infoListener == null) {
             return;
         }
         if (sourceId == TYPE_VIDEO) {
-            videoFormat = format;
             infoListener.onVideoFormatEnabled(format, trigger, mediaTimeMs);
         } else if (sourceId == TYPE_AUDIO) {
             infoListener.onAudioFormatEnabled(format, trigger, mediaTimeMs);
@@ -680,6 +1323,9 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
 
     @Override
     public void onBandwidthSample(int elapsedMs, long bytes, long bitrateEstimate) {
+        if (sessionRecorder != null) {
+            sessionRecorder.recordBandwidthSample(elapsedMs, bytes, bitrateEstimate);
+        }
         if (infoListener != null) {
             infoListener.onBandwidthSample(elapsedMs, bytes, bitrateEstimate);
         }
@@ -706,7 +1352,9 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
 
     @Override
     public void onDrawnToSurface(Surface surface) {
-        // Do Nothing
+        if (markStartupPhase(StartupTimeline.PHASE_FIRST_FRAME_DRAWN) && startupListener != null) {
+            startupListener.onStartupCompleted(startupTimeline);
+        }
     }
 
     @Override
@@ -726,6 +1374,7 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
     @Override
     public void onDecoderInitialized(String decoderName, long elapsedRealtimeMs,
                                      long initializationDurationMs) {
+        markStartupPhase(StartupTimeline.PHASE_DECODER_INITIALIZED);
         if (infoListener != null) {
             infoListener.onDecoderInitialized(decoderName, elapsedRealtimeMs, initializationDurationMs);
         }
@@ -822,6 +1471,10 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
         return player.getDuration();
     }
 
+    public long getBufferedPosition() {
+        return player.getBufferedPosition();
+    }
+
     public int getBufferedPercentage() {
         return player.getBufferedPercentage();
     }
@@ -842,6 +1495,9 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
         boolean playWhenReady = player.getPlayWhenReady();
         int playbackState = getPlaybackState();
         if (lastReportedPlayWhenReady != playWhenReady || lastReportedPlaybackState != playbackState) {
+            if (sessionRecorder != null) {
+                sessionRecorder.recordStateChanged(playWhenReady, playbackState);
+            }
             for (Listener listener : listeners) {
                 listener.onStateChanged(playWhenReady, playbackState);
             }
@@ -850,6 +1506,10 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
         }
     }
 
+    private boolean markStartupPhase(int phase) {
+        return startupTimeline != null && startupTimeline.mark(phase);
+    }
+
     private void pushSurface(boolean blockForSurfacePush) {
         if (videoRenderer == null) {
             return;
@@ -885,5 +1545,28 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
         }
     }
 
+    /**
+     * A {@link PlayerControl} that moves the scrub position rather than seeking while scrubbing, so
+     * that dragging the seek bar of a {@link android.widget.MediaController} previews positions
+     * without interrupting playback.
+     */
+    private final class ScrubbingPlayerControl extends PlayerControl {
+
+        public ScrubbingPlayerControl(ExoPlayer exoPlayer) {
+            super(exoPlayer);
+        }
+
+        @Override
+        public int getCurrentPosition() {
+            return scrubbing ? (int) scrubPositionMs : super.getCurrentPosition();
+        }
+
+        @Override
+        public void seekTo(int timeMillis) {
+            scrubTo(timeMillis);
+        }
+
+    }
+
 
 }
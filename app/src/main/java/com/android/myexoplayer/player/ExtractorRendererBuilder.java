@@ -0,0 +1,85 @@
+package com.android.myexoplayer.player;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+
+import com.google.android.exoplayer.TrackRenderer;
+import com.google.android.exoplayer.extractor.ExtractorSampleSource;
+import com.google.android.exoplayer.text.TextTrackRenderer;
+import com.google.android.exoplayer.upstream.Allocator;
+import com.google.android.exoplayer.upstream.DataSource;
+import com.google.android.exoplayer.upstream.DefaultAllocator;
+import com.google.android.exoplayer.upstream.DefaultBandwidthMeter;
+
+import com.android.myexoplayer.player.DemoPlayer.RendererBuilder;
+
+/**
+ * A {@link RendererBuilder} for streams that can be read using an
+ * {@link com.google.android.exoplayer.extractor.Extractor}, such as MP4, WebM and MPEG-TS.
+ * <p>
+ * Local files are read through a {@link MemoryMappedFileDataSource}; everything else through the
+ * pooled data sources of {@link RendererBuilderSupport}.
+ */
+public class ExtractorRendererBuilder implements RendererBuilder {
+
+    private static final int BUFFER_SEGMENT_SIZE = 64 * 1024;
+    private static final int BUFFER_SEGMENT_COUNT = 160;
+
+    private final Context context;
+    private final String userAgent;
+    private final Uri uri;
+    private final TrackRendererFactory rendererFactory;
+
+    public ExtractorRendererBuilder(Context context, String userAgent, Uri uri) {
+        this(context, userAgent, uri, new MediaCodecTrackRendererFactory());
+    }
+
+    /**
+     * @param rendererFactory Creates the video and audio renderers.
+     */
+    public ExtractorRendererBuilder(Context context, String userAgent, Uri uri,
+                                    TrackRendererFactory rendererFactory) {
+        this.context = context;
+        this.userAgent = userAgent;
+        this.uri = uri;
+        this.rendererFactory = rendererFactory;
+    }
+
+    @Override
+    public void buildRenderers(DemoPlayer player) {
+        Handler mainHandler = player.getMainHandler();
+        Allocator allocator = new DefaultAllocator(BUFFER_SEGMENT_SIZE);
+
+        // Build the video and audio renderers.
+        DefaultBandwidthMeter bandwidthMeter = new DefaultBandwidthMeter(mainHandler, null);
+        DataSource dataSource = isLocalFile(uri) ? new MemoryMappedFileDataSource(bandwidthMeter)
+                : RendererBuilderSupport.newChunkDataSource(context, bandwidthMeter, userAgent);
+        ExtractorSampleSource sampleSource = new ExtractorSampleSource(uri, dataSource, allocator,
+                BUFFER_SEGMENT_COUNT * BUFFER_SEGMENT_SIZE);
+        TrackRenderer videoRenderer = rendererFactory.createVideoRenderer(sampleSource, null,
+                mainHandler, player);
+        TrackRenderer audioRenderer = rendererFactory.createAudioRenderer(sampleSource, null,
+                mainHandler, player);
+        TrackRenderer textRenderer = new TextTrackRenderer(sampleSource, player,
+                mainHandler.getLooper());
+
+        // Invoke the callback.
+        TrackRenderer[] renderers = new TrackRenderer[DemoPlayer.RENDERER_COUNT];
+        renderers[DemoPlayer.TYPE_VIDEO] = videoRenderer;
+        renderers[DemoPlayer.TYPE_AUDIO] = audioRenderer;
+        renderers[DemoPlayer.TYPE_TEXT] = textRenderer;
+        player.onRenderers(null, null, renderers, bandwidthMeter);
+    }
+
+    @Override
+    public void cancel() {
+        // Do nothing.
+    }
+
+    private static boolean isLocalFile(Uri uri) {
+        String scheme = uri.getScheme();
+        return scheme == null || "file".equals(scheme);
+    }
+
+}
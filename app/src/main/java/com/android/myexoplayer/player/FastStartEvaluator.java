@@ -0,0 +1,181 @@
+package com.android.myexoplayer.player;
+
+import com.google.android.exoplayer.chunk.Chunk;
+import com.google.android.exoplayer.chunk.Format;
+import com.google.android.exoplayer.chunk.FormatEvaluator;
+import com.google.android.exoplayer.chunk.MediaChunk;
+import com.google.android.exoplayer.upstream.BandwidthMeter;
+
+import java.util.List;
+
+/**
+ * A {@link FormatEvaluator} that starts playback quickly, then ramps up to the quality that the
+ * network sustains sooner than another evaluator would on its own.
+ * <p>
+ * Before the bandwidth meter has an estimate, the first chunk is loaded in the highest format that
+ * the persisted history of the content's hosts expects to load within a short target time, or in
+ * the lowest format if there is no history. Once the meter has an estimate, the format follows it
+ * at once, up or down, rather than being held until enough media is buffered: while the buffer is
+ * short, a higher format costs little of it and every chunk loaded low is a chunk played low. Once
+ * the ramp duration is buffered, the delegate takes over for the rest of the session, including
+ * after seeks, so that its hysteresis applies from then on.
+ */
+public final class FastStartEvaluator implements FormatEvaluator {
+
+    /**
+     * Estimates how long a chunk would take to load, before the session has loaded any.
+     */
+    public interface LoadTimeEstimator {
+
+        /**
+         * @param bytes The size of the chunk.
+         * @return The expected load time, including the time to first byte, or -1 if unknown.
+         */
+        long getExpectedLoadTimeMs(long bytes);
+
+    }
+
+    /**
+     * The longest that the first chunk is expected to take to load.
+     */
+    public static final int DEFAULT_MAX_INITIAL_LOAD_MS = 1000;
+    /**
+     * The duration assumed for the first chunk, whose actual duration is not known until it loads.
+     */
+    public static final int DEFAULT_INITIAL_CHUNK_DURATION_MS = 2000;
+    /**
+     * The buffered duration at which the delegate takes over. This is the duration that
+     * {@link FormatEvaluator.AdaptiveEvaluator} requires to switch up by default, from which point
+     * it ramps up on its own.
+     */
+    public static final int DEFAULT_RAMP_DURATION_MS = 10000;
+    public static final float DEFAULT_BANDWIDTH_FRACTION = 0.75f;
+
+    private final FormatEvaluator delegate;
+    private final BandwidthMeter bandwidthMeter;
+    private final LoadTimeEstimator loadTimeEstimator;
+    private final int maxInitialLoadMs;
+    private final int initialChunkDurationMs;
+    private final long rampDurationUs;
+    private final float bandwidthFraction;
+
+    private boolean rampingUp;
+
+    /**
+     * @param delegate The evaluator that takes over once the ramp duration is buffered.
+     * @param bandwidthMeter Provides an estimate of the currently available bandwidth.
+     * @param loadTimeEstimator Estimates the load time of the first chunk from persisted history, or
+     *     null to start in the lowest format.
+     */
+    public FastStartEvaluator(FormatEvaluator delegate, BandwidthMeter bandwidthMeter,
+                              LoadTimeEstimator loadTimeEstimator) {
+        this(delegate, bandwidthMeter, loadTimeEstimator, DEFAULT_MAX_INITIAL_LOAD_MS,
+                DEFAULT_INITIAL_CHUNK_DURATION_MS, DEFAULT_RAMP_DURATION_MS,
+                DEFAULT_BANDWIDTH_FRACTION);
+    }
+
+    /**
+     * @param delegate The evaluator that takes over once the ramp duration is buffered.
+     * @param bandwidthMeter Provides an estimate of the currently available bandwidth.
+     * @param loadTimeEstimator Estimates the load time of the first chunk from persisted history, or
+     *     null to start in the lowest format.
+     * @param maxInitialLoadMs The longest that the first chunk is expected to take to load.
+     * @param initialChunkDurationMs The duration assumed for the first chunk.
+     * @param rampDurationMs The buffered duration at which the delegate takes over.
+     * @param bandwidthFraction The fraction of the estimated bandwidth to use while ramping up.
+     */
+    public FastStartEvaluator(FormatEvaluator delegate, BandwidthMeter bandwidthMeter,
+                              LoadTimeEstimator loadTimeEstimator, int maxInitialLoadMs,
+                              int initialChunkDurationMs, int rampDurationMs,
+                              float bandwidthFraction) {
+        this.delegate = delegate;
+        this.bandwidthMeter = bandwidthMeter;
+        this.loadTimeEstimator = loadTimeEstimator;
+        this.maxInitialLoadMs = maxInitialLoadMs;
+        this.initialChunkDurationMs = initialChunkDurationMs;
+        this.rampDurationUs = rampDurationMs * 1000L;
+        this.bandwidthFraction = bandwidthFraction;
+    }
+
+    @Override
+    public void enable() {
+        rampingUp = true;
+        delegate.enable();
+    }
+
+    @Override
+    public void disable() {
+        delegate.disable();
+    }
+
+    @Override
+    public void evaluate(List<? extends MediaChunk> queue, long playbackPositionUs, Format[] formats,
+                         Evaluation evaluation) {
+        long bufferedDurationUs = queue.isEmpty() ? 0
+                : queue.get(queue.size() - 1).endTimeUs - playbackPositionUs;
+        if (rampingUp && bufferedDurationUs >= rampDurationUs) {
+            rampingUp = false;
+        }
+        if (!rampingUp) {
+            delegate.evaluate(queue, playbackPositionUs, formats, evaluation);
+            return;
+        }
+        long bitrateEstimate = bandwidthMeter.getBitrateEstimate();
+        Format current = evaluation.format;
+        Format ideal = bitrateEstimate == BandwidthMeter.NO_ESTIMATE
+                ? determineInitialFormat(formats)
+                : determineIdealFormat(formats, (long) (bitrateEstimate * bandwidthFraction));
+        if (current != null && ideal != current) {
+            evaluation.trigger = Chunk.TRIGGER_ADAPTIVE;
+        }
+        evaluation.format = ideal;
+    }
+
+    /**
+     * Returns the highest format whose first chunk is expected to load within the target time, or
+     * the lowest format if there is none or the history is unknown.
+     */
+    private Format determineInitialFormat(Format[] formats) {
+        Format lowest = getLowestFormat(formats);
+        if (loadTimeEstimator == null) {
+            return lowest;
+        }
+        Format ideal = null;
+        for (Format format : formats) {
+            long chunkBytes = (long) format.bitrate * initialChunkDurationMs / 8000;
+            long loadTimeMs = loadTimeEstimator.getExpectedLoadTimeMs(chunkBytes);
+            if (loadTimeMs == -1) {
+                return lowest;
+            }
+            if (loadTimeMs <= maxInitialLoadMs && (ideal == null || format.bitrate > ideal.bitrate)) {
+                ideal = format;
+            }
+        }
+        return ideal != null ? ideal : lowest;
+    }
+
+    /**
+     * Returns the highest format whose bitrate does not exceed {@code effectiveBitrate}, or the
+     * lowest format if there is none.
+     */
+    private static Format determineIdealFormat(Format[] formats, long effectiveBitrate) {
+        Format ideal = null;
+        for (Format format : formats) {
+            if (format.bitrate <= effectiveBitrate && (ideal == null || format.bitrate > ideal.bitrate)) {
+                ideal = format;
+            }
+        }
+        return ideal != null ? ideal : getLowestFormat(formats);
+    }
+
+    private static Format getLowestFormat(Format[] formats) {
+        Format lowest = formats[0];
+        for (Format format : formats) {
+            if (format.bitrate < lowest.bitrate) {
+                lowest = format;
+            }
+        }
+        return lowest;
+    }
+
+}
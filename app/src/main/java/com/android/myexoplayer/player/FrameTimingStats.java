@@ -0,0 +1,188 @@
+package com.android.myexoplayer.player;
+
+import com.google.android.exoplayer.MediaCodecVideoTrackRenderer;
+import com.google.android.exoplayer.MediaCodecVideoTrackRenderer.FrameReleaseTimeHelper;
+
+/**
+ * Per-frame render timing for a {@link MediaCodecVideoTrackRenderer}.
+ * <p>
+ * The renderer consults its {@link FrameReleaseTimeHelper} on every pass over its pending output
+ * frame, passing the frame's presentation time and the wall-clock time at which it should be
+ * released, so a frame that is early or held while paused is seen many times. A frame is therefore
+ * recorded once, with the timing of the last pass over it, which is the pass that released or
+ * dropped it, when the renderer moves on to a frame with another presentation time. This class
+ * records, for each such frame:
+ * <ul>
+ *     <li>How early (positive) or late (negative) the frame reached the renderer relative to its
+ *     ideal release time.</li>
+ *     <li>The frame-interval jitter, i.e. how much the spacing between consecutive release times
+ *     differs from the spacing between their presentation times.</li>
+ * </ul>
+ * All values are in microseconds. Recording is allocation free; an optional delegate helper (e.g.
+ * a vsync-aligning helper) can still adjust the release time.
+ */
+public final class FrameTimingStats implements FrameReleaseTimeHelper {
+
+    /**
+     * Frames reaching the renderer later than this are dropped by {@link MediaCodecVideoTrackRenderer}.
+     */
+    public static final long DROP_THRESHOLD_US = 30000;
+
+    private static final long DEVIATION_MIN_US = -50000;
+    private static final long DEVIATION_BUCKET_US = 2000;
+    private static final int DEVIATION_BUCKETS = 50;
+    private static final long JITTER_BUCKET_US = 1000;
+    private static final int JITTER_BUCKETS = 50;
+
+    private final FrameReleaseTimeHelper delegate;
+    private final Histogram releaseDeviationUs;
+    private final Histogram intervalJitterUs;
+
+    private long frameCount;
+    private long lateFrameCount;
+    private long droppedFrameCount;
+    private long lastPresentationTimeUs;
+    private long lastReleaseTimeNs;
+    private boolean hasPendingFrame;
+    private long pendingPresentationTimeUs;
+    private long pendingReleaseTimeNs;
+    private long pendingEarlyUs;
+
+    public FrameTimingStats() {
+        this(null);
+    }
+
+    /**
+     * @param delegate A helper to which release time adjustment is delegated. May be null.
+     */
+    public FrameTimingStats(FrameReleaseTimeHelper delegate) {
+        this.delegate = delegate;
+        releaseDeviationUs = new Histogram(DEVIATION_MIN_US, DEVIATION_BUCKET_US, DEVIATION_BUCKETS);
+        intervalJitterUs = new Histogram(0, JITTER_BUCKET_US, JITTER_BUCKETS);
+        lastReleaseTimeNs = -1;
+    }
+
+    @Override
+    public void enable() {
+        // A discontinuity (enable, seek or format change) must not count as jitter, and the frame
+        // pending before it may not have been released.
+        lastReleaseTimeNs = -1;
+        hasPendingFrame = false;
+        if (delegate != null) {
+            delegate.enable();
+        }
+    }
+
+    @Override
+    public void disable() {
+        if (delegate != null) {
+            delegate.disable();
+        }
+    }
+
+    @Override
+    public long adjustReleaseTime(long framePresentationTimeUs, long unadjustedReleaseTimeNs) {
+        if (!hasPendingFrame || framePresentationTimeUs != pendingPresentationTimeUs) {
+            recordPendingFrame();
+            hasPendingFrame = true;
+            pendingPresentationTimeUs = framePresentationTimeUs;
+        }
+        pendingReleaseTimeNs = unadjustedReleaseTimeNs;
+        pendingEarlyUs = (unadjustedReleaseTimeNs - System.nanoTime()) / 1000;
+        return delegate != null
+                ? delegate.adjustReleaseTime(framePresentationTimeUs, unadjustedReleaseTimeNs)
+                : unadjustedReleaseTimeNs;
+    }
+
+    /**
+     * Records the frame that the renderer has moved on from, with the timing of its last pass.
+     */
+    private void recordPendingFrame() {
+        if (!hasPendingFrame) {
+            return;
+        }
+        frameCount++;
+        releaseDeviationUs.add(pendingEarlyUs);
+        if (pendingEarlyUs < 0) {
+            lateFrameCount++;
+            if (pendingEarlyUs < -DROP_THRESHOLD_US) {
+                droppedFrameCount++;
+            }
+        }
+        if (lastReleaseTimeNs != -1 && pendingPresentationTimeUs > lastPresentationTimeUs) {
+            long releaseIntervalUs = (pendingReleaseTimeNs - lastReleaseTimeNs) / 1000;
+            long presentationIntervalUs = pendingPresentationTimeUs - lastPresentationTimeUs;
+            intervalJitterUs.add(Math.abs(releaseIntervalUs - presentationIntervalUs));
+        }
+        lastPresentationTimeUs = pendingPresentationTimeUs;
+        lastReleaseTimeNs = pendingReleaseTimeNs;
+    }
+
+    /**
+     * Discards all recorded timings.
+     */
+    public void reset() {
+        releaseDeviationUs.reset();
+        intervalJitterUs.reset();
+        frameCount = 0;
+        lateFrameCount = 0;
+        droppedFrameCount = 0;
+        lastReleaseTimeNs = -1;
+        hasPendingFrame = false;
+    }
+
+    /**
+     * Returns the histogram of how early each frame reached the renderer, in microseconds.
+     * Negative values are late frames.
+     *
+     * @return releaseDeviationUs
+     */
+    public Histogram getReleaseDeviationHistogram() {
+        return releaseDeviationUs;
+    }
+
+    /**
+     * Returns the histogram of frame-interval jitter, in microseconds.
+     *
+     * @return intervalJitterUs
+     */
+    public Histogram getIntervalJitterHistogram() {
+        return intervalJitterUs;
+    }
+
+    /**
+     * Returns the number of frames timed.
+     *
+     * @return frameCount
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Returns the number of frames that reached the renderer after their ideal release time.
+     *
+     * @return lateFrameCount
+     */
+    public long getLateFrameCount() {
+        return lateFrameCount;
+    }
+
+    /**
+     * Returns the number of frames that were late by more than {@link #DROP_THRESHOLD_US}.
+     *
+     * @return droppedFrameCount
+     */
+    public long getDroppedFrameCount() {
+        return droppedFrameCount;
+    }
+
+    @Override
+    public String toString() {
+        return "frames [" + frameCount + ", late=" + lateFrameCount + ", dropped=" + droppedFrameCount
+                + ", earlyP50=" + releaseDeviationUs.getPercentile(50)
+                + ", jitterP50=" + intervalJitterUs.getPercentile(50)
+                + ", jitterP99=" + intervalJitterUs.getPercentile(99) + "]";
+    }
+
+}
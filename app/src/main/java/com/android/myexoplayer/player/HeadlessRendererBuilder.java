@@ -0,0 +1,44 @@
+package com.android.myexoplayer.player;
+
+import android.content.Context;
+
+import com.android.myexoplayer.player.DemoPlayer.RendererBuilder;
+
+/**
+ * A {@link RendererBuilder} for DASH that plays without decoders or a surface.
+ * <p>
+ * Manifest loading, chunk loading, bandwidth estimation and format evaluation are exactly those of
+ * {@link DashRendererBuilder}; only the video and audio renderers are replaced by {@link
+ * StubTrackRenderer}s following a {@link SimulatedMediaClock}. Protected content is not supported.
+ */
+public class HeadlessRendererBuilder implements RendererBuilder {
+
+    private final DashRendererBuilder dashRendererBuilder;
+
+    /**
+     * @param speed The rate at which media time advances relative to real time.
+     */
+    public HeadlessRendererBuilder(Context context, String userAgent, String url, float speed) {
+        dashRendererBuilder = new DashRendererBuilder(context, userAgent, url, null, null,
+                new StubTrackRendererFactory(speed));
+    }
+
+    /**
+     * @see DashRendererBuilder#setFastStartEnabled(boolean)
+     */
+    public HeadlessRendererBuilder setFastStartEnabled(boolean fastStartEnabled) {
+        dashRendererBuilder.setFastStartEnabled(fastStartEnabled);
+        return this;
+    }
+
+    @Override
+    public void buildRenderers(DemoPlayer player) {
+        dashRendererBuilder.buildRenderers(player);
+    }
+
+    @Override
+    public void cancel() {
+        dashRendererBuilder.cancel();
+    }
+
+}
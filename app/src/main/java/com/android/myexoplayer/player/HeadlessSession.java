@@ -0,0 +1,281 @@
+package com.android.myexoplayer.player;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+
+import com.google.android.exoplayer.TimeRange;
+import com.google.android.exoplayer.chunk.Chunk;
+import com.google.android.exoplayer.chunk.Format;
+
+import com.android.myexoplayer.player.DemoPlayer.RendererBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays a stream headlessly for a fixed duration and summarizes its {@link SessionQoe}.
+ * <p>
+ * Each session runs its {@link DemoPlayer} on a dedicated {@link HandlerThread}, so many sessions
+ * can run in parallel from any thread.
+ */
+public final class HeadlessSession implements DemoPlayer.Listener, DemoPlayer.InfoListener {
+
+    /**
+     * The time a session may overrun its duration before it is ended as failed.
+     */
+    private static final long END_TIMEOUT_MS = 30 * 1000;
+    /**
+     * The time that ending an overrunning session may take before its thread is abandoned.
+     */
+    private static final long RELEASE_TIMEOUT_MS = 5 * 1000;
+
+    private final RendererBuilder rendererBuilder;
+    private final long durationMs;
+    private final CountDownLatch endedLatch;
+    private final List<long[]> videoFormatChanges;
+
+    private HandlerThread thread;
+    private Handler handler;
+    private DemoPlayer player;
+
+    /**
+     * The summary of the session, handed off by the session thread when it ends.
+     */
+    private volatile SessionQoe result;
+
+    // Accessed only on the session thread.
+    private long prepareTimeMs;
+    private long startupMs;
+    private long lastStateChangeMs;
+    private int lastState;
+    private int rebufferCount;
+    private long rebufferMs;
+    private long playingMs;
+    private int videoFormatCount;
+    private long earlyVideoBitrate;
+    private long videoBitrateDurationProduct;
+    private long videoMediaDurationMs;
+    private int chunkCount;
+    private long bytesLoaded;
+    private long loadDurationMs;
+    private boolean failed;
+
+    /**
+     * @param speed The rate at which media time advances relative to real time.
+     * @param durationMs The wall-clock duration of the session.
+     */
+    public HeadlessSession(Context context, String userAgent, String url, float speed,
+                           long durationMs) {
+        this(new HeadlessRendererBuilder(context, userAgent, url, speed), durationMs);
+    }
+
+    /**
+     * @param rendererBuilder Builds renderers that play without decoders or a surface, e.g. using
+     *     a {@link StubTrackRendererFactory}.
+     * @param durationMs The wall-clock duration of the session.
+     */
+    public HeadlessSession(RendererBuilder rendererBuilder, long durationMs) {
+        this.rendererBuilder = rendererBuilder;
+        this.durationMs = durationMs;
+        endedLatch = new CountDownLatch(1);
+        videoFormatChanges = new ArrayList<>();
+        startupMs = -1;
+        earlyVideoBitrate = -1;
+        lastState = DemoPlayer.STATE_IDLE;
+    }
+
+    /**
+     * Plays the session to completion, blocking the calling thread.
+     *
+     * @return The summary of the session.
+     * @throws InterruptedException If the calling thread is interrupted.
+     */
+    public SessionQoe run() throws InterruptedException {
+        thread = new HandlerThread("HeadlessSession");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                start();
+            }
+        });
+        if (!endedLatch.await(durationMs + END_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            // End the session on its own thread, which releases the player and its loaders.
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    failed = true;
+                    end();
+                }
+            });
+            endedLatch.await(RELEASE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+        thread.quit();
+        SessionQoe result = this.result;
+        if (result == null) {
+            // The session thread is stuck, so none of its state can be read.
+            return new SessionQoe(-1, 0, 0, 0, 0, 0, -1, 0, 0, 0, true);
+        }
+        return result;
+    }
+
+    private void start() {
+        player = new DemoPlayer(rendererBuilder);
+        player.addListener(this);
+        player.setInfoListener(this);
+        prepareTimeMs = SystemClock.elapsedRealtime();
+        lastStateChangeMs = prepareTimeMs;
+        player.prepare();
+        player.setPlayWhenReady(true);
+        handler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                end();
+            }
+        }, durationMs);
+    }
+
+    private void end() {
+        if (player == null) {
+            return;
+        }
+        accumulateStateTime(SystemClock.elapsedRealtime());
+        earlyVideoBitrate = getEarlyVideoBitrate(player.getCurrentPosition());
+        player.release();
+        player = null;
+        result = new SessionQoe(startupMs, rebufferCount, rebufferMs, playingMs,
+                Math.max(0, videoFormatCount - 1),
+                videoMediaDurationMs == 0 ? 0 : videoBitrateDurationProduct / videoMediaDurationMs,
+                earlyVideoBitrate, chunkCount, bytesLoaded, loadDurationMs, failed);
+        endedLatch.countDown();
+    }
+
+    /**
+     * Returns the mean bitrate of the video enabled over the first
+     * {@link SessionQoe#EARLY_PLAYBACK_MS} of media from the first enabled format, or -1 if
+     * playback did not get that far.
+     */
+    private long getEarlyVideoBitrate(long positionMs) {
+        if (videoFormatChanges.isEmpty()) {
+            return -1;
+        }
+        long startTimeMs = videoFormatChanges.get(0)[0];
+        long endTimeMs = startTimeMs + SessionQoe.EARLY_PLAYBACK_MS;
+        if (positionMs < endTimeMs) {
+            return -1;
+        }
+        long bitrateDurationProduct = 0;
+        for (int i = 0; i < videoFormatChanges.size(); i++) {
+            long changeTimeMs = Math.max(startTimeMs, videoFormatChanges.get(i)[0]);
+            long nextChangeTimeMs = i + 1 < videoFormatChanges.size()
+                    ? videoFormatChanges.get(i + 1)[0] : endTimeMs;
+            long durationMs = Math.min(endTimeMs, nextChangeTimeMs) - changeTimeMs;
+            if (durationMs > 0) {
+                bitrateDurationProduct += videoFormatChanges.get(i)[1] * durationMs;
+            }
+        }
+        return bitrateDurationProduct / SessionQoe.EARLY_PLAYBACK_MS;
+    }
+
+    private void accumulateStateTime(long nowMs) {
+        if (lastState == DemoPlayer.STATE_READY) {
+            playingMs += nowMs - lastStateChangeMs;
+        } else if (lastState == DemoPlayer.STATE_BUFFERING && startupMs != -1) {
+            rebufferMs += nowMs - lastStateChangeMs;
+        }
+        lastStateChangeMs = nowMs;
+    }
+
+    // DemoPlayer.Listener implementation
+
+    @Override
+    public void onStateChanged(boolean playWhenReady, int playbackState) {
+        long nowMs = SystemClock.elapsedRealtime();
+        accumulateStateTime(nowMs);
+        if (playbackState == DemoPlayer.STATE_READY && startupMs == -1) {
+            startupMs = nowMs - prepareTimeMs;
+        } else if (playbackState == DemoPlayer.STATE_BUFFERING && startupMs != -1) {
+            rebufferCount++;
+        }
+        lastState = playbackState;
+        if (playbackState == DemoPlayer.STATE_ENDED) {
+            end();
+        }
+    }
+
+    @Override
+    public void onError(Exception e) {
+        failed = true;
+        end();
+    }
+
+    @Override
+    public void onVideoSizeChanged(int width, int height, float pixelWidthHeightRatio) {
+        // Do nothing.
+    }
+
+    // DemoPlayer.InfoListener implementation
+
+    @Override
+    public void onVideoFormatEnabled(Format format, int trigger, int mediaTimeMs) {
+        videoFormatCount++;
+        videoFormatChanges.add(new long[] {mediaTimeMs, format.bitrate});
+    }
+
+    @Override
+    public void onLoadCompleted(int sourceId, long bytesLoaded, int type, int trigger, Format format,
+                                int mediaStartTimeMs, int mediaEndTimeMs, long elapsedRealtimeMs, long loadDurationMs) {
+        chunkCount++;
+        this.bytesLoaded += bytesLoaded;
+        this.loadDurationMs += loadDurationMs;
+        if (sourceId == DemoPlayer.TYPE_VIDEO && type == Chunk.TYPE_MEDIA && format != null) {
+            long mediaDurationMs = mediaEndTimeMs - mediaStartTimeMs;
+            videoBitrateDurationProduct += format.bitrate * mediaDurationMs;
+            videoMediaDurationMs += mediaDurationMs;
+        }
+    }
+
+    @Override
+    public void onAudioFormatEnabled(Format format, int trigger, int mediaTimeMs) {
+        // Do nothing.
+    }
+
+    @Override
+    public void onDroppedFrames(int count, long elapsed) {
+        // Do nothing.
+    }
+
+    @Override
+    public void onBandwidthSample(int elapsedMs, long bytes, long bitrateEstimate) {
+        // Do nothing.
+    }
+
+    @Override
+    public void onLoadStarted(int sourceId, long length, int type, int trigger, Format format,
+                              int mediaStartTimeMs, int mediaEndTimeMs) {
+        // Do nothing.
+    }
+
+    @Override
+    public void onDecoderInitialized(String decoderName, long elapsedRealtimeMs,
+                                     long initializationDurationMs) {
+        // Do nothing.
+    }
+
+    @Override
+    public void onSeekRangeChanged(TimeRange seekRange) {
+        // Do nothing.
+    }
+
+    @Override
+    public void onVideoCodecSelected(String mimeType, boolean hardwareAccelerated,
+                                     float expectedBandwidthSavings) {
+        // Do nothing.
+    }
+
+}
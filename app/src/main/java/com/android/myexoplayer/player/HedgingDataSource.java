@@ -0,0 +1,424 @@
+package com.android.myexoplayer.player;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.SystemClock;
+
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.TransferListener;
+import com.google.android.exoplayer.upstream.UriDataSource;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A {@link UriDataSource} that hedges requests whose first byte is late.
+ * <p>
+ * Each request is opened in the background. If its response has not started within a percentile
+ * of the recent times to first byte, a duplicate request is sent, to an alternate host if a
+ * {@link HedgeUriProvider} supplies one. The first response to start is read, and the other is
+ * closed as soon as it opens. A slow edge therefore costs one percentile of latency rather than a
+ * stall of the load, and {@link com.google.android.exoplayer.chunk.ChunkSampleSource} does not
+ * have to wait for the request to fail before retrying.
+ * <p>
+ * Hedges are drawn from a process wide budget of {@link #HEDGE_BUDGET} of all requests, so that
+ * a degraded origin does not receive twice the load. The latencies of requests with and without
+ * hedging are recorded in {@link #getStats()}.
+ */
+public class HedgingDataSource implements UriDataSource {
+
+    /**
+     * Supplies the URI of the duplicate of a hedged request.
+     */
+    public interface HedgeUriProvider {
+
+        /**
+         * Returns the URI to send the duplicate of a late request to.
+         *
+         * @param uri The URI of the late request.
+         * @return The URI of the duplicate, which may be {@code uri} itself.
+         */
+        Uri getHedgeUri(Uri uri);
+
+    }
+
+    /**
+     * The share of requests that may be hedged.
+     */
+    public static final float HEDGE_BUDGET = 0.05f;
+    /**
+     * The default percentile of the recent times to first byte after which a request is hedged.
+     */
+    public static final int DEFAULT_HEDGE_PERCENTILE = 90;
+
+    /**
+     * The number of hedges that may be sent in a burst, e.g. when an edge starts to degrade.
+     */
+    private static final float MAX_HEDGE_TOKENS = 5;
+    private static final int TTFB_WINDOW_SIZE = 64;
+    private static final int MIN_TTFB_SAMPLES = 8;
+    private static final long MIN_HEDGE_DELAY_MS = 20;
+
+    private static final HedgeStats STATS = new HedgeStats();
+
+    private static final ExecutorService REQUEST_EXECUTOR =
+            Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "HedgingDataSource");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final Context context;
+    private final String userAgent;
+    private final TransferListener transferListener;
+    private final int hedgePercentile;
+    /**
+     * The most recent times to first byte of unhedged requests, as a ring buffer.
+     */
+    private final long[] ttfbWindowMs;
+
+    private HedgeUriProvider hedgeUriProvider;
+    private int ttfbSampleCount;
+
+    private Request request;
+    private UriDataSource openedDataSource;
+
+    /**
+     * @param context A context.
+     * @param userAgent The user agent of requests.
+     * @param transferListener Notified of transfers, typically a bandwidth meter.
+     */
+    public HedgingDataSource(Context context, String userAgent, TransferListener transferListener) {
+        this(context, userAgent, transferListener, DEFAULT_HEDGE_PERCENTILE);
+    }
+
+    /**
+     * @param context A context.
+     * @param userAgent The user agent of requests.
+     * @param transferListener Notified of transfers, typically a bandwidth meter.
+     * @param hedgePercentile The percentile of the recent times to first byte after which a request
+     *     is hedged.
+     */
+    public HedgingDataSource(Context context, String userAgent, TransferListener transferListener,
+                             int hedgePercentile) {
+        this.context = context;
+        this.userAgent = userAgent;
+        this.transferListener = transferListener;
+        this.hedgePercentile = hedgePercentile;
+        ttfbWindowMs = new long[TTFB_WINDOW_SIZE];
+    }
+
+    /**
+     * Returns the hedging statistics of the process.
+     */
+    public static HedgeStats getStats() {
+        return STATS;
+    }
+
+    /**
+     * Sets the provider of the URIs of hedged requests. By default the same URI is requested again.
+     */
+    public synchronized void setHedgeUriProvider(HedgeUriProvider hedgeUriProvider) {
+        this.hedgeUriProvider = hedgeUriProvider;
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        Request request = new Request();
+        Attempt primary = new Attempt(request, dataSpec, false);
+        long hedgeDelayMs;
+        synchronized (this) {
+            this.request = request;
+            hedgeDelayMs = getHedgeDelayMs();
+        }
+        REQUEST_EXECUTOR.execute(primary);
+        try {
+            synchronized (this) {
+                long hedgeTimeMs = request.startTimeMs + hedgeDelayMs;
+                long nowMs;
+                while (request.winner == null && request.pendingCount > 0
+                        && hedgeDelayMs != -1 && (nowMs = SystemClock.elapsedRealtime()) < hedgeTimeMs) {
+                    wait(hedgeTimeMs - nowMs);
+                }
+                if (request.winner == null && request.pendingCount > 0 && hedgeDelayMs != -1
+                        && STATS.tryAcquireHedge()) {
+                    Uri hedgeUri = hedgeUriProvider != null
+                            ? hedgeUriProvider.getHedgeUri(dataSpec.uri) : dataSpec.uri;
+                    REQUEST_EXECUTOR.execute(new Attempt(request, new DataSpec(hedgeUri,
+                            dataSpec.absoluteStreamPosition, dataSpec.length, dataSpec.key), true));
+                }
+                while (request.winner == null && request.pendingCount > 0) {
+                    wait();
+                }
+                if (request.winner == null) {
+                    throw request.error;
+                }
+                openedDataSource = request.winner.dataSource;
+                STATS.onRequestOpened(request.winner.hedge,
+                        request.winner.endTimeMs - request.startTimeMs);
+            }
+        } catch (InterruptedException e) {
+            synchronized (this) {
+                // Attempts that open later close themselves.
+                request.canceled = true;
+            }
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        if (transferListener != null) {
+            transferListener.onTransferStart();
+        }
+        return request.winner.length;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+        int bytesRead = openedDataSource.read(buffer, offset, readLength);
+        if (bytesRead > 0 && transferListener != null) {
+            transferListener.onBytesTransferred(bytesRead);
+        }
+        return bytesRead;
+    }
+
+    @Override
+    public String getUri() {
+        return openedDataSource != null ? openedDataSource.getUri() : null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (request != null) {
+                request.canceled = true;
+                request = null;
+            }
+        }
+        if (openedDataSource != null) {
+            try {
+                openedDataSource.close();
+            } finally {
+                openedDataSource = null;
+                if (transferListener != null) {
+                    transferListener.onTransferEnd();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the time after which a request is hedged, or -1 if too few requests have been made
+     * to tell which are late.
+     */
+    private long getHedgeDelayMs() {
+        int sampleCount = Math.min(ttfbSampleCount, TTFB_WINDOW_SIZE);
+        if (sampleCount < MIN_TTFB_SAMPLES) {
+            return -1;
+        }
+        long[] samples = Arrays.copyOf(ttfbWindowMs, sampleCount);
+        Arrays.sort(samples);
+        int index = (int) Math.ceil(hedgePercentile / 100d * sampleCount) - 1;
+        return Math.max(MIN_HEDGE_DELAY_MS, samples[Math.max(0, index)]);
+    }
+
+    private void onAttemptCompleted(Attempt attempt, IOException error) {
+        Request request = attempt.request;
+        boolean won = false;
+        synchronized (this) {
+            request.pendingCount--;
+            if (!attempt.hedge && error == null) {
+                long ttfbMs = attempt.endTimeMs - request.startTimeMs;
+                ttfbWindowMs[ttfbSampleCount++ % TTFB_WINDOW_SIZE] = ttfbMs;
+                STATS.onUnhedgedTtfb(ttfbMs);
+            }
+            if (error != null) {
+                if (request.error == null) {
+                    request.error = error;
+                }
+            } else if (request.winner == null && !request.canceled) {
+                request.winner = attempt;
+                won = true;
+            }
+            notifyAll();
+        }
+        if (!won && error == null) {
+            closeQuietly(attempt.dataSource);
+        }
+    }
+
+    private static void closeQuietly(UriDataSource dataSource) {
+        try {
+            dataSource.close();
+        } catch (IOException e) {
+            // Ignore.
+        }
+    }
+
+    /**
+     * The attempts made for one call to {@link #open(DataSpec)}. Guarded by the data source.
+     */
+    private static final class Request {
+
+        public final long startTimeMs;
+
+        public int pendingCount;
+        public Attempt winner;
+        public IOException error;
+        public boolean canceled;
+
+        public Request() {
+            startTimeMs = SystemClock.elapsedRealtime();
+        }
+
+    }
+
+    /**
+     * Opens one request of a {@link Request} on its own data source.
+     */
+    private final class Attempt implements Runnable {
+
+        public final Request request;
+        public final boolean hedge;
+        public final UriDataSource dataSource;
+
+        private final DataSpec dataSpec;
+
+        public long length;
+        public long endTimeMs;
+
+        public Attempt(Request request, DataSpec dataSpec, boolean hedge) {
+            this.request = request;
+            this.dataSpec = dataSpec;
+            this.hedge = hedge;
+            dataSource = RendererBuilderSupport.newChunkDataSource(context, null, userAgent);
+            request.pendingCount++;
+        }
+
+        @Override
+        public void run() {
+            IOException error = null;
+            try {
+                // The data source returns once the response headers have arrived, which is taken as
+                // the time to first byte.
+                length = dataSource.open(dataSpec);
+            } catch (IOException e) {
+                error = e;
+                closeQuietly(dataSource);
+            }
+            endTimeMs = SystemClock.elapsedRealtime();
+            onAttemptCompleted(this, error);
+        }
+
+    }
+
+    /**
+     * Process wide hedging budget and latency statistics.
+     */
+    public static final class HedgeStats {
+
+        private final Histogram latencyHistogram;
+        private final Histogram unhedgedTtfbHistogram;
+
+        private float hedgeTokens;
+        private int requestCount;
+        private int hedgeCount;
+        private int hedgeWinCount;
+
+        private HedgeStats() {
+            latencyHistogram = new Histogram(0, 10, 500);
+            unhedgedTtfbHistogram = new Histogram(0, 10, 500);
+            hedgeTokens = 1;
+        }
+
+        /**
+         * Returns the number of requests opened.
+         */
+        public synchronized int getRequestCount() {
+            return requestCount;
+        }
+
+        /**
+         * Returns the number of hedges sent.
+         */
+        public synchronized int getHedgeCount() {
+            return hedgeCount;
+        }
+
+        /**
+         * Returns the number of requests that were served by their hedge.
+         */
+        public synchronized int getHedgeWinCount() {
+            return hedgeWinCount;
+        }
+
+        /**
+         * Returns a percentile of the time until requests were opened, with hedging.
+         *
+         * @param percentile The percentile, between 0 and 100.
+         */
+        public synchronized long getLatencyPercentileMs(int percentile) {
+            return latencyHistogram.getPercentile(percentile);
+        }
+
+        /**
+         * Returns a percentile of the time to first byte of the original requests, i.e. the latency
+         * without hedging.
+         *
+         * @param percentile The percentile, between 0 and 100.
+         */
+        public synchronized long getUnhedgedLatencyPercentileMs(int percentile) {
+            return unhedgedTtfbHistogram.getPercentile(percentile);
+        }
+
+        /**
+         * Discards the recorded statistics. The budget is unaffected.
+         */
+        public synchronized void reset() {
+            latencyHistogram.reset();
+            unhedgedTtfbHistogram.reset();
+            requestCount = 0;
+            hedgeCount = 0;
+            hedgeWinCount = 0;
+        }
+
+        @Override
+        public synchronized String toString() {
+            long p99 = latencyHistogram.getPercentile(99);
+            long unhedgedP99 = unhedgedTtfbHistogram.getPercentile(99);
+            return "hedging [requests=" + requestCount + ", hedges=" + hedgeCount
+                    + ", hedgeWins=" + hedgeWinCount + ", p50=" + latencyHistogram.getPercentile(50)
+                    + ", p99=" + p99 + ", unhedgedP99=" + unhedgedP99
+                    + ", p99ImprovementMs=" + (unhedgedP99 - p99) + "]";
+        }
+
+        /* package */ synchronized boolean tryAcquireHedge() {
+            if (hedgeTokens < 1) {
+                return false;
+            }
+            hedgeTokens--;
+            hedgeCount++;
+            return true;
+        }
+
+        /* package */ synchronized void onRequestOpened(boolean servedByHedge, long latencyMs) {
+            requestCount++;
+            hedgeTokens = Math.min(MAX_HEDGE_TOKENS, hedgeTokens + HEDGE_BUDGET);
+            if (servedByHedge) {
+                hedgeWinCount++;
+            }
+            latencyHistogram.add(latencyMs);
+        }
+
+        /* package */ synchronized void onUnhedgedTtfb(long ttfbMs) {
+            unhedgedTtfbHistogram.add(ttfbMs);
+        }
+
+    }
+
+}
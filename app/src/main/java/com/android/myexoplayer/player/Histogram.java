@@ -0,0 +1,137 @@
+package com.android.myexoplayer.player;
+
+/**
+ * A fixed-size histogram of {@code long} values with linear buckets.
+ * <p>
+ * Values below the lowest bucket or above the highest bucket are clamped into the first and last
+ * bucket respectively. Recording never allocates, so the histogram is safe to update from the
+ * playback thread for every frame. Readers on other threads see a best-effort snapshot.
+ */
+public final class Histogram {
+
+    private final long minValue;
+    private final long bucketWidth;
+    private final long[] counts;
+
+    private long count;
+    private long sum;
+    private long maxValue;
+
+    /**
+     * @param minValue The lower bound of the first bucket.
+     * @param bucketWidth The width of each bucket.
+     * @param bucketCount The number of buckets.
+     */
+    public Histogram(long minValue, long bucketWidth, int bucketCount) {
+        this.minValue = minValue;
+        this.bucketWidth = bucketWidth;
+        counts = new long[bucketCount];
+        maxValue = Long.MIN_VALUE;
+    }
+
+    /**
+     * Records a value.
+     *
+     * @param value
+     */
+    public void add(long value) {
+        long bucket = (value - minValue) / bucketWidth;
+        int index = bucket < 0 ? 0 : bucket >= counts.length ? counts.length - 1 : (int) bucket;
+        counts[index]++;
+        count++;
+        sum += value;
+        if (value > maxValue) {
+            maxValue = value;
+        }
+    }
+
+    /**
+     * Discards all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+        count = 0;
+        sum = 0;
+        maxValue = Long.MIN_VALUE;
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the mean of the recorded values, or 0 if there are none.
+     *
+     * @return mean
+     */
+    public long getMean() {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * Returns the largest recorded value, or 0 if there are none.
+     *
+     * @return max
+     */
+    public long getMax() {
+        return count == 0 ? 0 : maxValue;
+    }
+
+    /**
+     * Returns an estimate of a percentile, as the upper bound of the bucket that contains it.
+     *
+     * @param percentile The percentile, between 0 and 100.
+     * @return The estimate, or 0 if there are no recorded values.
+     */
+    public long getPercentile(int percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(percentile / 100d * count);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return minValue + (i + 1) * bucketWidth;
+            }
+        }
+        return minValue + counts.length * bucketWidth;
+    }
+
+    /**
+     * Returns the number of buckets.
+     *
+     * @return size
+     */
+    public int size() {
+        return counts.length;
+    }
+
+    /**
+     * Returns the number of values recorded into a bucket.
+     *
+     * @param bucket The bucket index.
+     * @return count
+     */
+    public long getBucketCount(int bucket) {
+        return counts[bucket];
+    }
+
+    /**
+     * Returns the lower bound of a bucket.
+     *
+     * @param bucket The bucket index.
+     * @return lowerBound
+     */
+    public long getBucketLowerBound(int bucket) {
+        return minValue + bucket * bucketWidth;
+    }
+
+}
@@ -0,0 +1,356 @@
+package com.android.myexoplayer.player;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.android.exoplayer.C;
+import com.google.android.exoplayer.hls.HlsMediaPlaylist;
+import com.google.android.exoplayer.hls.HlsPlaylist;
+import com.google.android.exoplayer.hls.HlsPlaylistParser;
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.DefaultUriDataSource;
+import com.google.android.exoplayer.upstream.TransferListener;
+import com.google.android.exoplayer.upstream.UriDataSource;
+import com.google.android.exoplayer.util.UriUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link UriDataSource} for HLS that takes playlist refreshes and the download of the next
+ * segment off the critical path of {@link com.google.android.exoplayer.hls.HlsChunkSource}.
+ * <p>
+ * The chunk source loads playlists and segments one at a time through a single data source. This
+ * data source instead:
+ * <ul>
+ *   <li>serves playlists from the {@link ManifestCache}, so that variant playlists survive across
+ *   prepares;</li>
+ *   <li>refreshes the media playlists of live streams in the background every half target
+ *   duration, so that the chunk source's own refreshes are answered from memory;</li>
+ *   <li>downloads the segment following each requested segment of the same variant while the
+ *   requested one is being loaded, and serves it from memory when it is requested in turn.</li>
+ * </ul>
+ * Segment downloads, including prefetches, are reported to the {@link TransferListener} so that
+ * bandwidth estimation is unaffected; reads served from memory are not reported.
+ */
+public class HlsPrefetchingDataSource implements UriDataSource {
+
+    private static final String TAG = "HlsPrefetchingDataSrc";
+
+    /**
+     * The maximum age of cached master and on demand media playlists.
+     */
+    private static final long STATIC_PLAYLIST_MAX_AGE_MS = 10 * 60 * 1000;
+    /**
+     * The number of target durations after its last request at which a live media playlist stops
+     * being refreshed, e.g. because the player switched to another variant.
+     */
+    private static final int REFRESH_IDLE_TARGET_DURATIONS = 3;
+    private static final int MAX_PREFETCHED_SEGMENTS = 2;
+    private static final int MAX_KNOWN_SEGMENTS = 4096;
+    private static final String PLAYLIST_SUFFIX = ".m3u8";
+
+    private final Context context;
+    private final String userAgent;
+    private final TransferListener transferListener;
+    private final UriDataSource segmentDataSource;
+    private final ManifestCache manifestCache;
+    private final HlsPlaylistParser playlistParser;
+    private final ScheduledExecutorService executor;
+    /**
+     * Maps the URI of each known segment to the URI of the segment that follows it.
+     */
+    private final Map<String, String> nextSegmentUris;
+    private final Map<String, Future<byte[]>> prefetchedSegments;
+    private final Map<String, LiveRefresh> liveRefreshes;
+
+    private UriDataSource currentUpstream;
+    private String currentUri;
+    private byte[] currentData;
+    private int currentOffset;
+    private int currentEnd;
+
+    private int prefetchHitCount;
+    private int playlistCacheHitCount;
+
+    /**
+     * @param context A context.
+     * @param userAgent The user agent of requests.
+     * @param transferListener Notified of segment transfers, typically a bandwidth meter.
+     */
+    public HlsPrefetchingDataSource(Context context, String userAgent,
+                                    TransferListener transferListener) {
+        this.context = context;
+        this.userAgent = userAgent;
+        this.transferListener = transferListener;
+        segmentDataSource = RendererBuilderSupport.newChunkDataSource(context, transferListener,
+                userAgent);
+        manifestCache = ManifestCache.getInstance();
+        playlistParser = new HlsPlaylistParser();
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(2);
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.executor = executor;
+        nextSegmentUris = new HashMap<>();
+        prefetchedSegments = new LinkedHashMap<>();
+        liveRefreshes = new HashMap<>();
+    }
+
+    /**
+     * Returns the number of segment requests that were served by a prefetch.
+     */
+    public synchronized int getPrefetchHitCount() {
+        return prefetchHitCount;
+    }
+
+    /**
+     * Returns the number of playlist requests that were served from the {@link ManifestCache}.
+     */
+    public synchronized int getPlaylistCacheHitCount() {
+        return playlistCacheHitCount;
+    }
+
+    /**
+     * Stops prefetching and refreshing, and discards prefetched segments. The data source may still
+     * be used afterwards, but will only load from the network on request.
+     */
+    public synchronized void release() {
+        executor.shutdownNow();
+        for (Future<byte[]> prefetch : prefetchedSegments.values()) {
+            prefetch.cancel(true);
+        }
+        prefetchedSegments.clear();
+        liveRefreshes.clear();
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        String uri = dataSpec.uri.toString();
+        boolean wholeResource = dataSpec.position == 0 && dataSpec.length == C.LENGTH_UNBOUNDED;
+        byte[] data = null;
+        if (wholeResource && isPlaylist(dataSpec.uri)) {
+            data = manifestCache.get(uri);
+            synchronized (this) {
+                if (data != null) {
+                    playlistCacheHitCount++;
+                }
+                LiveRefresh liveRefresh = liveRefreshes.get(uri);
+                if (liveRefresh != null) {
+                    liveRefresh.lastRequestTimeMs = SystemClock.elapsedRealtime();
+                }
+            }
+            if (data == null) {
+                data = load(new DefaultUriDataSource(context, userAgent), dataSpec);
+                onPlaylistLoaded(uri, data);
+            }
+        } else if (wholeResource) {
+            data = takePrefetchedSegment(uri);
+            prefetchNextSegment(uri);
+        }
+        currentUri = uri;
+        if (data != null) {
+            currentData = data;
+            currentOffset = 0;
+            currentEnd = data.length;
+            return data.length;
+        }
+        currentUpstream = segmentDataSource;
+        return currentUpstream.open(dataSpec);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+        if (currentUpstream != null) {
+            return currentUpstream.read(buffer, offset, readLength);
+        }
+        if (currentOffset == currentEnd) {
+            return -1;
+        }
+        int bytesRead = Math.min(readLength, currentEnd - currentOffset);
+        System.arraycopy(currentData, currentOffset, buffer, offset, bytesRead);
+        currentOffset += bytesRead;
+        return bytesRead;
+    }
+
+    @Override
+    public void close() throws IOException {
+        currentData = null;
+        if (currentUpstream != null) {
+            try {
+                currentUpstream.close();
+            } finally {
+                currentUpstream = null;
+            }
+        }
+    }
+
+    @Override
+    public String getUri() {
+        return currentUpstream != null ? currentUpstream.getUri() : currentUri;
+    }
+
+    private static boolean isPlaylist(Uri uri) {
+        String path = uri.getPath();
+        return path != null && path.endsWith(PLAYLIST_SUFFIX);
+    }
+
+    /**
+     * Caches a loaded playlist, and records the order of its segments for prefetching.
+     */
+    private void onPlaylistLoaded(String uri, byte[] data) throws IOException {
+        HlsPlaylist playlist = playlistParser.parse(uri, new ByteArrayInputStream(data));
+        if (playlist.type != HlsPlaylist.TYPE_MEDIA) {
+            manifestCache.put(uri, data, STATIC_PLAYLIST_MAX_AGE_MS);
+            return;
+        }
+        HlsMediaPlaylist mediaPlaylist = (HlsMediaPlaylist) playlist;
+        long refreshIntervalMs = mediaPlaylist.targetDurationSecs * 1000L / 2;
+        manifestCache.put(uri, data,
+                mediaPlaylist.live ? refreshIntervalMs : STATIC_PLAYLIST_MAX_AGE_MS);
+        List<HlsMediaPlaylist.Segment> segments = mediaPlaylist.segments;
+        synchronized (this) {
+            if (nextSegmentUris.size() > MAX_KNOWN_SEGMENTS) {
+                // Forget the segments that long live streams have moved past.
+                nextSegmentUris.clear();
+            }
+            String previousUri = null;
+            for (int i = 0; i < segments.size(); i++) {
+                String segmentUri = UriUtil.resolve(mediaPlaylist.baseUri, segments.get(i).url);
+                if (previousUri != null) {
+                    nextSegmentUris.put(previousUri, segmentUri);
+                }
+                previousUri = segmentUri;
+            }
+            if (mediaPlaylist.live && refreshIntervalMs > 0 && !executor.isShutdown()
+                    && !liveRefreshes.containsKey(uri)) {
+                LiveRefresh liveRefresh = new LiveRefresh(uri, refreshIntervalMs);
+                liveRefreshes.put(uri, liveRefresh);
+                liveRefresh.future = executor.scheduleWithFixedDelay(liveRefresh,
+                        refreshIntervalMs, refreshIntervalMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Returns a prefetched segment, waiting for its download to complete if necessary.
+     *
+     * @return The segment, or null if it was not prefetched or its prefetch failed.
+     */
+    private byte[] takePrefetchedSegment(String uri) throws InterruptedIOException {
+        Future<byte[]> prefetch;
+        synchronized (this) {
+            prefetch = prefetchedSegments.remove(uri);
+        }
+        if (prefetch == null) {
+            return null;
+        }
+        try {
+            byte[] data = prefetch.get();
+            synchronized (this) {
+                prefetchHitCount++;
+            }
+            return data;
+        } catch (InterruptedException e) {
+            prefetch.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Log.w(TAG, "Prefetch failed: " + uri, e.getCause());
+            return null;
+        }
+    }
+
+    private synchronized void prefetchNextSegment(String uri) {
+        final String nextUri = nextSegmentUris.get(uri);
+        if (nextUri == null || prefetchedSegments.containsKey(nextUri) || executor.isShutdown()) {
+            return;
+        }
+        Iterator<Future<byte[]>> iterator = prefetchedSegments.values().iterator();
+        while (prefetchedSegments.size() >= MAX_PREFETCHED_SEGMENTS && iterator.hasNext()) {
+            // The oldest prefetches belong to segments that were skipped, e.g. by a seek.
+            iterator.next().cancel(true);
+            iterator.remove();
+        }
+        prefetchedSegments.put(nextUri, executor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                return load(RendererBuilderSupport.newChunkDataSource(context, transferListener,
+                        userAgent), new DataSpec(Uri.parse(nextUri)));
+            }
+        }));
+    }
+
+    private static byte[] load(UriDataSource dataSource, DataSpec dataSpec) throws IOException {
+        try {
+            long length = dataSource.open(dataSpec);
+            ByteArrayOutputStream output = new ByteArrayOutputStream(
+                    length > 0 && length <= Integer.MAX_VALUE ? (int) length : 64 * 1024);
+            byte[] buffer = new byte[16 * 1024];
+            int bytesRead;
+            while ((bytesRead = dataSource.read(buffer, 0, buffer.length)) != -1) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedIOException();
+                }
+                output.write(buffer, 0, bytesRead);
+            }
+            return output.toByteArray();
+        } finally {
+            dataSource.close();
+        }
+    }
+
+    /**
+     * Periodically reloads a live media playlist into the {@link ManifestCache}.
+     */
+    private final class LiveRefresh implements Runnable {
+
+        private final String uri;
+        private final long intervalMs;
+        private final UriDataSource dataSource;
+
+        public volatile long lastRequestTimeMs;
+        public ScheduledFuture<?> future;
+
+        public LiveRefresh(String uri, long intervalMs) {
+            this.uri = uri;
+            this.intervalMs = intervalMs;
+            dataSource = new DefaultUriDataSource(context, userAgent);
+            lastRequestTimeMs = SystemClock.elapsedRealtime();
+        }
+
+        @Override
+        public void run() {
+            long idleMs = SystemClock.elapsedRealtime() - lastRequestTimeMs;
+            if (idleMs > intervalMs * 2 * REFRESH_IDLE_TARGET_DURATIONS) {
+                synchronized (HlsPrefetchingDataSource.this) {
+                    liveRefreshes.remove(uri);
+                    future.cancel(false);
+                }
+                return;
+            }
+            try {
+                onPlaylistLoaded(uri, load(dataSource, new DataSpec(Uri.parse(uri))));
+            } catch (IOException e) {
+                // The chunk source will load the playlist itself and report any error.
+                Log.w(TAG, "Playlist refresh failed: " + uri, e);
+            }
+        }
+
+    }
+
+}
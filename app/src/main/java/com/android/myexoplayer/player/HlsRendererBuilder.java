@@ -0,0 +1,186 @@
+package com.android.myexoplayer.player;
+
+import android.content.Context;
+import android.os.Handler;
+
+import com.google.android.exoplayer.DefaultLoadControl;
+import com.google.android.exoplayer.LoadControl;
+import com.google.android.exoplayer.MediaCodecUtil.DecoderQueryException;
+import com.google.android.exoplayer.TrackRenderer;
+import com.google.android.exoplayer.audio.AudioCapabilities;
+import com.google.android.exoplayer.hls.HlsChunkSource;
+import com.google.android.exoplayer.hls.HlsMasterPlaylist;
+import com.google.android.exoplayer.hls.HlsPlaylist;
+import com.google.android.exoplayer.hls.HlsPlaylistParser;
+import com.google.android.exoplayer.hls.HlsSampleSource;
+import com.google.android.exoplayer.metadata.Id3Parser;
+import com.google.android.exoplayer.metadata.MetadataTrackRenderer;
+import com.google.android.exoplayer.text.eia608.Eia608TrackRenderer;
+import com.google.android.exoplayer.upstream.DefaultAllocator;
+import com.google.android.exoplayer.upstream.DefaultBandwidthMeter;
+import com.google.android.exoplayer.util.ManifestFetcher;
+
+import com.android.myexoplayer.player.DemoPlayer.RendererBuilder;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * A {@link RendererBuilder} for HLS.
+ * <p>
+ * Playlists and segments are loaded through an {@link HlsPrefetchingDataSource}, so that playlists
+ * are cached across prepares, live playlists are refreshed concurrently with segment downloads and
+ * the next segment is prefetched while the current one loads.
+ */
+public class HlsRendererBuilder implements RendererBuilder {
+
+    private static final int BUFFER_SEGMENT_SIZE = 64 * 1024;
+    private static final int BUFFER_SEGMENTS = 256;
+
+    private final Context context;
+    private final String userAgent;
+    private final String url;
+    private final AudioCapabilities audioCapabilities;
+    private final TrackRendererFactory rendererFactory;
+
+    private AsyncRendererBuilder currentAsyncBuilder;
+    private HlsPrefetchingDataSource dataSource;
+
+    public HlsRendererBuilder(Context context, String userAgent, String url,
+                              AudioCapabilities audioCapabilities) {
+        this(context, userAgent, url, audioCapabilities, new MediaCodecTrackRendererFactory());
+    }
+
+    /**
+     * @param rendererFactory Creates the video and audio renderers.
+     */
+    public HlsRendererBuilder(Context context, String userAgent, String url,
+                              AudioCapabilities audioCapabilities,
+                              TrackRendererFactory rendererFactory) {
+        this.context = context;
+        this.userAgent = userAgent;
+        this.url = url;
+        this.audioCapabilities = audioCapabilities;
+        this.rendererFactory = rendererFactory;
+    }
+
+    @Override
+    public void buildRenderers(DemoPlayer player) {
+        currentAsyncBuilder = new AsyncRendererBuilder(context, userAgent, url, audioCapabilities,
+                rendererFactory, player);
+        dataSource = currentAsyncBuilder.dataSource;
+        currentAsyncBuilder.init();
+    }
+
+    @Override
+    public void cancel() {
+        if (currentAsyncBuilder != null) {
+            currentAsyncBuilder.cancel();
+            currentAsyncBuilder = null;
+        }
+    }
+
+    /**
+     * Returns the data source of the most recently built renderers, or null if none have been built.
+     * The data source remains readable for its statistics after the renderers are released.
+     */
+    public HlsPrefetchingDataSource getDataSource() {
+        return dataSource;
+    }
+
+    private static final class AsyncRendererBuilder
+            implements ManifestFetcher.ManifestCallback<HlsPlaylist> {
+
+        private final Context context;
+        private final String url;
+        private final AudioCapabilities audioCapabilities;
+        private final TrackRendererFactory rendererFactory;
+        private final DemoPlayer player;
+        private final DefaultBandwidthMeter bandwidthMeter;
+        private final HlsPrefetchingDataSource dataSource;
+        private final ManifestFetcher<HlsPlaylist> playlistFetcher;
+
+        private boolean canceled;
+
+        public AsyncRendererBuilder(Context context, String userAgent, String url,
+                                    AudioCapabilities audioCapabilities,
+                                    TrackRendererFactory rendererFactory, DemoPlayer player) {
+            this.context = context;
+            this.url = url;
+            this.audioCapabilities = audioCapabilities;
+            this.rendererFactory = rendererFactory;
+            this.player = player;
+            bandwidthMeter = new DefaultBandwidthMeter(player.getMainHandler(), player);
+            dataSource = new HlsPrefetchingDataSource(context, userAgent, bandwidthMeter);
+            playlistFetcher = new ManifestFetcher<>(url, dataSource, new HlsPlaylistParser());
+        }
+
+        public void init() {
+            playlistFetcher.singleLoad(player.getMainHandler().getLooper(), this);
+        }
+
+        public void cancel() {
+            canceled = true;
+            dataSource.release();
+        }
+
+        @Override
+        public void onSingleManifestError(IOException e) {
+            if (canceled) {
+                return;
+            }
+            player.onRenderersError(e);
+        }
+
+        @Override
+        public void onSingleManifest(HlsPlaylist manifest) {
+            if (canceled) {
+                return;
+            }
+            player.onManifestLoaded();
+
+            Handler mainHandler = player.getMainHandler();
+            LoadControl loadControl = new DefaultLoadControl(new DefaultAllocator(BUFFER_SEGMENT_SIZE));
+
+            int[] variantIndices = null;
+            if (manifest instanceof HlsMasterPlaylist) {
+                HlsMasterPlaylist masterPlaylist = (HlsMasterPlaylist) manifest;
+                try {
+                    variantIndices = RendererBuilderSupport.selectVideoFormats(context,
+                            rendererFactory, player, masterPlaylist.variants, false);
+                } catch (DecoderQueryException e) {
+                    player.onRenderersError(e);
+                    return;
+                }
+                if (variantIndices.length == 0) {
+                    player.onRenderersError(new IllegalStateException("No variants selected."));
+                    return;
+                }
+            }
+
+            HlsChunkSource chunkSource = new HlsChunkSource(dataSource, url, manifest,
+                    bandwidthMeter, variantIndices, HlsChunkSource.ADAPTIVE_MODE_SPLICE,
+                    audioCapabilities);
+            HlsSampleSource sampleSource = new HlsSampleSource(chunkSource, loadControl,
+                    BUFFER_SEGMENTS * BUFFER_SEGMENT_SIZE, mainHandler, player,
+                    DemoPlayer.TYPE_VIDEO);
+            TrackRenderer videoRenderer = rendererFactory.createVideoRenderer(sampleSource, null,
+                    mainHandler, player);
+            TrackRenderer audioRenderer = rendererFactory.createAudioRenderer(sampleSource, null,
+                    mainHandler, player);
+            MetadataTrackRenderer<Map<String, Object>> id3Renderer = new MetadataTrackRenderer<>(
+                    sampleSource, new Id3Parser(), player, mainHandler.getLooper());
+            Eia608TrackRenderer closedCaptionRenderer = new Eia608TrackRenderer(sampleSource, player,
+                    mainHandler.getLooper());
+
+            TrackRenderer[] renderers = new TrackRenderer[DemoPlayer.RENDERER_COUNT];
+            renderers[DemoPlayer.TYPE_VIDEO] = videoRenderer;
+            renderers[DemoPlayer.TYPE_AUDIO] = audioRenderer;
+            renderers[DemoPlayer.TYPE_METADATA] = id3Renderer;
+            renderers[DemoPlayer.TYPE_TEXT] = closedCaptionRenderer;
+            player.onRenderers(null, null, renderers, bandwidthMeter);
+        }
+
+    }
+
+}
@@ -0,0 +1,203 @@
+package com.android.myexoplayer.player;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Process wide scores of the hosts that media is loaded from, fed by the timings and errors of
+ * chunk loads and persisted across sessions.
+ * <p>
+ * Each host has a smoothed time to first byte and throughput, from which the expected time to load
+ * a chunk is derived. Hosts that fail are avoided for an exponentially growing backoff period.
+ * Scores are saved to {@link SharedPreferences} at most every {@link #SAVE_INTERVAL_MS}, and scores
+ * older than {@link #MAX_SCORE_AGE_MS} are not restored.
+ */
+public final class HostScoreboard {
+
+    private static final String PREFERENCES_NAME = "host_scores";
+    private static final long SAVE_INTERVAL_MS = 10 * 1000;
+    private static final long MAX_SCORE_AGE_MS = 24 * 60 * 60 * 1000;
+    private static final long MIN_BACKOFF_MS = 5 * 1000;
+    private static final long MAX_BACKOFF_MS = 2 * 60 * 1000;
+    private static final float SMOOTHING = 0.3f;
+
+    private static HostScoreboard instance;
+
+    private final SharedPreferences preferences;
+    private final Map<String, HostScore> scores;
+
+    private long lastSaveTimeMs;
+
+    private HostScoreboard(SharedPreferences preferences) {
+        this.preferences = preferences;
+        scores = new HashMap<>();
+        restore();
+    }
+
+    /**
+     * Returns the scoreboard of the process, restoring it from storage if necessary.
+     */
+    public static synchronized HostScoreboard getInstance(Context context) {
+        if (instance == null) {
+            instance = new HostScoreboard(context.getApplicationContext()
+                    .getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE));
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the expected time to load a chunk from a host, or -1 if the host has not been
+     * measured.
+     *
+     * @param host The host, as returned by {@link CdnSelector#getHost(String)}.
+     * @param chunkBytes The size of the chunk.
+     */
+    public synchronized long getExpectedLoadTimeMs(String host, long chunkBytes) {
+        HostScore score = scores.get(host);
+        if (score == null || score.ttfbMs < 0) {
+            return -1;
+        }
+        long transferMs = score.throughputBps > 0 ? (long) (chunkBytes * 8000 / score.throughputBps)
+                : 0;
+        return (long) score.ttfbMs + transferMs;
+    }
+
+    /**
+     * Returns the smoothed throughput of a host in bits per second, or -1 if no transfer from it
+     * has been measured, e.g. because it has only been probed.
+     */
+    public synchronized long getThroughputBps(String host) {
+        HostScore score = scores.get(host);
+        return score == null || score.throughputBps <= 0 ? -1 : (long) score.throughputBps;
+    }
+
+    /**
+     * Returns whether a host is not backing off after errors.
+     */
+    public synchronized boolean isHealthy(String host) {
+        HostScore score = scores.get(host);
+        return score == null || SystemClock.elapsedRealtime() >= score.backoffEndTimeMs;
+    }
+
+    /**
+     * Returns the wall clock time at which a host was last measured, or 0 if it never was.
+     */
+    public synchronized long getLastUpdateTimeMs(String host) {
+        HostScore score = scores.get(host);
+        return score == null ? 0 : score.updateTimeMs;
+    }
+
+    /**
+     * Records a time to first byte, e.g. of a probe.
+     */
+    public synchronized void onFirstByte(String host, long ttfbMs) {
+        HostScore score = getOrCreateScore(host);
+        score.ttfbMs = score.ttfbMs < 0 ? ttfbMs : score.ttfbMs + SMOOTHING * (ttfbMs - score.ttfbMs);
+        onSuccess(score);
+    }
+
+    /**
+     * Records a completed transfer.
+     *
+     * @param host The host.
+     * @param bytes The number of bytes transferred.
+     * @param transferMs The time taken from the first byte to the last.
+     */
+    public synchronized void onTransfer(String host, long bytes, long transferMs) {
+        HostScore score = getOrCreateScore(host);
+        float throughputBps = bytes * 8000f / Math.max(1, transferMs);
+        score.throughputBps = score.throughputBps <= 0 ? throughputBps
+                : score.throughputBps + SMOOTHING * (throughputBps - score.throughputBps);
+        onSuccess(score);
+    }
+
+    /**
+     * Records a failed request, backing the host off.
+     */
+    public synchronized void onError(String host) {
+        HostScore score = getOrCreateScore(host);
+        score.consecutiveErrorCount++;
+        long backoffMs = Math.min(MAX_BACKOFF_MS,
+                MIN_BACKOFF_MS << Math.min(16, score.consecutiveErrorCount - 1));
+        score.backoffEndTimeMs = SystemClock.elapsedRealtime() + backoffMs;
+        score.updateTimeMs = System.currentTimeMillis();
+        maybeSave();
+    }
+
+    /**
+     * Discards all scores, including the persisted ones.
+     */
+    public synchronized void clear() {
+        scores.clear();
+        preferences.edit().clear().apply();
+    }
+
+    private void onSuccess(HostScore score) {
+        score.consecutiveErrorCount = 0;
+        score.backoffEndTimeMs = 0;
+        score.updateTimeMs = System.currentTimeMillis();
+        maybeSave();
+    }
+
+    private HostScore getOrCreateScore(String host) {
+        HostScore score = scores.get(host);
+        if (score == null) {
+            score = new HostScore();
+            scores.put(host, score);
+        }
+        return score;
+    }
+
+    private void maybeSave() {
+        long nowMs = SystemClock.elapsedRealtime();
+        if (nowMs - lastSaveTimeMs < SAVE_INTERVAL_MS) {
+            return;
+        }
+        lastSaveTimeMs = nowMs;
+        SharedPreferences.Editor editor = preferences.edit().clear();
+        for (Map.Entry<String, HostScore> entry : scores.entrySet()) {
+            HostScore score = entry.getValue();
+            editor.putString(entry.getKey(), score.ttfbMs + ";" + score.throughputBps + ";"
+                    + score.consecutiveErrorCount + ";" + score.updateTimeMs);
+        }
+        editor.apply();
+    }
+
+    private void restore() {
+        long oldestTimeMs = System.currentTimeMillis() - MAX_SCORE_AGE_MS;
+        for (Map.Entry<String, ?> entry : preferences.getAll().entrySet()) {
+            String[] fields = String.valueOf(entry.getValue()).split(";");
+            if (fields.length != 4) {
+                continue;
+            }
+            try {
+                HostScore score = new HostScore();
+                score.ttfbMs = Float.parseFloat(fields[0]);
+                score.throughputBps = Float.parseFloat(fields[1]);
+                score.consecutiveErrorCount = Integer.parseInt(fields[2]);
+                score.updateTimeMs = Long.parseLong(fields[3]);
+                if (score.updateTimeMs >= oldestTimeMs) {
+                    // Backoffs are not restored; a host that failed is retried in a new process.
+                    scores.put(entry.getKey(), score);
+                }
+            } catch (NumberFormatException e) {
+                // Ignore the malformed entry.
+            }
+        }
+    }
+
+    private static final class HostScore {
+
+        public float ttfbMs = -1;
+        public float throughputBps;
+        public int consecutiveErrorCount;
+        public long backoffEndTimeMs;
+        public long updateTimeMs;
+
+    }
+
+}
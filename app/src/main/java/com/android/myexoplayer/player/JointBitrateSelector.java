@@ -0,0 +1,144 @@
+package com.android.myexoplayer.player;
+
+import com.google.android.exoplayer.chunk.Chunk;
+import com.google.android.exoplayer.chunk.Format;
+import com.google.android.exoplayer.chunk.FormatEvaluator;
+import com.google.android.exoplayer.chunk.MediaChunk;
+import com.google.android.exoplayer.upstream.BandwidthMeter;
+
+import java.util.List;
+
+/**
+ * Selects the audio and video bitrates of a session together, so that neither starves the other.
+ * <p>
+ * Audio formats are chosen by a {@link BandwidthSplitPolicy}, and the video evaluator sees a
+ * {@link BandwidthMeter} whose estimate excludes the bitrate of the audio being loaded. Audio
+ * tracks that the user fixes are accounted for in the same way.
+ */
+public final class JointBitrateSelector {
+
+    /**
+     * The estimate that the policy is given before the bandwidth meter has one, matching the
+     * initial bitrate of the {@link FormatEvaluator.AdaptiveEvaluator}.
+     */
+    private static final long INITIAL_BITRATE_ESTIMATE = 800000;
+
+    private final BandwidthMeter bandwidthMeter;
+    private final BandwidthSplitPolicy policy;
+    private final Format[] videoFormats;
+    private final BandwidthMeter videoBandwidthMeter;
+
+    private volatile int audioBitrate;
+
+    /**
+     * @param bandwidthMeter The bandwidth meter of the session.
+     * @param policy The policy that chooses audio formats.
+     * @param videoFormats The video formats that video adapts between, in order of decreasing
+     *     bitrate. Empty if the session has no video.
+     */
+    public JointBitrateSelector(BandwidthMeter bandwidthMeter, BandwidthSplitPolicy policy,
+                                Format[] videoFormats) {
+        this.bandwidthMeter = bandwidthMeter;
+        this.policy = policy;
+        this.videoFormats = videoFormats;
+        videoBandwidthMeter = new VideoBandwidthMeter();
+    }
+
+    /**
+     * Returns the bandwidth meter to pass to the video evaluator.
+     */
+    public BandwidthMeter getVideoBandwidthMeter() {
+        return videoBandwidthMeter;
+    }
+
+    /**
+     * Returns a new evaluator for an audio chunk source that adapts between formats.
+     */
+    public FormatEvaluator newAdaptiveAudioEvaluator() {
+        return new AudioEvaluator(true);
+    }
+
+    /**
+     * Returns a new evaluator for an audio chunk source with a single format.
+     */
+    public FormatEvaluator newFixedAudioEvaluator() {
+        return new AudioEvaluator(false);
+    }
+
+    /**
+     * Returns the bitrate of the audio being loaded, or 0 if none is yet.
+     */
+    public int getAudioBitrate() {
+        return audioBitrate;
+    }
+
+    private final class AudioEvaluator implements FormatEvaluator {
+
+        private final boolean adaptive;
+
+        public AudioEvaluator(boolean adaptive) {
+            this.adaptive = adaptive;
+        }
+
+        @Override
+        public void enable() {
+            // Do nothing.
+        }
+
+        @Override
+        public void disable() {
+            // Do nothing.
+        }
+
+        @Override
+        public void evaluate(List<? extends MediaChunk> queue, long playbackPositionUs,
+                             Format[] formats, Evaluation evaluation) {
+            Format current = evaluation.format;
+            Format selected;
+            if (adaptive) {
+                long bitrateEstimate = bandwidthMeter.getBitrateEstimate();
+                if (bitrateEstimate == BandwidthMeter.NO_ESTIMATE) {
+                    bitrateEstimate = INITIAL_BITRATE_ESTIMATE;
+                }
+                selected = policy.selectAudioFormat(bitrateEstimate, formats, videoFormats, current);
+            } else {
+                selected = formats[0];
+            }
+            if (current != null && selected != current) {
+                evaluation.trigger = Chunk.TRIGGER_ADAPTIVE;
+            }
+            evaluation.format = selected;
+            audioBitrate = selected.bitrate;
+        }
+
+    }
+
+    private final class VideoBandwidthMeter implements BandwidthMeter {
+
+        @Override
+        public long getBitrateEstimate() {
+            long bitrateEstimate = bandwidthMeter.getBitrateEstimate();
+            if (bitrateEstimate == NO_ESTIMATE) {
+                return NO_ESTIMATE;
+            }
+            return Math.max(0, bitrateEstimate - audioBitrate);
+        }
+
+        @Override
+        public void onTransferStart() {
+            bandwidthMeter.onTransferStart();
+        }
+
+        @Override
+        public void onBytesTransferred(int bytes) {
+            bandwidthMeter.onBytesTransferred(bytes);
+        }
+
+        @Override
+        public void onTransferEnd() {
+            bandwidthMeter.onTransferEnd();
+        }
+
+    }
+
+}
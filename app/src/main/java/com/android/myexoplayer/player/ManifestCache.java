@@ -0,0 +1,139 @@
+package com.android.myexoplayer.player;
+
+import android.os.SystemClock;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A process wide cache of manifest and playlist bytes, keyed by URI.
+ * <p>
+ * Entries outlive the players that loaded them, so preparing the same content again does not wait
+ * on the network for its manifests. Each entry carries its own maximum age, so that static and live
+ * manifests can share the cache.
+ */
+public final class ManifestCache {
+
+    private static final int MAX_ENTRIES = 32;
+
+    private static ManifestCache instance;
+
+    private final Map<String, Entry> entries;
+
+    private int hitCount;
+    private int missCount;
+
+    /* package */ ManifestCache() {
+        entries = new LinkedHashMap<String, Entry>(MAX_ENTRIES, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+    }
+
+    /**
+     * Returns the process wide instance.
+     */
+    public static synchronized ManifestCache getInstance() {
+        if (instance == null) {
+            instance = new ManifestCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the cached bytes of a manifest.
+     *
+     * @param uri The URI of the manifest.
+     * @return The bytes, or null if the manifest is not cached or its entry has expired.
+     */
+    public synchronized byte[] get(String uri) {
+        Entry entry = entries.get(uri);
+        if (entry == null || SystemClock.elapsedRealtime() >= entry.expiryTimeMs) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return entry.data;
+    }
+
+    /**
+     * Caches the bytes of a manifest.
+     *
+     * @param uri The URI of the manifest.
+     * @param data The bytes of the manifest.
+     * @param maxAgeMs The duration for which the bytes may be served.
+     */
+    public synchronized void put(String uri, byte[] data, long maxAgeMs) {
+        put(uri, data, maxAgeMs, uri);
+    }
+
+    /**
+     * Caches the bytes of a manifest that was loaded from another URI than it was requested from,
+     * e.g. after a redirect.
+     *
+     * @param uri The URI of the manifest.
+     * @param data The bytes of the manifest.
+     * @param maxAgeMs The duration for which the bytes may be served.
+     * @param resolvedUri The URI that the manifest was loaded from, against which its relative URLs
+     *     resolve.
+     */
+    public synchronized void put(String uri, byte[] data, long maxAgeMs, String resolvedUri) {
+        entries.put(uri, new Entry(data, SystemClock.elapsedRealtime() + maxAgeMs, resolvedUri));
+    }
+
+    /**
+     * Returns the URI that a cached manifest was loaded from.
+     *
+     * @param uri The URI of the manifest.
+     * @return The URI it was loaded from, or {@code uri} if it is not cached.
+     */
+    public synchronized String getResolvedUri(String uri) {
+        Entry entry = entries.get(uri);
+        return entry != null ? entry.resolvedUri : uri;
+    }
+
+    /**
+     * Removes a manifest from the cache.
+     */
+    public synchronized void remove(String uri) {
+        entries.remove(uri);
+    }
+
+    /**
+     * Removes all manifests from the cache.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Returns the number of lookups that were served from the cache.
+     */
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of lookups that were not served from the cache.
+     */
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    private static final class Entry {
+
+        public final byte[] data;
+        public final long expiryTimeMs;
+        public final String resolvedUri;
+
+        public Entry(byte[] data, long expiryTimeMs, String resolvedUri) {
+            this.data = data;
+            this.expiryTimeMs = expiryTimeMs;
+            this.resolvedUri = resolvedUri;
+        }
+
+    }
+
+}
@@ -0,0 +1,191 @@
+package com.android.myexoplayer.player;
+
+import com.google.android.exoplayer.C;
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.UriDataSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link UriDataSource} for manifests that serves repeated loads from the {@link ManifestCache}.
+ * <p>
+ * Caching suits static manifests only. A {@link LiveManifestDetector} keeps live manifests out of
+ * the cache, and once a builder finds that a manifest describes a live presentation it should also
+ * call {@link #disableCaching()}, so that refreshes do not look in the cache at all.
+ * <p>
+ * Cached manifests are served with the URI they were loaded from, after redirects, so that their
+ * relative URLs resolve as they would against the network.
+ */
+public class ManifestCachingDataSource implements UriDataSource {
+
+    /**
+     * Tells whether a manifest describes a live presentation.
+     */
+    public interface LiveManifestDetector {
+
+        /**
+         * Returns whether a manifest describes a live presentation.
+         *
+         * @param manifest The bytes of the manifest.
+         */
+        boolean isLive(byte[] manifest);
+
+    }
+
+    /**
+     * Detects dynamic DASH manifests by the type attribute of their MPD element.
+     */
+    public static final LiveManifestDetector DASH_LIVE_DETECTOR =
+            new RootAttributeDetector("MPD", Pattern.compile("\\btype\\s*=\\s*[\"']dynamic[\"']"));
+    /**
+     * Detects live SmoothStreaming manifests by the IsLive attribute of their root element.
+     */
+    public static final LiveManifestDetector SMOOTH_STREAMING_LIVE_DETECTOR =
+            new RootAttributeDetector("SmoothStreamingMedia",
+                    Pattern.compile("\\bIsLive\\s*=\\s*[\"']true[\"']", Pattern.CASE_INSENSITIVE));
+
+    private final UriDataSource upstream;
+    private final ManifestCache manifestCache;
+    private final long maxAgeMs;
+    private final LiveManifestDetector liveManifestDetector;
+
+    private volatile boolean cachingEnabled;
+    private volatile String lastCachedUri;
+    private String currentUri;
+    private String currentResolvedUri;
+    private byte[] currentData;
+    private int currentOffset;
+    private boolean upstreamOpened;
+
+    /**
+     * @param upstream The source of manifests that are not cached.
+     * @param maxAgeMs The duration for which a loaded manifest may be served from the cache.
+     * @param liveManifestDetector Detects live manifests, which are not cached, or null if all
+     *     manifests may be cached.
+     */
+    public ManifestCachingDataSource(UriDataSource upstream, long maxAgeMs,
+                                     LiveManifestDetector liveManifestDetector) {
+        this.upstream = upstream;
+        this.maxAgeMs = maxAgeMs;
+        this.liveManifestDetector = liveManifestDetector;
+        manifestCache = ManifestCache.getInstance();
+        cachingEnabled = true;
+    }
+
+    /**
+     * Stops serving manifests from the cache, and evicts the most recently cached manifest.
+     */
+    public void disableCaching() {
+        cachingEnabled = false;
+        String uri = lastCachedUri;
+        if (uri != null) {
+            manifestCache.remove(uri);
+        }
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        currentUri = dataSpec.uri.toString();
+        boolean wholeResource = dataSpec.position == 0 && dataSpec.length == C.LENGTH_UNBOUNDED;
+        if (!cachingEnabled || !wholeResource) {
+            upstreamOpened = true;
+            return upstream.open(dataSpec);
+        }
+        byte[] data = manifestCache.get(currentUri);
+        if (data != null) {
+            currentResolvedUri = manifestCache.getResolvedUri(currentUri);
+        } else {
+            data = load(dataSpec);
+            if (liveManifestDetector == null || !liveManifestDetector.isLive(data)) {
+                manifestCache.put(currentUri, data, maxAgeMs, currentResolvedUri);
+                lastCachedUri = currentUri;
+            }
+        }
+        currentData = data;
+        currentOffset = 0;
+        return data.length;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+        if (upstreamOpened) {
+            return upstream.read(buffer, offset, readLength);
+        }
+        if (currentOffset == currentData.length) {
+            return -1;
+        }
+        int bytesRead = Math.min(readLength, currentData.length - currentOffset);
+        System.arraycopy(currentData, currentOffset, buffer, offset, bytesRead);
+        currentOffset += bytesRead;
+        return bytesRead;
+    }
+
+    @Override
+    public void close() throws IOException {
+        currentData = null;
+        if (upstreamOpened) {
+            upstreamOpened = false;
+            upstream.close();
+        }
+    }
+
+    @Override
+    public String getUri() {
+        return upstreamOpened ? upstream.getUri() : currentResolvedUri;
+    }
+
+    private byte[] load(DataSpec dataSpec) throws IOException {
+        try {
+            upstream.open(dataSpec);
+            String resolvedUri = upstream.getUri();
+            currentResolvedUri = resolvedUri != null ? resolvedUri : currentUri;
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int bytesRead;
+            while ((bytesRead = upstream.read(buffer, 0, buffer.length)) != -1) {
+                output.write(buffer, 0, bytesRead);
+            }
+            return output.toByteArray();
+        } finally {
+            upstream.close();
+        }
+    }
+
+    /**
+     * Detects live manifests by an attribute of their root element.
+     */
+    private static final class RootAttributeDetector implements LiveManifestDetector {
+
+        /**
+         * The number of leading bytes searched for the root element, which follows at most an XML
+         * declaration and comments.
+         */
+        private static final int MAX_PREFIX_LENGTH = 8192;
+
+        private final String rootElementStart;
+        private final Pattern liveAttribute;
+
+        public RootAttributeDetector(String rootElement, Pattern liveAttribute) {
+            rootElementStart = "<" + rootElement;
+            this.liveAttribute = liveAttribute;
+        }
+
+        @Override
+        public boolean isLive(byte[] manifest) {
+            String prefix = new String(manifest, 0, Math.min(manifest.length, MAX_PREFIX_LENGTH),
+                    Charset.forName("UTF-8"));
+            int start = prefix.indexOf(rootElementStart);
+            if (start == -1) {
+                return false;
+            }
+            int end = prefix.indexOf('>', start);
+            String startTag = end == -1 ? prefix.substring(start) : prefix.substring(start, end);
+            return liveAttribute.matcher(startTag).find();
+        }
+
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.android.myexoplayer.player;
+
+import android.content.Context;
+import android.media.MediaCodec;
+import android.os.Handler;
+
+import com.google.android.exoplayer.DecoderInfo;
+import com.google.android.exoplayer.MediaCodecAudioTrackRenderer;
+import com.google.android.exoplayer.MediaCodecUtil;
+import com.google.android.exoplayer.MediaCodecUtil.DecoderQueryException;
+import com.google.android.exoplayer.MediaCodecVideoTrackRenderer;
+import com.google.android.exoplayer.SampleSource;
+import com.google.android.exoplayer.TrackRenderer;
+import com.google.android.exoplayer.chunk.FormatWrapper;
+import com.google.android.exoplayer.chunk.VideoFormatSelectorUtil;
+import com.google.android.exoplayer.drm.DrmSessionManager;
+
+import java.util.List;
+
+/**
+ * A {@link TrackRendererFactory} that creates {@link MediaCodec} based renderers.
+ */
+public class MediaCodecTrackRendererFactory implements TrackRendererFactory {
+
+    private static final int ALLOWED_JOINING_TIME_MS = 5000;
+    private static final int MAX_DROPPED_FRAME_COUNT_TO_NOTIFY = 50;
+    /**
+     * The prefix of the names of the platform's software decoders.
+     */
+    private static final String SOFTWARE_DECODER_PREFIX = "OMX.google.";
+
+    @Override
+    public int[] selectVideoFormats(Context context, List<? extends FormatWrapper> formatWrappers,
+                                    boolean filterHdContent) throws DecoderQueryException {
+        return VideoFormatSelectorUtil.selectVideoFormatsForDefaultDisplay(context, formatWrappers,
+                null, filterHdContent);
+    }
+
+    @Override
+    public boolean isHardwareAccelerated(String mimeType) throws DecoderQueryException {
+        DecoderInfo decoderInfo = MediaCodecUtil.getDecoderInfo(mimeType, false);
+        return decoderInfo != null && !decoderInfo.name.startsWith(SOFTWARE_DECODER_PREFIX);
+    }
+
+    @Override
+    public TrackRenderer createVideoRenderer(SampleSource sampleSource,
+                                             DrmSessionManager drmSessionManager, Handler mainHandler, DemoPlayer player) {
+        return new MediaCodecVideoTrackRenderer(sampleSource, drmSessionManager, true,
+                MediaCodec.VIDEO_SCALING_MODE_SCALE_TO_FIT, ALLOWED_JOINING_TIME_MS,
+                player.getFrameTimingStats(), mainHandler, player, MAX_DROPPED_FRAME_COUNT_TO_NOTIFY);
+    }
+
+    @Override
+    public TrackRenderer createAudioRenderer(SampleSource sampleSource,
+                                             DrmSessionManager drmSessionManager, Handler mainHandler, DemoPlayer player) {
+        return new MediaCodecAudioTrackRenderer(sampleSource, drmSessionManager, true, mainHandler,
+                player);
+    }
+
+}
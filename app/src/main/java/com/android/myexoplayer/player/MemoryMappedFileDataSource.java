@@ -0,0 +1,162 @@
+package com.android.myexoplayer.player;
+
+import com.google.android.exoplayer.C;
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.TransferListener;
+import com.google.android.exoplayer.upstream.UriDataSource;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A {@link UriDataSource} for local files that maps them into memory.
+ * <p>
+ * Reads are served from the mapping, so each one is a single copy from the page cache straight into
+ * the caller's buffer (for the extractors, the sample allocation), without a system call or an
+ * intermediate buffer. Files are mapped in windows of {@link #MAPPING_WINDOW_SIZE} bytes so that
+ * large files do not exhaust the address space.
+ */
+public final class MemoryMappedFileDataSource implements UriDataSource {
+
+    /**
+     * Thrown when IOException is encountered during local file read operation.
+     */
+    public static class MemoryMappedFileDataSourceException extends IOException {
+
+        public MemoryMappedFileDataSourceException(IOException cause) {
+            super(cause);
+        }
+
+    }
+
+    /**
+     * The maximum number of bytes mapped at once.
+     */
+    public static final int MAPPING_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private final TransferListener listener;
+
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private MappedByteBuffer mapping;
+    private long mappingPosition;
+    private long position;
+    private long bytesRemaining;
+    private String uriString;
+    private boolean opened;
+
+    public MemoryMappedFileDataSource() {
+        this(null);
+    }
+
+    /**
+     * @param listener An optional listener.
+     */
+    public MemoryMappedFileDataSource(TransferListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws MemoryMappedFileDataSourceException {
+        try {
+            uriString = dataSpec.uri.toString();
+            file = new RandomAccessFile(dataSpec.uri.getPath(), "r");
+            channel = file.getChannel();
+            long fileLength = channel.size();
+            position = dataSpec.position;
+            bytesRemaining = dataSpec.length == C.LENGTH_UNBOUNDED ? fileLength - position
+                    : dataSpec.length;
+            if (bytesRemaining < 0 || position + bytesRemaining > fileLength) {
+                throw new EOFException();
+            }
+            map(position);
+        } catch (IOException e) {
+            closeQuietly();
+            throw new MemoryMappedFileDataSourceException(e);
+        }
+
+        opened = true;
+        if (listener != null) {
+            listener.onTransferStart();
+        }
+        return bytesRemaining;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength)
+            throws MemoryMappedFileDataSourceException {
+        if (bytesRemaining == 0) {
+            return -1;
+        }
+        try {
+            if (position >= mappingPosition + mapping.limit()) {
+                map(position);
+            }
+        } catch (IOException e) {
+            throw new MemoryMappedFileDataSourceException(e);
+        }
+        int mappingOffset = (int) (position - mappingPosition);
+        int bytesRead = (int) Math.min(Math.min(readLength, bytesRemaining),
+                mapping.limit() - mappingOffset);
+        mapping.position(mappingOffset);
+        mapping.get(buffer, offset, bytesRead);
+        position += bytesRead;
+        bytesRemaining -= bytesRead;
+        if (listener != null) {
+            listener.onBytesTransferred(bytesRead);
+        }
+        return bytesRead;
+    }
+
+    @Override
+    public String getUri() {
+        return uriString;
+    }
+
+    @Override
+    public void close() throws MemoryMappedFileDataSourceException {
+        uriString = null;
+        try {
+            if (file != null) {
+                file.close();
+            }
+        } catch (IOException e) {
+            throw new MemoryMappedFileDataSourceException(e);
+        } finally {
+            // The mapping is released when it is garbage collected; closing the file does not
+            // invalidate it.
+            mapping = null;
+            channel = null;
+            file = null;
+            if (opened) {
+                opened = false;
+                if (listener != null) {
+                    listener.onTransferEnd();
+                }
+            }
+        }
+    }
+
+    private void map(long position) throws IOException {
+        long size = Math.min(MAPPING_WINDOW_SIZE, channel.size() - position);
+        mapping = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        mappingPosition = position;
+    }
+
+    private void closeQuietly() {
+        try {
+            if (file != null) {
+                file.close();
+            }
+        } catch (IOException e) {
+            // Ignore.
+        }
+        mapping = null;
+        channel = null;
+        file = null;
+    }
+
+}
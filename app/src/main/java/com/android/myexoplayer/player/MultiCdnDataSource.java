@@ -0,0 +1,133 @@
+package com.android.myexoplayer.player;
+
+import android.net.Uri;
+import android.os.SystemClock;
+
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.UriDataSource;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+
+/**
+ * A {@link UriDataSource} that loads each chunk from the best host chosen by a
+ * {@link CdnSelector}, and feeds the timings and errors of its loads back into the selector.
+ * <p>
+ * A request that fails on one host is retried on the next candidate straight away, and a failure
+ * while reading backs the host off so that the chunk source's retry goes elsewhere. Sessions
+ * therefore move off a degrading host without their renderers being rebuilt.
+ */
+public final class MultiCdnDataSource implements UriDataSource {
+
+    /**
+     * The minimum size of a transfer for its throughput to be recorded.
+     */
+    private static final long MIN_SCORED_TRANSFER_BYTES = 32 * 1024;
+
+    private final UriDataSource upstream;
+    private final CdnSelector cdnSelector;
+    private final boolean scoresHosts;
+
+    private Uri openedUri;
+    private long firstByteTimeMs;
+    private long bytesRead;
+
+    /**
+     * @param upstream The data source that loads chunks.
+     * @param cdnSelector Chooses the host of each chunk.
+     */
+    public MultiCdnDataSource(UriDataSource upstream, CdnSelector cdnSelector) {
+        this(upstream, cdnSelector, true);
+    }
+
+    /**
+     * @param upstream The data source that loads chunks.
+     * @param cdnSelector Chooses the host of each chunk.
+     * @param scoresHosts Whether the timings of loads are fed back into the selector. Errors always
+     *     are. Loads that compete with the chunk loads for bandwidth, such as prefetches, should
+     *     not score hosts.
+     */
+    public MultiCdnDataSource(UriDataSource upstream, CdnSelector cdnSelector,
+                              boolean scoresHosts) {
+        this.upstream = upstream;
+        this.cdnSelector = cdnSelector;
+        this.scoresHosts = scoresHosts;
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        List<Uri> candidates = cdnSelector.getCandidateUris(dataSpec.uri);
+        IOException error = null;
+        for (Uri candidate : candidates) {
+            long startTimeMs = SystemClock.elapsedRealtime();
+            try {
+                long length = upstream.open(new DataSpec(candidate, dataSpec.absoluteStreamPosition,
+                        dataSpec.length, dataSpec.key));
+                firstByteTimeMs = SystemClock.elapsedRealtime();
+                // A hedging upstream may have been served by another host than the candidate.
+                String servedUri = upstream.getUri();
+                openedUri = servedUri != null ? Uri.parse(servedUri) : candidate;
+                bytesRead = 0;
+                if (scoresHosts) {
+                    cdnSelector.onFirstByte(openedUri, firstByteTimeMs - startTimeMs);
+                }
+                return length;
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (IOException e) {
+                closeUpstreamQuietly();
+                if (error == null) {
+                    error = e;
+                }
+                if (!cdnSelector.onError(candidate, e)) {
+                    break;
+                }
+            }
+        }
+        throw error;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+        int read;
+        try {
+            read = upstream.read(buffer, offset, readLength);
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (IOException e) {
+            cdnSelector.onError(openedUri, e);
+            // The partial transfer says nothing about the host's throughput.
+            openedUri = null;
+            throw e;
+        }
+        if (read > 0) {
+            bytesRead += read;
+        }
+        return read;
+    }
+
+    @Override
+    public String getUri() {
+        return upstream.getUri();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (scoresHosts && openedUri != null && bytesRead >= MIN_SCORED_TRANSFER_BYTES) {
+            cdnSelector.onTransfer(openedUri, bytesRead,
+                    SystemClock.elapsedRealtime() - firstByteTimeMs);
+        }
+        openedUri = null;
+        upstream.close();
+    }
+
+    private void closeUpstreamQuietly() {
+        try {
+            upstream.close();
+        } catch (IOException e) {
+            // Ignore.
+        }
+    }
+
+}
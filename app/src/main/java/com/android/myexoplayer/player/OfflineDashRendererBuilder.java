@@ -0,0 +1,104 @@
+package com.android.myexoplayer.player;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.android.myexoplayer.player.DemoPlayer.RendererBuilder;
+import com.google.android.exoplayer.audio.AudioCapabilities;
+import com.google.android.exoplayer.drm.MediaDrmCallback;
+
+import java.io.IOException;
+
+/**
+ * A {@link RendererBuilder} for DASH content that may have been downloaded by a
+ * {@link DashDownloader}.
+ * <p>
+ * The content's {@link OfflineStore} is opened on a background thread, since opening it reads its
+ * index and metadata from storage. The renderers are then built by a {@link DashRendererBuilder}
+ * from the download if it is complete, and from the network otherwise.
+ */
+public final class OfflineDashRendererBuilder implements RendererBuilder {
+
+    private static final String TAG = "OfflineDashRendererBuilder";
+
+    private final Context context;
+    private final String userAgent;
+    private final String contentId;
+    private final String url;
+    private final MediaDrmCallback drmCallback;
+    private final AudioCapabilities audioCapabilities;
+    private final Handler mainHandler;
+
+    private int buildId;
+    private DashRendererBuilder dashRendererBuilder;
+
+    /**
+     * @param contentId The identifier of the content, by which its download is stored, or null if
+     *     it is never downloaded.
+     * @param url The URL of the manifest, from which the content plays unless it is downloaded.
+     */
+    public OfflineDashRendererBuilder(Context context, String userAgent, String contentId,
+                                      String url, MediaDrmCallback drmCallback,
+                                      AudioCapabilities audioCapabilities) {
+        this.context = context;
+        this.userAgent = userAgent;
+        this.contentId = contentId;
+        this.url = url;
+        this.drmCallback = drmCallback;
+        this.audioCapabilities = audioCapabilities;
+        mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    @Override
+    public void buildRenderers(final DemoPlayer player) {
+        final int currentBuildId = ++buildId;
+        new Thread("OfflineStore") {
+            @Override
+            public void run() {
+                final OfflineStore offlineStore = openCompleteStore();
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (currentBuildId != buildId) {
+                            // Canceled, or superseded by a later build.
+                            return;
+                        }
+                        dashRendererBuilder = offlineStore != null
+                                ? new DashRendererBuilder(context, userAgent, offlineStore)
+                                : new DashRendererBuilder(context, userAgent, url, drmCallback,
+                                        audioCapabilities);
+                        dashRendererBuilder.buildRenderers(player);
+                    }
+                });
+            }
+        }.start();
+    }
+
+    @Override
+    public void cancel() {
+        buildId++;
+        if (dashRendererBuilder != null) {
+            dashRendererBuilder.cancel();
+            dashRendererBuilder = null;
+        }
+    }
+
+    /**
+     * Returns the store of the content if its download is complete, or null.
+     */
+    private OfflineStore openCompleteStore() {
+        if (contentId == null) {
+            return null;
+        }
+        try {
+            OfflineStore offlineStore = OfflineStore.forContent(context, contentId);
+            return offlineStore.isComplete() ? offlineStore : null;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to open offline store", e);
+            return null;
+        }
+    }
+
+}
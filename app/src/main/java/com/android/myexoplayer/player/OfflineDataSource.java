@@ -0,0 +1,61 @@
+package com.android.myexoplayer.player;
+
+import android.net.Uri;
+
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.TransferListener;
+import com.google.android.exoplayer.upstream.UriDataSource;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * A {@link UriDataSource} that reads resources from an {@link OfflineStore} by the URIs they were
+ * downloaded from, so that chunk sources built for the network play downloaded content unchanged.
+ * Requests for resources that were not downloaded fail with a {@link FileNotFoundException}.
+ */
+public final class OfflineDataSource implements UriDataSource {
+
+    private final OfflineStore store;
+    private final MemoryMappedFileDataSource fileDataSource;
+
+    private String uriString;
+
+    /**
+     * @param store The store to read from.
+     * @param listener An optional listener.
+     */
+    public OfflineDataSource(OfflineStore store, TransferListener listener) {
+        this.store = store;
+        fileDataSource = new MemoryMappedFileDataSource(listener);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        uriString = dataSpec.uri.toString();
+        File file = store.getFile(uriString);
+        if (file == null) {
+            throw new FileNotFoundException("Not downloaded: " + uriString);
+        }
+        return fileDataSource.open(new DataSpec(Uri.fromFile(file), dataSpec.absoluteStreamPosition,
+                dataSpec.length, dataSpec.key));
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+        return fileDataSource.read(buffer, offset, readLength);
+    }
+
+    @Override
+    public String getUri() {
+        return uriString;
+    }
+
+    @Override
+    public void close() throws IOException {
+        uriString = null;
+        fileDataSource.close();
+    }
+
+}
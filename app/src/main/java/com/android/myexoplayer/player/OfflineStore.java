@@ -0,0 +1,268 @@
+package com.android.myexoplayer.player;
+
+import android.content.Context;
+
+import com.google.android.exoplayer.upstream.TransferListener;
+import com.google.android.exoplayer.upstream.UriDataSource;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * A directory of downloaded resources, indexed by the URIs they were downloaded from.
+ * <p>
+ * Each resource is written to a partial file first and committed to the index once complete, so
+ * that a download interrupted by process death resumes from the bytes already on disk. The index is
+ * an append-only log that is synced on every commit; entries whose files are missing, such as the
+ * last one after a crash part way through a commit, are dropped when the store is opened.
+ * <p>
+ * The store also records the manifest and the representations of the download, from which
+ * {@link DashRendererBuilder} plays it back.
+ */
+public final class OfflineStore {
+
+    private static final String OFFLINE_DIRECTORY_NAME = "offline";
+    private static final String INDEX_FILE_NAME = "index";
+    private static final String METADATA_FILE_NAME = "download.properties";
+    private static final String PARTIAL_SUFFIX = ".part";
+
+    private static final String KEY_MANIFEST_URI = "manifestUri";
+    private static final String KEY_REPRESENTATION_IDS = "representationIds";
+    private static final String KEY_RESOURCE_COUNT = "resourceCount";
+
+    private final File directory;
+    private final File indexFile;
+    private final File metadataFile;
+    private final Map<String, File> files;
+    private final Properties metadata;
+
+    /**
+     * @param directory The directory of the store, which is created if necessary.
+     * @throws IOException If the store could not be opened.
+     */
+    public OfflineStore(File directory) throws IOException {
+        this.directory = directory;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Failed to create " + directory);
+        }
+        indexFile = new File(directory, INDEX_FILE_NAME);
+        metadataFile = new File(directory, METADATA_FILE_NAME);
+        files = new HashMap<>();
+        metadata = new Properties();
+        loadIndex();
+        loadMetadata();
+    }
+
+    /**
+     * Returns the store of a piece of content in the application's private storage.
+     *
+     * @param context A context.
+     * @param contentId The identifier of the content.
+     * @throws IOException If the store could not be opened.
+     */
+    public static OfflineStore forContent(Context context, String contentId) throws IOException {
+        File offlineDirectory = new File(context.getFilesDir(), OFFLINE_DIRECTORY_NAME);
+        return new OfflineStore(new File(offlineDirectory, getFileName(contentId)));
+    }
+
+    /**
+     * Returns whether a resource has been downloaded completely.
+     */
+    public synchronized boolean contains(String uri) {
+        return files.containsKey(uri);
+    }
+
+    /**
+     * Returns the file of a downloaded resource, or null if it has not been downloaded completely.
+     */
+    public synchronized File getFile(String uri) {
+        return files.get(uri);
+    }
+
+    /**
+     * Returns the number of resources downloaded completely.
+     */
+    public synchronized int getResourceCount() {
+        return files.size();
+    }
+
+    /**
+     * Returns the URI of the downloaded manifest, or null if no download was started.
+     */
+    public synchronized String getManifestUri() {
+        return metadata.getProperty(KEY_MANIFEST_URI);
+    }
+
+    /**
+     * Returns the identifiers of the downloaded representations.
+     */
+    public synchronized Set<String> getRepresentationIds() {
+        String ids = metadata.getProperty(KEY_REPRESENTATION_IDS);
+        if (ids == null || ids.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return new HashSet<>(Arrays.asList(ids.split(",")));
+    }
+
+    /**
+     * Returns whether every resource of the download has been downloaded.
+     */
+    public synchronized boolean isComplete() {
+        String resourceCount = metadata.getProperty(KEY_RESOURCE_COUNT);
+        return resourceCount != null && files.size() >= Integer.parseInt(resourceCount);
+    }
+
+    /**
+     * Returns a data source that reads downloaded resources by the URIs they were downloaded from.
+     *
+     * @param listener An optional listener.
+     */
+    public UriDataSource newDataSource(TransferListener listener) {
+        return new OfflineDataSource(this, listener);
+    }
+
+    /**
+     * Deletes the store and everything downloaded into it. Since this is file I/O, it should not be
+     * called on the main thread.
+     *
+     * @throws IOException If a file of the store could not be deleted.
+     */
+    public synchronized void delete() throws IOException {
+        files.clear();
+        metadata.clear();
+        File[] children = directory.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                child.delete();
+            }
+        }
+        if (!directory.delete() && directory.exists()) {
+            throw new IOException("Failed to delete " + directory);
+        }
+    }
+
+    /**
+     * Records what a download consists of.
+     *
+     * @param manifestUri The URI of the manifest.
+     * @param representationIds The identifiers of the downloaded representations.
+     * @param resourceCount The number of resources, including the manifest.
+     * @throws IOException If the metadata could not be written.
+     */
+    /* package */ synchronized void setMetadata(String manifestUri, Set<String> representationIds,
+                                                int resourceCount) throws IOException {
+        StringBuilder ids = new StringBuilder();
+        for (String id : representationIds) {
+            ids.append(ids.length() == 0 ? "" : ",").append(id);
+        }
+        metadata.setProperty(KEY_MANIFEST_URI, manifestUri);
+        metadata.setProperty(KEY_REPRESENTATION_IDS, ids.toString());
+        metadata.setProperty(KEY_RESOURCE_COUNT, Integer.toString(resourceCount));
+        File partialFile = new File(directory, METADATA_FILE_NAME + PARTIAL_SUFFIX);
+        FileOutputStream output = new FileOutputStream(partialFile);
+        try {
+            metadata.store(output, null);
+            output.getFD().sync();
+        } finally {
+            output.close();
+        }
+        if (!partialFile.renameTo(metadataFile)) {
+            throw new IOException("Failed to write " + metadataFile);
+        }
+    }
+
+    /**
+     * Returns the file into which a resource is being downloaded, which may already hold the start
+     * of the resource.
+     */
+    /* package */ File getPartialFile(String uri) {
+        return new File(directory, getFileName(uri) + PARTIAL_SUFFIX);
+    }
+
+    /**
+     * Adds a completely downloaded resource to the index.
+     *
+     * @param uri The URI of the resource.
+     * @param partialFile The file returned by {@link #getPartialFile(String)}.
+     * @throws IOException If the resource could not be committed.
+     */
+    /* package */ synchronized void commit(String uri, File partialFile) throws IOException {
+        String fileName = getFileName(uri);
+        File file = new File(directory, fileName);
+        if (!partialFile.renameTo(file)) {
+            throw new IOException("Failed to commit " + uri);
+        }
+        FileOutputStream output = new FileOutputStream(indexFile, true);
+        try {
+            output.write((uri + "\t" + fileName + "\n").getBytes("UTF-8"));
+            output.getFD().sync();
+        } finally {
+            output.close();
+        }
+        files.put(uri, file);
+    }
+
+    private void loadIndex() throws IOException {
+        if (!indexFile.exists()) {
+            return;
+        }
+        BufferedReader reader = new BufferedReader(new FileReader(indexFile));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf('\t');
+                if (separator == -1) {
+                    continue;
+                }
+                File file = new File(directory, line.substring(separator + 1));
+                if (file.isFile()) {
+                    files.put(line.substring(0, separator), file);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void loadMetadata() throws IOException {
+        if (!metadataFile.exists()) {
+            return;
+        }
+        FileInputStream input = new FileInputStream(metadataFile);
+        try {
+            metadata.load(input);
+        } finally {
+            input.close();
+        }
+    }
+
+    private static String getFileName(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes("UTF-8"));
+            StringBuilder fileName = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                fileName.append(Character.forDigit((b >> 4) & 0xF, 16))
+                        .append(Character.forDigit(b & 0xF, 16));
+            }
+            return fileName.toString();
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            // Both are guaranteed to be available.
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
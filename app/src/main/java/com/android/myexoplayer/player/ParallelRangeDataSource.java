@@ -0,0 +1,439 @@
+package com.android.myexoplayer.player;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import com.google.android.exoplayer.C;
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.DefaultUriDataSource;
+import com.google.android.exoplayer.upstream.TransferListener;
+import com.google.android.exoplayer.upstream.UriDataSource;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A {@link UriDataSource} that downloads large HTTP resources, such as the segments of high bitrate
+ * representations, over several connections at once.
+ * <p>
+ * A resource of at least {@link #DEFAULT_MIN_PARALLEL_LENGTH} bytes whose length is known from
+ * its {@link DataSpec}, e.g. a segment located by a segment index, is split into contiguous parts
+ * that are requested concurrently with byte ranges. The first part is read straight from the
+ * initial request, which is bounded to that part, and the others are buffered by background
+ * loads; reads return bytes in order as soon as they have arrived, so the extractor is never held
+ * up by more than the part it is reading. Resources of unknown length are loaded over a single
+ * connection.
+ * <p>
+ * On links with a high bandwidth-delay product a single connection is limited by its window rather
+ * than by the link. The number of connections is therefore adapted to the measured aggregate
+ * throughput of each connection count, starting from one: a connection is added while doing so
+ * raises the aggregate throughput, and removed when the last one added did not. One more
+ * connection is probed periodically, so that the count follows links that improve.
+ * <p>
+ * Transfers are reported to the {@link TransferListener} as the bytes are read, so that bandwidth
+ * estimation sees the aggregate throughput of all connections.
+ * <p>
+ * The initial request is made through a {@link HedgingDataSource}, since a late first byte delays
+ * the whole resource.
+ */
+public class ParallelRangeDataSource implements UriDataSource {
+
+    /**
+     * The default maximum number of concurrent connections per resource.
+     */
+    public static final int DEFAULT_MAX_CONNECTION_COUNT = 4;
+    /**
+     * The default minimum length of a resource for it to be split.
+     */
+    public static final int DEFAULT_MIN_PARALLEL_LENGTH = 1024 * 1024;
+    /**
+     * The default minimum length of each part of a split resource.
+     */
+    public static final int DEFAULT_MIN_PART_LENGTH = 384 * 1024;
+
+    private static final ExecutorService PART_EXECUTOR =
+            Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "ParallelRangeDataSource");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final Context context;
+    private final String userAgent;
+    private final TransferListener transferListener;
+    private final HedgingDataSource upstream;
+    private final int minParallelLength;
+    private final int minPartLength;
+    private final ConnectionCountAdapter connectionCountAdapter;
+
+    private String uriString;
+    private boolean opened;
+    private long openTimeMs;
+    private long loadEndTimeMs;
+    private long length;
+    private long readPosition;
+    private long firstPartLength;
+    /**
+     * The number of connections the resource is loaded over, or 0 if it is too short, of unknown
+     * length or not loaded over HTTP, in which case its throughput is not measured.
+     */
+    private int loadConnectionCount;
+    private Part[] parts;
+
+    /**
+     * @param context A context.
+     * @param userAgent The user agent of requests.
+     * @param transferListener Notified of transfers, typically a bandwidth meter.
+     */
+    public ParallelRangeDataSource(Context context, String userAgent,
+                                   TransferListener transferListener) {
+        this(context, userAgent, transferListener, DEFAULT_MAX_CONNECTION_COUNT,
+                DEFAULT_MIN_PARALLEL_LENGTH, DEFAULT_MIN_PART_LENGTH);
+    }
+
+    /**
+     * @param context A context.
+     * @param userAgent The user agent of requests.
+     * @param transferListener Notified of transfers, typically a bandwidth meter.
+     * @param maxConnectionCount The maximum number of concurrent connections per resource.
+     * @param minParallelLength The minimum length of a resource for it to be split.
+     * @param minPartLength The minimum length of each part of a split resource.
+     */
+    public ParallelRangeDataSource(Context context, String userAgent,
+                                   TransferListener transferListener, int maxConnectionCount, int minParallelLength,
+                                   int minPartLength) {
+        this.context = context;
+        this.userAgent = userAgent;
+        this.transferListener = transferListener;
+        this.minParallelLength = minParallelLength;
+        this.minPartLength = minPartLength;
+        upstream = new HedgingDataSource(context, userAgent, null);
+        connectionCountAdapter = new ConnectionCountAdapter(maxConnectionCount);
+    }
+
+    /**
+     * Sets the provider of the URIs of hedged initial requests.
+     *
+     * @see HedgingDataSource#setHedgeUriProvider(HedgingDataSource.HedgeUriProvider)
+     */
+    public void setHedgeUriProvider(HedgingDataSource.HedgeUriProvider hedgeUriProvider) {
+        upstream.setHedgeUriProvider(hedgeUriProvider);
+    }
+
+    /**
+     * Returns the number of connections that the next large resource will be split across.
+     */
+    public int getConnectionCount() {
+        return connectionCountAdapter.getConnectionCount();
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        openTimeMs = SystemClock.elapsedRealtime();
+        loadEndTimeMs = 0;
+        readPosition = 0;
+        parts = null;
+        loadConnectionCount = getLoadConnectionCount(dataSpec);
+
+        if (loadConnectionCount > 1) {
+            // The initial request serves the first part only. The remaining parts are requested
+            // from the end of the first one onwards.
+            length = dataSpec.length;
+            long partLength = (length + loadConnectionCount - 1) / loadConnectionCount;
+            firstPartLength = partLength;
+            parts = new Part[loadConnectionCount - 1];
+            for (int i = 0; i < parts.length; i++) {
+                long start = partLength * (i + 1);
+                int partSize = (int) Math.min(partLength, length - start);
+                DataSpec partSpec = new DataSpec(dataSpec.uri,
+                        dataSpec.absoluteStreamPosition + start, partSize, dataSpec.key);
+                parts[i] = new Part(start, partSpec);
+                parts[i].future = PART_EXECUTOR.submit(parts[i]);
+            }
+            try {
+                upstream.open(new DataSpec(dataSpec.uri, dataSpec.absoluteStreamPosition,
+                        firstPartLength, dataSpec.key));
+            } catch (IOException e) {
+                cancelParts();
+                throw e;
+            }
+        } else {
+            length = upstream.open(dataSpec);
+            firstPartLength = length;
+        }
+        // The initial request may have been hedged onto another host.
+        uriString = upstream.getUri() != null ? upstream.getUri() : dataSpec.uri.toString();
+        opened = true;
+        if (transferListener != null) {
+            transferListener.onTransferStart();
+        }
+        return length;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+        int bytesRead;
+        if (readPosition < firstPartLength) {
+            bytesRead = readFirstPart(buffer, offset, readLength);
+        } else if (parts != null && readPosition < length) {
+            bytesRead = readPart(buffer, offset, readLength);
+        } else if (parts == null) {
+            // The resource was not split, or its length is unknown.
+            bytesRead = upstream.read(buffer, offset, readLength);
+        } else {
+            bytesRead = -1;
+        }
+        if (bytesRead > 0) {
+            readPosition += bytesRead;
+            if (readPosition == length) {
+                loadEndTimeMs = SystemClock.elapsedRealtime();
+            }
+            if (transferListener != null) {
+                transferListener.onBytesTransferred(bytesRead);
+            }
+        }
+        return bytesRead;
+    }
+
+    @Override
+    public String getUri() {
+        return uriString;
+    }
+
+    @Override
+    public void close() throws IOException {
+        uriString = null;
+        try {
+            upstream.close();
+        } finally {
+            if (loadConnectionCount > 0 && loadEndTimeMs != 0) {
+                connectionCountAdapter.onLoadCompleted(loadConnectionCount, length,
+                        loadEndTimeMs - openTimeMs);
+            }
+            loadConnectionCount = 0;
+            cancelParts();
+            if (opened) {
+                opened = false;
+                if (transferListener != null) {
+                    transferListener.onTransferEnd();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of connections to load a resource over, or 0 if it is not eligible for
+     * splitting.
+     */
+    private int getLoadConnectionCount(DataSpec dataSpec) {
+        String scheme = dataSpec.uri.getScheme();
+        if (dataSpec.length == C.LENGTH_UNBOUNDED || dataSpec.length < minParallelLength
+                || !("http".equals(scheme) || "https".equals(scheme))) {
+            return 0;
+        }
+        return (int) Math.max(1, Math.min(connectionCountAdapter.getConnectionCount(),
+                dataSpec.length / minPartLength));
+    }
+
+    private int readFirstPart(byte[] buffer, int offset, int readLength) throws IOException {
+        int bytesRead = upstream.read(buffer, offset,
+                (int) Math.min(readLength, firstPartLength - readPosition));
+        if (bytesRead == -1) {
+            throw new EOFException();
+        }
+        return bytesRead;
+    }
+
+    private void cancelParts() {
+        if (parts != null) {
+            for (Part part : parts) {
+                part.cancel();
+            }
+            parts = null;
+        }
+    }
+
+    private int readPart(byte[] buffer, int offset, int readLength) throws IOException {
+        Part part = parts[(int) ((readPosition - firstPartLength) / firstPartLength)];
+        int partOffset = (int) (readPosition - part.start);
+        int available = part.awaitData(partOffset);
+        int bytesRead = Math.min(readLength, available - partOffset);
+        System.arraycopy(part.data, partOffset, buffer, offset, bytesRead);
+        return bytesRead;
+    }
+
+    /**
+     * Adapts the number of connections to the aggregate throughput measured for each count.
+     */
+    /* package */ static final class ConnectionCountAdapter {
+
+        /**
+         * The aggregate throughput gain over one connection fewer that makes an additional
+         * connection worth trying.
+         */
+        private static final float ADD_CONNECTION_GAIN = 1.2f;
+        /**
+         * The aggregate throughput gain over one connection fewer below which the last connection
+         * added is removed again.
+         */
+        private static final float REMOVE_CONNECTION_GAIN = 1.1f;
+        /**
+         * The number of loads after which an additional connection is tried again, so that the
+         * count follows links that improve.
+         */
+        private static final int PROBE_INTERVAL = 16;
+        private static final float THROUGHPUT_SMOOTHING = 0.3f;
+
+        private final int maxConnectionCount;
+        /**
+         * The smoothed aggregate throughput in bits per second, indexed by connection count, or 0
+         * where the count has not been measured.
+         */
+        private final float[] throughputs;
+
+        private int connectionCount;
+        private int loadsSinceProbe;
+
+        public ConnectionCountAdapter(int maxConnectionCount) {
+            this.maxConnectionCount = maxConnectionCount;
+            throughputs = new float[maxConnectionCount + 1];
+            connectionCount = 1;
+        }
+
+        /**
+         * Returns the number of connections that the next large resource is loaded over.
+         */
+        public synchronized int getConnectionCount() {
+            return connectionCount;
+        }
+
+        /**
+         * Updates the aggregate throughput of a connection count with a completely read resource,
+         * and adapts the number of connections accordingly.
+         *
+         * @param count The number of connections the resource was loaded over.
+         * @param bytes The length of the resource.
+         * @param durationMs The time from opening the resource until it was completely read.
+         */
+        public synchronized void onLoadCompleted(int count, long bytes, long durationMs) {
+            float throughput = bytes * 8000f / Math.max(1, durationMs);
+            float previous = throughputs[count];
+            throughputs[count] = previous == 0 ? throughput
+                    : previous + THROUGHPUT_SMOOTHING * (throughput - previous);
+
+            if (count != connectionCount) {
+                // The resource was too short to be split across all connections.
+                return;
+            }
+            if (count > 1 && getGain(count) < REMOVE_CONNECTION_GAIN) {
+                connectionCount = count - 1;
+                loadsSinceProbe = 0;
+            } else if (count < maxConnectionCount && (getGain(count + 1) >= ADD_CONNECTION_GAIN
+                    || ++loadsSinceProbe >= PROBE_INTERVAL)) {
+                connectionCount = count + 1;
+                loadsSinceProbe = 0;
+            }
+        }
+
+        /**
+         * Returns how much the aggregate throughput of {@code count} connections exceeds that of
+         * one connection fewer, or infinity if either has not been measured.
+         */
+        private float getGain(int count) {
+            if (throughputs[count] == 0 || throughputs[count - 1] == 0) {
+                return Float.POSITIVE_INFINITY;
+            }
+            return throughputs[count] / throughputs[count - 1];
+        }
+
+    }
+
+    /**
+     * A part of a split resource, loaded into memory on its own connection.
+     */
+    private final class Part implements Runnable {
+
+        public final long start;
+        public final byte[] data;
+
+        private final DataSpec dataSpec;
+
+        private int bytesLoaded;
+        private IOException error;
+        private volatile boolean canceled;
+
+        public Future<?> future;
+
+        public Part(long start, DataSpec dataSpec) {
+            this.start = start;
+            this.dataSpec = dataSpec;
+            data = new byte[(int) dataSpec.length];
+        }
+
+        @Override
+        public void run() {
+            UriDataSource dataSource = new DefaultUriDataSource(context, userAgent);
+            try {
+                dataSource.open(dataSpec);
+                // Only this thread writes the part, so it reads straight into it.
+                while (!canceled && bytesLoaded < data.length) {
+                    int bytesRead = dataSource.read(data, bytesLoaded, data.length - bytesLoaded);
+                    if (bytesRead == -1) {
+                        throw new EOFException();
+                    }
+                    synchronized (this) {
+                        bytesLoaded += bytesRead;
+                        notifyAll();
+                    }
+                }
+            } catch (IOException e) {
+                synchronized (this) {
+                    error = e;
+                    notifyAll();
+                }
+            } finally {
+                try {
+                    dataSource.close();
+                } catch (IOException e) {
+                    // Ignore.
+                }
+            }
+        }
+
+        /**
+         * Waits until the byte at {@code offset} has been loaded.
+         *
+         * @return The number of bytes loaded.
+         * @throws IOException If the part failed to load, or the wait was interrupted.
+         */
+        public synchronized int awaitData(int offset) throws IOException {
+            while (bytesLoaded <= offset) {
+                if (error != null) {
+                    throw error;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+            return bytesLoaded;
+        }
+
+        public void cancel() {
+            canceled = true;
+            future.cancel(true);
+        }
+
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.android.myexoplayer.player;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Holds a {@link DemoPlayer} while no activity shows it, e.g. across a configuration change or
+ * while the app is briefly in the background, so that playback resumes from the player's renderers
+ * and buffers rather than from a new manifest load, DRM session and buffer.
+ * <p>
+ * At most one player is held, identified by a key that describes its content. A held player is
+ * released once it has been idle for the timeout given when it was held, when another player is
+ * held, or when a player for other content is asked for. Methods must be called on the main
+ * thread.
+ */
+public final class PlayerHolder {
+
+    /**
+     * A held player, and the session state that is released with it.
+     */
+    public interface HeldPlayer {
+
+        /**
+         * Releases the player and the session state.
+         */
+        void release();
+
+    }
+
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 60 * 1000;
+
+    private static PlayerHolder instance;
+
+    private final Handler handler;
+    private final Runnable releaseRunnable;
+
+    private String heldKey;
+    private HeldPlayer heldPlayer;
+
+    private PlayerHolder() {
+        handler = new Handler(Looper.getMainLooper());
+        releaseRunnable = new Runnable() {
+            @Override
+            public void run() {
+                release();
+            }
+        };
+    }
+
+    /**
+     * Returns the holder of the process.
+     */
+    public static synchronized PlayerHolder getInstance() {
+        if (instance == null) {
+            instance = new PlayerHolder();
+        }
+        return instance;
+    }
+
+    /**
+     * Holds a player, releasing any player that is already held.
+     *
+     * @param key Describes the content of the player.
+     * @param player The player.
+     * @param idleTimeoutMs The time after which the player is released if it is not taken.
+     */
+    public void hold(String key, HeldPlayer player, long idleTimeoutMs) {
+        release();
+        heldKey = key;
+        heldPlayer = player;
+        handler.postDelayed(releaseRunnable, idleTimeoutMs);
+    }
+
+    /**
+     * Takes the held player if it plays the given content, or releases it otherwise.
+     *
+     * @param key Describes the content.
+     * @return The player, which is no longer held, or null if none plays the content.
+     */
+    public HeldPlayer take(String key) {
+        if (heldPlayer == null) {
+            return null;
+        }
+        if (!heldKey.equals(key)) {
+            release();
+            return null;
+        }
+        handler.removeCallbacks(releaseRunnable);
+        HeldPlayer player = heldPlayer;
+        heldKey = null;
+        heldPlayer = null;
+        return player;
+    }
+
+    /**
+     * Releases the held player, if any.
+     */
+    public void release() {
+        handler.removeCallbacks(releaseRunnable);
+        if (heldPlayer != null) {
+            heldPlayer.release();
+            heldKey = null;
+            heldPlayer = null;
+        }
+    }
+
+}
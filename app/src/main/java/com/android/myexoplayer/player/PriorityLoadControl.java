@@ -0,0 +1,183 @@
+package com.android.myexoplayer.player;
+
+import com.google.android.exoplayer.LoadControl;
+import com.google.android.exoplayer.upstream.Allocator;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link LoadControl} that orders the loads of a session's renderers by how close each is to
+ * running out of buffer, so that small audio and text loads are not starved by large video loads.
+ * <p>
+ * Each loader has a buffer target: it starts filling when its buffer falls to the low watermark
+ * and stops at the high watermark. A loader whose buffer is below its critical duration is close
+ * to its deadline, the time at which its buffer runs out. While such a loader wants to load, the
+ * loaders that are not critical and whose deadlines are later start no new loads, leaving the
+ * bandwidth to the one that would otherwise stall playback first. A loader with an earlier
+ * deadline never defers, so that a large critical margin for one renderer cannot starve another.
+ * Once the shared allocator holds its target size, only critical loaders may start a load, as
+ * with a {@link com.google.android.exoplayer.DefaultLoadControl}, since the allocator itself
+ * never refuses an allocation.
+ * <p>
+ * The buffered duration of every loader can also be capped, e.g. to bound the memory of a session
+ * that is preloaded before it plays.
+ */
+public final class PriorityLoadControl implements LoadControl {
+
+    public static final int DEFAULT_CRITICAL_BUFFER_MS = 5000;
+    public static final int DEFAULT_LOW_WATERMARK_MS = 15000;
+    public static final int DEFAULT_HIGH_WATERMARK_MS = 30000;
+
+    private final Allocator allocator;
+    private final Map<Object, BufferTarget> bufferTargets;
+    private final Map<Object, LoaderState> loaderStates;
+
+    private int targetBufferSize;
+    private long maxBufferedDurationUs;
+
+    /**
+     * @param allocator The allocator shared by the loaders.
+     */
+    public PriorityLoadControl(Allocator allocator) {
+        this.allocator = allocator;
+        bufferTargets = new HashMap<>();
+        loaderStates = new HashMap<>();
+    }
+
+    /**
+     * Sets the buffer target of a loader, which applies from when it next registers. Loaders
+     * without a target use the defaults.
+     *
+     * @param loader The loader, typically a {@link com.google.android.exoplayer.chunk.ChunkSampleSource}.
+     * @param criticalBufferMs The buffered duration below which the loader takes priority.
+     * @param lowWatermarkMs The buffered duration at or below which the loader starts filling.
+     * @param highWatermarkMs The buffered duration at or above which the loader stops filling.
+     */
+    public synchronized void setBufferTarget(Object loader, int criticalBufferMs,
+                                             int lowWatermarkMs, int highWatermarkMs) {
+        bufferTargets.put(loader, new BufferTarget(criticalBufferMs * 1000L,
+                lowWatermarkMs * 1000L, highWatermarkMs * 1000L));
+    }
+
+    /**
+     * Caps the buffered duration of every loader, below their buffer targets.
+     *
+     * @param maxBufferedDurationMs The cap, or 0 to lift it.
+     */
+    public synchronized void setMaxBufferedDurationMs(int maxBufferedDurationMs) {
+        maxBufferedDurationUs = maxBufferedDurationMs * 1000L;
+    }
+
+    @Override
+    public synchronized void register(Object loader, int bufferSizeContribution) {
+        BufferTarget bufferTarget = bufferTargets.get(loader);
+        if (bufferTarget == null) {
+            bufferTarget = new BufferTarget(DEFAULT_CRITICAL_BUFFER_MS * 1000L,
+                    DEFAULT_LOW_WATERMARK_MS * 1000L, DEFAULT_HIGH_WATERMARK_MS * 1000L);
+        }
+        loaderStates.put(loader, new LoaderState(bufferSizeContribution, bufferTarget));
+        targetBufferSize += bufferSizeContribution;
+    }
+
+    @Override
+    public synchronized void unregister(Object loader) {
+        LoaderState state = loaderStates.remove(loader);
+        if (state != null) {
+            targetBufferSize -= state.bufferSizeContribution;
+        }
+    }
+
+    @Override
+    public Allocator getAllocator() {
+        return allocator;
+    }
+
+    @Override
+    public synchronized void trimAllocator() {
+        allocator.trim(targetBufferSize);
+    }
+
+    @Override
+    public synchronized boolean update(Object loader, long playbackPositionUs,
+                                       long nextLoadPositionUs, boolean loading, boolean failed) {
+        LoaderState state = loaderStates.get(loader);
+        state.update(playbackPositionUs, nextLoadPositionUs, loading, failed);
+        if (maxBufferedDurationUs > 0 && state.bufferedDurationUs >= maxBufferedDurationUs) {
+            return false;
+        }
+        if (!state.wantsToLoad()) {
+            return false;
+        }
+        if (state.isCritical()) {
+            return true;
+        }
+        for (LoaderState other : loaderStates.values()) {
+            if (other != state && other.wantsToLoad() && other.isCritical()
+                    && other.bufferedDurationUs < state.bufferedDurationUs) {
+                return false;
+            }
+        }
+        return allocator.getTotalBytesAllocated() < targetBufferSize;
+    }
+
+    private static final class BufferTarget {
+
+        public final long criticalBufferUs;
+        public final long lowWatermarkUs;
+        public final long highWatermarkUs;
+
+        public BufferTarget(long criticalBufferUs, long lowWatermarkUs, long highWatermarkUs) {
+            this.criticalBufferUs = criticalBufferUs;
+            this.lowWatermarkUs = lowWatermarkUs;
+            this.highWatermarkUs = highWatermarkUs;
+        }
+
+    }
+
+    private static final class LoaderState {
+
+        public final int bufferSizeContribution;
+        public final BufferTarget bufferTarget;
+
+        private long bufferedDurationUs;
+        private boolean hasNextLoad;
+        private boolean loading;
+        private boolean failed;
+        private boolean filling;
+
+        public LoaderState(int bufferSizeContribution, BufferTarget bufferTarget) {
+            this.bufferSizeContribution = bufferSizeContribution;
+            this.bufferTarget = bufferTarget;
+            filling = true;
+        }
+
+        public void update(long playbackPositionUs, long nextLoadPositionUs, boolean loading,
+                           boolean failed) {
+            this.loading = loading;
+            this.failed = failed;
+            hasNextLoad = nextLoadPositionUs != -1;
+            bufferedDurationUs = hasNextLoad ? nextLoadPositionUs - playbackPositionUs : 0;
+            if (bufferedDurationUs <= bufferTarget.lowWatermarkUs) {
+                filling = true;
+            } else if (bufferedDurationUs >= bufferTarget.highWatermarkUs) {
+                filling = false;
+            }
+        }
+
+        /**
+         * Returns whether the loader is loading or waiting to load. A loader that is loading still
+         * competes for bandwidth, so it counts as wanting to load, whereas one that is backing off
+         * after a failure does not.
+         */
+        public boolean wantsToLoad() {
+            return hasNextLoad && !failed && (filling || loading);
+        }
+
+        public boolean isCritical() {
+            return bufferedDurationUs < bufferTarget.criticalBufferUs;
+        }
+
+    }
+
+}
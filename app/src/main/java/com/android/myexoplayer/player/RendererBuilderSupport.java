@@ -0,0 +1,148 @@
+package com.android.myexoplayer.player;
+
+import android.content.Context;
+
+import com.google.android.exoplayer.MediaCodecUtil.DecoderQueryException;
+import com.google.android.exoplayer.chunk.Format;
+import com.google.android.exoplayer.chunk.FormatEvaluator;
+import com.google.android.exoplayer.chunk.FormatEvaluator.AdaptiveEvaluator;
+import com.google.android.exoplayer.chunk.FormatWrapper;
+import com.google.android.exoplayer.upstream.BandwidthMeter;
+import com.google.android.exoplayer.upstream.DefaultUriDataSource;
+import com.google.android.exoplayer.upstream.TransferListener;
+import com.google.android.exoplayer.upstream.UriDataSource;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The manifest caching, data source and adaptive bitrate hooks shared by the
+ * {@link DemoPlayer.RendererBuilder}s of the adaptive streaming formats.
+ */
+/* package */ final class RendererBuilderSupport {
+
+    /**
+     * The maximum age of cached static manifests.
+     */
+    private static final long MANIFEST_MAX_AGE_MS = 10 * 60 * 1000;
+
+    private RendererBuilderSupport() {}
+
+    /**
+     * Creates a data source for loading manifests that caches static manifests across prepares.
+     *
+     * @param context A context.
+     * @param userAgent The user agent of requests.
+     * @param liveManifestDetector Detects the live manifests of the format, which are not cached.
+     * @return The data source.
+     */
+    public static ManifestCachingDataSource newManifestDataSource(Context context,
+            String userAgent, ManifestCachingDataSource.LiveManifestDetector liveManifestDetector) {
+        return new ManifestCachingDataSource(new DefaultUriDataSource(context, userAgent),
+                MANIFEST_MAX_AGE_MS, liveManifestDetector);
+    }
+
+    /**
+     * Creates a data source for loading media chunks.
+     *
+     * @param context A context.
+     * @param transferListener Notified of transfers, typically a bandwidth meter.
+     * @param userAgent The user agent of requests.
+     * @return The data source.
+     */
+    public static UriDataSource newChunkDataSource(Context context,
+                                                   TransferListener transferListener, String userAgent) {
+        return new DefaultUriDataSource(context, transferListener, userAgent);
+    }
+
+    /**
+     * Creates the evaluator that adapts between video formats, restricted to those that the
+     * player's viewport can show.
+     *
+     * @param player The player.
+     * @param bandwidthMeter The bandwidth meter of the session.
+     * @return The evaluator.
+     */
+    public static FormatEvaluator newVideoFormatEvaluator(DemoPlayer player,
+                                                          BandwidthMeter bandwidthMeter) {
+        ViewportFormatEvaluator evaluator =
+                new ViewportFormatEvaluator(new AdaptiveEvaluator(bandwidthMeter));
+        player.onVideoFormatEvaluatorCreated(evaluator);
+        return evaluator;
+    }
+
+    /**
+     * Creates the evaluator that adapts between video formats, restricted to those that the
+     * player's viewport can show, starting with a {@link FastStartEvaluator}.
+     *
+     * @param player The player.
+     * @param bandwidthMeter The bandwidth meter of the session.
+     * @param loadTimeEstimator Estimates the load time of the first chunk from persisted history, or
+     *     null to start in the lowest format.
+     * @return The evaluator.
+     */
+    public static FormatEvaluator newFastStartVideoFormatEvaluator(DemoPlayer player,
+            BandwidthMeter bandwidthMeter, FastStartEvaluator.LoadTimeEstimator loadTimeEstimator) {
+        ViewportFormatEvaluator evaluator = new ViewportFormatEvaluator(new FastStartEvaluator(
+                new AdaptiveEvaluator(bandwidthMeter), bandwidthMeter, loadTimeEstimator));
+        player.onVideoFormatEvaluatorCreated(evaluator);
+        return evaluator;
+    }
+
+    /**
+     * Selects the video formats to adapt between, and reports them to the player.
+     *
+     * @param context A context.
+     * @param rendererFactory The factory of the session's renderers.
+     * @param player The player.
+     * @param formatWrappers The available video formats.
+     * @param filterHdContent Whether HD formats should be excluded.
+     * @return The indices of the selected formats.
+     * @throws DecoderQueryException If the device's decoders could not be queried.
+     */
+    public static int[] selectVideoFormats(Context context, TrackRendererFactory rendererFactory,
+                                           DemoPlayer player, List<? extends FormatWrapper> formatWrappers,
+                                           boolean filterHdContent) throws DecoderQueryException {
+        return selectVideoFormats(context, rendererFactory, player, formatWrappers, filterHdContent,
+                null);
+    }
+
+    /**
+     * Selects the video formats to adapt between from those that are available, and reports them
+     * to the player.
+     *
+     * @param context A context.
+     * @param rendererFactory The factory of the session's renderers.
+     * @param player The player.
+     * @param formatWrappers The video formats.
+     * @param filterHdContent Whether HD formats should be excluded.
+     * @param availableFormatIds The identifiers of the formats that are available, e.g. because they
+     *     were downloaded, or null if all are.
+     * @return The indices of the selected formats.
+     * @throws DecoderQueryException If the device's decoders could not be queried.
+     */
+    public static int[] selectVideoFormats(Context context, TrackRendererFactory rendererFactory,
+                                           DemoPlayer player, List<? extends FormatWrapper> formatWrappers,
+                                           boolean filterHdContent, Set<String> availableFormatIds)
+            throws DecoderQueryException {
+        int[] indices = rendererFactory.selectVideoFormats(context, formatWrappers,
+                filterHdContent);
+        if (availableFormatIds != null) {
+            int availableCount = 0;
+            for (int index : indices) {
+                if (availableFormatIds.contains(formatWrappers.get(index).getFormat().id)) {
+                    indices[availableCount++] = index;
+                }
+            }
+            indices = Arrays.copyOf(indices, availableCount);
+        }
+        Format[] formats = new Format[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            formats[i] = formatWrappers.get(indices[i]).getFormat();
+        }
+        player.onVideoFormatsSelected(formats);
+        return indices;
+    }
+
+}
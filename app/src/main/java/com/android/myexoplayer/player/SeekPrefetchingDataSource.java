@@ -0,0 +1,318 @@
+package com.android.myexoplayer.player;
+
+import android.util.Log;
+
+import com.google.android.exoplayer.dash.DashSegmentIndex;
+import com.google.android.exoplayer.dash.mpd.RangedUri;
+import com.google.android.exoplayer.dash.mpd.Representation;
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.UriDataSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A {@link UriDataSource} for DASH video chunks that serves the segments around likely seek
+ * targets from memory, and knows the segment boundaries that seeks may snap to.
+ * <p>
+ * A seek outside the buffer makes the chunk source reload from the segment that encloses the
+ * target, so the first chunk after a seek is on the critical path of seek-to-play latency. The
+ * {@link DemoPlayer} asks this data source to {@link #prefetch(String, long[])} the segments that
+ * hold positions it expects to be sought to, e.g. ten seconds either side of the playback position
+ * and chapter marks. They are loaded one at a time in the background, at most
+ * {@link #MAX_PREFETCHED_SEGMENTS} are retained, and a prefetched segment is handed to the chunk
+ * source when it is requested in turn. Other requests pass through to the upstream source.
+ * <p>
+ * Prefetches are drawn from a byte budget of {@link #PREFETCH_BYTE_ALLOWANCE} plus
+ * {@link #MAX_PREFETCH_SHARE} of the chunk bytes read through this data source, so that they add
+ * a bounded share of the session's traffic however often the player asks for them.
+ * <p>
+ * Since each segment starts with a keyframe, segment start times are also the positions that
+ * the chunk source can start from without decoding frames that are then dropped.
+ */
+public class SeekPrefetchingDataSource implements UriDataSource {
+
+    private static final String TAG = "SeekPrefetchingDataSrc";
+
+    private static final int MAX_PREFETCHED_SEGMENTS = 4;
+    /**
+     * The bytes that may be prefetched besides the share of the chunk bytes, e.g. before the first
+     * chunks have loaded.
+     */
+    private static final long PREFETCH_BYTE_ALLOWANCE = 2 * 1024 * 1024;
+    /**
+     * The share of the chunk bytes that may be prefetched.
+     */
+    private static final float MAX_PREFETCH_SHARE = 0.1f;
+
+    private final UriDataSource upstream;
+    private final UriDataSource prefetchUpstream;
+    private final Map<String, Representation> representations;
+    private final ExecutorService executor;
+    private final Map<String, Future<byte[]>> prefetchedSegments;
+
+    private boolean upstreamOpened;
+    private String currentUri;
+    private byte[] currentData;
+    private int currentOffset;
+
+    private int prefetchCount;
+    private int prefetchHitCount;
+    private long chunkBytesRead;
+    private long prefetchedBytes;
+
+    /**
+     * @param upstream The source of chunks that were not prefetched.
+     * @param prefetchUpstream The source that prefetched segments are loaded from. Must not be
+     *     {@code upstream}, since prefetches are loaded concurrently with chunks.
+     * @param representations The representations whose segments may be prefetched.
+     */
+    public SeekPrefetchingDataSource(UriDataSource upstream, UriDataSource prefetchUpstream,
+                                     List<Representation> representations) {
+        this.upstream = upstream;
+        this.prefetchUpstream = prefetchUpstream;
+        this.representations = new HashMap<>();
+        for (Representation representation : representations) {
+            this.representations.put(representation.format.id, representation);
+        }
+        executor = Executors.newSingleThreadExecutor();
+        prefetchedSegments = new LinkedHashMap<>();
+    }
+
+    /**
+     * Returns the start time of the segment of a representation that encloses a position.
+     *
+     * @param formatId The identifier of the format of the representation.
+     * @param positionMs The position.
+     * @return The start time of the segment, or -1 if the representation is unknown or has no
+     *     explicit segment index.
+     */
+    public long getSegmentStartMs(String formatId, long positionMs) {
+        DashSegmentIndex index = getSegmentIndex(formatId);
+        if (index == null) {
+            return -1;
+        }
+        return index.getTimeUs(getSegmentNum(index, positionMs)) / 1000;
+    }
+
+    /**
+     * Returns the end time of the segment of a representation that encloses a position.
+     *
+     * @param formatId The identifier of the format of the representation.
+     * @param positionMs The position.
+     * @return The end time of the segment, or -1 if the representation is unknown or has no
+     *     explicit segment index.
+     */
+    public long getSegmentEndMs(String formatId, long positionMs) {
+        DashSegmentIndex index = getSegmentIndex(formatId);
+        if (index == null) {
+            return -1;
+        }
+        int segmentNum = getSegmentNum(index, positionMs);
+        return (index.getTimeUs(segmentNum) + index.getDurationUs(segmentNum)) / 1000;
+    }
+
+    /**
+     * Prefetches the segments of a representation that enclose positions, discarding the oldest
+     * prefetches beyond {@link #MAX_PREFETCHED_SEGMENTS}.
+     *
+     * @param formatId The identifier of the format of the representation.
+     * @param positionsMs The positions, most likely to be sought to first.
+     */
+    public void prefetch(String formatId, long[] positionsMs) {
+        DashSegmentIndex index = getSegmentIndex(formatId);
+        if (index == null) {
+            return;
+        }
+        Representation representation = representations.get(formatId);
+        for (int i = 0; i < positionsMs.length && i < MAX_PREFETCHED_SEGMENTS; i++) {
+            RangedUri segmentUri = index.getSegmentUrl(getSegmentNum(index, positionsMs[i]));
+            prefetch(new DataSpec(segmentUri.getUri(), segmentUri.start, segmentUri.length,
+                    representation.getCacheKey()));
+        }
+    }
+
+    /**
+     * Returns the number of segments that were prefetched.
+     */
+    public synchronized int getPrefetchCount() {
+        return prefetchCount;
+    }
+
+    /**
+     * Returns the number of chunk requests that were served by a prefetch.
+     */
+    public synchronized int getPrefetchHitCount() {
+        return prefetchHitCount;
+    }
+
+    /**
+     * Returns the number of bytes that were loaded by prefetches.
+     */
+    public synchronized long getPrefetchedBytes() {
+        return prefetchedBytes;
+    }
+
+    /**
+     * Stops prefetching and discards prefetched segments. The data source may still be used
+     * afterwards, but will only load from upstream.
+     */
+    public synchronized void release() {
+        executor.shutdownNow();
+        for (Future<byte[]> prefetch : prefetchedSegments.values()) {
+            prefetch.cancel(true);
+        }
+        prefetchedSegments.clear();
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        currentUri = dataSpec.uri.toString();
+        byte[] data = takePrefetchedSegment(getKey(dataSpec));
+        if (data == null) {
+            upstreamOpened = true;
+            return upstream.open(dataSpec);
+        }
+        currentData = data;
+        currentOffset = 0;
+        return data.length;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+        int bytesRead;
+        if (upstreamOpened) {
+            bytesRead = upstream.read(buffer, offset, readLength);
+        } else if (currentOffset == currentData.length) {
+            bytesRead = -1;
+        } else {
+            bytesRead = Math.min(readLength, currentData.length - currentOffset);
+            System.arraycopy(currentData, currentOffset, buffer, offset, bytesRead);
+            currentOffset += bytesRead;
+        }
+        if (bytesRead > 0) {
+            synchronized (this) {
+                chunkBytesRead += bytesRead;
+            }
+        }
+        return bytesRead;
+    }
+
+    @Override
+    public void close() throws IOException {
+        currentData = null;
+        if (upstreamOpened) {
+            upstreamOpened = false;
+            upstream.close();
+        }
+    }
+
+    @Override
+    public String getUri() {
+        return upstreamOpened ? upstream.getUri() : currentUri;
+    }
+
+    private DashSegmentIndex getSegmentIndex(String formatId) {
+        Representation representation = formatId == null ? null : representations.get(formatId);
+        DashSegmentIndex index = representation == null ? null : representation.getIndex();
+        if (index == null || index.getLastSegmentNum() < index.getFirstSegmentNum()) {
+            // Single segment and unbounded live representations are not supported.
+            return null;
+        }
+        return index;
+    }
+
+    private static int getSegmentNum(DashSegmentIndex index, long positionMs) {
+        return Math.max(index.getFirstSegmentNum(), Math.min(index.getLastSegmentNum(),
+                index.getSegmentNum(positionMs * 1000)));
+    }
+
+    private static String getKey(DataSpec dataSpec) {
+        return SegmentIndexCache.getKey(dataSpec.uri.toString(), dataSpec.position,
+                dataSpec.length);
+    }
+
+    /**
+     * Returns a prefetched segment, waiting for its download to complete if necessary.
+     *
+     * @return The segment, or null if it was not prefetched or its prefetch failed.
+     */
+    private byte[] takePrefetchedSegment(String key) throws InterruptedIOException {
+        Future<byte[]> prefetch;
+        synchronized (this) {
+            prefetch = prefetchedSegments.remove(key);
+        }
+        if (prefetch == null) {
+            return null;
+        }
+        try {
+            byte[] data = prefetch.get();
+            synchronized (this) {
+                prefetchHitCount++;
+            }
+            return data;
+        } catch (InterruptedException e) {
+            prefetch.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Log.w(TAG, "Prefetch failed: " + key, e.getCause());
+            return null;
+        }
+    }
+
+    private synchronized void prefetch(final DataSpec dataSpec) {
+        String key = getKey(dataSpec);
+        if (prefetchedSegments.containsKey(key) || executor.isShutdown()
+                || prefetchedBytes >= PREFETCH_BYTE_ALLOWANCE + MAX_PREFETCH_SHARE * chunkBytesRead) {
+            // Prefetches in flight may overrun the budget by up to MAX_PREFETCHED_SEGMENTS.
+            return;
+        }
+        Iterator<Future<byte[]>> iterator = prefetchedSegments.values().iterator();
+        while (prefetchedSegments.size() >= MAX_PREFETCHED_SEGMENTS && iterator.hasNext()) {
+            // The oldest prefetches are around positions that playback has moved away from.
+            iterator.next().cancel(true);
+            iterator.remove();
+        }
+        prefetchCount++;
+        prefetchedSegments.put(key, executor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                return load(dataSpec);
+            }
+        }));
+    }
+
+    private byte[] load(DataSpec dataSpec) throws IOException {
+        try {
+            prefetchUpstream.open(dataSpec);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[16 * 1024];
+            int bytesRead;
+            while ((bytesRead = prefetchUpstream.read(buffer, 0, buffer.length)) != -1) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedIOException();
+                }
+                output.write(buffer, 0, bytesRead);
+                synchronized (this) {
+                    prefetchedBytes += bytesRead;
+                }
+            }
+            return output.toByteArray();
+        } finally {
+            prefetchUpstream.close();
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.android.myexoplayer.player;
+
+/**
+ * Seek-to-play latency of a {@link DemoPlayer}, i.e. the time from a seek until playback resumes,
+ * or until the player is ready if it is paused.
+ * <p>
+ * Seeks to a position inside the buffer, which the sample sources can serve without loading, are
+ * recorded apart from the others, as are the seeks that the fast seek mode snapped to a segment
+ * boundary.
+ */
+public final class SeekStats {
+
+    private static final long LATENCY_BUCKET_MS = 50;
+    private static final int LATENCY_BUCKETS = 60;
+
+    private final Histogram inBufferLatencyMs;
+    private final Histogram outOfBufferLatencyMs;
+
+    private int snappedSeekCount;
+
+    public SeekStats() {
+        inBufferLatencyMs = new Histogram(0, LATENCY_BUCKET_MS, LATENCY_BUCKETS);
+        outOfBufferLatencyMs = new Histogram(0, LATENCY_BUCKET_MS, LATENCY_BUCKETS);
+    }
+
+    /**
+     * Records a completed seek.
+     *
+     * @param latencyMs The time from the seek until playback resumed.
+     * @param inBuffer Whether the target was inside the buffer.
+     * @param snapped Whether the target was snapped to a segment boundary.
+     */
+    public synchronized void add(long latencyMs, boolean inBuffer, boolean snapped) {
+        (inBuffer ? inBufferLatencyMs : outOfBufferLatencyMs).add(latencyMs);
+        if (snapped) {
+            snappedSeekCount++;
+        }
+    }
+
+    /**
+     * Discards all recorded seeks.
+     */
+    public synchronized void reset() {
+        inBufferLatencyMs.reset();
+        outOfBufferLatencyMs.reset();
+        snappedSeekCount = 0;
+    }
+
+    /**
+     * Returns the latency of seeks inside the buffer.
+     *
+     * @return inBufferLatencyMs
+     */
+    public Histogram getInBufferLatencyMs() {
+        return inBufferLatencyMs;
+    }
+
+    /**
+     * Returns the latency of seeks outside the buffer.
+     *
+     * @return outOfBufferLatencyMs
+     */
+    public Histogram getOutOfBufferLatencyMs() {
+        return outOfBufferLatencyMs;
+    }
+
+    /**
+     * Returns the number of seeks that were snapped to a segment boundary.
+     *
+     * @return snappedSeekCount
+     */
+    public synchronized int getSnappedSeekCount() {
+        return snappedSeekCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "seeks [inBuffer=" + format(inBufferLatencyMs) + ", outOfBuffer="
+                + format(outOfBufferLatencyMs) + ", snapped=" + snappedSeekCount + "]";
+    }
+
+    private static String format(Histogram latencyMs) {
+        return latencyMs.getCount() + " p50=" + latencyMs.getPercentile(50) + "ms p90="
+                + latencyMs.getPercentile(90) + "ms max=" + latencyMs.getMax() + "ms";
+    }
+
+}
@@ -0,0 +1,251 @@
+package com.android.myexoplayer.player;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A process wide cache of DASH initialization segments and segment indexes, keyed by URI and byte
+ * range.
+ * <p>
+ * Every chunk source loads the initialization data of a representation before its first media
+ * chunk, so each switch to a representation that a chunk source has not used yet, and each
+ * preparation of the player, costs a round-trip. Entries are kept in memory, up to
+ * {@link #MAX_MEMORY_BYTES}, and in the application's cache directory, up to
+ * {@link #MAX_DISK_ENTRIES} files, so that these loads are served locally after the first.
+ */
+public final class SegmentIndexCache {
+
+    private static final String TAG = "SegmentIndexCache";
+    private static final String DIRECTORY_NAME = "segment_index";
+    private static final String PARTIAL_SUFFIX = ".part";
+    private static final int MAX_MEMORY_BYTES = 4 * 1024 * 1024;
+    private static final int MAX_DISK_ENTRIES = 256;
+
+    private static SegmentIndexCache instance;
+
+    private final File directory;
+    private final Map<String, byte[]> entries;
+
+    private int memoryBytes;
+    private int memoryHitCount;
+    private int diskHitCount;
+    private int missCount;
+
+    /* package */ SegmentIndexCache(File directory) {
+        this.directory = directory;
+        entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the process wide instance.
+     */
+    public static synchronized SegmentIndexCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new SegmentIndexCache(
+                    new File(context.getApplicationContext().getCacheDir(), DIRECTORY_NAME));
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the key of a byte range.
+     *
+     * @param uri The URI of the resource.
+     * @param position The position of the range.
+     * @param length The length of the range, or {@link com.google.android.exoplayer.C#LENGTH_UNBOUNDED}
+     *     if it extends to the end of the resource.
+     */
+    public static String getKey(String uri, long position, long length) {
+        return uri + " " + position + "+" + length;
+    }
+
+    /**
+     * Returns the cached bytes of a range, reading them from disk if they are not in memory.
+     *
+     * @param key The key of the range, as returned by {@link #getKey(String, long, long)}.
+     * @return The bytes, or null if the range is not cached.
+     */
+    public synchronized byte[] get(String key) {
+        byte[] data = entries.get(key);
+        if (data != null) {
+            memoryHitCount++;
+            return data;
+        }
+        data = readFile(getFile(key));
+        if (data != null) {
+            diskHitCount++;
+            putInMemory(key, data);
+            return data;
+        }
+        missCount++;
+        return null;
+    }
+
+    /**
+     * Caches the bytes of a range in memory and on disk.
+     *
+     * @param key The key of the range, as returned by {@link #getKey(String, long, long)}.
+     * @param data The bytes of the range.
+     */
+    public synchronized void put(String key, byte[] data) {
+        putInMemory(key, data);
+        writeFile(getFile(key), data);
+    }
+
+    /**
+     * Removes all entries from memory and disk, and resets the counters.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        memoryBytes = 0;
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        memoryHitCount = 0;
+        diskHitCount = 0;
+        missCount = 0;
+    }
+
+    /**
+     * Returns the number of lookups that were served from memory.
+     */
+    public synchronized int getMemoryHitCount() {
+        return memoryHitCount;
+    }
+
+    /**
+     * Returns the number of lookups that were served from disk.
+     */
+    public synchronized int getDiskHitCount() {
+        return diskHitCount;
+    }
+
+    /**
+     * Returns the number of lookups that were not served from the cache, each of which cost a load
+     * from the network.
+     */
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "memoryHits=" + memoryHitCount + ", diskHits=" + diskHitCount + ", misses=" + missCount
+                + ", memoryBytes=" + memoryBytes;
+    }
+
+    private void putInMemory(String key, byte[] data) {
+        byte[] previous = entries.put(key, data);
+        if (previous != null) {
+            memoryBytes -= previous.length;
+        }
+        memoryBytes += data.length;
+        Iterator<Map.Entry<String, byte[]>> iterator = entries.entrySet().iterator();
+        while (memoryBytes > MAX_MEMORY_BYTES && iterator.hasNext()) {
+            memoryBytes -= iterator.next().getValue().length;
+            iterator.remove();
+        }
+    }
+
+    private File getFile(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes("UTF-8"));
+            StringBuilder fileName = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                fileName.append(Character.forDigit((b >> 4) & 0xF, 16))
+                        .append(Character.forDigit(b & 0xF, 16));
+            }
+            return new File(directory, fileName.toString());
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            // Both are guaranteed to be available.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] readFile(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            byte[] data = new byte[(int) file.length()];
+            FileInputStream input = new FileInputStream(file);
+            try {
+                int offset = 0;
+                while (offset < data.length) {
+                    int bytesRead = input.read(data, offset, data.length - offset);
+                    if (bytesRead == -1) {
+                        return null;
+                    }
+                    offset += bytesRead;
+                }
+            } finally {
+                input.close();
+            }
+            // Mark the entry as recently used, for eviction.
+            file.setLastModified(System.currentTimeMillis());
+            return data;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read " + file, e);
+            return null;
+        }
+    }
+
+    private void writeFile(File file, byte[] data) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(TAG, "Failed to create " + directory);
+            return;
+        }
+        File partialFile = new File(file.getPath() + PARTIAL_SUFFIX);
+        try {
+            FileOutputStream output = new FileOutputStream(partialFile);
+            try {
+                output.write(data);
+            } finally {
+                output.close();
+            }
+            if (!partialFile.renameTo(file)) {
+                throw new IOException("Failed to rename " + partialFile);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write " + file, e);
+            partialFile.delete();
+            return;
+        }
+        evictFiles();
+    }
+
+    private void evictFiles() {
+        File[] files = directory.listFiles();
+        if (files == null || files.length <= MAX_DISK_ENTRIES) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long lhsModified = lhs.lastModified();
+                long rhsModified = rhs.lastModified();
+                return lhsModified < rhsModified ? -1 : (lhsModified == rhsModified ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < files.length - MAX_DISK_ENTRIES; i++) {
+            files[i].delete();
+        }
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.android.myexoplayer.player;
+
+import com.google.android.exoplayer.dash.mpd.RangedUri;
+import com.google.android.exoplayer.dash.mpd.Representation;
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.UriDataSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A {@link UriDataSource} for DASH chunks that serves the initialization data of representations
+ * from the {@link SegmentIndexCache}, and passes media chunks to an upstream source.
+ * <p>
+ * A chunk source requests the initialization segment and the segment index of a representation
+ * together when they are adjacent, so the ranges that are cached are the initialization range, the
+ * index range and their merge. Cache hits are not reported to the upstream source's listener, so
+ * they do not inflate the bandwidth estimate.
+ */
+public class SegmentIndexCachingDataSource implements UriDataSource {
+
+    private final UriDataSource upstream;
+    private final SegmentIndexCache cache;
+    private final Set<String> cacheableKeys;
+
+    private String currentUri;
+    private byte[] currentData;
+    private int currentOffset;
+    private boolean upstreamOpened;
+
+    /**
+     * @param upstream The source of chunks that are not cached.
+     * @param cache The cache.
+     * @param representations The representations whose initialization data should be cached.
+     */
+    public SegmentIndexCachingDataSource(UriDataSource upstream, SegmentIndexCache cache,
+                                         List<Representation> representations) {
+        this.upstream = upstream;
+        this.cache = cache;
+        cacheableKeys = new HashSet<>();
+        for (Representation representation : representations) {
+            RangedUri initializationUri = representation.getInitializationUri();
+            RangedUri indexUri = representation.getIndexUri();
+            addCacheableRange(initializationUri);
+            addCacheableRange(indexUri);
+            if (initializationUri != null && indexUri != null) {
+                addCacheableRange(initializationUri.attemptMerge(indexUri));
+            }
+        }
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        currentUri = dataSpec.uri.toString();
+        String key = SegmentIndexCache.getKey(currentUri, dataSpec.position, dataSpec.length);
+        if (!cacheableKeys.contains(key)) {
+            upstreamOpened = true;
+            return upstream.open(dataSpec);
+        }
+        byte[] data = cache.get(key);
+        if (data == null) {
+            data = load(dataSpec);
+            cache.put(key, data);
+        }
+        currentData = data;
+        currentOffset = 0;
+        return data.length;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+        if (upstreamOpened) {
+            return upstream.read(buffer, offset, readLength);
+        }
+        if (currentOffset == currentData.length) {
+            return -1;
+        }
+        int bytesRead = Math.min(readLength, currentData.length - currentOffset);
+        System.arraycopy(currentData, currentOffset, buffer, offset, bytesRead);
+        currentOffset += bytesRead;
+        return bytesRead;
+    }
+
+    @Override
+    public void close() throws IOException {
+        currentData = null;
+        if (upstreamOpened) {
+            upstreamOpened = false;
+            upstream.close();
+        }
+    }
+
+    @Override
+    public String getUri() {
+        return upstreamOpened ? upstream.getUri() : currentUri;
+    }
+
+    private void addCacheableRange(RangedUri rangedUri) {
+        if (rangedUri != null) {
+            cacheableKeys.add(SegmentIndexCache.getKey(rangedUri.getUri().toString(), rangedUri.start,
+                    rangedUri.length));
+        }
+    }
+
+    private byte[] load(DataSpec dataSpec) throws IOException {
+        try {
+            upstream.open(dataSpec);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int bytesRead;
+            while ((bytesRead = upstream.read(buffer, 0, buffer.length)) != -1) {
+                output.write(buffer, 0, bytesRead);
+            }
+            return output.toByteArray();
+        } finally {
+            upstream.close();
+        }
+    }
+
+}
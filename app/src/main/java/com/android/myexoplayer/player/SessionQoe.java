@@ -0,0 +1,103 @@
+package com.android.myexoplayer.player;
+
+/**
+ * Quality of experience summary of a single playback session.
+ */
+public final class SessionQoe {
+
+    /**
+     * The duration of playback over which {@link #earlyVideoBitrate} is measured.
+     */
+    public static final int EARLY_PLAYBACK_MS = 10000;
+
+    /**
+     * Time from prepare until the player first became ready, or -1 if it never did.
+     */
+    public final long startupMs;
+    /**
+     * Number of rebuffers after playback started.
+     */
+    public final int rebufferCount;
+    /**
+     * Total time spent rebuffering after playback started.
+     */
+    public final long rebufferMs;
+    /**
+     * Time spent ready to play.
+     */
+    public final long playingMs;
+    /**
+     * Number of video format switches, excluding the initial selection.
+     */
+    public final int videoSwitchCount;
+    /**
+     * Mean bitrate of the loaded video chunks, weighted by their media duration.
+     */
+    public final long meanVideoBitrate;
+    /**
+     * Mean bitrate of the video played during the first {@link #EARLY_PLAYBACK_MS} of playback, or
+     * -1 if playback did not last that long.
+     */
+    public final long earlyVideoBitrate;
+    /**
+     * Number of chunks loaded.
+     */
+    public final int chunkCount;
+    /**
+     * Number of bytes loaded.
+     */
+    public final long bytesLoaded;
+    /**
+     * Total time spent loading chunks.
+     */
+    public final long loadDurationMs;
+    /**
+     * Whether the session ended with a fatal error.
+     */
+    public final boolean failed;
+
+    public SessionQoe(long startupMs, int rebufferCount, long rebufferMs, long playingMs,
+                      int videoSwitchCount, long meanVideoBitrate, long earlyVideoBitrate,
+                      int chunkCount, long bytesLoaded, long loadDurationMs, boolean failed) {
+        this.startupMs = startupMs;
+        this.rebufferCount = rebufferCount;
+        this.rebufferMs = rebufferMs;
+        this.playingMs = playingMs;
+        this.videoSwitchCount = videoSwitchCount;
+        this.meanVideoBitrate = meanVideoBitrate;
+        this.earlyVideoBitrate = earlyVideoBitrate;
+        this.chunkCount = chunkCount;
+        this.bytesLoaded = bytesLoaded;
+        this.loadDurationMs = loadDurationMs;
+        this.failed = failed;
+    }
+
+    /**
+     * Returns the fraction of the session spent rebuffering after startup.
+     *
+     * @return rebufferRatio
+     */
+    public float getRebufferRatio() {
+        long totalMs = playingMs + rebufferMs;
+        return totalMs == 0 ? 0 : (float) rebufferMs / totalMs;
+    }
+
+    /**
+     * Returns the mean chunk download throughput in bits per second.
+     *
+     * @return throughput
+     */
+    public long getThroughput() {
+        return loadDurationMs == 0 ? 0 : bytesLoaded * 8000 / loadDurationMs;
+    }
+
+    @Override
+    public String toString() {
+        return "qoe [startup=" + startupMs + ", rebuffers=" + rebufferCount + ", rebufferMs="
+                + rebufferMs + ", playingMs=" + playingMs + ", switches=" + videoSwitchCount
+                + ", bitrate=" + meanVideoBitrate + ", earlyBitrate=" + earlyVideoBitrate
+                + ", chunks=" + chunkCount + ", bytes=" + bytesLoaded
+                + ", throughput=" + getThroughput() + ", failed=" + failed + "]";
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.android.myexoplayer.player;
+
+import android.os.SystemClock;
+
+import com.google.android.exoplayer.MediaClock;
+
+/**
+ * A {@link MediaClock} that advances at a configurable multiple of real time while started.
+ * <p>
+ * Used by {@link StubTrackRenderer} in place of the audio output clock, so that headless sessions
+ * can play without an {@link android.media.AudioTrack}.
+ */
+public final class SimulatedMediaClock implements MediaClock {
+
+    private final float speed;
+
+    private boolean started;
+    private long basePositionUs;
+    private long baseElapsedRealtimeUs;
+
+    /**
+     * @param speed The rate at which media time advances relative to real time.
+     */
+    public SimulatedMediaClock(float speed) {
+        this.speed = speed;
+    }
+
+    /**
+     * Starts the clock. Does nothing if it is already started.
+     */
+    public synchronized void start() {
+        if (!started) {
+            started = true;
+            baseElapsedRealtimeUs = SystemClock.elapsedRealtime() * 1000;
+        }
+    }
+
+    /**
+     * Stops the clock. Does nothing if it is already stopped.
+     */
+    public synchronized void stop() {
+        if (started) {
+            basePositionUs = getPositionUs();
+            started = false;
+        }
+    }
+
+    /**
+     * Sets the clock's position.
+     *
+     * @param positionUs The position in microseconds.
+     */
+    public synchronized void setPositionUs(long positionUs) {
+        basePositionUs = positionUs;
+        baseElapsedRealtimeUs = SystemClock.elapsedRealtime() * 1000;
+    }
+
+    @Override
+    public synchronized long getPositionUs() {
+        if (!started) {
+            return basePositionUs;
+        }
+        long elapsedUs = SystemClock.elapsedRealtime() * 1000 - baseElapsedRealtimeUs;
+        return basePositionUs + (long) (elapsedUs * speed);
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.android.myexoplayer.player;
+
+import java.util.Arrays;
+
+/**
+ * Aggregates {@link StartupTimeline}s across playback sessions, so that startup regressions can be
+ * detected by comparing percentiles between builds.
+ * <p>
+ * The most recent {@link #MAX_SESSIONS} sessions are retained per phase. Methods are synchronized
+ * so that a single instance can be shared by every player in the process.
+ */
+public final class StartupStats {
+
+    /**
+     * The maximum number of sessions retained for percentile computation.
+     */
+    public static final int MAX_SESSIONS = 256;
+
+    private final long[][] offsetsMs;
+    private final int[] counts;
+    private int sessionCount;
+    private int completedSessionCount;
+
+    public StartupStats() {
+        offsetsMs = new long[StartupTimeline.PHASE_COUNT][MAX_SESSIONS];
+        counts = new int[StartupTimeline.PHASE_COUNT];
+    }
+
+    /**
+     * Adds a session to the aggregate. Phases the session did not reach are ignored.
+     *
+     * @param timeline The timeline of the session.
+     */
+    public synchronized void add(StartupTimeline timeline) {
+        sessionCount++;
+        if (timeline.isComplete()) {
+            completedSessionCount++;
+        }
+        for (int phase = 0; phase < StartupTimeline.PHASE_COUNT; phase++) {
+            long offsetMs = timeline.getPhaseOffsetMs(phase);
+            if (offsetMs != StartupTimeline.UNSET) {
+                offsetsMs[phase][counts[phase] % MAX_SESSIONS] = offsetMs;
+                counts[phase]++;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of sessions added.
+     *
+     * @return int
+     */
+    public synchronized int getSessionCount() {
+        return sessionCount;
+    }
+
+    /**
+     * Returns the number of sessions added that reached the first frame.
+     *
+     * @return int
+     */
+    public synchronized int getCompletedSessionCount() {
+        return completedSessionCount;
+    }
+
+    /**
+     * Returns a percentile of the offset at which a phase was reached, over the retained sessions.
+     *
+     * @param phase One of the {@link StartupTimeline} {@code PHASE_*} constants.
+     * @param percentile The percentile, between 0 and 100.
+     * @return The offset in milliseconds, or {@link StartupTimeline#UNSET} if no session reached
+     *     the phase.
+     */
+    public synchronized long getPercentileMs(int phase, int percentile) {
+        int size = Math.min(counts[phase], MAX_SESSIONS);
+        if (size == 0) {
+            return StartupTimeline.UNSET;
+        }
+        long[] sorted = Arrays.copyOf(offsetsMs[phase], size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100d * size) - 1;
+        return sorted[Math.max(0, Math.min(size - 1, index))];
+    }
+
+    /**
+     * Returns the mean offset at which a phase was reached, over the retained sessions.
+     *
+     * @param phase One of the {@link StartupTimeline} {@code PHASE_*} constants.
+     * @return The mean in milliseconds, or {@link StartupTimeline#UNSET} if no session reached the
+     *     phase.
+     */
+    public synchronized long getMeanMs(int phase) {
+        int size = Math.min(counts[phase], MAX_SESSIONS);
+        if (size == 0) {
+            return StartupTimeline.UNSET;
+        }
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += offsetsMs[phase][i];
+        }
+        return sum / size;
+    }
+
+    /**
+     * Discards all sessions.
+     */
+    public synchronized void reset() {
+        Arrays.fill(counts, 0);
+        sessionCount = 0;
+        completedSessionCount = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder("startupStats [sessions=").append(sessionCount)
+                .append(", completed=").append(completedSessionCount);
+        for (int phase = 0; phase < StartupTimeline.PHASE_COUNT; phase++) {
+            builder.append(", ").append(StartupTimeline.getPhaseName(phase))
+                    .append("(p50=").append(getPercentileMs(phase, 50))
+                    .append(", p90=").append(getPercentileMs(phase, 90)).append(')');
+        }
+        return builder.append(']').toString();
+    }
+
+}
@@ -0,0 +1,161 @@
+package com.android.myexoplayer.player;
+
+import android.os.SystemClock;
+
+/**
+ * Breakdown of the startup of a single playback session, from the moment playback was requested
+ * until the first video frame was drawn to the surface.
+ * <p>
+ * Each phase is recorded once, as an offset in milliseconds from the session origin. Phases that
+ * have not (yet) happened report {@link #UNSET}.
+ */
+public final class StartupTimeline {
+
+    /**
+     * Offset reported for a phase that has not been reached.
+     */
+    public static final long UNSET = -1;
+
+    /**
+     * {@link DemoPlayer#prepare()} has been invoked.
+     */
+    public static final int PHASE_PREPARE = 0;
+    /**
+     * The manifest (or playlist) has been loaded and parsed.
+     */
+    public static final int PHASE_MANIFEST_LOADED = 1;
+    /**
+     * The {@link DemoPlayer.RendererBuilder} has delivered the renderers.
+     */
+    public static final int PHASE_RENDERERS_BUILT = 2;
+    /**
+     * The first decoder has been initialized.
+     */
+    public static final int PHASE_DECODER_INITIALIZED = 3;
+    /**
+     * The first media chunk has been loaded.
+     */
+    public static final int PHASE_FIRST_CHUNK_LOADED = 4;
+    /**
+     * The first video frame has been drawn to the surface.
+     */
+    public static final int PHASE_FIRST_FRAME_DRAWN = 5;
+
+    /**
+     * The number of recorded phases.
+     */
+    public static final int PHASE_COUNT = 6;
+
+    private static final String[] PHASE_NAMES = new String[] {
+            "prepare", "manifest", "renderers", "decoder", "firstChunk", "firstFrame"};
+
+    private final long originMs;
+    private final long[] phaseOffsetsMs;
+
+    /**
+     * @param originMs The {@link SystemClock#elapsedRealtime()} at which playback was requested.
+     */
+    public StartupTimeline(long originMs) {
+        this.originMs = originMs;
+        phaseOffsetsMs = new long[PHASE_COUNT];
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            phaseOffsetsMs[i] = UNSET;
+        }
+    }
+
+    /**
+     * Records that a phase has been reached now. Only the first call for each phase is kept.
+     *
+     * @param phase One of the {@code PHASE_*} constants.
+     * @return Whether the phase was recorded by this call.
+     */
+    /* package */ boolean mark(int phase) {
+        if (phaseOffsetsMs[phase] != UNSET) {
+            return false;
+        }
+        phaseOffsetsMs[phase] = Math.max(0, SystemClock.elapsedRealtime() - originMs);
+        return true;
+    }
+
+    /**
+     * Returns the {@link SystemClock#elapsedRealtime()} at which playback was requested.
+     *
+     * @return originMs
+     */
+    public long getOriginMs() {
+        return originMs;
+    }
+
+    /**
+     * Returns the offset from the origin at which a phase was reached.
+     *
+     * @param phase One of the {@code PHASE_*} constants.
+     * @return The offset in milliseconds, or {@link #UNSET}.
+     */
+    public long getPhaseOffsetMs(int phase) {
+        return phaseOffsetsMs[phase];
+    }
+
+    /**
+     * Returns the time spent in a phase, measured from the latest earlier phase that was reached.
+     *
+     * @param phase One of the {@code PHASE_*} constants.
+     * @return The duration in milliseconds, or {@link #UNSET}.
+     */
+    public long getPhaseDurationMs(int phase) {
+        long offsetMs = phaseOffsetsMs[phase];
+        if (offsetMs == UNSET) {
+            return UNSET;
+        }
+        long previousOffsetMs = 0;
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            long candidateMs = phaseOffsetsMs[i];
+            if (i != phase && candidateMs != UNSET && candidateMs <= offsetMs
+                    && candidateMs > previousOffsetMs) {
+                previousOffsetMs = candidateMs;
+            }
+        }
+        return offsetMs - previousOffsetMs;
+    }
+
+    /**
+     * Returns the time from the origin until the first frame was drawn.
+     *
+     * @return The time to first frame in milliseconds, or {@link #UNSET}.
+     */
+    public long getTimeToFirstFrameMs() {
+        return phaseOffsetsMs[PHASE_FIRST_FRAME_DRAWN];
+    }
+
+    /**
+     * Returns whether the first frame has been drawn.
+     *
+     * @return boolean
+     */
+    public boolean isComplete() {
+        return phaseOffsetsMs[PHASE_FIRST_FRAME_DRAWN] != UNSET;
+    }
+
+    /**
+     * Returns a short name for a phase, suitable for logging.
+     *
+     * @param phase One of the {@code PHASE_*} constants.
+     * @return String
+     */
+    public static String getPhaseName(int phase) {
+        return PHASE_NAMES[phase];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("startup [");
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(PHASE_NAMES[i]).append('=').append(phaseOffsetsMs[i]);
+        }
+        return builder.append(']').toString();
+    }
+
+}
@@ -0,0 +1,202 @@
+package com.android.myexoplayer.player;
+
+import com.google.android.exoplayer.ExoPlaybackException;
+import com.google.android.exoplayer.MediaClock;
+import com.google.android.exoplayer.MediaFormatHolder;
+import com.google.android.exoplayer.SampleHolder;
+import com.google.android.exoplayer.SampleSource;
+import com.google.android.exoplayer.SampleSource.SampleSourceReader;
+import com.google.android.exoplayer.TrackRenderer;
+
+import java.io.IOException;
+
+/**
+ * A {@link TrackRenderer} that consumes samples from a {@link SampleSource} as playback reaches
+ * them, without decoding or outputting them.
+ * <p>
+ * Readiness and buffering therefore behave as they would with a real decoder, which keeps chunk
+ * loading, bandwidth estimation and format evaluation intact while no {@link
+ * android.media.MediaCodec} or {@link android.view.Surface} is required. A renderer can optionally
+ * drive a {@link SimulatedMediaClock}; at most one renderer per player may do so.
+ */
+public class StubTrackRenderer extends TrackRenderer {
+
+    /**
+     * Samples are consumed up to this far ahead of the playback position, as a decoder would.
+     */
+    private static final long DECODE_AHEAD_US = 100000;
+
+    private final SampleSourceReader source;
+    private final String mimeTypePrefix;
+    private final SimulatedMediaClock clock;
+    private final MediaFormatHolder formatHolder;
+    private final SampleHolder sampleHolder;
+
+    private int trackIndex;
+    private boolean sourceIsReady;
+    private boolean hasPendingSample;
+    private boolean inputStreamEnded;
+    private long currentPositionUs;
+    private long durationUs;
+    private long consumedSampleCount;
+    private long consumedByteCount;
+
+    /**
+     * @param source The source of samples.
+     * @param mimeTypePrefix The prefix of the mime type of the track to consume, e.g. "video/".
+     * @param clock The clock to drive, or null if another renderer drives the player's clock.
+     */
+    public StubTrackRenderer(SampleSource source, String mimeTypePrefix, SimulatedMediaClock clock) {
+        this.source = source.register();
+        this.mimeTypePrefix = mimeTypePrefix;
+        this.clock = clock;
+        formatHolder = new MediaFormatHolder();
+        sampleHolder = new SampleHolder(SampleHolder.BUFFER_REPLACEMENT_MODE_NORMAL);
+    }
+
+    /**
+     * Returns the number of samples consumed.
+     *
+     * @return consumedSampleCount
+     */
+    public long getConsumedSampleCount() {
+        return consumedSampleCount;
+    }
+
+    /**
+     * Returns the number of sample bytes consumed.
+     *
+     * @return consumedByteCount
+     */
+    public long getConsumedByteCount() {
+        return consumedByteCount;
+    }
+
+    @Override
+    protected int doPrepare(long positionUs) throws ExoPlaybackException {
+        try {
+            if (!source.prepare(positionUs)) {
+                return TrackRenderer.STATE_UNPREPARED;
+            }
+        } catch (IOException e) {
+            throw new ExoPlaybackException(e);
+        }
+        for (int i = 0; i < source.getTrackCount(); i++) {
+            if (source.getTrackInfo(i).mimeType.startsWith(mimeTypePrefix)) {
+                trackIndex = i;
+                durationUs = source.getTrackInfo(i).durationUs;
+                return TrackRenderer.STATE_PREPARED;
+            }
+        }
+        return TrackRenderer.STATE_IGNORE;
+    }
+
+    @Override
+    protected void onEnabled(long positionUs, boolean joining) throws ExoPlaybackException {
+        source.enable(trackIndex, positionUs);
+        seekToInternal(positionUs);
+    }
+
+    @Override
+    protected void onStarted() throws ExoPlaybackException {
+        if (clock != null) {
+            clock.start();
+        }
+    }
+
+    @Override
+    protected void onStopped() throws ExoPlaybackException {
+        if (clock != null) {
+            clock.stop();
+        }
+    }
+
+    @Override
+    protected void onDisabled() throws ExoPlaybackException {
+        source.disable(trackIndex);
+    }
+
+    @Override
+    protected void onReleased() throws ExoPlaybackException {
+        source.release();
+    }
+
+    @Override
+    protected MediaClock getMediaClock() {
+        return clock;
+    }
+
+    @Override
+    protected void doSomeWork(long positionUs, long elapsedRealtimeUs) throws ExoPlaybackException {
+        currentPositionUs = positionUs;
+        sourceIsReady = source.continueBuffering(trackIndex, positionUs);
+        while (!inputStreamEnded) {
+            if (hasPendingSample) {
+                if (sampleHolder.timeUs > positionUs + DECODE_AHEAD_US) {
+                    return;
+                }
+                consumedSampleCount++;
+                consumedByteCount += sampleHolder.size;
+                hasPendingSample = false;
+            }
+            sampleHolder.clearData();
+            int result = source.readData(trackIndex, positionUs, formatHolder, sampleHolder, false);
+            if (result == SampleSource.SAMPLE_READ) {
+                hasPendingSample = true;
+            } else if (result == SampleSource.END_OF_STREAM) {
+                inputStreamEnded = true;
+            } else if (result != SampleSource.FORMAT_READ) {
+                // NOTHING_READ or DISCONTINUITY_READ.
+                return;
+            }
+        }
+    }
+
+    @Override
+    protected void maybeThrowError() throws ExoPlaybackException {
+        try {
+            source.maybeThrowError();
+        } catch (IOException e) {
+            throw new ExoPlaybackException(e);
+        }
+    }
+
+    @Override
+    protected boolean isEnded() {
+        return inputStreamEnded && !hasPendingSample;
+    }
+
+    @Override
+    protected boolean isReady() {
+        return hasPendingSample || sourceIsReady || inputStreamEnded;
+    }
+
+    @Override
+    protected long getDurationUs() {
+        return durationUs;
+    }
+
+    @Override
+    protected long getBufferedPositionUs() {
+        long sourceBufferedPosition = source.getBufferedPositionUs();
+        return sourceBufferedPosition == UNKNOWN_TIME_US || sourceBufferedPosition == END_OF_TRACK_US
+                ? sourceBufferedPosition : Math.max(sourceBufferedPosition, currentPositionUs);
+    }
+
+    @Override
+    protected void seekTo(long positionUs) throws ExoPlaybackException {
+        source.seekToUs(positionUs);
+        seekToInternal(positionUs);
+    }
+
+    private void seekToInternal(long positionUs) {
+        currentPositionUs = positionUs;
+        hasPendingSample = false;
+        inputStreamEnded = false;
+        sourceIsReady = false;
+        if (clock != null) {
+            clock.setPositionUs(positionUs);
+        }
+    }
+
+}
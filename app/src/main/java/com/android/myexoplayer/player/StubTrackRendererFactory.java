@@ -0,0 +1,57 @@
+package com.android.myexoplayer.player;
+
+import android.content.Context;
+import android.os.Handler;
+
+import com.google.android.exoplayer.SampleSource;
+import com.google.android.exoplayer.TrackRenderer;
+import com.google.android.exoplayer.chunk.FormatWrapper;
+import com.google.android.exoplayer.drm.DrmSessionManager;
+
+import java.util.List;
+
+/**
+ * A {@link TrackRendererFactory} that creates {@link StubTrackRenderer}s, for playback without
+ * decoders. The video renderer drives a {@link SimulatedMediaClock}.
+ */
+public class StubTrackRendererFactory implements TrackRendererFactory {
+
+    private final float speed;
+
+    /**
+     * @param speed The rate at which media time advances relative to real time.
+     */
+    public StubTrackRendererFactory(float speed) {
+        this.speed = speed;
+    }
+
+    @Override
+    public int[] selectVideoFormats(Context context, List<? extends FormatWrapper> formatWrappers,
+                                    boolean filterHdContent) {
+        // Without decoders there are no device capabilities to filter by.
+        int[] indices = new int[formatWrappers.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = i;
+        }
+        return indices;
+    }
+
+    @Override
+    public boolean isHardwareAccelerated(String mimeType) {
+        // Stub renderers decode nothing, so every codec is equally cheap.
+        return true;
+    }
+
+    @Override
+    public TrackRenderer createVideoRenderer(SampleSource sampleSource,
+                                             DrmSessionManager drmSessionManager, Handler mainHandler, DemoPlayer player) {
+        return new StubTrackRenderer(sampleSource, "video/", new SimulatedMediaClock(speed));
+    }
+
+    @Override
+    public TrackRenderer createAudioRenderer(SampleSource sampleSource,
+                                             DrmSessionManager drmSessionManager, Handler mainHandler, DemoPlayer player) {
+        return new StubTrackRenderer(sampleSource, "audio/", null);
+    }
+
+}
@@ -0,0 +1,335 @@
+package com.android.myexoplayer.player;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.MediaMetadataRetriever;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.google.android.exoplayer.dash.mpd.RangedUri;
+import com.google.android.exoplayer.dash.mpd.Representation;
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.DefaultUriDataSource;
+import com.google.android.exoplayer.upstream.UriDataSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Loads the thumbnails of a {@link ThumbnailIndex} in the background into a bounded LRU cache of
+ * bitmaps, from which previews are served in constant time while scrubbing.
+ * <p>
+ * Segments of a thumbnail image track are prefetched coarse to fine, i.e. every eighth segment
+ * first, then every fourth, and so on, until as many thumbnails as fit the cache are loaded. A
+ * preview is therefore available near any position soon after the cache starts, and the nearest
+ * loaded thumbnail is shown until the exact one loads. The position being previewed is loaded
+ * before any further prefetching.
+ * <p>
+ * Where the thumbnails are the first frames of a video representation, each one costs a whole
+ * video segment, so nothing is prefetched: a segment is only loaded when its position is previewed
+ * while scrubbing, and the loads do not compete with playback for bandwidth otherwise.
+ */
+public final class ThumbnailCache {
+
+    private static final String TAG = "ThumbnailCache";
+
+    public static final int DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+    public static final int DEFAULT_THUMBNAIL_WIDTH = 160;
+
+    /**
+     * The coarsest stride of the prefetch, in segments.
+     */
+    private static final int MAX_PREFETCH_STRIDE = 8;
+    /**
+     * The furthest a preview may be from the position being previewed, in thumbnails.
+     */
+    private static final int MAX_PREVIEW_DISTANCE = 16;
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final Context context;
+    private final String userAgent;
+    private final ThumbnailIndex index;
+    private final int thumbnailWidth;
+    private final LruCache<Integer, Bitmap> cache;
+    private final int[] prefetchSegmentNums;
+
+    // Accessed only on the loader thread.
+    private byte[] initializationData;
+
+    private Thread loaderThread;
+    private int nextPrefetchIndex;
+    private int requestedIndex;
+    private boolean released;
+
+    /**
+     * @param context A context.
+     * @param userAgent The user agent of requests.
+     * @param index The thumbnails to load.
+     * @param maxBytes The maximum size of the cached bitmaps.
+     * @param thumbnailWidth The width to which thumbnails are scaled.
+     */
+    public ThumbnailCache(Context context, String userAgent, ThumbnailIndex index, int maxBytes,
+                          int thumbnailWidth) {
+        this.context = context.getApplicationContext();
+        this.userAgent = userAgent;
+        this.index = index;
+        this.thumbnailWidth = thumbnailWidth;
+        cache = new LruCache<Integer, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Integer key, Bitmap value) {
+                return value.getRowBytes() * value.getHeight();
+            }
+        };
+        prefetchSegmentNums = index.isImage()
+                ? getPrefetchOrder(index, getMaxPrefetchSegmentCount(maxBytes)) : new int[0];
+        requestedIndex = -1;
+    }
+
+    /**
+     * Starts loading thumbnails in the background, or only those previewed for a video
+     * representation.
+     */
+    public synchronized void start() {
+        if (loaderThread != null || released) {
+            return;
+        }
+        loaderThread = new Thread("ThumbnailCache") {
+            @Override
+            public void run() {
+                runLoader();
+            }
+        };
+        loaderThread.setDaemon(true);
+        loaderThread.start();
+    }
+
+    /**
+     * Stops loading and discards the cached thumbnails.
+     */
+    public void release() {
+        synchronized (this) {
+            released = true;
+            notifyAll();
+            if (loaderThread != null) {
+                loaderThread.interrupt();
+            }
+        }
+        cache.evictAll();
+    }
+
+    /**
+     * Returns a thumbnail for a position, requesting the exact thumbnail if it is not loaded.
+     *
+     * @param positionMs The position.
+     * @return The thumbnail for the position, or the nearest loaded one, or null if none is loaded
+     *     nearby.
+     */
+    public Bitmap getThumbnail(long positionMs) {
+        int thumbnailIndex = index.getThumbnailIndex(positionMs);
+        Bitmap thumbnail = cache.get(thumbnailIndex);
+        if (thumbnail != null) {
+            return thumbnail;
+        }
+        request(thumbnailIndex);
+        for (int distance = 1; distance <= MAX_PREVIEW_DISTANCE; distance++) {
+            thumbnail = cache.get(thumbnailIndex - distance);
+            if (thumbnail == null) {
+                thumbnail = cache.get(thumbnailIndex + distance);
+            }
+            if (thumbnail != null) {
+                return thumbnail;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "thumbnails [cached=" + cache.size() + "B/" + cache.maxSize() + "B, hits="
+                + cache.hitCount() + ", misses=" + cache.missCount() + "]";
+    }
+
+    private synchronized void request(int thumbnailIndex) {
+        requestedIndex = thumbnailIndex;
+        notifyAll();
+    }
+
+    /**
+     * Returns the segment number of the next segment to load, blocking until there is one, or -1
+     * if the cache has been released.
+     */
+    private synchronized int takeNextSegmentNum() throws InterruptedException {
+        while (!released) {
+            if (requestedIndex != -1) {
+                int segmentNum = index.getSegmentNum(requestedIndex);
+                requestedIndex = -1;
+                return segmentNum;
+            }
+            if (nextPrefetchIndex < prefetchSegmentNums.length) {
+                return prefetchSegmentNums[nextPrefetchIndex++];
+            }
+            wait();
+        }
+        return -1;
+    }
+
+    private void runLoader() {
+        UriDataSource dataSource = new DefaultUriDataSource(context, userAgent);
+        try {
+            int segmentNum;
+            while ((segmentNum = takeNextSegmentNum()) != -1) {
+                if (cache.get(index.getFirstThumbnailIndex(segmentNum)) != null) {
+                    continue;
+                }
+                try {
+                    loadSegment(dataSource, segmentNum);
+                } catch (IOException e) {
+                    Log.w(TAG, "Failed to load thumbnails of segment " + segmentNum, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Released.
+        }
+    }
+
+    private void loadSegment(UriDataSource dataSource, int segmentNum) throws IOException {
+        Representation representation = index.getRepresentation();
+        byte[] data = load(dataSource, representation,
+                index.getSegmentIndex().getSegmentUrl(segmentNum));
+        int firstThumbnailIndex = index.getFirstThumbnailIndex(segmentNum);
+        if (index.isImage()) {
+            decodeTiles(data, firstThumbnailIndex);
+            return;
+        }
+        if (initializationData == null) {
+            RangedUri initializationUri = representation.getInitializationUri();
+            initializationData = initializationUri == null ? new byte[0]
+                    : load(dataSource, representation, initializationUri);
+        }
+        Bitmap frame = decodeFirstFrame(initializationData, data,
+                index.getSegmentIndex().getTimeUs(segmentNum));
+        if (frame != null) {
+            cache.put(firstThumbnailIndex, scale(frame));
+        }
+    }
+
+    private void decodeTiles(byte[] data, int firstThumbnailIndex) throws IOException {
+        int columns = index.getColumns();
+        int rows = index.getRows();
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        int tileWidth = options.outWidth / columns;
+        options.inJustDecodeBounds = false;
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        options.inSampleSize = 1;
+        while (tileWidth / (options.inSampleSize * 2) >= thumbnailWidth) {
+            options.inSampleSize *= 2;
+        }
+        Bitmap image = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (image == null) {
+            throw new IOException("Undecodable thumbnail image");
+        }
+        int width = image.getWidth() / columns;
+        int height = image.getHeight() / rows;
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                Bitmap tile = Bitmap.createBitmap(image, column * width, row * height, width, height);
+                cache.put(firstThumbnailIndex + row * columns + column, scale(tile));
+            }
+        }
+    }
+
+    /**
+     * Decodes the I-frame at the start of a video segment, by way of a temporary file holding the
+     * initialization and media data.
+     */
+    private Bitmap decodeFirstFrame(byte[] initializationData, byte[] data, long timeUs)
+            throws IOException {
+        File file = File.createTempFile("thumbnail", null, context.getCacheDir());
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            OutputStream output = new FileOutputStream(file);
+            try {
+                output.write(initializationData);
+                output.write(data);
+            } finally {
+                output.close();
+            }
+            retriever.setDataSource(file.getAbsolutePath());
+            return retriever.getFrameAtTime(timeUs, MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
+        } catch (RuntimeException e) {
+            throw new IOException(e);
+        } finally {
+            retriever.release();
+            if (!file.delete()) {
+                Log.w(TAG, "Failed to delete " + file);
+            }
+        }
+    }
+
+    private Bitmap scale(Bitmap bitmap) {
+        if (bitmap.getWidth() <= thumbnailWidth) {
+            return bitmap;
+        }
+        int height = bitmap.getHeight() * thumbnailWidth / bitmap.getWidth();
+        return Bitmap.createScaledBitmap(bitmap, thumbnailWidth, Math.max(1, height), true);
+    }
+
+    private static byte[] load(UriDataSource dataSource, Representation representation,
+                               RangedUri rangedUri) throws IOException {
+        dataSource.open(new DataSpec(rangedUri.getUri(), rangedUri.start, rangedUri.length,
+                representation.getCacheKey()));
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int bytesRead;
+            while ((bytesRead = dataSource.read(buffer, 0, buffer.length)) != -1) {
+                output.write(buffer, 0, bytesRead);
+            }
+            return output.toByteArray();
+        } finally {
+            dataSource.close();
+        }
+    }
+
+    /**
+     * Returns the number of image segments whose thumbnails fit in the cache, estimating each
+     * thumbnail from the width and aspect ratio of the representation.
+     */
+    private int getMaxPrefetchSegmentCount(int maxBytes) {
+        Representation representation = index.getRepresentation();
+        int width = representation.format.width / index.getColumns();
+        int height = representation.format.height / index.getRows();
+        int thumbnailHeight = width > 0 && height > 0 ? thumbnailWidth * height / width
+                : thumbnailWidth * 9 / 16;
+        // Tiles are decoded as RGB_565.
+        int segmentBytes = thumbnailWidth * thumbnailHeight * 2 * index.getThumbnailsPerSegment();
+        return Math.max(1, maxBytes / Math.max(1, segmentBytes));
+    }
+
+    /**
+     * Returns the segment numbers to prefetch, coarse to fine.
+     */
+    private static int[] getPrefetchOrder(ThumbnailIndex index, int maxCount) {
+        int segmentCount = index.getSegmentCount();
+        int firstSegmentNum = index.getSegmentNum(0);
+        int[] order = new int[Math.min(segmentCount, maxCount)];
+        boolean[] added = new boolean[segmentCount];
+        int count = 0;
+        for (int stride = MAX_PREFETCH_STRIDE; stride >= 1 && count < order.length; stride /= 2) {
+            for (int i = 0; i < segmentCount && count < order.length; i += stride) {
+                if (!added[i]) {
+                    added[i] = true;
+                    order[count++] = firstSegmentNum + i;
+                }
+            }
+        }
+        return order;
+    }
+
+}
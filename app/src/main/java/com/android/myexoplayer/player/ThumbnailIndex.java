@@ -0,0 +1,351 @@
+package com.android.myexoplayer.player;
+
+import com.google.android.exoplayer.ParserException;
+import com.google.android.exoplayer.dash.DashSegmentIndex;
+import com.google.android.exoplayer.dash.mpd.AdaptationSet;
+import com.google.android.exoplayer.dash.mpd.Period;
+import com.google.android.exoplayer.dash.mpd.Representation;
+import com.google.android.exoplayer.upstream.UriLoadable;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps playback positions to the thumbnails of a DASH period, for previews while scrubbing.
+ * <p>
+ * Thumbnails are taken from the first source that the period offers of:
+ * <ul>
+ *   <li>An image adaptation set, whose segments are images each holding a grid of tiles laid out
+ *   as given by the DASH-IF {@code thumbnail_tile} property, one tile per equal part of the
+ *   segment's duration.</li>
+ *   <li>A DASH-IF trick mode adaptation set, whose segments each start with an I-frame.</li>
+ *   <li>The lowest bitrate representation of the video adaptation set being played, whose
+ *   segments also each start with an I-frame, at the cost of loading a whole segment per
+ *   thumbnail.</li>
+ * </ul>
+ * Video sources with content protection are skipped, since their frames cannot be decoded outside
+ * the player.
+ * ExoPlayer's manifest parser drops the properties that identify these sets, so they are recorded
+ * by a parser wrapped with {@link ManifestProperties#wrapParser(UriLoadable.Parser)}. Only
+ * representations with an explicit segment index, i.e. a {@code SegmentTemplate} or
+ * {@code SegmentList}, are supported.
+ */
+public final class ThumbnailIndex {
+
+    /**
+     * The properties of a manifest that identify thumbnail and trick mode adaptation sets.
+     */
+    public static final class ManifestProperties {
+
+        private static final String SCHEME_TRICK_MODE = "http://dashif.org/guidelines/trickmode";
+        private static final String[] SCHEMES_THUMBNAIL_TILE = new String[] {
+                "http://dashif.org/thumbnail_tile", "http://dashif.org/guidelines/thumbnail_tile"};
+
+        private volatile Set<Integer> trickModeAdaptationSetIndices;
+        private volatile Map<Integer, int[]> adaptationSetTileLayouts;
+        private volatile Map<String, int[]> representationTileLayouts;
+
+        public ManifestProperties() {
+            trickModeAdaptationSetIndices = new HashSet<>();
+            adaptationSetTileLayouts = new HashMap<>();
+            representationTileLayouts = new HashMap<>();
+        }
+
+        /**
+         * Wraps a manifest parser so that the properties of each manifest it parses are recorded.
+         *
+         * @param parser The parser of the manifest.
+         * @return The wrapping parser.
+         */
+        public <T> UriLoadable.Parser<T> wrapParser(final UriLoadable.Parser<T> parser) {
+            return new UriLoadable.Parser<T>() {
+                @Override
+                public T parse(String connectionUrl, InputStream inputStream)
+                        throws ParserException, IOException {
+                    ByteArrayOutputStream output = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[4096];
+                    int bytesRead;
+                    while ((bytesRead = inputStream.read(buffer)) != -1) {
+                        output.write(buffer, 0, bytesRead);
+                    }
+                    byte[] data = output.toByteArray();
+                    parseProperties(data);
+                    return parser.parse(connectionUrl, new ByteArrayInputStream(data));
+                }
+            };
+        }
+
+        /**
+         * Returns whether an adaptation set of the first period is a trick mode set.
+         */
+        public boolean isTrickMode(int adaptationSetIndex) {
+            return trickModeAdaptationSetIndices.contains(adaptationSetIndex);
+        }
+
+        /**
+         * Returns the tile layout of a representation of the first period as its column and row
+         * counts, or null if it has none.
+         */
+        public int[] getTileLayout(int adaptationSetIndex, String representationId) {
+            int[] layout = representationTileLayouts.get(representationId);
+            return layout != null ? layout : adaptationSetTileLayouts.get(adaptationSetIndex);
+        }
+
+        /**
+         * Records the properties of the adaptation sets of the first period of a manifest.
+         */
+        private void parseProperties(byte[] data) throws ParserException {
+            Set<Integer> trickModeAdaptationSetIndices = new HashSet<>();
+            Map<Integer, int[]> adaptationSetTileLayouts = new HashMap<>();
+            Map<String, int[]> representationTileLayouts = new HashMap<>();
+            try {
+                XmlPullParser xpp = XmlPullParserFactory.newInstance().newPullParser();
+                xpp.setInput(new ByteArrayInputStream(data), null);
+                int adaptationSetIndex = -1;
+                String representationId = null;
+                int eventType;
+                while ((eventType = xpp.next()) != XmlPullParser.END_DOCUMENT) {
+                    if (eventType == XmlPullParser.END_TAG) {
+                        if ("Period".equals(xpp.getName())) {
+                            break;
+                        } else if ("Representation".equals(xpp.getName())) {
+                            representationId = null;
+                        }
+                        continue;
+                    } else if (eventType != XmlPullParser.START_TAG) {
+                        continue;
+                    }
+                    String name = xpp.getName();
+                    if ("AdaptationSet".equals(name)) {
+                        adaptationSetIndex++;
+                    } else if ("Representation".equals(name)) {
+                        representationId = xpp.getAttributeValue(null, "id");
+                    } else if (adaptationSetIndex != -1 && ("EssentialProperty".equals(name)
+                            || "SupplementalProperty".equals(name))) {
+                        String scheme = xpp.getAttributeValue(null, "schemeIdUri");
+                        if (SCHEME_TRICK_MODE.equals(scheme)) {
+                            trickModeAdaptationSetIndices.add(adaptationSetIndex);
+                        } else if (isThumbnailTileScheme(scheme)) {
+                            int[] layout = parseTileLayout(xpp.getAttributeValue(null, "value"));
+                            if (layout == null) {
+                                continue;
+                            }
+                            if (representationId != null) {
+                                representationTileLayouts.put(representationId, layout);
+                            } else {
+                                adaptationSetTileLayouts.put(adaptationSetIndex, layout);
+                            }
+                        }
+                    }
+                }
+            } catch (XmlPullParserException e) {
+                throw new ParserException(e);
+            } catch (IOException e) {
+                throw new ParserException(e);
+            }
+            this.trickModeAdaptationSetIndices = trickModeAdaptationSetIndices;
+            this.adaptationSetTileLayouts = adaptationSetTileLayouts;
+            this.representationTileLayouts = representationTileLayouts;
+        }
+
+        private static boolean isThumbnailTileScheme(String scheme) {
+            for (String thumbnailTileScheme : SCHEMES_THUMBNAIL_TILE) {
+                if (thumbnailTileScheme.equals(scheme)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Parses a tile layout of the form {@code <columns>x<rows>}, or returns null if it is
+         * malformed.
+         */
+        private static int[] parseTileLayout(String value) {
+            if (value == null) {
+                return null;
+            }
+            int separatorIndex = value.indexOf('x');
+            try {
+                int columns = Integer.parseInt(value.substring(0, separatorIndex).trim());
+                int rows = Integer.parseInt(value.substring(separatorIndex + 1).trim());
+                return columns > 0 && rows > 0 ? new int[] {columns, rows} : null;
+            } catch (IndexOutOfBoundsException e) {
+                return null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+    }
+
+    private final Representation representation;
+    private final DashSegmentIndex segmentIndex;
+    private final boolean image;
+    private final int columns;
+    private final int rows;
+    private final int firstSegmentNum;
+    private final int segmentCount;
+
+    private ThumbnailIndex(Representation representation, boolean image, int columns, int rows) {
+        this.representation = representation;
+        this.image = image;
+        this.columns = columns;
+        this.rows = rows;
+        segmentIndex = representation.getIndex();
+        firstSegmentNum = segmentIndex.getFirstSegmentNum();
+        segmentCount = segmentIndex.getLastSegmentNum() - firstSegmentNum + 1;
+    }
+
+    /**
+     * Creates the index of the thumbnails of a period.
+     *
+     * @param period The period.
+     * @param properties The properties of the manifest of the period.
+     * @param videoAdaptationSetIndex The index of the video adaptation set being played, or -1.
+     * @return The index, or null if the period has no usable source of thumbnails.
+     */
+    public static ThumbnailIndex create(Period period, ManifestProperties properties,
+                                        int videoAdaptationSetIndex) {
+        List<AdaptationSet> adaptationSets = period.adaptationSets;
+        for (int i = 0; i < adaptationSets.size(); i++) {
+            Representation representation = getLowestBitrateRepresentation(adaptationSets.get(i));
+            if (representation != null && representation.format.mimeType.startsWith("image/")) {
+                int[] layout = properties.getTileLayout(i, representation.format.id);
+                return layout != null ? new ThumbnailIndex(representation, true, layout[0], layout[1])
+                        : new ThumbnailIndex(representation, true, 1, 1);
+            }
+        }
+        for (int i = 0; i < adaptationSets.size(); i++) {
+            Representation representation = getLowestBitrateRepresentation(adaptationSets.get(i));
+            if (properties.isTrickMode(i) && representation != null
+                    && !adaptationSets.get(i).hasContentProtection()) {
+                return new ThumbnailIndex(representation, false, 1, 1);
+            }
+        }
+        if (videoAdaptationSetIndex != -1
+                && !adaptationSets.get(videoAdaptationSetIndex).hasContentProtection()) {
+            Representation representation =
+                    getLowestBitrateRepresentation(adaptationSets.get(videoAdaptationSetIndex));
+            if (representation != null) {
+                return new ThumbnailIndex(representation, false, 1, 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the representation of the thumbnails.
+     */
+    public Representation getRepresentation() {
+        return representation;
+    }
+
+    /**
+     * Returns whether the segments are images, rather than video starting with an I-frame.
+     */
+    public boolean isImage() {
+        return image;
+    }
+
+    /**
+     * Returns the number of columns of tiles in each segment.
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns the number of rows of tiles in each segment.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of thumbnails in each segment.
+     */
+    public int getThumbnailsPerSegment() {
+        return columns * rows;
+    }
+
+    /**
+     * Returns the number of segments.
+     */
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * Returns the number of thumbnails.
+     */
+    public int getThumbnailCount() {
+        return segmentCount * getThumbnailsPerSegment();
+    }
+
+    /**
+     * Returns the index of the thumbnail that shows a position.
+     *
+     * @param positionMs The position.
+     * @return The index of the thumbnail, in [0, {@link #getThumbnailCount()}).
+     */
+    public int getThumbnailIndex(long positionMs) {
+        long positionUs = positionMs * 1000;
+        int segmentNum = Math.max(firstSegmentNum, Math.min(firstSegmentNum + segmentCount - 1,
+                segmentIndex.getSegmentNum(positionUs)));
+        int thumbnailsPerSegment = getThumbnailsPerSegment();
+        long segmentDurationUs = segmentIndex.getDurationUs(segmentNum);
+        int tile = segmentDurationUs <= 0 ? 0 : (int) ((positionUs
+                - segmentIndex.getTimeUs(segmentNum)) * thumbnailsPerSegment / segmentDurationUs);
+        tile = Math.max(0, Math.min(thumbnailsPerSegment - 1, tile));
+        return (segmentNum - firstSegmentNum) * thumbnailsPerSegment + tile;
+    }
+
+    /**
+     * Returns the segment number of the segment that holds a thumbnail.
+     */
+    public int getSegmentNum(int thumbnailIndex) {
+        return firstSegmentNum + thumbnailIndex / getThumbnailsPerSegment();
+    }
+
+    /**
+     * Returns the index of the first thumbnail of a segment.
+     */
+    public int getFirstThumbnailIndex(int segmentNum) {
+        return (segmentNum - firstSegmentNum) * getThumbnailsPerSegment();
+    }
+
+    /**
+     * Returns the segment index of the representation.
+     */
+    public DashSegmentIndex getSegmentIndex() {
+        return segmentIndex;
+    }
+
+    private static Representation getLowestBitrateRepresentation(AdaptationSet adaptationSet) {
+        Representation lowest = null;
+        for (Representation representation : adaptationSet.representations) {
+            DashSegmentIndex index = representation.getIndex();
+            if (index == null || index.getLastSegmentNum() < index.getFirstSegmentNum()) {
+                // Single segment and unbounded live representations are not supported.
+                continue;
+            }
+            if (lowest == null || representation.format.bitrate < lowest.format.bitrate) {
+                lowest = representation;
+            }
+        }
+        return lowest;
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.android.myexoplayer.player;
+
+import android.content.Context;
+import android.os.Handler;
+
+import com.google.android.exoplayer.MediaCodecUtil.DecoderQueryException;
+import com.google.android.exoplayer.SampleSource;
+import com.google.android.exoplayer.TrackRenderer;
+import com.google.android.exoplayer.chunk.FormatWrapper;
+import com.google.android.exoplayer.drm.DrmSessionManager;
+
+import java.util.List;
+
+/**
+ * Creates the decoding {@link TrackRenderer}s for a {@link DemoPlayer.RendererBuilder}.
+ * <p>
+ * Separating renderer creation from manifest handling lets the same builder drive either real
+ * {@link android.media.MediaCodec} decoders or stub renderers that consume samples without
+ * decoding them.
+ */
+public interface TrackRendererFactory {
+
+    /**
+     * Selects the video formats that the renderers created by this factory can play.
+     *
+     * @param context A context.
+     * @param formatWrappers The available video formats.
+     * @param filterHdContent Whether HD formats should be excluded.
+     * @return The indices of the selected formats.
+     * @throws DecoderQueryException If the device's decoders could not be queried.
+     */
+    int[] selectVideoFormats(Context context, List<? extends FormatWrapper> formatWrappers,
+                             boolean filterHdContent) throws DecoderQueryException;
+
+    /**
+     * Returns whether the renderers created by this factory decode a codec in hardware.
+     *
+     * @param mimeType The MIME type of the codec.
+     * @return Whether a hardware decoder is available.
+     * @throws DecoderQueryException If the device's decoders could not be queried.
+     */
+    boolean isHardwareAccelerated(String mimeType) throws DecoderQueryException;
+
+    /**
+     * Creates a video renderer.
+     *
+     * @param sampleSource The source of video samples.
+     * @param drmSessionManager The DRM session manager, or null for clear content.
+     * @param mainHandler A handler on the player's main thread.
+     * @param player The player that receives renderer events.
+     * @return The renderer.
+     */
+    TrackRenderer createVideoRenderer(SampleSource sampleSource, DrmSessionManager drmSessionManager,
+                                      Handler mainHandler, DemoPlayer player);
+
+    /**
+     * Creates an audio renderer.
+     *
+     * @param sampleSource The source of audio samples.
+     * @param drmSessionManager The DRM session manager, or null for clear content.
+     * @param mainHandler A handler on the player's main thread.
+     * @param player The player that receives renderer events.
+     * @return The renderer.
+     */
+    TrackRenderer createAudioRenderer(SampleSource sampleSource, DrmSessionManager drmSessionManager,
+                                      Handler mainHandler, DemoPlayer player);
+
+}
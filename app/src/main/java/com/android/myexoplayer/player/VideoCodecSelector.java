@@ -0,0 +1,224 @@
+package com.android.myexoplayer.player;
+
+import android.content.Context;
+
+import com.google.android.exoplayer.MediaCodecUtil.DecoderQueryException;
+import com.google.android.exoplayer.chunk.Format;
+import com.google.android.exoplayer.dash.mpd.AdaptationSet;
+import com.google.android.exoplayer.dash.mpd.Period;
+import com.google.android.exoplayer.dash.mpd.Representation;
+import com.google.android.exoplayer.util.MimeTypes;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Chooses between the video adaptation sets of a DASH period, which may carry the same content in
+ * different codecs, e.g. H.264 in MP4 and VP9 in WebM.
+ * <p>
+ * Sets that the device decodes in hardware are preferred, since software decoding costs battery
+ * and drops frames. Among those, the set whose ladder needs the fewest bits per pixel is chosen,
+ * compared at the resolutions both ladders offer, provided it reaches at least the same top
+ * resolution. The first video adaptation set, which is the one played without this selection,
+ * is the baseline for the expected bandwidth savings.
+ */
+/* package */ final class VideoCodecSelector {
+
+    /**
+     * The outcome of a selection.
+     */
+    public static final class Selection {
+
+        /**
+         * The index of the chosen adaptation set in the period.
+         */
+        public final int adaptationSetIndex;
+        /**
+         * The MIME type of the codec of the chosen adaptation set.
+         */
+        public final String mimeType;
+        /**
+         * Whether the device decodes the chosen codec in hardware.
+         */
+        public final boolean hardwareAccelerated;
+        /**
+         * The expected fraction of bandwidth saved at equal resolution, relative to the first video
+         * adaptation set. Zero if the first set was chosen.
+         */
+        public final float expectedBandwidthSavings;
+
+        private Selection(int adaptationSetIndex, String mimeType, boolean hardwareAccelerated,
+                          float expectedBandwidthSavings) {
+            this.adaptationSetIndex = adaptationSetIndex;
+            this.mimeType = mimeType;
+            this.hardwareAccelerated = hardwareAccelerated;
+            this.expectedBandwidthSavings = expectedBandwidthSavings;
+        }
+
+    }
+
+    private static final float DEFAULT_FRAME_RATE = 30;
+
+    private VideoCodecSelector() {}
+
+    /**
+     * Chooses a video adaptation set.
+     *
+     * @param context A context.
+     * @param rendererFactory The factory of the renderers that will play the chosen set.
+     * @param period The period.
+     * @param availableFormatIds The identifiers of the formats that are available, e.g. because they
+     *     were downloaded, or null if all are.
+     * @return The selection, or null if the period has no video that the renderers can play.
+     * @throws DecoderQueryException If the device's decoders could not be queried.
+     */
+    public static Selection select(Context context, TrackRendererFactory rendererFactory,
+                                   Period period, Set<String> availableFormatIds)
+            throws DecoderQueryException {
+        CodecScore baseline = null;
+        CodecScore best = null;
+        for (int i = 0; i < period.adaptationSets.size(); i++) {
+            AdaptationSet adaptationSet = period.adaptationSets.get(i);
+            if (adaptationSet.type != AdaptationSet.TYPE_VIDEO) {
+                continue;
+            }
+            CodecScore score = score(context, rendererFactory, i, adaptationSet.representations,
+                    availableFormatIds);
+            if (score == null) {
+                continue;
+            }
+            if (baseline == null) {
+                baseline = score;
+                best = score;
+            } else if (score.isBetterThan(best)) {
+                best = score;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        float savings = best == baseline ? 0 : 1 - best.getRelativeCost(baseline);
+        return new Selection(best.adaptationSetIndex, best.mimeType, best.hardwareAccelerated,
+                savings);
+    }
+
+    /**
+     * Returns the MIME type of the codec of a video format.
+     */
+    /* package */ static String getCodecMimeType(Format format) {
+        String codecs = format.codecs;
+        if (codecs != null) {
+            if (codecs.startsWith("avc1") || codecs.startsWith("avc3")) {
+                return MimeTypes.VIDEO_H264;
+            } else if (codecs.startsWith("hev1") || codecs.startsWith("hvc1")) {
+                return MimeTypes.VIDEO_H265;
+            } else if (codecs.startsWith("vp9") || codecs.startsWith("vp09")) {
+                return MimeTypes.VIDEO_VP9;
+            } else if (codecs.startsWith("vp8")) {
+                return MimeTypes.VIDEO_VP8;
+            }
+        }
+        // Without codecs, assume the usual codec of the container.
+        return MimeTypes.VIDEO_WEBM.equals(format.mimeType) ? MimeTypes.VIDEO_VP9
+                : MimeTypes.VIDEO_H264;
+    }
+
+    private static CodecScore score(Context context, TrackRendererFactory rendererFactory,
+                                    int adaptationSetIndex, List<Representation> representations,
+                                    Set<String> availableFormatIds) throws DecoderQueryException {
+        int[] indices = rendererFactory.selectVideoFormats(context, representations, false);
+        Map<Integer, Float> bitsPerPixelByHeight = new HashMap<>();
+        Format firstFormat = null;
+        long maxPixelCount = 0;
+        for (int index : indices) {
+            Format format = representations.get(index).format;
+            if (availableFormatIds != null && !availableFormatIds.contains(format.id)) {
+                continue;
+            }
+            if (firstFormat == null) {
+                firstFormat = format;
+            }
+            if (format.width <= 0 || format.height <= 0) {
+                continue;
+            }
+            long pixelCount = (long) format.width * format.height;
+            maxPixelCount = Math.max(maxPixelCount, pixelCount);
+            float frameRate = format.frameRate > 0 ? format.frameRate : DEFAULT_FRAME_RATE;
+            float bitsPerPixel = format.bitrate / (pixelCount * frameRate);
+            // Where a ladder has several bitrates at a height, the cheapest sets its efficiency.
+            Float previous = bitsPerPixelByHeight.get(format.height);
+            if (previous == null || bitsPerPixel < previous) {
+                bitsPerPixelByHeight.put(format.height, bitsPerPixel);
+            }
+        }
+        if (firstFormat == null) {
+            return null;
+        }
+        String mimeType = getCodecMimeType(firstFormat);
+        return new CodecScore(adaptationSetIndex, mimeType,
+                rendererFactory.isHardwareAccelerated(mimeType), bitsPerPixelByHeight, maxPixelCount);
+    }
+
+    private static final class CodecScore {
+
+        public final int adaptationSetIndex;
+        public final String mimeType;
+        public final boolean hardwareAccelerated;
+        public final Map<Integer, Float> bitsPerPixelByHeight;
+        public final long maxPixelCount;
+
+        public CodecScore(int adaptationSetIndex, String mimeType, boolean hardwareAccelerated,
+                          Map<Integer, Float> bitsPerPixelByHeight, long maxPixelCount) {
+            this.adaptationSetIndex = adaptationSetIndex;
+            this.mimeType = mimeType;
+            this.hardwareAccelerated = hardwareAccelerated;
+            this.bitsPerPixelByHeight = bitsPerPixelByHeight;
+            this.maxPixelCount = maxPixelCount;
+        }
+
+        public boolean isBetterThan(CodecScore other) {
+            if (hardwareAccelerated != other.hardwareAccelerated) {
+                return hardwareAccelerated;
+            }
+            return maxPixelCount >= other.maxPixelCount && getRelativeCost(other) < 1;
+        }
+
+        /**
+         * Returns the bits this ladder needs per bit of another at equal resolution, or 1 if the
+         * ladders cannot be compared.
+         */
+        public float getRelativeCost(CodecScore other) {
+            float ratioSum = 0;
+            int sharedHeightCount = 0;
+            for (Map.Entry<Integer, Float> entry : bitsPerPixelByHeight.entrySet()) {
+                Float otherBitsPerPixel = other.bitsPerPixelByHeight.get(entry.getKey());
+                if (otherBitsPerPixel != null) {
+                    ratioSum += entry.getValue() / otherBitsPerPixel;
+                    sharedHeightCount++;
+                }
+            }
+            if (sharedHeightCount > 0) {
+                return ratioSum / sharedHeightCount;
+            }
+            float meanBitsPerPixel = getMeanBitsPerPixel();
+            float otherMeanBitsPerPixel = other.getMeanBitsPerPixel();
+            return meanBitsPerPixel > 0 && otherMeanBitsPerPixel > 0
+                    ? meanBitsPerPixel / otherMeanBitsPerPixel : 1;
+        }
+
+        private float getMeanBitsPerPixel() {
+            if (bitsPerPixelByHeight.isEmpty()) {
+                return 0;
+            }
+            float sum = 0;
+            for (float bitsPerPixel : bitsPerPixelByHeight.values()) {
+                sum += bitsPerPixel;
+            }
+            return sum / bitsPerPixelByHeight.size();
+        }
+
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.android.myexoplayer.player;
+
+import com.google.android.exoplayer.chunk.Format;
+import com.google.android.exoplayer.chunk.FormatEvaluator;
+import com.google.android.exoplayer.chunk.MediaChunk;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link FormatEvaluator} that restricts another to the video formats that the viewport can
+ * show.
+ * <p>
+ * The formats that fit within the viewport are kept, along with those of the smallest size that
+ * exceeds it, so that the picture is never upscaled from a lower resolution than the viewport
+ * needs. The viewport may change at any time, e.g. when the view enters picture-in-picture, and
+ * takes effect from the next evaluation without rebuilding the renderers. Until the viewport is
+ * known, all formats are passed through.
+ */
+public final class ViewportFormatEvaluator implements FormatEvaluator {
+
+    private final FormatEvaluator delegate;
+
+    private int viewportWidth;
+    private int viewportHeight;
+
+    private Format[] lastFormats;
+    private Format[] lastFilteredFormats;
+
+    /**
+     * @param delegate The evaluator that adapts between the formats that the viewport can show.
+     */
+    public ViewportFormatEvaluator(FormatEvaluator delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Sets the size of the viewport.
+     *
+     * @param width The width of the viewport in pixels, or 0 if it is unknown.
+     * @param height The height of the viewport in pixels, or 0 if it is unknown.
+     */
+    public synchronized void setViewportSize(int width, int height) {
+        if (width != viewportWidth || height != viewportHeight) {
+            viewportWidth = width;
+            viewportHeight = height;
+            lastFormats = null;
+            lastFilteredFormats = null;
+        }
+    }
+
+    @Override
+    public void enable() {
+        delegate.enable();
+    }
+
+    @Override
+    public void disable() {
+        delegate.disable();
+    }
+
+    @Override
+    public void evaluate(List<? extends MediaChunk> queue, long playbackPositionUs, Format[] formats,
+                         Evaluation evaluation) {
+        Format[] filteredFormats = getFilteredFormats(formats);
+        if (evaluation.format != null && !contains(filteredFormats, evaluation.format)) {
+            // The delegate would otherwise hold on to the current format while its buffer is
+            // healthy, rather than switching away from a format that the viewport no longer shows.
+            evaluation.format = null;
+        }
+        delegate.evaluate(queue, playbackPositionUs, filteredFormats, evaluation);
+    }
+
+    private synchronized Format[] getFilteredFormats(Format[] formats) {
+        if (formats != lastFormats) {
+            lastFormats = formats;
+            lastFilteredFormats = filterFormats(formats, viewportWidth, viewportHeight);
+        }
+        return lastFilteredFormats;
+    }
+
+    /**
+     * Returns the formats that a viewport can show, in their original order.
+     */
+    /* package */ static Format[] filterFormats(Format[] formats, int viewportWidth,
+                                               int viewportHeight) {
+        if (viewportWidth <= 0 || viewportHeight <= 0) {
+            return formats;
+        }
+        // Formats of the smallest size that exceeds the viewport are kept, at all of their bitrates.
+        long minExceedingPixelCount = Long.MAX_VALUE;
+        for (Format format : formats) {
+            if (!fits(format, viewportWidth, viewportHeight)) {
+                minExceedingPixelCount = Math.min(minExceedingPixelCount, getPixelCount(format));
+            }
+        }
+        if (minExceedingPixelCount == Long.MAX_VALUE) {
+            return formats;
+        }
+        List<Format> filteredFormats = new ArrayList<>();
+        for (Format format : formats) {
+            if (fits(format, viewportWidth, viewportHeight)
+                    || getPixelCount(format) == minExceedingPixelCount) {
+                filteredFormats.add(format);
+            }
+        }
+        return filteredFormats.toArray(new Format[filteredFormats.size()]);
+    }
+
+    private static boolean fits(Format format, int viewportWidth, int viewportHeight) {
+        // Formats of unknown size are never excluded.
+        return format.width <= 0 || format.height <= 0
+                || (format.width <= viewportWidth && format.height <= viewportHeight);
+    }
+
+    private static boolean contains(Format[] formats, Format format) {
+        for (Format candidate : formats) {
+            if (candidate.equals(format)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long getPixelCount(Format format) {
+        return (long) format.width * format.height;
+    }
+
+}
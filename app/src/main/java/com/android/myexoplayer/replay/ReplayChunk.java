@@ -0,0 +1,68 @@
+package com.android.myexoplayer.replay;
+
+import com.google.android.exoplayer.chunk.Chunk;
+import com.google.android.exoplayer.chunk.Format;
+import com.google.android.exoplayer.chunk.MediaChunk;
+import com.google.android.exoplayer.upstream.Allocation;
+import com.google.android.exoplayer.upstream.DataSpec;
+
+import android.net.Uri;
+
+/**
+ * A media chunk whose loading is simulated by a {@link SessionReplayer}, so that the queue it
+ * passes to a {@link com.google.android.exoplayer.chunk.FormatEvaluator} looks like the one of a
+ * {@link com.google.android.exoplayer.chunk.ChunkSampleSource}.
+ */
+/* package */ final class ReplayChunk extends MediaChunk {
+
+    /**
+     * The size of the chunk in bytes.
+     */
+    public final long length;
+
+    /**
+     * The allocations holding the chunk while it is buffered, or null if it is not.
+     */
+    public Allocation[] allocations;
+
+    private long bytesLoaded;
+    private boolean loadCanceled;
+
+    public ReplayChunk(Format format, long startTimeUs, long endTimeUs, int chunkIndex,
+                       boolean isLastChunk, long length) {
+        super(null, new DataSpec(Uri.EMPTY), Chunk.TRIGGER_UNSPECIFIED, format, startTimeUs,
+                endTimeUs, chunkIndex, isLastChunk);
+        this.length = length;
+    }
+
+    /**
+     * Adds bytes to the amount loaded.
+     *
+     * @return The number of bytes that remain to be loaded.
+     */
+    public long onBytesLoaded(long bytes) {
+        bytesLoaded = Math.min(length, bytesLoaded + bytes);
+        return length - bytesLoaded;
+    }
+
+    @Override
+    public long bytesLoaded() {
+        return bytesLoaded;
+    }
+
+    @Override
+    public void cancelLoad() {
+        loadCanceled = true;
+    }
+
+    @Override
+    public boolean isLoadCanceled() {
+        return loadCanceled;
+    }
+
+    @Override
+    public void load() {
+        // Do nothing. Loading is simulated by the replayer.
+    }
+
+}
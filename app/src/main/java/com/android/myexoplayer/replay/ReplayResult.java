@@ -0,0 +1,53 @@
+package com.android.myexoplayer.replay;
+
+import com.android.myexoplayer.player.SessionQoe;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of replaying a {@link SessionRecording}.
+ * <p>
+ * Replays are deterministic: replaying the same recording with the same policies gives equal
+ * results, so two results can be compared to check whether a change alters behavior.
+ */
+public final class ReplayResult {
+
+    /**
+     * The replayed recording.
+     */
+    public final SessionRecording recording;
+    /**
+     * The quality of experience of the replayed session.
+     */
+    public final SessionQoe qoe;
+    /**
+     * The formats of the video chunks, in the order in which they were loaded.
+     */
+    public final List<String> videoFormatIds;
+
+    public ReplayResult(SessionRecording recording, SessionQoe qoe, List<String> videoFormatIds) {
+        this.recording = recording;
+        this.qoe = qoe;
+        this.videoFormatIds = Collections.unmodifiableList(videoFormatIds);
+    }
+
+    /**
+     * Returns whether another result made exactly the same decisions with the same outcome.
+     */
+    public boolean isIdenticalTo(ReplayResult other) {
+        return videoFormatIds.equals(other.videoFormatIds)
+                && qoe.startupMs == other.qoe.startupMs
+                && qoe.rebufferCount == other.qoe.rebufferCount
+                && qoe.rebufferMs == other.qoe.rebufferMs
+                && qoe.playingMs == other.qoe.playingMs
+                && qoe.bytesLoaded == other.qoe.bytesLoaded;
+    }
+
+    @Override
+    public String toString() {
+        return "ReplayResult[" + recording.contentUri + ", " + qoe + ", formats="
+                + videoFormatIds + "]";
+    }
+
+}
@@ -0,0 +1,220 @@
+package com.android.myexoplayer.replay;
+
+import com.google.android.exoplayer.chunk.Format;
+import com.google.android.exoplayer.util.Clock;
+import com.google.android.exoplayer.util.SystemClock;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records the network-observable inputs of a playback session into a compact binary form that
+ * can be read back as a {@link SessionRecording}.
+ * <p>
+ * Events are appended to an in-memory buffer of a few tens of bytes each, so recording can stay
+ * enabled for every session. Methods must be called from a single thread.
+ */
+public final class SessionRecorder {
+
+    private final Clock clock;
+    private final long startTimeMs;
+    private final ByteArrayOutputStream buffer;
+    private final DataOutputStream output;
+    private final Map<String, Integer> formatIndices;
+
+    private boolean finished;
+
+    /**
+     * @param contentUri The URI of the content being played.
+     */
+    public SessionRecorder(String contentUri) {
+        this(contentUri, new SystemClock());
+    }
+
+    /**
+     * @param contentUri The URI of the content being played.
+     * @param clock The clock from which event times are taken. Must be the clock of the
+     *     {@code elapsedRealtimeMs} values passed to {@link #recordLoadCompleted}.
+     */
+    public SessionRecorder(String contentUri, Clock clock) {
+        this.clock = clock;
+        startTimeMs = clock.elapsedRealtime();
+        buffer = new ByteArrayOutputStream(4096);
+        output = new DataOutputStream(buffer);
+        formatIndices = new HashMap<>();
+        try {
+            output.writeInt(SessionRecording.MAGIC);
+            output.writeShort(SessionRecording.VERSION);
+            output.writeUTF(contentUri);
+            output.writeLong(System.currentTimeMillis());
+        } catch (IOException e) {
+            // ByteArrayOutputStream does not throw.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Records the video formats between which the session can adapt.
+     */
+    public void recordVideoFormats(Format[] formats) {
+        if (finished) {
+            return;
+        }
+        try {
+            output.writeByte(SessionRecording.EVENT_VIDEO_FORMATS);
+            output.writeShort(formats.length);
+            for (Format format : formats) {
+                output.writeUTF(format.id);
+                output.writeUTF(format.mimeType);
+                output.writeShort(format.width);
+                output.writeShort(format.height);
+                output.writeFloat(format.frameRate);
+                output.writeInt(format.bitrate);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void recordLoadStarted(int sourceId, int type, int trigger, Format format,
+                                  int mediaStartTimeMs, int mediaEndTimeMs) {
+        if (finished) {
+            return;
+        }
+        try {
+            int formatIndex = format == null ? -1 : getFormatIndex(format.id);
+            output.writeByte(SessionRecording.EVENT_LOAD_STARTED);
+            output.writeInt(getTimeMs());
+            output.writeByte(sourceId);
+            output.writeByte(type);
+            output.writeByte(trigger);
+            output.writeShort(formatIndex);
+            output.writeInt(mediaStartTimeMs);
+            output.writeInt(mediaEndTimeMs);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void recordLoadCompleted(int sourceId, long bytesLoaded, long elapsedRealtimeMs,
+                                    long loadDurationMs) {
+        if (finished) {
+            return;
+        }
+        try {
+            output.writeByte(SessionRecording.EVENT_LOAD_COMPLETED);
+            output.writeInt((int) (elapsedRealtimeMs - startTimeMs));
+            output.writeByte(sourceId);
+            output.writeLong(bytesLoaded);
+            output.writeInt((int) loadDurationMs);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void recordBandwidthSample(int elapsedMs, long bytes, long bitrateEstimate) {
+        if (finished) {
+            return;
+        }
+        try {
+            output.writeByte(SessionRecording.EVENT_BANDWIDTH_SAMPLE);
+            output.writeInt(getTimeMs());
+            output.writeInt(elapsedMs);
+            output.writeLong(bytes);
+            output.writeLong(bitrateEstimate);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void recordSeek(long positionMs) {
+        if (finished) {
+            return;
+        }
+        try {
+            output.writeByte(SessionRecording.EVENT_SEEK);
+            output.writeInt(getTimeMs());
+            output.writeInt((int) positionMs);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void recordStateChanged(boolean playWhenReady, int state) {
+        if (finished) {
+            return;
+        }
+        try {
+            output.writeByte(SessionRecording.EVENT_STATE_CHANGED);
+            output.writeInt(getTimeMs());
+            output.writeBoolean(playWhenReady);
+            output.writeByte(state);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Ends the recording. Events recorded afterwards are ignored.
+     */
+    public void finish() {
+        if (finished) {
+            return;
+        }
+        try {
+            output.writeByte(SessionRecording.EVENT_END);
+            output.writeInt(getTimeMs());
+            output.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        finished = true;
+    }
+
+    /**
+     * Returns the size of the recording in bytes.
+     */
+    public int size() {
+        return buffer.size();
+    }
+
+    /**
+     * Writes the recording. {@link #finish()} is called first.
+     *
+     * @param target The stream to write to. Not closed.
+     * @throws IOException If writing fails.
+     */
+    public void writeTo(OutputStream target) throws IOException {
+        finish();
+        buffer.writeTo(target);
+    }
+
+    /**
+     * Returns a copy of the recording, which can be written from another thread. {@link #finish()}
+     * is called first.
+     */
+    public byte[] toByteArray() {
+        finish();
+        return buffer.toByteArray();
+    }
+
+    private int getTimeMs() {
+        return (int) (clock.elapsedRealtime() - startTimeMs);
+    }
+
+    private int getFormatIndex(String formatId) throws IOException {
+        Integer formatIndex = formatIndices.get(formatId);
+        if (formatIndex == null) {
+            formatIndex = formatIndices.size();
+            formatIndices.put(formatId, formatIndex);
+            output.writeByte(SessionRecording.EVENT_FORMAT_ID);
+            output.writeUTF(formatId);
+        }
+        return formatIndex;
+    }
+
+}
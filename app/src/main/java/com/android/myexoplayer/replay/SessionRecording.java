@@ -0,0 +1,468 @@
+package com.android.myexoplayer.replay;
+
+import com.android.myexoplayer.player.DemoPlayer;
+import com.android.myexoplayer.player.SessionQoe;
+import com.google.android.exoplayer.chunk.Chunk;
+import com.google.android.exoplayer.chunk.Format;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The network-observable inputs of a playback session, as written by a {@link SessionRecorder}.
+ * <p>
+ * Times are in milliseconds relative to the start of the recording.
+ */
+public final class SessionRecording {
+
+    /**
+     * File name extension of recordings.
+     */
+    public static final String FILE_EXTENSION = ".exsr";
+
+    /* package */ static final int MAGIC = 0x45585352; // "EXSR"
+    /* package */ static final int VERSION = 1;
+
+    /* package */ static final int EVENT_END = 0;
+    /* package */ static final int EVENT_VIDEO_FORMATS = 1;
+    /* package */ static final int EVENT_FORMAT_ID = 2;
+    /* package */ static final int EVENT_LOAD_STARTED = 3;
+    /* package */ static final int EVENT_LOAD_COMPLETED = 4;
+    /* package */ static final int EVENT_BANDWIDTH_SAMPLE = 5;
+    /* package */ static final int EVENT_SEEK = 6;
+    /* package */ static final int EVENT_STATE_CHANGED = 7;
+
+    /**
+     * The resolution at which the early video bitrate is sampled.
+     */
+    private static final int EARLY_BITRATE_STEP_MS = 100;
+
+    /**
+     * A chunk load.
+     */
+    public static final class Load {
+
+        public final int startTimeMs;
+        public final int sourceId;
+        public final int type;
+        public final int trigger;
+        /**
+         * The id of the loaded format, or null if the chunk has no format.
+         */
+        public final String formatId;
+        public final int mediaStartTimeMs;
+        public final int mediaEndTimeMs;
+        /**
+         * Time at which the load completed, or -1 if it did not.
+         */
+        public int completedTimeMs;
+        public long bytesLoaded;
+        public int loadDurationMs;
+
+        public Load(int startTimeMs, int sourceId, int type, int trigger, String formatId,
+                    int mediaStartTimeMs, int mediaEndTimeMs) {
+            this.startTimeMs = startTimeMs;
+            this.sourceId = sourceId;
+            this.type = type;
+            this.trigger = trigger;
+            this.formatId = formatId;
+            this.mediaStartTimeMs = mediaStartTimeMs;
+            this.mediaEndTimeMs = mediaEndTimeMs;
+            completedTimeMs = -1;
+        }
+
+        /**
+         * Returns whether this is a completed load of video media.
+         */
+        public boolean isCompletedVideoMedia() {
+            return completedTimeMs != -1 && sourceId == DemoPlayer.TYPE_VIDEO
+                    && type == Chunk.TYPE_MEDIA;
+        }
+
+    }
+
+    /**
+     * A sample reported by the bandwidth meter.
+     */
+    public static final class BandwidthSample {
+
+        public final int timeMs;
+        public final int elapsedMs;
+        public final long bytes;
+        public final long bitrateEstimate;
+
+        public BandwidthSample(int timeMs, int elapsedMs, long bytes, long bitrateEstimate) {
+            this.timeMs = timeMs;
+            this.elapsedMs = elapsedMs;
+            this.bytes = bytes;
+            this.bitrateEstimate = bitrateEstimate;
+        }
+
+    }
+
+    /**
+     * A seek requested by the user.
+     */
+    public static final class Seek {
+
+        public final int timeMs;
+        public final int positionMs;
+
+        public Seek(int timeMs, int positionMs) {
+            this.timeMs = timeMs;
+            this.positionMs = positionMs;
+        }
+
+    }
+
+    /**
+     * A change of the player state.
+     */
+    public static final class StateChange {
+
+        public final int timeMs;
+        public final boolean playWhenReady;
+        public final int state;
+
+        public StateChange(int timeMs, boolean playWhenReady, int state) {
+            this.timeMs = timeMs;
+            this.playWhenReady = playWhenReady;
+            this.state = state;
+        }
+
+    }
+
+    public final String contentUri;
+    public final long startTimeMs;
+    public final int durationMs;
+    /**
+     * The video formats available for adaptation, in the order given by the renderer builder.
+     */
+    public final List<Format> videoFormats;
+    public final List<Load> loads;
+    public final List<BandwidthSample> bandwidthSamples;
+    public final List<Seek> seeks;
+    public final List<StateChange> stateChanges;
+
+    /**
+     * @param contentUri The URI of the played content.
+     * @param startTimeMs The wall clock time at which recording started.
+     * @param durationMs The duration of the recording.
+     */
+    public SessionRecording(String contentUri, long startTimeMs, int durationMs,
+                            List<Format> videoFormats, List<Load> loads,
+                            List<BandwidthSample> bandwidthSamples, List<Seek> seeks,
+                            List<StateChange> stateChanges) {
+        this.contentUri = contentUri;
+        this.startTimeMs = startTimeMs;
+        this.durationMs = durationMs;
+        this.videoFormats = Collections.unmodifiableList(videoFormats);
+        this.loads = Collections.unmodifiableList(loads);
+        this.bandwidthSamples = Collections.unmodifiableList(bandwidthSamples);
+        this.seeks = Collections.unmodifiableList(seeks);
+        this.stateChanges = Collections.unmodifiableList(stateChanges);
+    }
+
+    /**
+     * Reads a recording.
+     *
+     * @param input The stream to read from. Not closed.
+     * @throws IOException If the stream does not contain a valid recording.
+     */
+    public static SessionRecording read(InputStream input) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(input));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a session recording");
+        }
+        int version = data.readUnsignedShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported recording version: " + version);
+        }
+        String contentUri = data.readUTF();
+        long startTimeMs = data.readLong();
+
+        List<Format> videoFormats = new ArrayList<>();
+        List<String> formatIds = new ArrayList<>();
+        List<Load> loads = new ArrayList<>();
+        List<Load> pendingLoads = new ArrayList<>();
+        List<BandwidthSample> bandwidthSamples = new ArrayList<>();
+        List<Seek> seeks = new ArrayList<>();
+        List<StateChange> stateChanges = new ArrayList<>();
+        int durationMs = 0;
+        boolean ended = false;
+        try {
+            while (!ended) {
+                int event = data.readUnsignedByte();
+                switch (event) {
+                    case EVENT_VIDEO_FORMATS:
+                        videoFormats.clear();
+                        int formatCount = data.readUnsignedShort();
+                        for (int i = 0; i < formatCount; i++) {
+                            videoFormats.add(new Format(data.readUTF(), data.readUTF(),
+                                    data.readShort(), data.readShort(), data.readFloat(), -1, -1,
+                                    data.readInt()));
+                        }
+                        break;
+                    case EVENT_FORMAT_ID:
+                        formatIds.add(data.readUTF());
+                        break;
+                    case EVENT_LOAD_STARTED: {
+                        int timeMs = data.readInt();
+                        int sourceId = data.readUnsignedByte();
+                        int type = data.readUnsignedByte();
+                        int trigger = data.readUnsignedByte();
+                        int formatIndex = data.readShort();
+                        Load load = new Load(timeMs, sourceId, type, trigger,
+                                formatIndex == -1 ? null : formatIds.get(formatIndex),
+                                data.readInt(), data.readInt());
+                        loads.add(load);
+                        pendingLoads.add(load);
+                        durationMs = timeMs;
+                        break;
+                    }
+                    case EVENT_LOAD_COMPLETED: {
+                        int timeMs = data.readInt();
+                        int sourceId = data.readUnsignedByte();
+                        long bytesLoaded = data.readLong();
+                        int loadDurationMs = data.readInt();
+                        // Loads of a source complete in the order in which they started.
+                        for (int i = 0; i < pendingLoads.size(); i++) {
+                            Load load = pendingLoads.get(i);
+                            if (load.sourceId == sourceId) {
+                                load.completedTimeMs = timeMs;
+                                load.bytesLoaded = bytesLoaded;
+                                load.loadDurationMs = loadDurationMs;
+                                pendingLoads.remove(i);
+                                break;
+                            }
+                        }
+                        durationMs = timeMs;
+                        break;
+                    }
+                    case EVENT_BANDWIDTH_SAMPLE: {
+                        int timeMs = data.readInt();
+                        bandwidthSamples.add(new BandwidthSample(timeMs, data.readInt(),
+                                data.readLong(), data.readLong()));
+                        durationMs = timeMs;
+                        break;
+                    }
+                    case EVENT_SEEK: {
+                        int timeMs = data.readInt();
+                        seeks.add(new Seek(timeMs, data.readInt()));
+                        durationMs = timeMs;
+                        break;
+                    }
+                    case EVENT_STATE_CHANGED: {
+                        int timeMs = data.readInt();
+                        stateChanges.add(new StateChange(timeMs, data.readBoolean(),
+                                data.readUnsignedByte()));
+                        durationMs = timeMs;
+                        break;
+                    }
+                    case EVENT_END:
+                        durationMs = data.readInt();
+                        ended = true;
+                        break;
+                    default:
+                        throw new IOException("Unknown event: " + event);
+                }
+            }
+        } catch (EOFException e) {
+            // The recording was cut short, for example by the process being killed. Keep what
+            // was read.
+        }
+        return new SessionRecording(contentUri, startTimeMs, durationMs, videoFormats, loads,
+                bandwidthSamples, seeks, stateChanges);
+    }
+
+    /**
+     * Reads every recording in a directory, ordered by file name.
+     *
+     * @param directory The directory.
+     * @throws IOException If a recording could not be read.
+     */
+    public static List<SessionRecording> readAll(File directory) throws IOException {
+        List<SessionRecording> recordings = new ArrayList<>();
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return recordings;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            if (!file.getName().endsWith(FILE_EXTENSION)) {
+                continue;
+            }
+            InputStream input = new FileInputStream(file);
+            try {
+                recordings.add(read(input));
+            } finally {
+                input.close();
+            }
+        }
+        return recordings;
+    }
+
+    /**
+     * Returns the duration of a video media chunk, or the given default if no video media chunk
+     * was loaded.
+     */
+    public int getVideoChunkDurationMs(int defaultDurationMs) {
+        for (Load load : loads) {
+            if (load.isCompletedVideoMedia() && load.mediaEndTimeMs > load.mediaStartTimeMs) {
+                return load.mediaEndTimeMs - load.mediaStartTimeMs;
+            }
+        }
+        return defaultDurationMs;
+    }
+
+    /**
+     * Returns the media end time of the last video media chunk that was loaded, which is taken as
+     * the duration of the content.
+     */
+    public int getVideoMediaEndTimeMs() {
+        int mediaEndTimeMs = 0;
+        for (Load load : loads) {
+            if (load.isCompletedVideoMedia()) {
+                mediaEndTimeMs = Math.max(mediaEndTimeMs, load.mediaEndTimeMs);
+            }
+        }
+        return mediaEndTimeMs;
+    }
+
+    /**
+     * Returns the formats of the video media chunks, in the order in which they were loaded.
+     */
+    public List<String> getVideoFormatIds() {
+        List<String> formatIds = new ArrayList<>();
+        for (Load load : loads) {
+            if (load.isCompletedVideoMedia()) {
+                formatIds.add(load.formatId);
+            }
+        }
+        return formatIds;
+    }
+
+    /**
+     * Returns the quality of experience of the recorded session, for comparison with a replay.
+     */
+    public SessionQoe getRecordedQoe() {
+        long startupMs = -1;
+        int rebufferCount = 0;
+        long rebufferMs = 0;
+        long playingMs = 0;
+        int lastState = DemoPlayer.STATE_IDLE;
+        int lastStateTimeMs = 0;
+        int seekIndex = 0;
+        int lastSeekTimeMs = -1;
+        for (StateChange change : stateChanges) {
+            while (seekIndex < seeks.size() && seeks.get(seekIndex).timeMs <= change.timeMs) {
+                lastSeekTimeMs = seeks.get(seekIndex++).timeMs;
+            }
+            int elapsedMs = change.timeMs - lastStateTimeMs;
+            if (lastState == DemoPlayer.STATE_READY) {
+                playingMs += elapsedMs;
+            } else if (lastState == DemoPlayer.STATE_BUFFERING && startupMs != -1) {
+                rebufferMs += elapsedMs;
+            }
+            if (change.state == DemoPlayer.STATE_READY && startupMs == -1) {
+                startupMs = change.timeMs;
+            } else if (change.state == DemoPlayer.STATE_BUFFERING
+                    && lastState == DemoPlayer.STATE_READY && lastSeekTimeMs < lastStateTimeMs) {
+                rebufferCount++;
+            }
+            lastState = change.state;
+            lastStateTimeMs = change.timeMs;
+        }
+        if (lastState == DemoPlayer.STATE_READY) {
+            playingMs += durationMs - lastStateTimeMs;
+        }
+
+        int chunkCount = 0;
+        long bytesLoaded = 0;
+        long loadDurationMs = 0;
+        int videoSwitchCount = 0;
+        long bitrateDurationProduct = 0;
+        long videoDurationMs = 0;
+        String lastFormatId = null;
+        for (Load load : loads) {
+            if (load.completedTimeMs == -1) {
+                continue;
+            }
+            chunkCount++;
+            bytesLoaded += load.bytesLoaded;
+            loadDurationMs += load.loadDurationMs;
+            if (!load.isCompletedVideoMedia()) {
+                continue;
+            }
+            if (lastFormatId != null && !lastFormatId.equals(load.formatId)) {
+                videoSwitchCount++;
+            }
+            lastFormatId = load.formatId;
+            Format format = getVideoFormat(load.formatId);
+            if (format != null) {
+                int mediaDurationMs = load.mediaEndTimeMs - load.mediaStartTimeMs;
+                bitrateDurationProduct += (long) format.bitrate * mediaDurationMs;
+                videoDurationMs += mediaDurationMs;
+            }
+        }
+        return new SessionQoe(startupMs, rebufferCount, rebufferMs, playingMs, videoSwitchCount,
+                videoDurationMs == 0 ? 0 : bitrateDurationProduct / videoDurationMs,
+                playingMs < SessionQoe.EARLY_PLAYBACK_MS ? -1 : getEarlyVideoBitrate(), chunkCount,
+                bytesLoaded, loadDurationMs, false);
+    }
+
+    /**
+     * Returns the mean bitrate of the video from the start of the first video media chunk over
+     * {@link SessionQoe#EARLY_PLAYBACK_MS}, taking the last load of each part of the media to be
+     * the one that was played, or -1 if no video media chunk was loaded.
+     */
+    private long getEarlyVideoBitrate() {
+        int startTimeMs = -1;
+        for (Load load : loads) {
+            if (load.isCompletedVideoMedia()) {
+                startTimeMs = load.mediaStartTimeMs;
+                break;
+            }
+        }
+        if (startTimeMs == -1) {
+            return -1;
+        }
+        long bitrateDurationProduct = 0;
+        for (int timeMs = startTimeMs; timeMs < startTimeMs + SessionQoe.EARLY_PLAYBACK_MS;
+                timeMs += EARLY_BITRATE_STEP_MS) {
+            Format format = null;
+            for (Load load : loads) {
+                if (load.isCompletedVideoMedia() && load.mediaStartTimeMs <= timeMs
+                        && timeMs < load.mediaEndTimeMs) {
+                    format = getVideoFormat(load.formatId);
+                }
+            }
+            if (format != null) {
+                bitrateDurationProduct += (long) format.bitrate * EARLY_BITRATE_STEP_MS;
+            }
+        }
+        return bitrateDurationProduct / SessionQoe.EARLY_PLAYBACK_MS;
+    }
+
+    /**
+     * Returns the video format with the given id, or null if there is none.
+     */
+    public Format getVideoFormat(String formatId) {
+        for (Format format : videoFormats) {
+            if (format.id.equals(formatId)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,494 @@
+package com.android.myexoplayer.replay;
+
+import com.android.myexoplayer.player.BufferThresholdController;
+import com.android.myexoplayer.player.DemoPlayer;
+import com.android.myexoplayer.player.SessionQoe;
+import com.google.android.exoplayer.DefaultLoadControl;
+import com.google.android.exoplayer.LoadControl;
+import com.google.android.exoplayer.chunk.Format;
+import com.google.android.exoplayer.chunk.FormatEvaluator;
+import com.google.android.exoplayer.chunk.FormatEvaluator.AdaptiveEvaluator;
+import com.google.android.exoplayer.upstream.Allocation;
+import com.google.android.exoplayer.upstream.Allocator;
+import com.google.android.exoplayer.upstream.BandwidthMeter;
+import com.google.android.exoplayer.upstream.DefaultAllocator;
+import com.google.android.exoplayer.upstream.DefaultBandwidthMeter;
+import com.google.android.exoplayer.util.Clock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Replays a {@link SessionRecording} offline, in virtual time.
+ * <p>
+ * The network is modelled by the throughput observed for each recorded chunk load, and chunk
+ * sizes are taken from the recording wherever the same chunk was loaded. The video track is then
+ * played against that network by the real {@link FormatEvaluator}, {@link LoadControl},
+ * {@link DefaultAllocator} and {@link DefaultBandwidthMeter}, driven by a virtual clock. Replays
+ * are therefore deterministic and run much faster than real time, so that a change to adaptation
+ * or buffering logic can be checked against a corpus of recorded sessions.
+ */
+public final class SessionReplayer {
+
+    /**
+     * Creates the format evaluator under test.
+     */
+    public interface EvaluatorFactory {
+
+        FormatEvaluator createFormatEvaluator(BandwidthMeter bandwidthMeter);
+
+    }
+
+    /**
+     * Creates the load control under test.
+     */
+    public interface LoadControlFactory {
+
+        LoadControl createLoadControl(Allocator allocator);
+
+    }
+
+    /**
+     * Creates the buffer threshold controller under test.
+     */
+    public interface ThresholdControllerFactory {
+
+        BufferThresholdController createThresholdController();
+
+    }
+
+    /**
+     * Same as {@code DashRendererBuilder.BUFFER_SEGMENT_SIZE}.
+     */
+    private static final int BUFFER_SEGMENT_SIZE = 64 * 1024;
+    /**
+     * Same as {@code DashRendererBuilder.VIDEO_BUFFER_SEGMENTS}.
+     */
+    private static final int VIDEO_BUFFER_SEGMENTS = 200;
+    private static final int DEFAULT_CHUNK_DURATION_MS = 2000;
+    private static final int TICK_MS = 10;
+
+    private EvaluatorFactory evaluatorFactory;
+    private LoadControlFactory loadControlFactory;
+    private ThresholdControllerFactory thresholdControllerFactory;
+    private int minBufferMs;
+    private int minRebufferMs;
+
+    public SessionReplayer() {
+        evaluatorFactory = new EvaluatorFactory() {
+            @Override
+            public FormatEvaluator createFormatEvaluator(BandwidthMeter bandwidthMeter) {
+                return new AdaptiveEvaluator(bandwidthMeter);
+            }
+        };
+        loadControlFactory = new LoadControlFactory() {
+            @Override
+            public LoadControl createLoadControl(Allocator allocator) {
+                return new DefaultLoadControl(allocator);
+            }
+        };
+        minBufferMs = DemoPlayer.MIN_BUFFERS_COUNT;
+        minRebufferMs = DemoPlayer.MIN_REBUFFERS_COUNT;
+    }
+
+    public SessionReplayer setEvaluatorFactory(EvaluatorFactory evaluatorFactory) {
+        this.evaluatorFactory = evaluatorFactory;
+        return this;
+    }
+
+    public SessionReplayer setLoadControlFactory(LoadControlFactory loadControlFactory) {
+        this.loadControlFactory = loadControlFactory;
+        return this;
+    }
+
+    /**
+     * Sets the factory of the controller that chooses the buffer required to start and resume
+     * playback. If null, the fixed thresholds apply.
+     */
+    public SessionReplayer setThresholdControllerFactory(
+            ThresholdControllerFactory thresholdControllerFactory) {
+        this.thresholdControllerFactory = thresholdControllerFactory;
+        return this;
+    }
+
+    /**
+     * Sets the buffer required to start playback, and to resume it after a rebuffer, where no
+     * threshold controller is set.
+     */
+    public SessionReplayer setBufferThresholdsMs(int minBufferMs, int minRebufferMs) {
+        this.minBufferMs = minBufferMs;
+        this.minRebufferMs = minRebufferMs;
+        return this;
+    }
+
+    /**
+     * Replays each of the recordings.
+     */
+    public List<ReplayResult> replayAll(List<SessionRecording> recordings) {
+        List<ReplayResult> results = new ArrayList<>(recordings.size());
+        for (SessionRecording recording : recordings) {
+            results.add(replay(recording));
+        }
+        return results;
+    }
+
+    /**
+     * Replays a recording.
+     *
+     * @param recording The recording. Must contain the video formats.
+     * @return The result of the replay.
+     */
+    public ReplayResult replay(SessionRecording recording) {
+        return new Replay(recording).run();
+    }
+
+    /**
+     * The state of a single replay.
+     */
+    private final class Replay {
+
+        private final SessionRecording recording;
+        private final NetworkModel network;
+        private final VirtualClock clock;
+        private final DefaultBandwidthMeter bandwidthMeter;
+        private final FormatEvaluator evaluator;
+        private final DefaultAllocator allocator;
+        private final LoadControl loadControl;
+        private final BufferThresholdController thresholdController;
+        private final Format[] formats;
+        private final List<ReplayChunk> queue;
+        private final FormatEvaluator.Evaluation evaluation;
+        private final List<String> videoFormatIds;
+        private final long chunkDurationUs;
+        private final int chunkCount;
+        private final long durationUs;
+
+        private long positionUs;
+        private int nextChunkIndex;
+        private ReplayChunk loadingChunk;
+        private long loadStartTimeMs;
+        private double transferCarryBytes;
+        private boolean ready;
+        private boolean rebuffering;
+        private long rebufferStartMs;
+
+        private long startupMs;
+        private int rebufferCount;
+        private long rebufferMs;
+        private long playingMs;
+        private int loadedChunkCount;
+        private long bytesLoaded;
+        private long loadDurationMs;
+        private long bitrateDurationProduct;
+        private long loadedDurationUs;
+        private long earlyBitrateDurationProduct;
+
+        public Replay(SessionRecording recording) {
+            this.recording = recording;
+            network = new NetworkModel(recording);
+            clock = new VirtualClock();
+            bandwidthMeter = new DefaultBandwidthMeter(null, null, clock);
+            evaluator = evaluatorFactory.createFormatEvaluator(bandwidthMeter);
+            allocator = new DefaultAllocator(BUFFER_SEGMENT_SIZE);
+            loadControl = loadControlFactory.createLoadControl(allocator);
+            thresholdController = thresholdControllerFactory == null ? null
+                    : thresholdControllerFactory.createThresholdController();
+            formats = recording.videoFormats.toArray(new Format[recording.videoFormats.size()]);
+            // As in DashChunkSource, which evaluators rely on.
+            Arrays.sort(formats, new Format.DecreasingBandwidthComparator());
+            queue = new ArrayList<>();
+            evaluation = new FormatEvaluator.Evaluation();
+            videoFormatIds = new ArrayList<>();
+            chunkDurationUs = recording.getVideoChunkDurationMs(DEFAULT_CHUNK_DURATION_MS) * 1000L;
+            durationUs = recording.getVideoMediaEndTimeMs() * 1000L;
+            chunkCount = (int) ((durationUs + chunkDurationUs - 1) / chunkDurationUs);
+            startupMs = -1;
+        }
+
+        public ReplayResult run() {
+            if (formats.length == 0) {
+                throw new IllegalArgumentException("Recording has no video formats");
+            }
+            loadControl.register(this, VIDEO_BUFFER_SEGMENTS * BUFFER_SEGMENT_SIZE);
+            evaluator.enable();
+            seekTo(getInitialPositionMs() * 1000L);
+            int seekIndex = 0;
+            for (long nowMs = 0; nowMs < recording.durationMs; nowMs += TICK_MS) {
+                clock.timeMs = nowMs;
+                while (seekIndex < recording.seeks.size()
+                        && recording.seeks.get(seekIndex).timeMs <= nowMs) {
+                    seekTo(recording.seeks.get(seekIndex++).positionMs * 1000L);
+                }
+                updateLoading(nowMs);
+                if (updatePlayback(nowMs)) {
+                    break;
+                }
+            }
+            evaluator.disable();
+            releaseQueue(0);
+            loadControl.unregister(this);
+
+            long meanBitrate = loadedDurationUs == 0 ? 0 : bitrateDurationProduct / loadedDurationUs;
+            long earlyBitrate = playingMs < SessionQoe.EARLY_PLAYBACK_MS ? -1
+                    : earlyBitrateDurationProduct / SessionQoe.EARLY_PLAYBACK_MS;
+            SessionQoe qoe = new SessionQoe(startupMs, rebufferCount, rebufferMs, playingMs,
+                    countSwitches(), meanBitrate, earlyBitrate, loadedChunkCount, bytesLoaded,
+                    loadDurationMs, false);
+            return new ReplayResult(recording, qoe, videoFormatIds);
+        }
+
+        private int getInitialPositionMs() {
+            for (SessionRecording.Load load : recording.loads) {
+                if (load.isCompletedVideoMedia()) {
+                    return load.mediaStartTimeMs;
+                }
+            }
+            return 0;
+        }
+
+        private void seekTo(long seekPositionUs) {
+            if (loadingChunk != null) {
+                loadingChunk.cancelLoad();
+                clock.timeMs = Math.max(clock.timeMs, loadStartTimeMs);
+                bandwidthMeter.onTransferEnd();
+                loadingChunk = null;
+            }
+            releaseQueue(0);
+            positionUs = seekPositionUs;
+            nextChunkIndex = (int) (seekPositionUs / chunkDurationUs);
+            ready = false;
+            rebuffering = false;
+        }
+
+        private void updateLoading(long nowMs) {
+            long nextLoadPositionUs = nextChunkIndex < chunkCount ? getBufferedPositionUs() : -1;
+            boolean shouldLoad = loadControl.update(this, positionUs, nextLoadPositionUs,
+                    loadingChunk != null, false);
+            if (loadingChunk == null && shouldLoad && nextChunkIndex < chunkCount) {
+                startLoad(nowMs);
+            }
+            if (loadingChunk != null) {
+                transfer(nowMs);
+            }
+        }
+
+        private void startLoad(long nowMs) {
+            evaluation.queueSize = queue.size();
+            evaluator.evaluate(queue, positionUs, formats, evaluation);
+            if (evaluation.queueSize < queue.size()) {
+                // Discard upstream chunks, to reload them in a higher format.
+                nextChunkIndex = queue.get(evaluation.queueSize).chunkIndex;
+                releaseQueue(evaluation.queueSize);
+            }
+            Format format = evaluation.format;
+            long startTimeUs = nextChunkIndex * chunkDurationUs;
+            long endTimeUs = Math.min(durationUs, startTimeUs + chunkDurationUs);
+            loadingChunk = new ReplayChunk(format, startTimeUs, endTimeUs, nextChunkIndex,
+                    nextChunkIndex == chunkCount - 1,
+                    network.getChunkSize(format, startTimeUs, endTimeUs));
+            nextChunkIndex++;
+            loadStartTimeMs = nowMs;
+            transferCarryBytes = 0;
+            bandwidthMeter.onTransferStart();
+        }
+
+        private void transfer(long nowMs) {
+            transferCarryBytes += network.getThroughputBps(nowMs) * TICK_MS / 8000d;
+            int bytes = (int) Math.min(transferCarryBytes,
+                    loadingChunk.length - loadingChunk.bytesLoaded());
+            transferCarryBytes -= bytes;
+            bandwidthMeter.onBytesTransferred(bytes);
+            if (loadingChunk.onBytesLoaded(bytes) > 0) {
+                return;
+            }
+            clock.timeMs = nowMs + TICK_MS;
+            bandwidthMeter.onTransferEnd();
+            clock.timeMs = nowMs;
+
+            ReplayChunk chunk = loadingChunk;
+            loadingChunk = null;
+            int allocationCount = (int) ((chunk.length + BUFFER_SEGMENT_SIZE - 1)
+                    / BUFFER_SEGMENT_SIZE);
+            chunk.allocations = new Allocation[allocationCount];
+            for (int i = 0; i < allocationCount; i++) {
+                chunk.allocations[i] = allocator.allocate();
+            }
+            queue.add(chunk);
+
+            loadedChunkCount++;
+            bytesLoaded += chunk.length;
+            loadDurationMs += nowMs + TICK_MS - loadStartTimeMs;
+            long chunkDurationUs = chunk.endTimeUs - chunk.startTimeUs;
+            if (thresholdController != null) {
+                thresholdController.onBandwidthSample((int) (nowMs + TICK_MS - loadStartTimeMs),
+                        chunk.length);
+                thresholdController.onChunkLoaded(DemoPlayer.TYPE_VIDEO, chunk.format.bitrate,
+                        (int) (chunkDurationUs / 1000));
+            }
+            bitrateDurationProduct += chunk.format.bitrate * chunkDurationUs;
+            loadedDurationUs += chunkDurationUs;
+            videoFormatIds.add(chunk.format.id);
+        }
+
+        /**
+         * @return Whether playback ended.
+         */
+        private boolean updatePlayback(long nowMs) {
+            long bufferedDurationUs = getBufferedPositionUs() - positionUs;
+            boolean loadedToEnd = nextChunkIndex >= chunkCount && loadingChunk == null;
+            if (!ready) {
+                long thresholdUs = getThresholdMs() * 1000L;
+                if (bufferedDurationUs >= thresholdUs || (loadedToEnd && bufferedDurationUs > 0)) {
+                    ready = true;
+                    if (startupMs == -1) {
+                        startupMs = nowMs;
+                    } else if (rebuffering) {
+                        rebufferMs += nowMs - rebufferStartMs;
+                    }
+                }
+                return false;
+            }
+            if (playingMs < SessionQoe.EARLY_PLAYBACK_MS) {
+                earlyBitrateDurationProduct += (long) queue.get(0).format.bitrate * TICK_MS;
+            }
+            playingMs += TICK_MS;
+            positionUs += TICK_MS * 1000L;
+            while (!queue.isEmpty() && queue.get(0).endTimeUs <= positionUs) {
+                releaseChunk(queue.remove(0));
+            }
+            if (positionUs >= durationUs) {
+                return true;
+            }
+            if (getBufferedPositionUs() <= positionUs) {
+                ready = false;
+                rebuffering = true;
+                rebufferCount++;
+                rebufferStartMs = nowMs + TICK_MS;
+            }
+            return false;
+        }
+
+        private int getThresholdMs() {
+            if (thresholdController == null) {
+                return rebuffering ? minRebufferMs : minBufferMs;
+            }
+            return rebuffering ? thresholdController.getResumeThresholdMs()
+                    : thresholdController.getStartThresholdMs();
+        }
+
+        private long getBufferedPositionUs() {
+            return queue.isEmpty() ? positionUs : queue.get(queue.size() - 1).endTimeUs;
+        }
+
+        private void releaseQueue(int fromIndex) {
+            while (queue.size() > fromIndex) {
+                releaseChunk(queue.remove(queue.size() - 1));
+            }
+        }
+
+        private void releaseChunk(ReplayChunk chunk) {
+            for (Allocation allocation : chunk.allocations) {
+                allocator.release(allocation);
+            }
+            chunk.allocations = null;
+        }
+
+        private int countSwitches() {
+            int switchCount = 0;
+            for (int i = 1; i < videoFormatIds.size(); i++) {
+                if (!videoFormatIds.get(i).equals(videoFormatIds.get(i - 1))) {
+                    switchCount++;
+                }
+            }
+            return switchCount;
+        }
+
+    }
+
+    /**
+     * The network as observed during the recorded session.
+     */
+    private static final class NetworkModel {
+
+        private final SessionRecording recording;
+        private final long[] stepTimesMs;
+        private final long[] stepThroughputsBps;
+
+        public NetworkModel(SessionRecording recording) {
+            this.recording = recording;
+            // The capacity at any time is the sum of the throughputs of the loads in progress.
+            // Between loads, the last capacity holds.
+            List<long[]> edges = new ArrayList<>();
+            for (SessionRecording.Load load : recording.loads) {
+                if (load.completedTimeMs == -1 || load.loadDurationMs <= 0) {
+                    continue;
+                }
+                long throughputBps = load.bytesLoaded * 8000 / load.loadDurationMs;
+                edges.add(new long[] {load.completedTimeMs - load.loadDurationMs, throughputBps});
+                edges.add(new long[] {load.completedTimeMs, -throughputBps});
+            }
+            Collections.sort(edges, new Comparator<long[]>() {
+                @Override
+                public int compare(long[] lhs, long[] rhs) {
+                    return lhs[0] < rhs[0] ? -1 : (lhs[0] == rhs[0] ? 0 : 1);
+                }
+            });
+            List<long[]> steps = new ArrayList<>();
+            long activeBps = 0;
+            for (int i = 0; i < edges.size(); i++) {
+                activeBps += edges.get(i)[1];
+                long timeMs = edges.get(i)[0];
+                if (i + 1 < edges.size() && edges.get(i + 1)[0] == timeMs) {
+                    continue;
+                }
+                if (activeBps > 0) {
+                    steps.add(new long[] {timeMs, activeBps});
+                }
+            }
+            stepTimesMs = new long[steps.size()];
+            stepThroughputsBps = new long[steps.size()];
+            for (int i = 0; i < steps.size(); i++) {
+                stepTimesMs[i] = steps.get(i)[0];
+                stepThroughputsBps[i] = steps.get(i)[1];
+            }
+        }
+
+        public long getThroughputBps(long timeMs) {
+            if (stepTimesMs.length == 0) {
+                return 0;
+            }
+            int index = Arrays.binarySearch(stepTimesMs, timeMs);
+            if (index < 0) {
+                index = Math.max(0, -index - 2);
+            }
+            return stepThroughputsBps[index];
+        }
+
+        public long getChunkSize(Format format, long startTimeUs, long endTimeUs) {
+            int mediaStartTimeMs = (int) (startTimeUs / 1000);
+            for (SessionRecording.Load load : recording.loads) {
+                if (load.isCompletedVideoMedia() && load.mediaStartTimeMs == mediaStartTimeMs
+                        && format.id.equals(load.formatId)) {
+                    return load.bytesLoaded;
+                }
+            }
+            return Math.max(1, format.bitrate * (endTimeUs - startTimeUs) / 8000000);
+        }
+
+    }
+
+    private static final class VirtualClock implements Clock {
+
+        public long timeMs;
+
+        @Override
+        public long elapsedRealtime() {
+            return timeMs;
+        }
+
+    }
+
+}
@@ -0,0 +1,68 @@
+package android.net;
+
+import java.io.File;
+
+/**
+ * Host JVM stand-in for the framework {@code Uri}, which throws when called from the stub jar.
+ * Only the accessors that data sources use are implemented, on top of {@link java.net.URI}.
+ */
+public class Uri {
+
+    private final java.net.URI uri;
+
+    private Uri(java.net.URI uri) {
+        this.uri = uri;
+    }
+
+    public static Uri parse(String uriString) {
+        return new Uri(java.net.URI.create(uriString));
+    }
+
+    public static Uri fromFile(File file) {
+        return new Uri(file.toURI());
+    }
+
+    public String getScheme() {
+        return uri.getScheme();
+    }
+
+    public String getPath() {
+        return uri.getPath();
+    }
+
+    public String getAuthority() {
+        return uri.getAuthority();
+    }
+
+    public String getHost() {
+        return uri.getHost();
+    }
+
+    public int getPort() {
+        return uri.getPort();
+    }
+
+    public String getLastPathSegment() {
+        String path = uri.getPath();
+        if (path == null || path.isEmpty()) {
+            return null;
+        }
+        return path.substring(path.lastIndexOf('/', path.length() - 2) + 1);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Uri && uri.equals(((Uri) other).uri);
+    }
+
+    @Override
+    public int hashCode() {
+        return uri.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return uri.toString();
+    }
+
+}
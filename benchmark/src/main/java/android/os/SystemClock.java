@@ -0,0 +1,19 @@
+package android.os;
+
+/**
+ * Host JVM stand-in for the framework {@code SystemClock}, which throws when called from the
+ * stub jar.
+ */
+public final class SystemClock {
+
+    private SystemClock() {}
+
+    public static long elapsedRealtime() {
+        return System.nanoTime() / 1000000;
+    }
+
+    public static long uptimeMillis() {
+        return System.nanoTime() / 1000000;
+    }
+
+}
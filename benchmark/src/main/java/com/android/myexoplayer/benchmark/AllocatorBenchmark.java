@@ -0,0 +1,82 @@
+package com.android.myexoplayer.benchmark;
+
+import com.google.android.exoplayer.upstream.Allocation;
+import com.google.android.exoplayer.upstream.DefaultAllocator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures acquiring and releasing buffers from the {@link DefaultAllocator} shared by the sample
+ * sources, both for single buffers and for a segment's worth at a time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AllocatorBenchmark {
+
+    /**
+     * Same as {@code DashRendererBuilder.BUFFER_SEGMENT_SIZE}.
+     */
+    private static final int BUFFER_SEGMENT_SIZE = 64 * 1024;
+
+    /**
+     * Number of allocations needed to hold a segment of the given size in kilobytes.
+     */
+    @Param({"64", "1024"})
+    public int segmentSizeKb;
+
+    private DefaultAllocator allocator;
+    private Allocation[] allocations;
+
+    @Setup
+    public void setUp() {
+        allocator = new DefaultAllocator(BUFFER_SEGMENT_SIZE);
+        allocations = new Allocation[segmentSizeKb * 1024 / BUFFER_SEGMENT_SIZE];
+    }
+
+    @Benchmark
+    public Allocation acquireRelease() {
+        Allocation allocation = allocator.allocate();
+        allocator.release(allocation);
+        return allocation;
+    }
+
+    @Benchmark
+    public Allocation[] acquireReleaseSegment() {
+        for (int i = 0; i < allocations.length; i++) {
+            allocations[i] = allocator.allocate();
+        }
+        for (int i = 0; i < allocations.length; i++) {
+            allocator.release(allocations[i]);
+        }
+        return allocations;
+    }
+
+    /**
+     * Loader and playback threads contending on the allocator lock.
+     */
+    @Benchmark
+    @Threads(4)
+    public Allocation acquireReleaseContended() {
+        Allocation allocation = allocator.allocate();
+        allocator.release(allocation);
+        return allocation;
+    }
+
+}
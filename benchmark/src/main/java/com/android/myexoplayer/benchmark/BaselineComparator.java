@@ -0,0 +1,156 @@
+package com.android.myexoplayer.benchmark;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares two JMH result files written with {@code -rf csv}, typically a baseline kept from an
+ * earlier commit and the results of the current tree.
+ * <p>
+ * Benchmarks are matched by name and parameters. The process exits with status 1 if any benchmark
+ * regressed by more than the threshold, which defaults to 10%, beyond the combined score errors.
+ */
+public final class BaselineComparator {
+
+    private static final double DEFAULT_THRESHOLD = 0.10;
+
+    private BaselineComparator() {}
+
+    /**
+     * @param args The baseline CSV, the current CSV and, optionally, the regression threshold as
+     *     a fraction.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineComparator <baseline.csv> <current.csv> [threshold]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD;
+        Map<String, Result> baseline = read(args[0]);
+        Map<String, Result> current = read(args[1]);
+        int regressionCount = 0;
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            Result now = entry.getValue();
+            Result before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.println(String.format(Locale.US, "NEW        %s: %.3f %s",
+                        entry.getKey(), now.score, now.unit));
+                continue;
+            }
+            // Scores are times per operation, so a higher score is slower, unless the mode
+            // measures throughput.
+            double change = (now.score - before.score) / before.score;
+            if (now.higherIsBetter) {
+                change = -change;
+            }
+            boolean significant = Math.abs(now.score - before.score) > now.error + before.error;
+            String verdict;
+            if (significant && change > threshold) {
+                verdict = "REGRESSED ";
+                regressionCount++;
+            } else if (significant && change < -threshold) {
+                verdict = "IMPROVED  ";
+            } else {
+                verdict = "UNCHANGED ";
+            }
+            System.out.println(String.format(Locale.US, "%s %s: %.3f -> %.3f %s (%+.1f%%)",
+                    verdict, entry.getKey(), before.score, now.score, now.unit,
+                    (now.score - before.score) * 100 / before.score));
+        }
+        for (String key : baseline.keySet()) {
+            if (!current.containsKey(key)) {
+                System.out.println("MISSING    " + key);
+            }
+        }
+        if (regressionCount > 0) {
+            System.out.println(regressionCount + " benchmark(s) regressed by more than "
+                    + Math.round(threshold * 100) + "%");
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, Result> read(String path) throws IOException {
+        Map<String, Result> results = new LinkedHashMap<>();
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(path), "UTF-8"));
+        try {
+            List<String> header = parseCsvLine(reader.readLine());
+            int benchmarkColumn = header.indexOf("Benchmark");
+            int modeColumn = header.indexOf("Mode");
+            int scoreColumn = header.indexOf("Score");
+            int errorColumn = header.indexOf("Score Error (99.9%)");
+            int unitColumn = header.indexOf("Unit");
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                List<String> values = parseCsvLine(line);
+                StringBuilder key = new StringBuilder(values.get(benchmarkColumn));
+                for (int i = 0; i < header.size(); i++) {
+                    if (header.get(i).startsWith("Param: ") && !values.get(i).isEmpty()) {
+                        key.append(' ').append(header.get(i).substring(7)).append('=')
+                                .append(values.get(i));
+                    }
+                }
+                String error = errorColumn != -1 ? values.get(errorColumn) : "";
+                results.put(key.toString(), new Result(
+                        Double.parseDouble(values.get(scoreColumn)),
+                        error.isEmpty() || error.equals("NaN") ? 0 : Double.parseDouble(error),
+                        values.get(unitColumn),
+                        "thrpt".equals(values.get(modeColumn))));
+            }
+        } finally {
+            reader.close();
+        }
+        return results;
+    }
+
+    private static List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    private static final class Result {
+
+        public final double score;
+        public final double error;
+        public final String unit;
+        public final boolean higherIsBetter;
+
+        public Result(double score, double error, String unit, boolean higherIsBetter) {
+            this.score = score;
+            this.error = error;
+            this.unit = unit;
+            this.higherIsBetter = higherIsBetter;
+        }
+
+    }
+
+}
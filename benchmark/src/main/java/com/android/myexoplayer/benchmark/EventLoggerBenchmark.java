@@ -0,0 +1,74 @@
+package com.android.myexoplayer.benchmark;
+
+import com.android.myexoplayer.EventLogger;
+import com.google.android.exoplayer.ExoPlayer;
+import com.google.android.exoplayer.chunk.Chunk;
+import com.google.android.exoplayer.chunk.Format;
+import com.google.android.exoplayer.util.VerboseLogUtil;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of formatting {@link EventLogger} messages. Log output itself is discarded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventLoggerBenchmark {
+
+    /**
+     * Whether verbose logging, which adds the per-chunk load messages, is enabled.
+     */
+    @Param({"false", "true"})
+    public boolean verbose;
+
+    private EventLogger eventLogger;
+    private Format format;
+
+    @Setup
+    public void setUp() {
+        VerboseLogUtil.setEnableAllTags(verbose);
+        eventLogger = new EventLogger();
+        eventLogger.startSession();
+        format = new Format("v720", "video/mp4", 1280, 720, 30, -1, -1, 3000000);
+    }
+
+    @Benchmark
+    public void onStateChanged() {
+        eventLogger.onStateChanged(true, ExoPlayer.STATE_READY);
+    }
+
+    @Benchmark
+    public void onBandwidthSample() {
+        eventLogger.onBandwidthSample(512, 1024 * 1024, 3000000);
+    }
+
+    @Benchmark
+    public void onVideoFormatEnabled() {
+        eventLogger.onVideoFormatEnabled(format, Chunk.TRIGGER_ADAPTIVE, 10000);
+    }
+
+    @Benchmark
+    public void onLoadStartedAndCompleted() {
+        eventLogger.onLoadStarted(0, 750000, Chunk.TYPE_MEDIA, Chunk.TRIGGER_ADAPTIVE, format,
+                10000, 12000);
+        eventLogger.onLoadCompleted(0, 750000, Chunk.TYPE_MEDIA, Chunk.TRIGGER_ADAPTIVE, format,
+                10000, 12000, 0, 250);
+    }
+
+}
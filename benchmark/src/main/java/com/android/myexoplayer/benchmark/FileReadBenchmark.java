@@ -0,0 +1,119 @@
+package com.android.myexoplayer.benchmark;
+
+import android.net.Uri;
+
+import com.android.myexoplayer.player.MemoryMappedFileDataSource;
+import com.google.android.exoplayer.upstream.DataSource;
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.FileDataSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the read throughput of local playback: one operation reads a {@link #FILE_SIZE_MB} MB
+ * file from the page cache, so megabytes per second is {@link #FILE_SIZE_MB} times the score.
+ * <p>
+ * Read sizes cover an MPEG-TS packet, the small reads of an extractor parsing boxes, and a whole
+ * allocation of the sample buffer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileReadBenchmark {
+
+    private static final int FILE_SIZE_MB = 16;
+
+    @Param({"188", "4096", "65536"})
+    public int readSize;
+
+    private File file;
+    private DataSpec dataSpec;
+    private byte[] buffer;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("FileReadBenchmark", ".mp4");
+        byte[] data = new byte[1024 * 1024];
+        new Random(0).nextBytes(data);
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            for (int i = 0; i < FILE_SIZE_MB; i++) {
+                output.write(data);
+            }
+        } finally {
+            output.close();
+        }
+        dataSpec = new DataSpec(Uri.fromFile(file));
+        buffer = new byte[readSize];
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public long fileInputStream() throws IOException {
+        FileInputStream input = new FileInputStream(file);
+        try {
+            long total = 0;
+            int bytesRead;
+            while ((bytesRead = input.read(buffer, 0, readSize)) != -1) {
+                total += bytesRead;
+            }
+            return total;
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * The data source that {@code DefaultUriDataSource} uses for files, based on
+     * {@link java.io.RandomAccessFile}.
+     */
+    @Benchmark
+    public long fileDataSource() throws IOException {
+        return readFully(new FileDataSource());
+    }
+
+    @Benchmark
+    public long memoryMappedFileDataSource() throws IOException {
+        return readFully(new MemoryMappedFileDataSource());
+    }
+
+    private long readFully(DataSource dataSource) throws IOException {
+        try {
+            dataSource.open(dataSpec);
+            long total = 0;
+            int bytesRead;
+            while ((bytesRead = dataSource.read(buffer, 0, readSize)) != -1) {
+                total += bytesRead;
+            }
+            return total;
+        } finally {
+            dataSource.close();
+        }
+    }
+
+}
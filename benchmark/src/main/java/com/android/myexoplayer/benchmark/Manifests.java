@@ -0,0 +1,109 @@
+package com.android.myexoplayer.benchmark;
+
+import java.util.Locale;
+
+/**
+ * Builds MPDs of a chosen size for the parsing and index benchmarks.
+ */
+/* package */ final class Manifests {
+
+    public static final String MANIFEST_URL = "http://127.0.0.1/benchmark/manifest.mpd";
+
+    /**
+     * Each representation lists every segment URL.
+     */
+    public static final String ADDRESSING_LIST = "LIST";
+    /**
+     * Each adaptation set describes its segments with one {@code SegmentTimeline} entry apiece.
+     */
+    public static final String ADDRESSING_TIMELINE = "TIMELINE";
+    /**
+     * Each adaptation set uses a {@code SegmentTemplate} with a fixed duration, so the manifest
+     * size does not grow with the segment count.
+     */
+    public static final String ADDRESSING_TEMPLATE = "TEMPLATE";
+
+    public static final int SEGMENT_DURATION_MS = 2000;
+
+    private static final int[] VIDEO_BITRATES = {400000, 1200000, 3000000, 6000000};
+    private static final int[] VIDEO_HEIGHTS = {240, 480, 720, 1080};
+
+    private Manifests() {}
+
+    /**
+     * Builds a static MPD with four video representations and one audio representation.
+     *
+     * @param addressing One of the {@code ADDRESSING_*} constants.
+     * @param segmentCount The number of segments in each representation.
+     */
+    public static String build(String addressing, int segmentCount) {
+        long durationMs = (long) segmentCount * SEGMENT_DURATION_MS;
+        StringBuilder mpd = new StringBuilder(256 + segmentCount * 64 * VIDEO_BITRATES.length);
+        mpd.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<MPD xmlns=\"urn:mpeg:dash:schema:mpd:2011\" type=\"static\"")
+                .append(" minBufferTime=\"PT2S\" mediaPresentationDuration=\"PT")
+                .append(durationMs / 1000).append("S\">\n")
+                .append("  <Period id=\"0\" start=\"PT0S\">\n");
+        mpd.append("    <AdaptationSet id=\"0\" mimeType=\"video/mp4\" contentType=\"video\">\n");
+        appendSharedSegmentInfo(mpd, addressing, segmentCount);
+        for (int i = 0; i < VIDEO_BITRATES.length; i++) {
+            mpd.append(String.format(Locale.US, "      <Representation id=\"v%d\" codecs=\"avc1.42c01e\""
+                    + " bandwidth=\"%d\" width=\"%d\" height=\"%d\">\n", VIDEO_HEIGHTS[i],
+                    VIDEO_BITRATES[i], VIDEO_HEIGHTS[i] * 16 / 9, VIDEO_HEIGHTS[i]));
+            appendSegmentList(mpd, addressing, "v" + VIDEO_HEIGHTS[i], segmentCount);
+            mpd.append("      </Representation>\n");
+        }
+        mpd.append("    </AdaptationSet>\n");
+        mpd.append("    <AdaptationSet id=\"1\" mimeType=\"audio/mp4\" contentType=\"audio\""
+                + " lang=\"en\">\n");
+        appendSharedSegmentInfo(mpd, addressing, segmentCount);
+        mpd.append("      <Representation id=\"a128\" codecs=\"mp4a.40.2\" bandwidth=\"128000\""
+                + " audioSamplingRate=\"44100\">\n");
+        appendSegmentList(mpd, addressing, "a128", segmentCount);
+        mpd.append("      </Representation>\n");
+        mpd.append("    </AdaptationSet>\n");
+        return mpd.append("  </Period>\n</MPD>\n").toString();
+    }
+
+    private static void appendSharedSegmentInfo(StringBuilder mpd, String addressing,
+                                                int segmentCount) {
+        if (ADDRESSING_TEMPLATE.equals(addressing)) {
+            mpd.append("      <SegmentTemplate timescale=\"1000\" duration=\"")
+                    .append(SEGMENT_DURATION_MS).append("\" startNumber=\"1\"")
+                    .append(" initialization=\"$RepresentationID$/init.mp4\"")
+                    .append(" media=\"$RepresentationID$/$Number$.m4s\"/>\n");
+        } else if (ADDRESSING_TIMELINE.equals(addressing)) {
+            mpd.append("      <SegmentTemplate timescale=\"1000\" startNumber=\"1\"")
+                    .append(" initialization=\"$RepresentationID$/init.mp4\"")
+                    .append(" media=\"$RepresentationID$/$Time$.m4s\">\n")
+                    .append("        <SegmentTimeline>\n");
+            // Alternate durations so that the timeline cannot be collapsed into repeats.
+            long timeMs = 0;
+            for (int i = 0; i < segmentCount; i++) {
+                int durationMs = SEGMENT_DURATION_MS + (i % 2 == 0 ? -40 : 40);
+                mpd.append("          <S t=\"").append(timeMs).append("\" d=\"").append(durationMs)
+                        .append("\"/>\n");
+                timeMs += durationMs;
+            }
+            mpd.append("        </SegmentTimeline>\n")
+                    .append("      </SegmentTemplate>\n");
+        }
+    }
+
+    private static void appendSegmentList(StringBuilder mpd, String addressing,
+                                          String representationId, int segmentCount) {
+        if (!ADDRESSING_LIST.equals(addressing)) {
+            return;
+        }
+        mpd.append("        <SegmentList timescale=\"1000\" duration=\"").append(SEGMENT_DURATION_MS)
+                .append("\">\n")
+                .append("          <Initialization sourceURL=\"").append(representationId)
+                .append("/init.mp4\"/>\n");
+        for (int i = 1; i <= segmentCount; i++) {
+            mpd.append("          <SegmentURL media=\"").append(representationId).append('/')
+                    .append(i).append(".m4s\"/>\n");
+        }
+        mpd.append("        </SegmentList>\n");
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.android.myexoplayer.benchmark;
+
+import com.google.android.exoplayer.dash.mpd.MediaPresentationDescription;
+import com.google.android.exoplayer.dash.mpd.MediaPresentationDescriptionParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link MediaPresentationDescriptionParser} on manifests of increasing size, as done by
+ * {@code ManifestFetcher} on every refresh of a live stream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MpdParsingBenchmark {
+
+    @Param({Manifests.ADDRESSING_TEMPLATE, Manifests.ADDRESSING_TIMELINE,
+            Manifests.ADDRESSING_LIST})
+    public String addressing;
+
+    @Param({"10", "100", "1000"})
+    public int segmentCount;
+
+    private MediaPresentationDescriptionParser parser;
+    private byte[] manifest;
+
+    @Setup
+    public void setUp() throws IOException {
+        parser = new MediaPresentationDescriptionParser();
+        manifest = Manifests.build(addressing, segmentCount).getBytes("UTF-8");
+    }
+
+    @Benchmark
+    public MediaPresentationDescription parse() throws IOException {
+        return parser.parse(Manifests.MANIFEST_URL, new ByteArrayInputStream(manifest));
+    }
+
+}
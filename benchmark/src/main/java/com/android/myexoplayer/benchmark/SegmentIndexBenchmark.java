@@ -0,0 +1,89 @@
+package com.android.myexoplayer.benchmark;
+
+import com.google.android.exoplayer.dash.DashSegmentIndex;
+import com.google.android.exoplayer.dash.mpd.MediaPresentationDescription;
+import com.google.android.exoplayer.dash.mpd.MediaPresentationDescriptionParser;
+import com.google.android.exoplayer.dash.mpd.RangedUri;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link DashSegmentIndex} lookups that {@code DashChunkSource} performs for every
+ * chunk it loads.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SegmentIndexBenchmark {
+
+    private static final int LOOKUP_COUNT = 1024;
+
+    @Param({Manifests.ADDRESSING_TEMPLATE, Manifests.ADDRESSING_TIMELINE,
+            Manifests.ADDRESSING_LIST})
+    public String addressing;
+
+    @Param({"10", "100", "1000"})
+    public int segmentCount;
+
+    private DashSegmentIndex index;
+    private long[] lookupTimesUs;
+    private int[] lookupSegmentNums;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] manifest = Manifests.build(addressing, segmentCount).getBytes("UTF-8");
+        MediaPresentationDescription mpd = new MediaPresentationDescriptionParser()
+                .parse(Manifests.MANIFEST_URL, new ByteArrayInputStream(manifest));
+        index = mpd.periods.get(0).adaptationSets.get(0).representations.get(0).getIndex();
+        // Random positions, so that the timeline search cannot benefit from branch history.
+        Random random = new Random(0);
+        long durationUs = (long) segmentCount * Manifests.SEGMENT_DURATION_MS * 1000;
+        int firstSegmentNum = index.getFirstSegmentNum();
+        int lastSegmentNum = index.getLastSegmentNum();
+        lookupTimesUs = new long[LOOKUP_COUNT];
+        lookupSegmentNums = new int[LOOKUP_COUNT];
+        for (int i = 0; i < LOOKUP_COUNT; i++) {
+            lookupTimesUs[i] = (long) (random.nextDouble() * durationUs);
+            lookupSegmentNums[i] = firstSegmentNum
+                    + random.nextInt(lastSegmentNum - firstSegmentNum + 1);
+        }
+    }
+
+    @Benchmark
+    public int getSegmentNum() {
+        next = (next + 1) & (LOOKUP_COUNT - 1);
+        return index.getSegmentNum(lookupTimesUs[next]);
+    }
+
+    @Benchmark
+    public long getTimeUs() {
+        next = (next + 1) & (LOOKUP_COUNT - 1);
+        return index.getTimeUs(lookupSegmentNums[next]);
+    }
+
+    @Benchmark
+    public RangedUri getSegmentUrl() {
+        next = (next + 1) & (LOOKUP_COUNT - 1);
+        return index.getSegmentUrl(lookupSegmentNums[next]);
+    }
+
+}
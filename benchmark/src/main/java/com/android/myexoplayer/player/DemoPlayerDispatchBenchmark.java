@@ -0,0 +1,186 @@
+package com.android.myexoplayer.player;
+
+import com.google.android.exoplayer.ExoPlayer;
+import com.google.android.exoplayer.TimeRange;
+import com.google.android.exoplayer.chunk.Chunk;
+import com.google.android.exoplayer.chunk.Format;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures event dispatch through {@link DemoPlayer}'s listener paths, from the source, renderer
+ * and bandwidth meter callbacks to registered listeners.
+ * <p>
+ * The player is built around an {@link ExoPlayer} that ignores all calls, so that only the
+ * dispatch itself is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DemoPlayerDispatchBenchmark {
+
+    /**
+     * Number of {@link DemoPlayer.Listener}s registered.
+     */
+    @Param({"1", "4"})
+    public int listenerCount;
+
+    private DemoPlayer player;
+    private Format format;
+    private int mediaTimeMs;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        player = new DemoPlayer(null, newIdlePlayer(), null);
+        BlackholeListener listener = new BlackholeListener(blackhole);
+        for (int i = 0; i < listenerCount; i++) {
+            player.addListener(i == 0 ? listener : new BlackholeListener(blackhole));
+        }
+        player.setInfoListener(listener);
+        format = new Format("v720", "video/mp4", 1280, 720, 30, -1, -1, 3000000);
+    }
+
+    @Benchmark
+    public void onLoadStartedAndCompleted() {
+        mediaTimeMs += 2000;
+        player.onLoadStarted(DemoPlayer.TYPE_VIDEO, 750000, Chunk.TYPE_MEDIA,
+                Chunk.TRIGGER_ADAPTIVE, format, mediaTimeMs, mediaTimeMs + 2000);
+        player.onLoadCompleted(DemoPlayer.TYPE_VIDEO, 750000, Chunk.TYPE_MEDIA,
+                Chunk.TRIGGER_ADAPTIVE, format, mediaTimeMs, mediaTimeMs + 2000, 0, 250);
+    }
+
+    @Benchmark
+    public void onDownstreamFormatChanged() {
+        player.onDownstreamFormatChanged(DemoPlayer.TYPE_VIDEO, format, Chunk.TRIGGER_ADAPTIVE,
+                mediaTimeMs);
+    }
+
+    @Benchmark
+    public void onBandwidthSample() {
+        player.onBandwidthSample(512, 1024 * 1024, 3000000);
+    }
+
+    @Benchmark
+    public void onVideoSizeChanged() {
+        player.onVideoSizeChanged(1280, 720, 1f);
+    }
+
+    @Benchmark
+    public void onPlayerStateChanged() {
+        player.onPlayerStateChanged(true, ExoPlayer.STATE_READY);
+    }
+
+    private static ExoPlayer newIdlePlayer() {
+        return (ExoPlayer) Proxy.newProxyInstance(ExoPlayer.class.getClassLoader(),
+                new Class<?>[] {ExoPlayer.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        Class<?> returnType = method.getReturnType();
+                        if (returnType == boolean.class) {
+                            return false;
+                        } else if (returnType == int.class) {
+                            return 0;
+                        } else if (returnType == long.class) {
+                            return 0L;
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    private static final class BlackholeListener implements DemoPlayer.Listener,
+            DemoPlayer.InfoListener {
+
+        private final Blackhole blackhole;
+
+        public BlackholeListener(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void onStateChanged(boolean playWhenReady, int playbackState) {
+            blackhole.consume(playbackState);
+        }
+
+        @Override
+        public void onError(Exception e) {
+            blackhole.consume(e);
+        }
+
+        @Override
+        public void onVideoSizeChanged(int width, int height, float pixelWidthHeightRatio) {
+            blackhole.consume(width);
+        }
+
+        @Override
+        public void onVideoFormatEnabled(Format format, int trigger, int mediaTimeMs) {
+            blackhole.consume(format);
+        }
+
+        @Override
+        public void onAudioFormatEnabled(Format format, int trigger, int mediaTimeMs) {
+            blackhole.consume(format);
+        }
+
+        @Override
+        public void onDroppedFrames(int count, long elapsed) {
+            blackhole.consume(count);
+        }
+
+        @Override
+        public void onBandwidthSample(int elapsedMs, long bytes, long bitrateEstimate) {
+            blackhole.consume(bitrateEstimate);
+        }
+
+        @Override
+        public void onLoadStarted(int sourceId, long length, int type, int trigger, Format format,
+                                  int mediaStartTimeMs, int mediaEndTimeMs) {
+            blackhole.consume(length);
+        }
+
+        @Override
+        public void onLoadCompleted(int sourceId, long bytesLoaded, int type, int trigger,
+                                    Format format, int mediaStartTimeMs, int mediaEndTimeMs,
+                                    long elapsedRealtimeMs, long loadDurationMs) {
+            blackhole.consume(bytesLoaded);
+        }
+
+        @Override
+        public void onDecoderInitialized(String decoderName, long elapsedRealtimeMs,
+                                         long initializationDurationMs) {
+            blackhole.consume(decoderName);
+        }
+
+        @Override
+        public void onSeekRangeChanged(TimeRange seekRange) {
+            blackhole.consume(seekRange);
+        }
+
+        @Override
+        public void onVideoCodecSelected(String mimeType, boolean hardwareAccelerated,
+                                         float expectedBandwidthSavings) {
+            blackhole.consume(mimeType);
+        }
+
+    }
+
+}